@@ -1,25 +1,130 @@
 package com.gpergrossi.spaceinvaders;
 
+import com.gpergrossi.spaceinvaders.diagnostics.GameMetrics;
+import com.gpergrossi.spaceinvaders.diagnostics.Tracer;
 import com.gpergrossi.spaceinvaders.game.Game;
 import com.gpergrossi.spaceinvaders.game.GameWindow;
 import com.gpergrossi.spaceinvaders.game.Input;
 import com.gpergrossi.spaceinvaders.game.Settings;
+import com.gpergrossi.spaceinvaders.net.RollbackSession;
+import com.gpergrossi.spaceinvaders.net.SimulatedNetworkTransport;
+import com.gpergrossi.spaceinvaders.net.Transport;
+import com.gpergrossi.spaceinvaders.net.UdpTransport;
+import com.gpergrossi.spaceinvaders.telemetry.TelemetryWriter;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 public class Main {
 
+    /** Every option the game accepts, and how many values follow it */
+    private static final Map<String, Integer> OPTION_VALUES = new HashMap<>();
+    static {
+        OPTION_VALUES.put("--netplay", 3);
+        OPTION_VALUES.put("--latency", 1);
+        OPTION_VALUES.put("--jitter", 1);
+        OPTION_VALUES.put("--loss", 1);
+        OPTION_VALUES.put("--telemetry", 1);
+        OPTION_VALUES.put("--trace", 1);
+        OPTION_VALUES.put("--trace-capacity", 1);
+        OPTION_VALUES.put("--renderer", 1);
+        OPTION_VALUES.put("--display-list", 0);
+        OPTION_VALUES.put("--bloom", 0);
+        OPTION_VALUES.put("--scanlines", 0);
+        OPTION_VALUES.put("--vignette", 0);
+        OPTION_VALUES.put("--render-scale", 1);
+        OPTION_VALUES.put("--filter", 1);
+    }
+
     /**
      * The entry point into the game. We'll simply create an
      * instance of class which will start the display and game
      * loop.
      *
+     * Two-player netplay can be started with:
+     *   --netplay &lt;player 0|1&gt; &lt;local port&gt; &lt;remote host:port&gt;
+     * and tested over localhost with a simulated bad network by adding:
+     *   --latency &lt;ms&gt; --jitter &lt;ms&gt; --loss &lt;fraction&gt;
+     *
+     * Gameplay events can be recorded for offline analysis with:
+     *   --telemetry &lt;directory&gt;
+     *
+     * A per-frame trace, viewable in chrome://tracing or Perfetto, is written on exit with:
+     *   --trace &lt;file.json&gt;
+     * keeping the last Tracer.DEFAULT_CAPACITY events of each thread, or as many as given with:
+     *   --trace-capacity &lt;events&gt;
+     *
+     * The renderer can be switched to the software framebuffer, to compare frame times, with:
+     *   --renderer &lt;java2d|framebuffer|parallel&gt;
+     * and each frame can be recorded into a display list before it is drawn with:
+     *   --display-list
+     *
+     * Screen effects are applied to each finished frame with any of:
+     *   --bloom --scanlines --vignette
+     *
+     * The game can be drawn at a fraction of the screen size, then scaled up to fit the window, with:
+     *   --render-scale &lt;0-1&gt; --filter &lt;nearest|bilinear&gt;
+     *
      * @param argv The arguments that are passed into our game
      */
-    public static void main(String argv[]) {
+    public static void main(String argv[]) throws IOException {
+        Map<String, String[]> options = parseOptions(argv);
+
         Input i = new Input();
         Settings s = new Settings();
+        String renderer = getOption(options, "--renderer");
+        if (renderer != null) {
+            s.setRenderer(renderer);
+        }
+        s.setRecordDisplayList(options.containsKey("--display-list"));
+        s.setBloom(options.containsKey("--bloom"));
+        s.setScanlines(options.containsKey("--scanlines"));
+        s.setVignette(options.containsKey("--vignette"));
+        String renderScale = getOption(options, "--render-scale");
+        if (renderScale != null) {
+            s.setRenderScale(Float.parseFloat(renderScale));
+        }
+        String filter = getOption(options, "--filter");
+        if (filter != null) {
+            s.setScaleFilter(filter);
+        }
         Game g = new Game(i, s);
 
-        GameWindow w = new GameWindow("Space Invaders 101", 800, 600, g, i);
+        String title = "Space Invaders 101";
+
+        RollbackSession session = createNetplaySession(options);
+        if (session != null) {
+            g.setTickController(session);
+            title += " - Player " + (session.getLocalPlayer() + 1);
+        }
+
+        TelemetryWriter telemetry = createTelemetryWriter(options);
+        if (telemetry != null) {
+            g.setTelemetry(telemetry);
+
+            // The game exits through System.exit(), so write out the last events on the way out
+            Runtime.getRuntime().addShutdownHook(new Thread(telemetry::close));
+        }
+
+        String trace = getOption(options, "--trace");
+        if (trace != null) {
+            Path tracePath = Paths.get(trace);
+            String traceCapacity = getOption(options, "--trace-capacity");
+            Tracer.start(traceCapacity != null ? Integer.parseInt(traceCapacity) : Tracer.DEFAULT_CAPACITY);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> writeTrace(tracePath)));
+        }
+
+        GameWindow w = new GameWindow(title, 800, 600, g, i);
+
+        // Expose live counters to JConsole
+        GameMetrics metrics = new GameMetrics();
+        metrics.register();
+        w.setMetrics(metrics);
 
         // Start the main game loop, note: this method will not
         // return until the game has finished running. Hence we are
@@ -27,4 +132,87 @@ public class Main {
         w.start();
     }
 
+    /**
+     * Split the command line arguments into options, each with the values that follow it.
+     * Flags are present with no values.
+     *
+     * @throws IllegalArgumentException If an option is unknown or is missing values
+     */
+    private static Map<String, String[]> parseOptions(String argv[]) {
+        Map<String, String[]> options = new HashMap<>();
+        for (int a = 0; a < argv.length; a++) {
+            Integer count = OPTION_VALUES.get(argv[a]);
+            if (count == null) {
+                throw new IllegalArgumentException("Unknown argument: " + argv[a]);
+            }
+            if (a + count >= argv.length) {
+                throw new IllegalArgumentException("Missing value for " + argv[a]);
+            }
+            options.put(argv[a], Arrays.copyOfRange(argv, a + 1, a + 1 + count));
+            a += count;
+        }
+        return options;
+    }
+
+    /**
+     * Get the first value of an option, or return null if it wasn't given.
+     */
+    private static String getOption(Map<String, String[]> options, String option) {
+        return getOption(options, option, null);
+    }
+
+    /**
+     * Get the first value of an option, or return a default if it wasn't given.
+     */
+    private static String getOption(Map<String, String[]> options, String option, String defaultValue) {
+        String[] values = options.get(option);
+        return (values != null && values.length > 0) ? values[0] : defaultValue;
+    }
+
+    /**
+     * Create a netplay session from the command line options, or return null for a single player game.
+     */
+    private static RollbackSession createNetplaySession(Map<String, String[]> options) throws IOException {
+        String[] netplay = options.get("--netplay");
+        if (netplay == null) return null;
+
+        int player = Integer.parseInt(netplay[0]);
+        int localPort = Integer.parseInt(netplay[1]);
+        String[] hostPort = netplay[2].split(":");
+        InetSocketAddress remote = new InetSocketAddress(hostPort[0], Integer.parseInt(hostPort[1]));
+
+        int latency = Integer.parseInt(getOption(options, "--latency", "0"));
+        int jitter = Integer.parseInt(getOption(options, "--jitter", "0"));
+        double loss = Double.parseDouble(getOption(options, "--loss", "0"));
+
+        Transport transport = new UdpTransport(localPort, remote);
+        if (latency > 0 || jitter > 0 || loss > 0) {
+            transport = new SimulatedNetworkTransport(transport, latency, jitter, loss, System.nanoTime());
+        }
+
+        return new RollbackSession(transport, player);
+    }
+
+    private static void writeTrace(Path path) {
+        Tracer.stop();
+        try {
+            long overwritten = Tracer.writeChromeTrace(path);
+            if (overwritten > 0) {
+                System.err.println("Trace is missing its " + overwritten + " oldest events; raise --trace-capacity to keep more");
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to write trace: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Create a telemetry writer from the command line options, or return null if telemetry is off.
+     */
+    private static TelemetryWriter createTelemetryWriter(Map<String, String[]> options) throws IOException {
+        String directory = getOption(options, "--telemetry");
+        if (directory == null) return null;
+
+        return new TelemetryWriter(Paths.get(directory));
+    }
+
 }
@@ -283,6 +283,13 @@ public class AnimationSystem {
         this.finishCallbacks.clear();
     }
 
+    /**
+     * @return The number of animations currently managed, including paused ones
+     */
+    public int getAnimationCount() {
+        return animations.size();
+    }
+
     /**
      * Gets the time remaining on the animation with the longest remaining time.
      * Does not include animations that are set to looping.
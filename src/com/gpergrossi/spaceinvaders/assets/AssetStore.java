@@ -1,5 +1,7 @@
 package com.gpergrossi.spaceinvaders.assets;
 
+import com.gpergrossi.spaceinvaders.diagnostics.AssetLoadEvent;
+
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
@@ -57,6 +59,9 @@ public class AssetStore {
 			return sprites.get(ref);
 		}
 
+		AssetLoadEvent event = new AssetLoadEvent();
+		event.begin();
+
 		// Otherwise, go away and grab the sprite from the resource loader.
 		BufferedImage sourceImage = null;
 
@@ -71,8 +76,7 @@ public class AssetStore {
 		}
 
 		// Create an accelerated image of the right size to store our sprite in.
-		GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
-		BufferedImage image = gc.createCompatibleImage(sourceImage.getWidth(), sourceImage.getHeight(), Transparency.TRANSLUCENT);
+		BufferedImage image = createImage(sourceImage.getWidth(), sourceImage.getHeight());
 
 		// Copy pixels from source to accelerated image
 		int[] argb = new int[image.getWidth() * image.getHeight()];
@@ -83,6 +87,8 @@ public class AssetStore {
 		Sprite sprite = new Sprite(image);
 		sprites.put(ref, sprite);
 
+		commitLoad(event, ref, AssetLoadEvent.SPRITE);
+
 		return sprite;
 	}
 
@@ -101,6 +107,9 @@ public class AssetStore {
 		}
 		else
 		{
+			AssetLoadEvent event = new AssetLoadEvent();
+			event.begin();
+
 			// Otherwise, go away and grab the sprite from the resource loader.
 			InputStream istream = openStream(ref);
 
@@ -123,6 +132,8 @@ public class AssetStore {
 			if (!ge.registerFont(font)) {
 				warn("Failed to register font '" + ref + "' with GraphicsEnvironment!");
 			}
+
+			commitLoad(event, ref, AssetLoadEvent.FONT);
 		}
 
 		if (font == null) {
@@ -138,6 +149,29 @@ public class AssetStore {
 		return result;
 	}
 
+	/**
+	 * Create a translucent image in the screen's preferred format, or a plain pre-multiplied
+	 * image when there is no screen, e.g. when rendering frames headless.
+	 */
+	private BufferedImage createImage(int width, int height) {
+		GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
+		if (ge.isHeadlessInstance()) {
+			return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		}
+
+		GraphicsConfiguration gc = ge.getDefaultScreenDevice().getDefaultConfiguration();
+		return gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+	}
+
+	private void commitLoad(AssetLoadEvent event, String ref, String kind) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.ref = ref;
+			event.kind = kind;
+			event.commit();
+		}
+	}
+
 	private InputStream openStream(String ref) {
 		// The ClassLoader.getResource() ensures we get the sprite
 		// from the appropriate place, this helps with deploying the game
@@ -0,0 +1,144 @@
+package com.gpergrossi.spaceinvaders.assets;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Partly transparent copies of sprites at a fixed number of alpha levels, so that
+ * fading sprites can be drawn with a plain opaque-path blit instead of switching the
+ * composite for every draw.
+ *
+ * Variants are stored with pre-multiplied alpha and created the first time they are
+ * needed. The cache is bounded by the total number of pixels it holds, evicting the
+ * least recently used variants first.
+ *
+ * Variants are made from a sprite's image at the time they are created, so sprites
+ * whose image changes afterward (like a TintedSprite being re-tinted) should not be
+ * faded through this cache.
+ * <p>
+ * [singleton]
+ */
+public class FadedSpriteCache {
+
+    private static FadedSpriteCache single = new FadedSpriteCache();
+
+    public static FadedSpriteCache get() { return single; }
+
+    /** The number of alpha levels between invisible and opaque */
+    public static final int ALPHA_LEVELS = 16;
+
+    /** The most pixels kept across all variants (16 MB of ARGB) */
+    private static final long MAX_PIXELS = 1 << 22;
+
+    private LinkedHashMap<VariantKey, Sprite> variants;
+    private long totalPixels;
+
+    /** Reused for lookups, so that a cache hit does not allocate */
+    private VariantKey lookupKey;
+
+    private FadedSpriteCache() {
+        // Access order makes iteration go from least to most recently used
+        this.variants = new LinkedHashMap<>(256, 0.75f, true);
+        this.lookupKey = new VariantKey();
+    }
+
+    /**
+     * Get a sprite faded to the nearest alpha level.
+     *
+     * @param sprite The sprite to fade
+     * @param alpha The opacity, from 0 (invisible) to 1 (opaque)
+     * @return The faded sprite, the sprite itself if alpha rounds to opaque, or null if it rounds to invisible
+     */
+    public Sprite getFaded(Sprite sprite, double alpha) {
+        int level = (int) Math.round(alpha * ALPHA_LEVELS);
+        if (level >= ALPHA_LEVELS) return sprite;
+        if (level <= 0) return null;
+
+        lookupKey.set(sprite.getId(), level);
+        Sprite variant = variants.get(lookupKey);
+        if (variant == null) {
+            variant = createVariant(sprite, level);
+
+            VariantKey key = new VariantKey();
+            key.set(sprite.getId(), level);
+            variants.put(key, variant);
+            totalPixels += (long) variant.getWidth() * variant.getHeight();
+
+            evict();
+        }
+        return variant;
+    }
+
+    /** Remove the least recently used variants until the cache is within its budget */
+    private void evict() {
+        Iterator<Map.Entry<VariantKey, Sprite>> iterator = variants.entrySet().iterator();
+        while (totalPixels > MAX_PIXELS && iterator.hasNext()) {
+            Sprite oldest = iterator.next().getValue();
+            totalPixels -= (long) oldest.getWidth() * oldest.getHeight();
+            iterator.remove();
+        }
+    }
+
+    private static Sprite createVariant(Sprite sprite, int level) {
+        int width = sprite.getWidth();
+        int height = sprite.getHeight();
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+
+        // Draw the whole sprite first, so that sprites made of several layers fade as one
+        Graphics2D g = image.createGraphics();
+        sprite.draw(g, 0, 0);
+        g.dispose();
+
+        // Scale every pre-multiplied channel by the alpha level. The pixels are copied out and
+        // back rather than edited through the data buffer, so Java2D can still accelerate the image.
+        WritableRaster raster = image.getRaster();
+        int[] pixels = (int[]) raster.getDataElements(0, 0, width, height, null);
+        int scale = (level * 256) / ALPHA_LEVELS;
+        for (int i = 0; i < pixels.length; i++) {
+            int argb = pixels[i];
+            int a = (((argb >>> 24) & 0xFF) * scale) >> 8;
+            int r = (((argb >>> 16) & 0xFF) * scale) >> 8;
+            int gr = (((argb >>> 8) & 0xFF) * scale) >> 8;
+            int b = ((argb & 0xFF) * scale) >> 8;
+            pixels[i] = (a << 24) | (r << 16) | (gr << 8) | b;
+        }
+        raster.setDataElements(0, 0, width, height, pixels);
+
+        return new Sprite(image);
+    }
+
+    /**
+     * Forget every variant, e.g. after sprites have been reloaded.
+     */
+    public void clear() {
+        variants.clear();
+        totalPixels = 0;
+    }
+
+    private static class VariantKey {
+        private int spriteId;
+        private int level;
+
+        public void set(int spriteId, int level) {
+            this.spriteId = spriteId;
+            this.level = level;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof VariantKey)) return false;
+            VariantKey other = (VariantKey) o;
+            return spriteId == other.spriteId && level == other.level;
+        }
+
+        @Override
+        public int hashCode() {
+            return spriteId * 31 + level;
+        }
+    }
+
+}
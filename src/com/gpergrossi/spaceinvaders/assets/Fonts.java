@@ -1,6 +1,8 @@
 package com.gpergrossi.spaceinvaders.assets;
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
 
 public class Fonts {
 
@@ -19,11 +21,18 @@ public class Fonts {
     /** The font used for small text */
     private Font smallFont;
 
+    /** Pre-rasterized glyphs for each font that has needed them */
+    private HashMap<Font, GlyphAtlas> glyphAtlases;
+
+    /** Measures text the way it is drawn on screen, created when first needed */
+    private Graphics2D metricsGraphics;
+
     public Fonts() {
         hugeFont = null;
         largeFont = null;
         mediumFont = null;
         smallFont = null;
+        glyphAtlases = new HashMap<>();
     }
 
     public void load() {
@@ -49,4 +58,39 @@ public class Fonts {
     public Font getSmallFont() {
         return smallFont;
     }
+
+    /**
+     * Get the glyph atlas for a font, creating it the first time it is asked for.
+     * Safe to call from several threads, e.g. while a frame is drawn in parallel bands.
+     */
+    public synchronized GlyphAtlas getGlyphAtlas(Font font) {
+        GlyphAtlas atlas = glyphAtlases.get(font);
+        if (atlas == null) {
+            atlas = new GlyphAtlas(font);
+            glyphAtlases.put(font, atlas);
+        }
+        return atlas;
+    }
+
+    /**
+     * Get the metrics of a font as it is drawn on screen, so that text can be laid out
+     * without a graphics context from the frame.
+     */
+    public synchronized FontMetrics getMetrics(Font font) {
+        if (metricsGraphics == null) {
+            metricsGraphics = createGraphics(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB_PRE));
+        }
+        return metricsGraphics.getFontMetrics(font);
+    }
+
+    /**
+     * Create a graphics context for an image that draws text the same way as the screen,
+     * antialiased, for text that is drawn once and then blitted.
+     */
+    public Graphics2D createGraphics(BufferedImage image) {
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        return g;
+    }
 }
@@ -0,0 +1,250 @@
+package com.gpergrossi.spaceinvaders.assets;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pre-rasterized glyphs of one font, for drawing single characters quickly.
+ *
+ * Each glyph is rasterized once, the first time it is needed, into a coverage mask
+ * along with its position relative to the baseline. Drawing a glyph in a color blits a
+ * colored copy of the mask, so no text layout happens per draw. Colored copies are
+ * created as needed with colors quantized to 16 levels per channel, and kept in a
+ * cache bounded by the total number of pixels it holds.
+ *
+ * Get the atlas for a font from Fonts.getGlyphAtlas(), so that it is shared.
+ */
+public class GlyphAtlas {
+
+    /** Glyphs for characters below this are kept in an array, the rest in a map */
+    private static final int DIRECT_GLYPHS = 256;
+
+    /** The most pixels kept across all colored glyphs */
+    private static final long MAX_PIXELS = 1 << 20;
+
+    private Font font;
+    private FontRenderContext renderContext;
+
+    private Glyph[] directGlyphs;
+    private HashMap<Character, Glyph> otherGlyphs;
+
+    private LinkedHashMap<VariantKey, BufferedImage> variants;
+    private long totalPixels;
+
+    /** Reused for lookups, so that a cache hit does not allocate */
+    private VariantKey lookupKey;
+
+    public GlyphAtlas(Font font) {
+        this.font = font;
+
+        // Antialiased to match text drawn with KEY_ANTIALIASING on, as the game window does
+        this.renderContext = new FontRenderContext(null, true, false);
+
+        this.directGlyphs = new Glyph[DIRECT_GLYPHS];
+        this.otherGlyphs = new HashMap<>();
+
+        // Access order makes iteration go from least to most recently used
+        this.variants = new LinkedHashMap<>(64, 0.75f, true);
+        this.lookupKey = new VariantKey();
+    }
+
+    public Font getFont() {
+        return font;
+    }
+
+    /**
+     * Get a glyph's image in a color. The image's top left corner goes at the glyph's
+     * left and top, relative to its baseline origin.
+     *
+     * @param glyph A glyph from this atlas
+     * @param argb The color of the glyph, its alpha is ignored
+     * @return The colored image, or null if the glyph draws nothing
+     */
+    public BufferedImage getImage(Glyph glyph, int argb) {
+        if (glyph.coverage == null) return null;
+        return getColored(glyph, quantize(argb));
+    }
+
+    /**
+     * Get a character's rasterized glyph, rasterizing it if this is the first time it is needed.
+     * Safe to call from several threads, e.g. while a frame is drawn in parallel bands.
+     */
+    public synchronized Glyph getGlyph(char c) {
+        Glyph glyph;
+        if (c < DIRECT_GLYPHS) {
+            glyph = directGlyphs[c];
+            if (glyph == null) {
+                glyph = rasterize(c);
+                directGlyphs[c] = glyph;
+            }
+        } else {
+            glyph = otherGlyphs.get(c);
+            if (glyph == null) {
+                glyph = rasterize(c);
+                otherGlyphs.put(c, glyph);
+            }
+        }
+        return glyph;
+    }
+
+    private Glyph rasterize(char c) {
+        GlyphVector vector = font.createGlyphVector(renderContext, new char[] { c });
+        Rectangle bounds = vector.getPixelBounds(renderContext, 0, 0);
+
+        int advance = Math.round(vector.getGlyphMetrics(0).getAdvance());
+        Glyph glyph = new Glyph(c, bounds.x, bounds.y, bounds.width, bounds.height, advance);
+        if (bounds.isEmpty()) return glyph;
+
+        // Draw the glyph in white, then keep only its coverage
+        BufferedImage image = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(Color.WHITE);
+        g.drawGlyphVector(vector, -bounds.x, -bounds.y);
+        g.dispose();
+
+        int[] pixels = image.getRGB(0, 0, bounds.width, bounds.height, null, 0, bounds.width);
+        glyph.coverage = new byte[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            glyph.coverage[i] = (byte) (pixels[i] >>> 24);
+        }
+        return glyph;
+    }
+
+    private BufferedImage getColored(Glyph glyph, int rgb) {
+        lookupKey.set(glyph.c, rgb);
+        BufferedImage image = variants.get(lookupKey);
+        if (image == null) {
+            image = createColored(glyph, rgb);
+
+            VariantKey key = new VariantKey();
+            key.set(glyph.c, rgb);
+            variants.put(key, image);
+            totalPixels += (long) glyph.width * glyph.height;
+
+            evict();
+        }
+        return image;
+    }
+
+    private static BufferedImage createColored(Glyph glyph, int rgb) {
+        int red = (rgb >> 16) & 0xFF;
+        int green = (rgb >> 8) & 0xFF;
+        int blue = rgb & 0xFF;
+
+        int[] pixels = new int[glyph.coverage.length];
+        for (int i = 0; i < pixels.length; i++) {
+            int a = glyph.coverage[i] & 0xFF;
+            pixels[i] = (a << 24) | ((red * a / 255) << 16) | ((green * a / 255) << 8) | (blue * a / 255);
+        }
+
+        // Copied in through the raster rather than the data buffer, so Java2D can still accelerate the image
+        BufferedImage image = new BufferedImage(glyph.width, glyph.height, BufferedImage.TYPE_INT_ARGB_PRE);
+        WritableRaster raster = image.getRaster();
+        raster.setDataElements(0, 0, glyph.width, glyph.height, pixels);
+        return image;
+    }
+
+    /** Remove the least recently used colored glyphs until the cache is within its budget */
+    private void evict() {
+        Iterator<Map.Entry<VariantKey, BufferedImage>> iterator = variants.entrySet().iterator();
+        while (totalPixels > MAX_PIXELS && iterator.hasNext()) {
+            BufferedImage oldest = iterator.next().getValue();
+            totalPixels -= (long) oldest.getWidth() * oldest.getHeight();
+            iterator.remove();
+        }
+    }
+
+    /** Round each color channel to one of 16 levels, dropping the alpha */
+    private static int quantize(int argb) {
+        int rgb = 0;
+        for (int shift = 0; shift < 24; shift += 8) {
+            int level = (((argb >> shift) & 0xFF) + 8) / 17;
+            rgb |= Math.min(level * 17, 255) << shift;
+        }
+        return rgb;
+    }
+
+    /**
+     * One character's coverage mask and metrics.
+     */
+    public static class Glyph {
+        private final char c;
+
+        /** The top left corner of the glyph's image, relative to its baseline origin */
+        private final int left, top;
+        private final int width, height;
+
+        /** How far the next character's origin is from this one's */
+        private final int advance;
+
+        /** The coverage of each pixel from 0 to 255, or null if the glyph draws nothing */
+        private byte[] coverage;
+
+        private Glyph(char c, int left, int top, int width, int height, int advance) {
+            this.c = c;
+            this.left = left;
+            this.top = top;
+            this.width = width;
+            this.height = height;
+            this.advance = advance;
+        }
+
+        public int getLeft() {
+            return left;
+        }
+
+        public int getTop() {
+            return top;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getAdvance() {
+            return advance;
+        }
+
+        /**
+         * @return The coverage of each pixel from 0 to 255, row by row, or null if the glyph draws nothing
+         */
+        public byte[] getCoverage() {
+            return coverage;
+        }
+    }
+
+    private static class VariantKey {
+        private char c;
+        private int rgb;
+
+        public void set(char c, int rgb) {
+            this.c = c;
+            this.rgb = rgb;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof VariantKey)) return false;
+            VariantKey other = (VariantKey) o;
+            return c == other.c && rgb == other.rgb;
+        }
+
+        @Override
+        public int hashCode() {
+            return c * 31 + rgb;
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.gpergrossi.spaceinvaders.assets;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * Copies of a sprite rotated in fixed angle steps, so that a spinning sprite can be
+ * drawn with a plain blit instead of through a rotated transform.
+ *
+ * Every rotation is drawn centered in a square big enough to hold the sprite at any
+ * angle, so all steps share the same size and center. Steps are rendered the first
+ * time they are needed.
+ */
+public class RotatedSpriteCache {
+
+    /** The number of angle steps in a full turn */
+    public static final int STEPS = 64;
+
+    private static final double STEP_ANGLE = Math.PI * 2.0 / STEPS;
+
+    private Sprite source;
+    private Sprite[] rotations;
+
+    /** The width and height of every rotated image */
+    private int size;
+
+    public RotatedSpriteCache(Sprite source) {
+        this.source = source;
+        this.rotations = new Sprite[STEPS];
+        this.size = (int) Math.ceil(Math.hypot(source.getWidth(), source.getHeight()));
+    }
+
+    /**
+     * Get the sprite rotated to the nearest step of an angle.
+     *
+     * @param angle The clockwise rotation in radians
+     * @return A sprite of getSize() by getSize() pixels, with the rotated sprite at its center
+     */
+    public Sprite get(double angle) {
+        int step = (int) Math.round(angle / STEP_ANGLE) % STEPS;
+        if (step < 0) step += STEPS;
+
+        Sprite rotation = rotations[step];
+        if (rotation == null) {
+            rotation = createRotation(step);
+            rotations[step] = rotation;
+        }
+        return rotation;
+    }
+
+    private Sprite createRotation(int step) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB_PRE);
+
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+
+        // Rotate about the center of the square, with the sprite centered on it
+        AffineTransform transform = AffineTransform.getRotateInstance(step * STEP_ANGLE, size * 0.5, size * 0.5);
+        transform.translate((size - source.getWidth()) * 0.5, (size - source.getHeight()) * 0.5);
+        g.setTransform(transform);
+        source.draw(g, 0, 0);
+        g.dispose();
+
+        return new Sprite(image);
+    }
+
+    /**
+     * @return The width and height of every rotated sprite
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public Sprite getSource() {
+        return source;
+    }
+
+}
@@ -2,6 +2,7 @@ package com.gpergrossi.spaceinvaders.assets;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A sprite to be displayed on the screen. Note that a sprite
@@ -13,8 +14,14 @@ import java.awt.image.BufferedImage;
  * @author Kevin Glass
  */
 public class Sprite {
+	/** Source of unique sprite ids */
+	private static final AtomicInteger nextId = new AtomicInteger(1);
+
 	/** The image to be drawn for this sprite */
 	protected BufferedImage image;
+
+	/** A small number unique to this sprite, used to group draws of the same sprite together */
+	private final int id = nextId.getAndIncrement();
 	
 	/**
 	 * Create a new sprite based on an image
@@ -53,4 +60,31 @@ public class Sprite {
 	public void draw(Graphics2D g, int x, int y) {
 		g.drawImage(image, x, y, null);
 	}
+
+	/**
+	 * Draw the sprite stretched to fill a rectangle
+	 *
+	 * @param g The graphics context on which to draw the sprite
+	 * @param x The x location of the rectangle
+	 * @param y The y location of the rectangle
+	 * @param width The width of the rectangle
+	 * @param height The height of the rectangle
+	 */
+	public void draw(Graphics2D g, int x, int y, int width, int height) {
+		g.drawImage(image, x, y, width, height, null);
+	}
+
+	/**
+	 * @return The image drawn for this sprite
+	 */
+	public BufferedImage getImage() {
+		return image;
+	}
+
+	/**
+	 * @return A number unique to this sprite
+	 */
+	public int getId() {
+		return id;
+	}
 }
\ No newline at end of file
@@ -11,6 +11,7 @@ public class Sprites {
 
     private Sprite shipBaseSprite;
     private Sprite shipMaskSprite;
+    private TintCache shipTints;
     private TintedSprite shipSprite;
     private Sprite alienSprite;
     private Sprite shotSprite;
@@ -18,6 +19,7 @@ public class Sprites {
     public Sprites() {
         shipBaseSprite = null;
         shipMaskSprite = null;
+        shipTints = null;
         shipSprite = null;
         alienSprite = null;
         shotSprite = null;
@@ -26,7 +28,8 @@ public class Sprites {
     public void load() {
         shipBaseSprite = AssetStore.get().getSprite("sprites/ship.png");
         shipMaskSprite = AssetStore.get().getSprite("sprites/ship-mask.png");
-        shipSprite = new TintedSprite(shipBaseSprite, shipMaskSprite, Color.WHITE);
+        shipTints = new TintCache(shipBaseSprite, shipMaskSprite);
+        shipSprite = new TintedSprite(shipTints, Color.WHITE);
         alienSprite = AssetStore.get().getSprite("sprites/alien.gif");
         shotSprite = AssetStore.get().getSprite("sprites/shot.gif");
     }
@@ -35,6 +38,15 @@ public class Sprites {
         return shipSprite;
     }
 
+    /**
+     * Each ship tints its sprite independently, so games with more than one
+     * ship need a separate tinted sprite for every additional ship. The tinted
+     * images themselves are shared between all of them.
+     */
+    public TintedSprite createShipSprite() {
+        return new TintedSprite(shipTints, Color.WHITE);
+    }
+
     public Sprite getAlienSprite() {
         return alienSprite;
     }
@@ -0,0 +1,141 @@
+package com.gpergrossi.spaceinvaders.assets;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * Tinted copies of a sprite, created once per color and shared by every TintedSprite
+ * made from the same image and mask.
+ *
+ * Colors are quantized to 64 levels per channel, so a smooth color ramp (like a ship's
+ * reload glow) only ever creates a small, fixed set of images. Each copy has the tinted
+ * mask already drawn over the image, so drawing a tinted sprite is a single blit.
+ *
+ * Looking up a color that has been seen before does not allocate.
+ */
+public class TintCache {
+
+    /** The number of levels each color channel is quantized to */
+    public static final int LEVELS_PER_CHANNEL = 64;
+
+    private static final int CHANNEL_BITS = 6;
+
+    /** The cache starts over once it holds this many tints */
+    private static final int MAX_TINTS = 256;
+
+    private static final int EMPTY = -1;
+
+    private BufferedImage image;
+    private BufferedImage mask;
+
+    /** Open addressing table of quantized colors, sized to stay at most half full */
+    private int[] keys;
+    private BufferedImage[] tints;
+    private int count;
+
+    private int[] imagePixels;
+    private int[] maskPixels;
+
+    public TintCache(Sprite imageSprite, Sprite maskSprite) {
+        if (imageSprite.getWidth() != maskSprite.getWidth() || imageSprite.getHeight() != maskSprite.getHeight()) {
+            throw new IllegalArgumentException("Image and mask must be the same size!");
+        }
+
+        this.image = imageSprite.image;
+        this.mask = maskSprite.image;
+
+        this.keys = new int[MAX_TINTS * 2];
+        this.tints = new BufferedImage[MAX_TINTS * 2];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Get the image tinted with a color, creating it if this color hasn't been used yet.
+     *
+     * @param red The red channel of the tint, from 0 to 255
+     * @param green The green channel of the tint, from 0 to 255
+     * @param blue The blue channel of the tint, from 0 to 255
+     * @return An image with the tinted mask drawn over it
+     */
+    public BufferedImage getTinted(int red, int green, int blue) {
+        int key = (quantize(red) << (CHANNEL_BITS * 2)) | (quantize(green) << CHANNEL_BITS) | quantize(blue);
+
+        int slotMask = keys.length - 1;
+        int slot = (key * 0x9E3779B1) >>> (32 - Integer.numberOfTrailingZeros(keys.length));
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) return tints[slot];
+            slot = (slot + 1) & slotMask;
+        }
+
+        if (count == MAX_TINTS) {
+            // Something is cycling through lots of colors, start over rather than grow without bound
+            Arrays.fill(keys, EMPTY);
+            Arrays.fill(tints, null);
+            count = 0;
+            return getTinted(red, green, blue);
+        }
+
+        BufferedImage tinted = createTinted(key);
+        keys[slot] = key;
+        tints[slot] = tinted;
+        count++;
+        return tinted;
+    }
+
+    private BufferedImage createTinted(int key) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int pixelCount = width * height;
+
+        if (imagePixels == null) {
+            imagePixels = image.getRGB(0, 0, width, height, null, 0, width);
+            maskPixels = mask.getRGB(0, 0, width, height, null, 0, width);
+        }
+
+        // Compute components for tint color from the quantized levels
+        int tintR = expand((key >>> (CHANNEL_BITS * 2)) & (LEVELS_PER_CHANNEL - 1));
+        int tintG = expand((key >>> CHANNEL_BITS) & (LEVELS_PER_CHANNEL - 1));
+        int tintB = expand(key & (LEVELS_PER_CHANNEL - 1));
+
+        // Draw the tinted mask over the image, with both in pre-multiplied form
+        int[] pixels = new int[pixelCount];
+        for (int i = 0; i < pixelCount; i++) {
+            int base = imagePixels[i];
+            int baseA = (base >>> 24);
+            int baseR = (((base >> 16) & 0xFF) * baseA) / 255;
+            int baseG = (((base >>  8) & 0xFF) * baseA) / 255;
+            int baseB = (((base >>  0) & 0xFF) * baseA) / 255;
+
+            int over = maskPixels[i];
+            int overA = (over >>> 24);
+            int overR = (((over >> 16) & 0xFF) * tintR / 255) * overA / 255;
+            int overG = (((over >>  8) & 0xFF) * tintG / 255) * overA / 255;
+            int overB = (((over >>  0) & 0xFF) * tintB / 255) * overA / 255;
+
+            int keep = 255 - overA;
+            int a = overA + (baseA * keep) / 255;
+            int r = overR + (baseR * keep) / 255;
+            int g = overG + (baseG * keep) / 255;
+            int b = overB + (baseB * keep) / 255;
+
+            pixels[i] = (a << 24) | (r << 16) | (g << 8) | b;
+        }
+
+        // Copied in through the raster rather than the data buffer, so Java2D can still accelerate the image
+        BufferedImage tinted = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        WritableRaster raster = tinted.getRaster();
+        raster.setDataElements(0, 0, width, height, pixels);
+        return tinted;
+    }
+
+    private static int quantize(int channel) {
+        return Math.max(0, Math.min(255, channel)) >> (8 - CHANNEL_BITS);
+    }
+
+    /** The channel value for a quantized level, spread so that 0 and 255 both survive a round trip */
+    private static int expand(int level) {
+        return (level * 255) / (LEVELS_PER_CHANNEL - 1);
+    }
+
+}
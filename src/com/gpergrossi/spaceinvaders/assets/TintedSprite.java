@@ -1,87 +1,41 @@
 package com.gpergrossi.spaceinvaders.assets;
 
 import java.awt.*;
-import java.awt.image.BufferedImage;
 
+/**
+ * A sprite with a colored layer drawn over it. The colored layer is a mask
+ * image multiplied by a tint color.
+ *
+ * Tinted images come from a TintCache, which can be shared between every
+ * TintedSprite made from the same image and mask. Changing the color only
+ * swaps which cached image is drawn.
+ */
 public class TintedSprite extends Sprite {
 
-    private BufferedImage mask;
-    private BufferedImage colorLayer;
-    private Color color;
-
-    private int[] pixelBuffer;
+    private TintCache tints;
 
     public TintedSprite(Sprite imageSprite, Sprite maskSprite, Color color) {
-        super(imageSprite.image);
-        this.mask = maskSprite.image;
-        this.setColor(color);
+        this(new TintCache(imageSprite, maskSprite), color);
     }
 
-    public void setColor(Color color) {
-        // If no change, don't do anything
-        if (this.color != null && this.color.equals(color)) return;
-
-        this.color = color;
-
-        int width = mask.getWidth();
-        int height = mask.getHeight();
-        int pixelCount = width*height;
-
-        // Create pixel buffer if needed
-        if (pixelBuffer == null || pixelBuffer.length < pixelCount) {
-            pixelBuffer = new int[pixelCount];
-        }
-
-        // Compute components for tint color
-        float tintR = ((float) color.getRed()) / 255.0f;
-        float tintG = ((float) color.getGreen()) / 255.0f;
-        float tintB = ((float) color.getBlue()) / 255.0f;
-
-        // Get pixel data from mask image
-        pixelBuffer = mask.getRGB(0, 0, width, height, pixelBuffer, 0, width);
-
-        // Apply a tint to each pixel
-        int index = 0;
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                // Extract ARGB channels
-                int pixelA = (pixelBuffer[index] >> 24) & 0xFF;
-                int pixelR = (pixelBuffer[index] >> 16) & 0xFF;
-                int pixelG = (pixelBuffer[index] >>  8) & 0xFF;
-                int pixelB = (pixelBuffer[index] >>  0) & 0xFF;
-
-                // Apply tint
-                pixelR = (int) (pixelR * tintR);
-                pixelG = (int) (pixelG * tintG);
-                pixelB = (int) (pixelB * tintB);
-
-                // Recombine channels
-                pixelBuffer[index] = (pixelA << 24) | (pixelR << 16) | (pixelG << 8) | pixelB;
-
-                index++;
-            }
-        }
-
-        // Create color layer image if needed
-        if (colorLayer == null || colorLayer.getWidth() != width || colorLayer.getHeight() != height) {
-            colorLayer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        }
+    public TintedSprite(TintCache tints, Color color) {
+        super(tints.getTinted(color.getRed(), color.getGreen(), color.getBlue()));
+        this.tints = tints;
+    }
 
-        // Copy pixel data into it
-        colorLayer.setRGB(0, 0, width, height, pixelBuffer, 0, width);
+    public void setColor(Color color) {
+        setColor(color.getRed(), color.getGreen(), color.getBlue());
     }
 
     /**
-     * Draw the sprite onto the graphics context provided
+     * Set the tint color without creating a Color object
      *
-     * @param g The graphics context on which to draw the sprite
-     * @param x The x location at which to draw the sprite
-     * @param y The y location at which to draw the sprite
+     * @param red The red channel of the tint, from 0 to 255
+     * @param green The green channel of the tint, from 0 to 255
+     * @param blue The blue channel of the tint, from 0 to 255
      */
-    @Override
-    public void draw(Graphics2D g, int x, int y) {
-        g.drawImage(image, x, y, null);
-        g.drawImage(colorLayer, x, y, null);
+    public void setColor(int red, int green, int blue) {
+        this.image = tints.getTinted(red, green, blue);
     }
 
 }
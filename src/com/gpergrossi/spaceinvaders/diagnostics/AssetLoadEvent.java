@@ -0,0 +1,26 @@
+package com.gpergrossi.spaceinvaders.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * An asset being loaded into the asset store. Cached lookups are not recorded.
+ */
+@Name("com.gpergrossi.spaceinvaders.AssetLoad")
+@Label("Asset Load")
+@Category({"Space Invaders", "Assets"})
+@Description("An asset being loaded from its resource")
+public class AssetLoadEvent extends jdk.jfr.Event {
+
+    public static final String SPRITE = "Sprite";
+    public static final String FONT = "Font";
+
+    @Label("Reference")
+    public String ref;
+
+    @Label("Kind")
+    public String kind;
+
+}
@@ -0,0 +1,37 @@
+package com.gpergrossi.spaceinvaders.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * One pass of the game loop, from the start of the update until the frame has been shown.
+ * The time spent waiting for the next frame is not included.
+ */
+@Name("com.gpergrossi.spaceinvaders.Frame")
+@Label("Frame")
+@Category({"Space Invaders", "Game Loop"})
+@Description("One pass of the game loop")
+public class FrameEvent extends jdk.jfr.Event {
+
+    @Label("Frame Number")
+    public long frame;
+
+    @Label("Game State")
+    public String state;
+
+    @Label("Update Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long updateTime;
+
+    @Label("Render Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long renderTime;
+
+    @Label("Present Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long presentTime;
+
+}
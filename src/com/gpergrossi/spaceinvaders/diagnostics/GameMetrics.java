@@ -0,0 +1,227 @@
+package com.gpergrossi.spaceinvaders.diagnostics;
+
+import com.gpergrossi.spaceinvaders.game.GameState;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Publishes the game's live metrics over JMX.
+ *
+ * All values are written by the game loop thread alone and read by JMX threads, so every
+ * field is a plain volatile written by its single owner: the game loop never takes a lock
+ * or allocates to update them. Averages are exponential moving averages over about a
+ * second of frames, computed on the game loop thread before being published.
+ */
+public class GameMetrics implements GameMetricsMXBean {
+
+    public static final String OBJECT_NAME = "com.gpergrossi.spaceinvaders:type=GameMetrics";
+
+    /** The weight of each new frame in the moving averages, about one second at 60 fps */
+    private static final double SMOOTHING = 1.0 / 60.0;
+
+    /** How often the allocation rate is sampled */
+    private static final long ALLOCATION_SAMPLE_NANOS = 1000000000L;
+
+    private static final double NANOS_PER_MS = 1000000.0;
+
+    // Gauges
+    private volatile GameState gameState = GameState.NONE;
+    private volatile int entityCount;
+    private volatile int alienCount;
+    private volatile int particleCount;
+    private volatile int maxParticles;
+    private volatile int animationCount;
+    private volatile int screenCount;
+
+    // Frame timings, in nanoseconds
+    private volatile long frameCount;
+    private volatile double averageFrameNanos;
+    private volatile double averageUpdateNanos;
+    private volatile double averageRenderNanos;
+    private volatile double averagePresentNanos;
+    private volatile long maxFrameNanos;
+
+    // Allocation
+    private com.sun.management.ThreadMXBean allocationBean;
+    private long lastSampleNanos;
+    private long lastSampleBytes;
+    private volatile long allocatedBytes = -1;
+    private volatile double allocationRate = -1;
+
+    public GameMetrics() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                this.allocationBean = bean;
+            }
+        }
+    }
+
+    /**
+     * Register with the platform MBean server, so that JConsole can see these metrics.
+     *
+     * @throws IllegalStateException If the bean could not be registered, e.g. because another game registered first
+     */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register game metrics", e);
+        }
+    }
+
+    /**
+     * Record the timings of one pass of the game loop. Must only be called from the game loop thread.
+     *
+     * @param updateNanos Time spent updating the game
+     * @param renderNanos Time spent drawing the game
+     * @param presentNanos Time spent showing the finished frame
+     * @param frameNanos Time from the start of this frame to the start of the next, including any wait
+     */
+    public void recordFrame(long updateNanos, long renderNanos, long presentNanos, long frameNanos) {
+        long frames = frameCount + 1;
+        if (frames == 1) {
+            averageFrameNanos = frameNanos;
+            averageUpdateNanos = updateNanos;
+            averageRenderNanos = renderNanos;
+            averagePresentNanos = presentNanos;
+        } else {
+            averageFrameNanos += (frameNanos - averageFrameNanos) * SMOOTHING;
+            averageUpdateNanos += (updateNanos - averageUpdateNanos) * SMOOTHING;
+            averageRenderNanos += (renderNanos - averageRenderNanos) * SMOOTHING;
+            averagePresentNanos += (presentNanos - averagePresentNanos) * SMOOTHING;
+        }
+        if (frameNanos > maxFrameNanos) maxFrameNanos = frameNanos;
+        frameCount = frames;
+
+        sampleAllocation();
+    }
+
+    private void sampleAllocation() {
+        if (allocationBean == null) return;
+
+        long now = System.nanoTime();
+        if (lastSampleNanos != 0 && now - lastSampleNanos < ALLOCATION_SAMPLE_NANOS) return;
+
+        long bytes = allocationBean.getCurrentThreadAllocatedBytes();
+        if (lastSampleNanos != 0) {
+            allocationRate = (bytes - lastSampleBytes) * 1e9 / (now - lastSampleNanos);
+        }
+        allocatedBytes = bytes;
+        lastSampleBytes = bytes;
+        lastSampleNanos = now;
+    }
+
+    /**
+     * Publish the game's current counts. Must only be called from the game loop thread.
+     */
+    public void recordGauges(GameState state, int entities, int aliens, int particles, int maxParticles, int animations, int screens) {
+        this.gameState = state;
+        this.entityCount = entities;
+        this.alienCount = aliens;
+        this.particleCount = particles;
+        this.maxParticles = maxParticles;
+        this.animationCount = animations;
+        this.screenCount = screens;
+    }
+
+    @Override
+    public String getGameState() {
+        return gameState.name();
+    }
+
+    @Override
+    public int getEntityCount() {
+        return entityCount;
+    }
+
+    @Override
+    public int getAlienCount() {
+        return alienCount;
+    }
+
+    @Override
+    public int getParticleCount() {
+        return particleCount;
+    }
+
+    @Override
+    public int getMaxParticles() {
+        return maxParticles;
+    }
+
+    @Override
+    public double getParticleUtilization() {
+        int max = maxParticles;
+        return (max == 0) ? 0 : (double) particleCount / max;
+    }
+
+    @Override
+    public int getAnimationCount() {
+        return animationCount;
+    }
+
+    @Override
+    public int getScreenCount() {
+        return screenCount;
+    }
+
+    @Override
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public double getAverageFrameRate() {
+        double nanos = averageFrameNanos;
+        return (nanos == 0) ? 0 : 1e9 / nanos;
+    }
+
+    @Override
+    public double getAverageFrameMs() {
+        return averageFrameNanos / NANOS_PER_MS;
+    }
+
+    @Override
+    public double getMaxFrameMs() {
+        return maxFrameNanos / NANOS_PER_MS;
+    }
+
+    @Override
+    public double getAverageUpdateMs() {
+        return averageUpdateNanos / NANOS_PER_MS;
+    }
+
+    @Override
+    public double getAverageRenderMs() {
+        return averageRenderNanos / NANOS_PER_MS;
+    }
+
+    @Override
+    public double getAveragePresentMs() {
+        return averagePresentNanos / NANOS_PER_MS;
+    }
+
+    @Override
+    public double getAllocationRate() {
+        return allocationRate;
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public void resetMaxFrameMs() {
+        // Racing with the game loop can at worst lose this reset, or one frame's maximum
+        maxFrameNanos = 0;
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.gpergrossi.spaceinvaders.diagnostics;
+
+/**
+ * Live counters and gauges of a running game, for viewing in JConsole or any other JMX client.
+ * Times are in milliseconds and averages cover roughly the last second of frames.
+ */
+public interface GameMetricsMXBean {
+
+    String getGameState();
+
+    int getEntityCount();
+
+    int getAlienCount();
+
+    int getParticleCount();
+
+    int getMaxParticles();
+
+    /** The fraction of the particle budget in use, from 0 to 1 */
+    double getParticleUtilization();
+
+    int getAnimationCount();
+
+    int getScreenCount();
+
+    long getFrameCount();
+
+    double getAverageFrameRate();
+
+    double getAverageFrameMs();
+
+    double getMaxFrameMs();
+
+    double getAverageUpdateMs();
+
+    double getAverageRenderMs();
+
+    double getAveragePresentMs();
+
+    /** Bytes allocated per second by the game loop thread, or -1 if the JVM can't measure it */
+    double getAllocationRate();
+
+    /** Total bytes allocated by the game loop thread, or -1 if the JVM can't measure it */
+    long getAllocatedBytes();
+
+    /** Forget the max frame time so that a new one can be observed */
+    void resetMaxFrameMs();
+
+}
@@ -0,0 +1,297 @@
+package com.gpergrossi.spaceinvaders.diagnostics;
+
+import com.gpergrossi.spaceinvaders.game.FrameRenderer;
+import com.gpergrossi.spaceinvaders.game.Game;
+import com.gpergrossi.spaceinvaders.game.Input;
+import com.gpergrossi.spaceinvaders.game.PlayerInput;
+import com.gpergrossi.spaceinvaders.game.Settings;
+import com.gpergrossi.spaceinvaders.game.TickController;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Renders chosen ticks of a scripted, deterministic run without a display, and compares
+ * each frame to a stored golden frame, so that rendering changes can be checked for visual
+ * regressions automatically.
+ *
+ * The run uses a fixed random seed and a fixed tick length. It sits on the title screen,
+ * presses a key to start, then plays with a scripted input that sweeps the ship from side
+ * to side while firing. Every tick is rendered, since the screens set themselves up when
+ * they are first drawn, and the chosen ticks are kept.
+ *
+ * A pixel differs when any of its channels is off by more than the tolerance. A frame
+ * fails when more than the allowed fraction of its pixels differ, and its actual image and
+ * a diff image (differing pixels in red over a dimmed copy of the frame) are written next
+ * to the golden frame. A missing golden frame also fails. Passing --update writes every
+ * golden frame from the run instead of comparing, which is how they are first created.
+ *
+ * Run from the project root with the assets on the class path:
+ *   java -Djava.awt.headless=true -cp out:assets com.gpergrossi.spaceinvaders.diagnostics.GoldenFrameHarness
+ *       [--golden &lt;directory&gt;] [--renderer &lt;java2d|framebuffer|parallel&gt;] [--tolerance &lt;0-255&gt;]
+ *       [--max-differing &lt;fraction&gt;] [--display-list] [--update]
+ *
+ * The exit code is 0 when every frame matches and 1 when any frame fails.
+ */
+public class GoldenFrameHarness {
+
+    /** The random seed of the run, changing it changes every golden frame */
+    public static final long SEED = 1L;
+
+    /** The length of each tick, the same as the game window's */
+    private static final long TICK_MS = 16;
+
+    /** The tick on which a key is pressed to leave the title screen */
+    private static final int START_TICK = 30;
+
+    /** The ticks that are compared, covering the title screen, the intro, and gameplay with particles */
+    private static final int[] CAPTURE_TICKS = { 20, 60, 120, 240, 360, 480 };
+
+    /** How many ticks the ship moves in one direction before turning around */
+    private static final int SWEEP_TICKS = 45;
+
+    private static final String DEFAULT_GOLDEN_DIRECTORY = "golden";
+    private static final int DEFAULT_TOLERANCE = 8;
+    private static final double DEFAULT_MAX_DIFFERING = 0.001;
+
+    private Path goldenDirectory;
+    private String renderer;
+    private int tolerance;
+    private double maxDiffering;
+    private boolean recordDisplayList;
+    private boolean update;
+
+    private int tick;
+
+    public GoldenFrameHarness(Path goldenDirectory, String renderer, boolean recordDisplayList,
+                              int tolerance, double maxDiffering, boolean update) {
+        if (tolerance < 0 || tolerance > 255) {
+            throw new IllegalArgumentException("Tolerance must be from 0 to 255: " + tolerance);
+        }
+        if (maxDiffering < 0 || maxDiffering > 1) {
+            throw new IllegalArgumentException("The fraction of differing pixels must be from 0 to 1: " + maxDiffering);
+        }
+
+        this.goldenDirectory = goldenDirectory;
+        this.renderer = renderer;
+        this.recordDisplayList = recordDisplayList;
+        this.tolerance = tolerance;
+        this.maxDiffering = maxDiffering;
+        this.update = update;
+    }
+
+    public static void main(String argv[]) throws IOException {
+        Path golden = Paths.get(DEFAULT_GOLDEN_DIRECTORY);
+        String renderer = Settings.RENDERER_JAVA2D;
+        int tolerance = DEFAULT_TOLERANCE;
+        double maxDiffering = DEFAULT_MAX_DIFFERING;
+        boolean recordDisplayList = false;
+        boolean update = false;
+
+        for (int a = 0; a < argv.length; a++) {
+            switch (argv[a]) {
+                case "--golden":
+                    golden = Paths.get(argv[++a]);
+                    break;
+                case "--renderer":
+                    renderer = argv[++a];
+                    break;
+                case "--tolerance":
+                    tolerance = Integer.parseInt(argv[++a]);
+                    break;
+                case "--max-differing":
+                    maxDiffering = Double.parseDouble(argv[++a]);
+                    break;
+                case "--display-list":
+                    recordDisplayList = true;
+                    break;
+                case "--update":
+                    update = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + argv[a]);
+            }
+        }
+
+        boolean passed = new GoldenFrameHarness(golden, renderer, recordDisplayList, tolerance, maxDiffering, update).run();
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Play the scripted run and check every captured frame.
+     *
+     * @return True if every frame matched its golden frame, or every golden frame was written
+     */
+    public boolean run() throws IOException {
+        Files.createDirectories(goldenDirectory);
+
+        BufferedImage[] frames = render();
+
+        boolean passed = true;
+        for (int i = 0; i < CAPTURE_TICKS.length; i++) {
+            passed &= check(CAPTURE_TICKS[i], frames[i]);
+        }
+        return passed;
+    }
+
+    /**
+     * Play the scripted run from the start, rendering every tick.
+     *
+     * @return A copy of the frame at each of the capture ticks
+     */
+    public BufferedImage[] render() {
+        Settings settings = new Settings();
+        settings.setRandomSeed(SEED);
+        settings.setRenderer(renderer);
+        settings.setRecordDisplayList(recordDisplayList);
+
+        Input input = new Input();
+        Game game = new Game(input, settings);
+        game.setTickController(new ScriptedInput());
+        game.init();
+
+        int width = settings.getScreenWidth();
+        int height = settings.getScreenHeight();
+
+        // Drawn the same way as the game window draws each frame
+        FrameRenderer frameRenderer = new FrameRenderer(settings, width, height);
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = frame.createGraphics();
+
+        // Typing any key leaves the title screen, the event only needs a source
+        KeyEvent startKey = new KeyEvent(new Canvas(), KeyEvent.KEY_TYPED, 0, 0, KeyEvent.VK_UNDEFINED, ' ');
+
+        BufferedImage[] captured = new BufferedImage[CAPTURE_TICKS.length];
+        int next = 0;
+        for (tick = 0; next < CAPTURE_TICKS.length; tick++) {
+            if (tick == START_TICK) {
+                input.getKeyListener().keyTyped(startKey);
+            }
+
+            game.update(TICK_MS);
+
+            frameRenderer.render(game, g);
+
+            if (tick == CAPTURE_TICKS[next]) {
+                captured[next++] = copy(frame);
+            }
+        }
+
+        g.dispose();
+        return captured;
+    }
+
+    /** Compare a frame to its golden frame, or write the golden frame when updating */
+    private boolean check(int tick, BufferedImage actual) throws IOException {
+        String name = String.format(Locale.ROOT, "tick-%04d", tick);
+        Path goldenPath = goldenDirectory.resolve(name + ".png");
+
+        if (update) {
+            ImageIO.write(actual, "png", goldenPath.toFile());
+            System.out.println(name + ": wrote golden frame " + goldenPath);
+            return true;
+        }
+
+        if (!Files.exists(goldenPath)) {
+            System.out.println(name + ": FAILED, there is no golden frame " + goldenPath + ", run with --update to write it");
+            ImageIO.write(actual, "png", goldenDirectory.resolve(name + "-actual.png").toFile());
+            return false;
+        }
+
+        BufferedImage golden = ImageIO.read(goldenPath.toFile());
+        if (golden == null) {
+            throw new IOException("Not a readable image: " + goldenPath);
+        }
+
+        if (golden.getWidth() != actual.getWidth() || golden.getHeight() != actual.getHeight()) {
+            System.out.println(name + ": FAILED, size is " + actual.getWidth() + "x" + actual.getHeight()
+                    + " but the golden frame is " + golden.getWidth() + "x" + golden.getHeight());
+            ImageIO.write(actual, "png", goldenDirectory.resolve(name + "-actual.png").toFile());
+            return false;
+        }
+
+        BufferedImage diff = new BufferedImage(actual.getWidth(), actual.getHeight(), BufferedImage.TYPE_INT_RGB);
+        int differing = 0;
+        int maxDifference = 0;
+        for (int y = 0; y < actual.getHeight(); y++) {
+            for (int x = 0; x < actual.getWidth(); x++) {
+                int a = actual.getRGB(x, y);
+                int b = golden.getRGB(x, y);
+                int difference = channelDifference(a, b);
+                maxDifference = Math.max(maxDifference, difference);
+
+                if (difference > tolerance) {
+                    differing++;
+                    diff.setRGB(x, y, 0xFF0000);
+                } else {
+                    diff.setRGB(x, y, (a >> 2) & 0x3F3F3F);
+                }
+            }
+        }
+
+        double fraction = (double) differing / (actual.getWidth() * actual.getHeight());
+        boolean passed = fraction <= maxDiffering;
+        System.out.println(String.format(Locale.ROOT, "%s: %s, %d pixels differ (%.4f%%), largest difference %d",
+                name, passed ? "passed" : "FAILED", differing, fraction * 100.0, maxDifference));
+
+        if (!passed) {
+            ImageIO.write(actual, "png", goldenDirectory.resolve(name + "-actual.png").toFile());
+            ImageIO.write(diff, "png", goldenDirectory.resolve(name + "-diff.png").toFile());
+        }
+        return passed;
+    }
+
+    /** @return The largest difference between any channel of two colors */
+    private static int channelDifference(int a, int b) {
+        int red = Math.abs(((a >> 16) & 0xFF) - ((b >> 16) & 0xFF));
+        int green = Math.abs(((a >> 8) & 0xFF) - ((b >> 8) & 0xFF));
+        int blue = Math.abs((a & 0xFF) - (b & 0xFF));
+        return Math.max(red, Math.max(green, blue));
+    }
+
+    private static BufferedImage copy(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = copy.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return copy;
+    }
+
+    /**
+     * Plays one player, sweeping the ship from side to side while always firing.
+     */
+    private class ScriptedInput implements TickController {
+
+        private final int[] inputs = new int[1];
+
+        @Override
+        public int getPlayerCount() {
+            return 1;
+        }
+
+        @Override
+        public int getLocalPlayer() {
+            return 0;
+        }
+
+        @Override
+        public void onRoundStart(Game game) {
+            // Nothing to set up, the script only depends on the tick
+        }
+
+        @Override
+        public void advance(Game game, long deltaMs) {
+            int direction = ((tick / SWEEP_TICKS) % 2 == 0) ? PlayerInput.LEFT : PlayerInput.RIGHT;
+            inputs[0] = direction | PlayerInput.FIRE;
+            game.simulate(deltaMs, inputs);
+        }
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.gpergrossi.spaceinvaders.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A group of particles spawned at once, such as an explosion.
+ */
+@Name("com.gpergrossi.spaceinvaders.ParticleBurst")
+@Label("Particle Burst")
+@Category({"Space Invaders", "Effects"})
+@Description("A group of particles spawned at once")
+public class ParticleBurstEvent extends jdk.jfr.Event {
+
+    public static final String BULLET_TRAIL = "Bullet Trail";
+    public static final String BULLET_HIT = "Bullet Hit";
+    public static final String DEAD_ALIEN = "Dead Alien";
+
+    @Label("Kind")
+    public String kind;
+
+    @Label("Particles Spawned")
+    public int spawned;
+
+    @Label("Particles Alive")
+    @Description("The number of particles alive afterwards")
+    public int alive;
+
+    @Label("X")
+    public float x;
+
+    @Label("Y")
+    public float y;
+
+}
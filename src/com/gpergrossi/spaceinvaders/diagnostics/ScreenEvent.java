@@ -0,0 +1,30 @@
+package com.gpergrossi.spaceinvaders.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A user interface screen being opened or closed.
+ */
+@Name("com.gpergrossi.spaceinvaders.Screen")
+@Label("Screen Open/Close")
+@Category({"Space Invaders", "Game State"})
+@Description("A user interface screen being opened or closed")
+public class ScreenEvent extends jdk.jfr.Event {
+
+    public static final String OPEN = "Open";
+    public static final String CLOSE = "Close";
+
+    @Label("Screen")
+    public String screen;
+
+    @Label("Action")
+    public String action;
+
+    @Label("Screens Open")
+    @Description("The number of screens open afterwards")
+    public int stackSize;
+
+}
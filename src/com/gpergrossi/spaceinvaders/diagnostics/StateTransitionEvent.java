@@ -0,0 +1,23 @@
+package com.gpergrossi.spaceinvaders.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A change of GameState, lasting as long as it took to leave the old state and enter the new one.
+ */
+@Name("com.gpergrossi.spaceinvaders.StateTransition")
+@Label("State Transition")
+@Category({"Space Invaders", "Game State"})
+@Description("A change of game state")
+public class StateTransitionEvent extends jdk.jfr.Event {
+
+    @Label("From State")
+    public String fromState;
+
+    @Label("To State")
+    public String toState;
+
+}
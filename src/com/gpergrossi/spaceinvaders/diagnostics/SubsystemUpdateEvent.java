@@ -0,0 +1,47 @@
+package com.gpergrossi.spaceinvaders.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The update of one subsystem of the game within a frame.
+ *
+ * Use as: {@code SubsystemUpdateEvent e = SubsystemUpdateEvent.start(); ...; e.finish(PARTICLES);}
+ * While the event is disabled JFR leaves these methods empty, and the allocation is
+ * removed by escape analysis, so the cost is close to nothing.
+ */
+@Name("com.gpergrossi.spaceinvaders.SubsystemUpdate")
+@Label("Subsystem Update")
+@Category({"Space Invaders", "Game Loop"})
+@Description("The update of one subsystem of the game")
+public class SubsystemUpdateEvent extends jdk.jfr.Event {
+
+    public static final String ENTITIES = "Entities";
+    public static final String SWARM = "Alien Swarm";
+    public static final String PARTICLES = "Particles";
+    public static final String COLLISIONS = "Collisions";
+    public static final String TICK = "Tick Controller";
+    public static final String ENTITY_INDEX = "Entity Index";
+    public static final String ANIMATIONS = "Animations";
+    public static final String STARFIELD = "Starfield";
+
+    @Label("Subsystem")
+    public String subsystem;
+
+    public static SubsystemUpdateEvent start() {
+        SubsystemUpdateEvent event = new SubsystemUpdateEvent();
+        event.begin();
+        return event;
+    }
+
+    public void finish(String subsystem) {
+        end();
+        if (shouldCommit()) {
+            this.subsystem = subsystem;
+            commit();
+        }
+    }
+
+}
@@ -0,0 +1,245 @@
+package com.gpergrossi.spaceinvaders.diagnostics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A lightweight in-process span tracer for profiling individual frames.
+ *
+ * Spans are opened and closed with begin() and end() around the code being measured.
+ * Each thread records into its own preallocated ring buffer, so recording never locks or
+ * allocates. Once a buffer is full the oldest events are overwritten, so a capture always
+ * holds the most recent frames. While tracing is off, begin() and end() only read a flag.
+ *
+ * A capture is written in the Trace Event JSON format, which can be opened in
+ * chrome://tracing, Perfetto, or Speedscope to see a flame view of every frame.
+ *
+ * Span names should be constants, since the buffers keep a reference to them.
+ * Tracing should be started and stopped between frames, e.g. at launch and exit.
+ */
+public final class Tracer {
+
+    /**
+     * The default number of events (a span is two) each thread keeps. Each event takes
+     * about 13 bytes, so this is under a megabyte per thread and holds some thousand frames.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final byte PHASE_BEGIN = 'B';
+    private static final byte PHASE_END = 'E';
+
+    private static volatile boolean enabled;
+    private static volatile int capacity = DEFAULT_CAPACITY;
+    private static long startNanos;
+
+    /** Every buffer ever created, so that they can all be exported */
+    private static final List<SpanBuffer> buffers = new ArrayList<>();
+
+    private static final ThreadLocal<SpanBuffer> localBuffer = ThreadLocal.withInitial(() -> {
+        SpanBuffer buffer = new SpanBuffer(Thread.currentThread(), capacity);
+        synchronized (buffers) {
+            buffers.add(buffer);
+        }
+        return buffer;
+    });
+
+    private Tracer() {}
+
+    /**
+     * Start recording, discarding anything recorded before.
+     *
+     * @param eventsPerThread The number of events each thread keeps. Older events are overwritten.
+     */
+    public static void start(int eventsPerThread) {
+        if (eventsPerThread < 2) throw new IllegalArgumentException("Need room for at least one span!");
+
+        enabled = false;
+        synchronized (buffers) {
+            capacity = eventsPerThread;
+            for (SpanBuffer buffer : buffers) {
+                buffer.reset(eventsPerThread);
+            }
+            startNanos = System.nanoTime();
+        }
+        enabled = true;
+    }
+
+    /**
+     * Stop recording. Spans that are still open are closed when the trace is written.
+     */
+    public static void stop() {
+        enabled = false;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Open a span on the current thread. Must be matched by a call to end() on the same thread.
+     */
+    public static void begin(String name) {
+        if (!enabled) return;
+        localBuffer.get().begin(name);
+    }
+
+    /**
+     * Close the span most recently opened on the current thread.
+     */
+    public static void end() {
+        if (!enabled) return;
+        localBuffer.get().end();
+    }
+
+    /**
+     * Write everything recorded so far as a Trace Event JSON file. Should be called after stop(),
+     * since spans recorded while writing may or may not be included.
+     *
+     * @return The number of events that were overwritten before they could be written, across all threads
+     */
+    public static long writeChromeTrace(Path path) throws IOException {
+        long overwritten = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+
+            boolean first = true;
+            synchronized (buffers) {
+                for (SpanBuffer buffer : buffers) {
+                    overwritten += buffer.getOverwritten();
+                    first = buffer.write(out, first, startNanos);
+                }
+            }
+
+            out.write("\n]}\n");
+        }
+        return overwritten;
+    }
+
+    /**
+     * The most recent events recorded by one thread, in a ring. Written only by its own thread.
+     */
+    private static class SpanBuffer {
+
+        private long threadId;
+        private String threadName;
+
+        private String[] names;
+        private long[] times;
+        private byte[] phases;
+
+        /** Where the next event goes */
+        private int next;
+
+        /** The number of events ever recorded, published last so that a reader sees complete events */
+        private volatile long count;
+
+        /** The number of recorded spans that are still open */
+        private int open;
+
+        public SpanBuffer(Thread thread, int capacity) {
+            this.threadId = thread.getId();
+            this.threadName = thread.getName();
+            reset(capacity);
+        }
+
+        public void reset(int capacity) {
+            if (names == null || names.length != capacity) {
+                names = new String[capacity];
+                times = new long[capacity];
+                phases = new byte[capacity];
+            }
+            next = 0;
+            count = 0;
+            open = 0;
+        }
+
+        public void begin(String name) {
+            record(name, PHASE_BEGIN);
+            open++;
+        }
+
+        public void end() {
+            // Ends without a recorded begin happen when tracing starts part way through a span
+            if (open == 0) return;
+
+            record(null, PHASE_END);
+            open--;
+        }
+
+        private void record(String name, byte phase) {
+            int n = next;
+            names[n] = name;
+            times[n] = System.nanoTime();
+            phases[n] = phase;
+            next = (n + 1 == names.length) ? 0 : n + 1;
+            count = count + 1;
+        }
+
+        /** The number of events recorded that no longer fit in the ring */
+        public long getOverwritten() {
+            return Math.max(0, count - names.length);
+        }
+
+        public boolean write(BufferedWriter out, boolean first, long startNanos) throws IOException {
+            long total = count;
+            if (total == 0) return first;
+
+            // Start from the oldest event still in the ring
+            int kept = (int) Math.min(total, names.length);
+            int index = (int) ((total - kept) % names.length);
+
+            // Name the thread's track
+            first = writeSeparator(out, first);
+            out.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + threadId
+                    + ",\"args\":{\"name\":\"" + escape(threadName) + "\"}}");
+
+            int depth = 0;
+            long lastTime = startNanos;
+            for (int i = 0; i < kept; i++, index = (index + 1 == names.length) ? 0 : index + 1) {
+                lastTime = times[index];
+                if (phases[index] == PHASE_BEGIN) {
+                    depth++;
+                    first = writeSeparator(out, first);
+                    writeEvent(out, "B", names[index], times[index] - startNanos);
+                } else if (depth > 0) {
+                    depth--;
+                    first = writeSeparator(out, first);
+                    writeEvent(out, "E", null, times[index] - startNanos);
+                }
+                // Otherwise the span began before the oldest event kept, so its end is left out too
+            }
+
+            // Close any spans that were still open when tracing stopped
+            for (; depth > 0; depth--) {
+                first = writeSeparator(out, first);
+                writeEvent(out, "E", null, lastTime - startNanos);
+            }
+            return first;
+        }
+
+        private void writeEvent(BufferedWriter out, String phase, String name, long nanos) throws IOException {
+            out.write("{\"ph\":\"" + phase + "\",\"pid\":1,\"tid\":" + threadId);
+            out.write(String.format(Locale.ROOT, ",\"ts\":%.3f", nanos / 1000.0));
+            if (name != null) {
+                out.write(",\"name\":\"" + escape(name) + "\"");
+            }
+            out.write("}");
+        }
+
+        private static boolean writeSeparator(BufferedWriter out, boolean first) throws IOException {
+            out.write(first ? "\n" : ",\n");
+            return false;
+        }
+
+        private static String escape(String text) {
+            return text.replace("\\", "\\\\").replace("\"", "\\\"");
+        }
+    }
+
+}
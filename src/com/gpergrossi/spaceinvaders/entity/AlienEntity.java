@@ -8,6 +8,8 @@ import com.gpergrossi.spaceinvaders.render.AlienEntityRenderer;
 import com.gpergrossi.spaceinvaders.render.Renderer;
 import com.gpergrossi.spaceinvaders.render.SpriteEntityRenderer;
 
+import java.nio.ByteBuffer;
+
 /**
  * An entity which represents one of our space invader aliens.
  * 
@@ -67,7 +69,7 @@ public class AlienEntity extends SpriteEntity {
 	 */
 	public void changeDirection() {
 		Settings settings = game.getSettings();
-		int deathZoneMaxY = settings.getScreenHeight() - settings.getDeathZoneHeight() - (int) this.getHeight();
+		int deathZoneMaxY = settings.getWorldHeight() - settings.getDeathZoneHeight() - (int) this.getHeight();
 
 		// swap over horizontal movement and move down the screen a bit
 		dx = -dx;
@@ -94,16 +96,16 @@ public class AlienEntity extends SpriteEntity {
 
 		Settings settings = game.getSettings();
 		int edgeLeft = settings.getAlienBehaviorEdgeWidth();
-		int edgeRight = settings.getScreenWidth() - settings.getAlienBehaviorEdgeWidth() - (int) this.getWidth();
+		int edgeRight = settings.getWorldWidth() - settings.getAlienBehaviorEdgeWidth() - (int) this.getWidth();
 
-		// if we have reached the left hand side of the screen and
+		// if we have reached the left hand side of the world and
 		// are moving left then request a logic update
 		if ((dx < 0) && (x < edgeLeft)) {
 			swarm.requestChangeDirection();
 		}
 
 		// and vice vesa, if we have reached the right hand side of
-		// the screen and are moving right, request a logic update
+		// the world and are moving right, request a logic update
 		if ((dx > 0) && (x > edgeRight)) {
 			swarm.requestChangeDirection();
 		}
@@ -130,6 +132,20 @@ public class AlienEntity extends SpriteEntity {
 		// collisions with aliens are handled elsewhere
 	}
 
+	@Override
+	public void writeState(ByteBuffer out) {
+		super.writeState(out);
+		out.putDouble(spawnAnimation.getDefaultStartTime());
+		out.putDouble(spawnAnimation.getCurrentTime());
+	}
+
+	@Override
+	public void readState(ByteBuffer in) {
+		super.readState(in);
+		spawnAnimation.setDefaultStartTime(in.getDouble());
+		spawnAnimation.seek(in.getDouble());
+	}
+
 	@Override
 	public Renderer getRenderer() {
 		return AlienEntityRenderer.get();
@@ -3,6 +3,7 @@ package com.gpergrossi.spaceinvaders.entity;
 import com.gpergrossi.spaceinvaders.animation.AnimationSystem;
 import com.gpergrossi.spaceinvaders.animation.TweenSequence;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 public class AlienSwarm {
@@ -98,6 +99,36 @@ public class AlienSwarm {
         }
     }
 
+    /**
+     * Write the swarm's own state to a snapshot buffer. The aliens themselves
+     * are written as entities, and re-added to the swarm when they are restored.
+     */
+    public void writeState(ByteBuffer out) {
+        out.put((byte) (directionChangeRequested ? 1 : 0));
+        out.put((byte) (spawning ? 1 : 0));
+    }
+
+    /**
+     * Read the swarm's own state back from a snapshot buffer.
+     */
+    public void readState(ByteBuffer in) {
+        directionChangeRequested = (in.get() != 0);
+        spawning = (in.get() != 0);
+    }
+
+    /**
+     * Restart the spawning animations of all aliens from their current positions.
+     * Used when restoring a snapshot taken during the intro animation.
+     */
+    public void resumeSpawning(AnimationSystem animationSystem) {
+        for (AlienEntity alien : aliens) {
+            TweenSequence<Double> animation = alien.getSpawnAnimation();
+            if (alien.isSpawning()) {
+                animationSystem.start(animation, animation.getCurrentTime(), false, null);
+            }
+        }
+    }
+
     public void increaseSpeed(float factor) {
         for (AlienEntity alien : aliens) {
             // speed up by 2%
@@ -0,0 +1,277 @@
+package com.gpergrossi.spaceinvaders.entity;
+
+import com.gpergrossi.spaceinvaders.render.ImageVersions;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+
+/**
+ * A destructible shield that protects the player.
+ *
+ * A bunker is not an Entity. Its shape is stored once as an image for rendering
+ * and once as a packed bitmask (one bit per pixel, 64 pixels per word) for
+ * collisions. Damage clears bits in the mask and the matching pixels in the
+ * image in place, touching only the rows and words that were actually hit.
+ */
+public class Bunker {
+
+    /** The number of pixels packed into each word of the collision mask */
+    private static final int WORD_BITS = 64;
+
+    /** The radius of the crater left behind by a shot */
+    private static final int CRATER_RADIUS = 6;
+
+    /** Half the width of each row of the crater, from -CRATER_RADIUS to CRATER_RADIUS */
+    private static final int[] CRATER_HALF_WIDTHS = createCircle(CRATER_RADIUS);
+
+    /** The location of the bunker's top left corner in the world */
+    private int x, y;
+
+    private int width, height;
+
+    /** The ARGB color of the bunker's solid pixels */
+    private int color;
+
+    /** The image drawn for this bunker. Damaged pixels are cleared to transparent. */
+    private BufferedImage image;
+
+    /** The image's raster, written to directly when the bunker is damaged */
+    private WritableRaster raster;
+
+    /** One bit per pixel, set where the bunker is solid */
+    private long[] mask;
+
+    /** The number of words used by each row of the mask */
+    private int wordsPerRow;
+
+    /** A row of transparent pixels, copied into the raster to erase damaged pixels */
+    private int[] clearRow;
+
+    /**
+     * Create a new bunker in the classic shape: a block with its top corners cut
+     * off and an arch cut out from the bottom.
+     *
+     * @param x The x location of the bunker's top left corner
+     * @param y The y location of the bunker's top left corner
+     * @param width The width of the bunker
+     * @param height The height of the bunker
+     * @param color The color of the bunker
+     */
+    public Bunker(int x, int y, int width, int height, Color color) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.color = color.getRGB();
+
+        this.wordsPerRow = (width + WORD_BITS - 1) / WORD_BITS;
+        this.mask = new long[wordsPerRow * height];
+        this.clearRow = new int[width];
+
+        this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        this.raster = image.getRaster();
+
+        int corner = height / 4;
+        int archWidth = width / 3;
+        int archHeight = height / 3;
+        int archLeft = (width - archWidth) / 2;
+
+        int[] row = new int[width];
+        for (int py = 0; py < height; py++) {
+            for (int px = 0; px < width; px++) {
+                boolean solid = true;
+
+                // Cut off the top corners diagonally
+                if (py < corner && (px < corner - py || px >= width - corner + py)) solid = false;
+
+                // Cut out an arch from the bottom middle
+                if (py >= height - archHeight && px >= archLeft && px < archLeft + archWidth) solid = false;
+
+                row[px] = solid ? this.color : 0;
+                if (solid) {
+                    mask[py * wordsPerRow + (px / WORD_BITS)] |= 1L << (px % WORD_BITS);
+                }
+            }
+            raster.setDataElements(0, py, width, 1, row);
+        }
+    }
+
+    private static int[] createCircle(int radius) {
+        int[] halfWidths = new int[radius * 2 + 1];
+        for (int dy = -radius; dy <= radius; dy++) {
+            halfWidths[dy + radius] = (int) Math.round(Math.sqrt(radius * radius - dy * dy));
+        }
+        return halfWidths;
+    }
+
+    /**
+     * Check whether any solid part of this bunker lies within a rectangle.
+     *
+     * @param bounds A rectangle in world coordinates
+     * @return True if the rectangle overlaps at least one solid pixel
+     */
+    public boolean collides(Rectangle2D.Float bounds) {
+        int minX = Math.max(0, (int) Math.floor(bounds.x) - x);
+        int minY = Math.max(0, (int) Math.floor(bounds.y) - y);
+        int maxX = Math.min(width - 1, (int) Math.ceil(bounds.x + bounds.width) - 1 - x);
+        int maxY = Math.min(height - 1, (int) Math.ceil(bounds.y + bounds.height) - 1 - y);
+        if (minX > maxX || minY > maxY) return false;
+
+        for (int py = minY; py <= maxY; py++) {
+            if (testRow(py, minX, maxX)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Blast a round crater into this bunker.
+     *
+     * @param centerX The x location of the center of the crater in world coordinates
+     * @param centerY The y location of the center of the crater in world coordinates
+     */
+    public void carve(float centerX, float centerY) {
+        int cx = (int) centerX - x;
+        int cy = (int) centerY - y;
+
+        for (int dy = -CRATER_RADIUS; dy <= CRATER_RADIUS; dy++) {
+            int halfWidth = CRATER_HALF_WIDTHS[dy + CRATER_RADIUS];
+            clearRow(cy + dy, cx - halfWidth, cx + halfWidth);
+        }
+    }
+
+    /**
+     * Remove every solid pixel within a rectangle, e.g. where an alien has flown into the bunker.
+     *
+     * @param bounds A rectangle in world coordinates
+     */
+    public void erase(Rectangle2D.Float bounds) {
+        int minX = (int) Math.floor(bounds.x) - x;
+        int minY = (int) Math.floor(bounds.y) - y;
+        int maxX = (int) Math.ceil(bounds.x + bounds.width) - 1 - x;
+        int maxY = (int) Math.ceil(bounds.y + bounds.height) - 1 - y;
+
+        for (int py = minY; py <= maxY; py++) {
+            clearRow(py, minX, maxX);
+        }
+    }
+
+    /** Tests bits minX through maxX (inclusive) of a row of the mask. Arguments must be in range. */
+    private boolean testRow(int py, int minX, int maxX) {
+        int rowStart = py * wordsPerRow;
+        int firstWord = minX / WORD_BITS;
+        int lastWord = maxX / WORD_BITS;
+
+        for (int w = firstWord; w <= lastWord; w++) {
+            long bits = mask[rowStart + w];
+            if (bits == 0) continue;
+
+            // Mask off the bits outside of the tested range in the first and last words
+            long range = -1L;
+            if (w == firstWord) range &= -1L << (minX % WORD_BITS);
+            if (w == lastWord) range &= -1L >>> (WORD_BITS - 1 - (maxX % WORD_BITS));
+
+            if ((bits & range) != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Clears bits minX through maxX (inclusive) of a row of the mask, and erases the
+     * matching pixels from the image. Arguments are clipped to the bunker. Rows that
+     * have no solid pixels in the range are left untouched.
+     */
+    private void clearRow(int py, int minX, int maxX) {
+        if (py < 0 || py >= height) return;
+        if (minX < 0) minX = 0;
+        if (maxX >= width) maxX = width - 1;
+        if (minX > maxX) return;
+
+        if (!testRow(py, minX, maxX)) return;
+
+        int rowStart = py * wordsPerRow;
+        int firstWord = minX / WORD_BITS;
+        int lastWord = maxX / WORD_BITS;
+
+        for (int w = firstWord; w <= lastWord; w++) {
+            long range = -1L;
+            if (w == firstWord) range &= -1L << (minX % WORD_BITS);
+            if (w == lastWord) range &= -1L >>> (WORD_BITS - 1 - (maxX % WORD_BITS));
+
+            mask[rowStart + w] &= ~range;
+        }
+
+        // Erased pixels are always transparent, so the same blank row can be copied everywhere.
+        raster.setDataElements(minX, py, maxX - minX + 1, 1, clearRow);
+        ImageVersions.changed(image);
+    }
+
+    /**
+     * Write the damage state of this bunker (its collision mask) to a snapshot buffer.
+     * The location, size and color are fixed when the bunker is created.
+     */
+    public void writeState(ByteBuffer out) {
+        for (int i = 0; i < mask.length; i++) {
+            out.putLong(mask[i]);
+        }
+    }
+
+    /**
+     * Read the damage state of this bunker back from a snapshot buffer,
+     * and redraw the image to match.
+     */
+    public void readState(ByteBuffer in) {
+        for (int i = 0; i < mask.length; i++) {
+            mask[i] = in.getLong();
+        }
+
+        int[] row = new int[width];
+        for (int py = 0; py < height; py++) {
+            for (int px = 0; px < width; px++) {
+                boolean solid = (mask[py * wordsPerRow + (px / WORD_BITS)] & (1L << (px % WORD_BITS))) != 0;
+                row[px] = solid ? color : 0;
+            }
+            raster.setDataElements(0, py, width, 1, row);
+        }
+        ImageVersions.changed(image);
+    }
+
+    /**
+     * Get the bounds of this bunker and store them in the provided Rectangle2D.Float object.
+     */
+    public void getBounds(Rectangle2D.Float result) {
+        if (result != null) {
+            result.setRect(x, y, width, height);
+        }
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return The ARGB color of the bunker's solid pixels
+     */
+    public int getColorRGB() {
+        return color;
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+}
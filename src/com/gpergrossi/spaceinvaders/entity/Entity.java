@@ -1,10 +1,9 @@
 package com.gpergrossi.spaceinvaders.entity;
 
 import com.gpergrossi.spaceinvaders.game.Game;
+import com.gpergrossi.spaceinvaders.render.RenderQueue;
 import com.gpergrossi.spaceinvaders.render.Renderer;
 
-import java.awt.*;
-
 /**
  * An entity represents any element that appears in the game.
  * The entity class serves as a base class for all entities
@@ -50,13 +49,15 @@ public abstract class Entity {
 	public abstract Renderer getRenderer();
 
 	/**
-	 * A render method that handles all rendering of all entities via the
-	 * Renderer object returned by their getRenderer() method.
+	 * Add this entity's draw commands to a render queue, via the
+	 * Renderer object returned by its getRenderer() method.
 	 *
-	 * @param g A Graphics2D object.
+	 * @param queue The queue to add to
 	 */
-	public final void render(Graphics2D g) {
-		this.getRenderer().render(g, this);
+	@SuppressWarnings("unchecked")
+	public final void enqueue(RenderQueue queue) {
+		// getRenderer() is raw, but every entity's renderer takes the entity itself
+		this.getRenderer().enqueue(queue, this);
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,246 @@
+package com.gpergrossi.spaceinvaders.entity;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A loose quadtree used to index objects by their bounding rectangles.
+ *
+ * Each node's loose bounds are twice the size of its tight bounds, so an object
+ * can always be stored in the node matching its size and the quadrant containing
+ * its center, and never needs to be split across several nodes. This makes the
+ * tree cheap to rebuild every loop, which is how the Game uses it.
+ *
+ * Objects whose center lies outside of the tree's area are kept in the root node,
+ * which is always searched.
+ *
+ * @param <T> The type of object stored in the tree
+ */
+public class LooseQuadTree<T> {
+
+    /** Sorts query results back into the order in which they were inserted */
+    private static final Comparator<Entry<?>> INSERTION_ORDER = (a, b) -> Integer.compare(a.order, b.order);
+
+    /** The root node, covering the whole indexed area */
+    private Node<T> root;
+
+    /** The deepest level of nodes that will be created */
+    private int maxDepth;
+
+    /** Entry objects are recycled between rebuilds so that clear() and insert() don't allocate */
+    private ArrayList<Entry<T>> entryPool;
+
+    /** The number of entries from the pool currently in use */
+    private int entryCount;
+
+    /** Scratch list used by query() to gather entries before they are sorted */
+    private ArrayList<Entry<T>> queryEntries;
+
+    /**
+     * Construct a quadtree covering the given area.
+     *
+     * @param x The left edge of the indexed area
+     * @param y The top edge of the indexed area
+     * @param width The width of the indexed area
+     * @param height The height of the indexed area
+     * @param maxDepth The maximum number of times the area will be subdivided
+     */
+    public LooseQuadTree(float x, float y, float width, float height, int maxDepth) {
+        if (maxDepth < 0) throw new IllegalArgumentException("Max depth must not be negative!");
+
+        this.root = new Node<>(x + width * 0.5f, y + height * 0.5f, width * 0.5f, height * 0.5f, 0);
+        this.maxDepth = maxDepth;
+        this.entryPool = new ArrayList<>();
+        this.entryCount = 0;
+        this.queryEntries = new ArrayList<>();
+    }
+
+    /**
+     * Removes all objects from the tree. Nodes and entries are kept for re-use.
+     */
+    public void clear() {
+        root.clear();
+        entryCount = 0;
+    }
+
+    /**
+     * @return The number of objects stored in the tree
+     */
+    public int size() {
+        return entryCount;
+    }
+
+    /**
+     * Insert an object into the tree.
+     *
+     * @param item The object to insert
+     * @param bounds The bounding rectangle of the object
+     */
+    public void insert(T item, Rectangle2D.Float bounds) {
+        insert(item, bounds.x, bounds.y, bounds.width, bounds.height);
+    }
+
+    /**
+     * Insert an object into the tree.
+     *
+     * @param item The object to insert
+     * @param x The left edge of the object
+     * @param y The top edge of the object
+     * @param width The width of the object
+     * @param height The height of the object
+     */
+    public void insert(T item, float x, float y, float width, float height) {
+        Entry<T> entry = obtainEntry();
+        entry.item = item;
+        entry.order = entryCount - 1;
+        entry.x = x;
+        entry.y = y;
+        entry.width = width;
+        entry.height = height;
+
+        float centerX = x + width * 0.5f;
+        float centerY = y + height * 0.5f;
+        float halfWidth = width * 0.5f;
+        float halfHeight = height * 0.5f;
+
+        Node<T> node = root;
+        if (root.containsPoint(centerX, centerY)) {
+            // Descend while the child holding the object's center is still big enough to contain it loosely
+            while (node.depth < maxDepth) {
+                float childHalfWidth = node.halfWidth * 0.5f;
+                float childHalfHeight = node.halfHeight * 0.5f;
+                if (halfWidth > childHalfWidth || halfHeight > childHalfHeight) break;
+
+                node = node.getOrCreateChild(centerX, centerY);
+            }
+        }
+
+        node.entries.add(entry);
+    }
+
+    /**
+     * Find all objects whose bounds intersect a region. Results are appended to
+     * the result list in the same order in which the objects were inserted.
+     *
+     * @param region The region to search
+     * @param result The list that will receive the objects found
+     */
+    public void query(Rectangle2D.Float region, List<T> result) {
+        query(region.x, region.y, region.width, region.height, result);
+    }
+
+    /**
+     * Find all objects whose bounds intersect a region. Results are appended to
+     * the result list in the same order in which the objects were inserted.
+     */
+    public void query(float x, float y, float width, float height, List<T> result) {
+        queryEntries.clear();
+        root.query(x, y, x + width, y + height, queryEntries, true);
+
+        queryEntries.sort(INSERTION_ORDER);
+        for (int i = 0; i < queryEntries.size(); i++) {
+            result.add(queryEntries.get(i).item);
+        }
+        queryEntries.clear();
+    }
+
+    private Entry<T> obtainEntry() {
+        if (entryCount == entryPool.size()) {
+            entryPool.add(new Entry<>());
+        }
+        return entryPool.get(entryCount++);
+    }
+
+
+
+    private static final class Entry<T> {
+        private T item;
+        private int order;
+        private float x, y, width, height;
+
+        private boolean intersects(float minX, float minY, float maxX, float maxY) {
+            return x < maxX && x + width > minX && y < maxY && y + height > minY;
+        }
+    }
+
+    private static final class Node<T> {
+
+        /** The center of this node's tight bounds */
+        private float centerX, centerY;
+
+        /** Half of the size of this node's tight bounds. The loose bounds extend this far again on all sides. */
+        private float halfWidth, halfHeight;
+
+        private int depth;
+
+        /** Children are created lazily, in the order: top-left, top-right, bottom-left, bottom-right */
+        private Node<T>[] children;
+
+        private ArrayList<Entry<T>> entries;
+
+        private Node(float centerX, float centerY, float halfWidth, float halfHeight, int depth) {
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.halfWidth = halfWidth;
+            this.halfHeight = halfHeight;
+            this.depth = depth;
+            this.children = null;
+            this.entries = new ArrayList<>();
+        }
+
+        private boolean containsPoint(float x, float y) {
+            return x >= centerX - halfWidth && x <= centerX + halfWidth
+                && y >= centerY - halfHeight && y <= centerY + halfHeight;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Node<T> getOrCreateChild(float x, float y) {
+            if (children == null) {
+                children = (Node<T>[]) new Node<?>[4];
+            }
+
+            int index = ((x < centerX) ? 0 : 1) + ((y < centerY) ? 0 : 2);
+            if (children[index] == null) {
+                float childHalfWidth = halfWidth * 0.5f;
+                float childHalfHeight = halfHeight * 0.5f;
+                float childX = centerX + ((index & 1) == 0 ? -childHalfWidth : childHalfWidth);
+                float childY = centerY + ((index & 2) == 0 ? -childHalfHeight : childHalfHeight);
+                children[index] = new Node<>(childX, childY, childHalfWidth, childHalfHeight, depth + 1);
+            }
+            return children[index];
+        }
+
+        private void clear() {
+            entries.clear();
+            if (children == null) return;
+            for (Node<T> child : children) {
+                if (child != null) child.clear();
+            }
+        }
+
+        private void query(float minX, float minY, float maxX, float maxY, List<Entry<T>> result, boolean isRoot) {
+            // The root also holds objects that lie outside of the tree, so it is always searched.
+            if (!isRoot) {
+                float looseHalfWidth = halfWidth * 2f;
+                float looseHalfHeight = halfHeight * 2f;
+                if (centerX - looseHalfWidth > maxX || centerX + looseHalfWidth < minX) return;
+                if (centerY - looseHalfHeight > maxY || centerY + looseHalfHeight < minY) return;
+            }
+
+            for (int i = 0; i < entries.size(); i++) {
+                Entry<T> entry = entries.get(i);
+                if (entry.intersects(minX, minY, maxX, maxY)) {
+                    result.add(entry);
+                }
+            }
+
+            if (children == null) return;
+            for (Node<T> child : children) {
+                if (child != null) child.query(minX, minY, maxX, maxY, result, false);
+            }
+        }
+    }
+
+}
@@ -3,6 +3,7 @@ package com.gpergrossi.spaceinvaders.entity;
 import com.gpergrossi.spaceinvaders.game.Game;
 
 import java.awt.geom.Rectangle2D;
+import java.nio.ByteBuffer;
 
 /**
  * A PhysicsEntity represents any physical element that appears in the game.
@@ -151,6 +152,32 @@ public abstract class PhysicsEntity extends Entity {
         this.move(delta);
     }
 
+    /**
+     * Write the state of this entity to a snapshot buffer.
+     * Subclasses with more state should extend this, calling super first.
+     *
+     * @param out The buffer to write to
+     */
+    public void writeState(ByteBuffer out) {
+        out.putFloat(x);
+        out.putFloat(y);
+        out.putFloat(dx);
+        out.putFloat(dy);
+    }
+
+    /**
+     * Read the state of this entity back from a snapshot buffer.
+     * Must read exactly what writeState() wrote.
+     *
+     * @param in The buffer to read from
+     */
+    public void readState(ByteBuffer in) {
+        x = in.getFloat();
+        y = in.getFloat();
+        dx = in.getFloat();
+        dy = in.getFloat();
+    }
+
     /**
      * Notification that this entity collided with another.
      *
@@ -5,7 +5,7 @@ import com.gpergrossi.spaceinvaders.game.Game;
 import com.gpergrossi.spaceinvaders.assets.Sprite;
 import com.gpergrossi.spaceinvaders.game.Settings;
 
-import java.awt.*;
+import java.nio.ByteBuffer;
 
 /**
  * The entity that represents the players ship
@@ -16,6 +16,9 @@ public class ShipEntity extends SpriteEntity {
 
 	private TintedSprite shipSprite;
 
+	/** The index of the player controlling this ship */
+	private int player;
+
 	private int reloadTime;
 	private int reloadProgress;
 
@@ -28,9 +31,23 @@ public class ShipEntity extends SpriteEntity {
 	 * @param y      The initial y location of this entity.
 	 */
 	public ShipEntity(Game game, TintedSprite sprite, float x, float y) {
+		this(game, sprite, x, y, 0);
+	}
+
+	/**
+	 * Create a new entity to represent one of the players' ships
+	 *
+	 * @param game   The game to which this entity belongs.
+	 * @param sprite The sprite used to render this entity (and determine its size).
+	 * @param x      The initial x location of this entity.
+	 * @param y      The initial y location of this entity.
+	 * @param player The index of the player controlling this ship.
+	 */
+	public ShipEntity(Game game, TintedSprite sprite, float x, float y, int player) {
 		super(game, sprite, x, y);
 
 		this.shipSprite = sprite;
+		this.player = player;
 
 		Settings settings = game.getSettings();
 		reloadTime = settings.getPlayerReloadTime();
@@ -47,15 +64,19 @@ public class ShipEntity extends SpriteEntity {
 	public void updateLogic(long delta) {
 		super.move(delta);
 
-		// If we're moving left and have reached the left hand side of the screen, don't move
-		if ((dx < 0) && (x < 10)) {
-			x = 10;
+		Settings settings = game.getSettings();
+		int edgeLeft = settings.getPlayerEdgeWidth();
+		int edgeRight = settings.getWorldWidth() - settings.getPlayerEdgeWidth() - (int) this.getWidth();
+
+		// If we're moving left and have reached the left hand side of the world, don't move
+		if ((dx < 0) && (x < edgeLeft)) {
+			x = edgeLeft;
 			return;
 		}
 
-		// If we're moving right and have reached the right hand side of the screen, don't move
-		if ((dx > 0) && (x > 750)) {
-			x = 750;
+		// If we're moving right and have reached the right hand side of the world, don't move
+		if ((dx > 0) && (x > edgeRight)) {
+			x = edgeRight;
 			return;
 		}
 
@@ -76,7 +97,7 @@ public class ShipEntity extends SpriteEntity {
 		float reloadPercent = (float) reloadProgress / reloadTime;
 
 		int charge = (int) (255 * reloadPercent);
-		shipSprite.setColor(new Color(255, charge, charge));
+		shipSprite.setColor(255, charge, charge);
 	}
 
 	/**
@@ -92,6 +113,22 @@ public class ShipEntity extends SpriteEntity {
 		}
 	}
 
+	@Override
+	public void writeState(ByteBuffer out) {
+		super.writeState(out);
+		out.putInt(reloadProgress);
+	}
+
+	@Override
+	public void readState(ByteBuffer in) {
+		super.readState(in);
+		reloadProgress = in.getInt();
+	}
+
+	public int getPlayer() {
+		return player;
+	}
+
 	public boolean canShoot() {
 		return (reloadProgress == reloadTime);
 	}
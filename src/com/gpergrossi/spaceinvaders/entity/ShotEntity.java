@@ -6,6 +6,8 @@ import com.gpergrossi.spaceinvaders.render.Renderer;
 import com.gpergrossi.spaceinvaders.render.ShotEntityRenderer;
 import com.gpergrossi.spaceinvaders.render.SpriteEntityRenderer;
 
+import java.nio.ByteBuffer;
+
 /**
  * An entity representing a shot fired by the player's ship
  * 
@@ -24,6 +26,9 @@ public class ShotEntity extends SpriteEntity {
 
 	private float particleInterval;
 	private float particleTimeRemaining;
+
+	/** The order in which this shot was fired, assigned by the game's Statistics. -1 if untracked. */
+	private int shotIndex;
 	
 	/**
 	 * Create a new shot from the player
@@ -39,6 +44,7 @@ public class ShotEntity extends SpriteEntity {
 		dy = moveSpeed;
 		used = false;
 		size = 0.75f;
+		shotIndex = -1;
 
 		particleInterval = 0.01f;
 		particleTimeRemaining = particleInterval;
@@ -115,6 +121,56 @@ public class ShotEntity extends SpriteEntity {
 		}
 	}
 
+	/**
+	 * Notification that this shot has struck the solid part of a bunker
+	 *
+	 * @param bunker The bunker that was struck
+	 */
+	public void onBunkerCollision(Bunker bunker) {
+		// A shot that already hit an alien can't also damage a bunker
+		if (used) {
+			return;
+		}
+
+		// Blast a crater where the tip of the shot struck
+		bunker.carve(x + width * 0.5f, y);
+
+		game.removeEntity(this);
+		game.notifyShotBlocked(this);
+
+		used = true;
+	}
+
+	@Override
+	public void writeState(ByteBuffer out) {
+		super.writeState(out);
+		out.put((byte) (used ? 1 : 0));
+		out.putFloat(size);
+		out.putFloat(particleTimeRemaining);
+		out.putInt(shotIndex);
+	}
+
+	@Override
+	public void readState(ByteBuffer in) {
+		super.readState(in);
+		used = (in.get() != 0);
+		size = in.getFloat();
+		particleTimeRemaining = in.getFloat();
+		shotIndex = in.getInt();
+	}
+
+	public int getShotIndex() {
+		return shotIndex;
+	}
+
+	public void setShotIndex(int shotIndex) {
+		this.shotIndex = shotIndex;
+	}
+
+	public boolean isUsed() {
+		return used;
+	}
+
 	public float getSize() {
 		return size;
 	}
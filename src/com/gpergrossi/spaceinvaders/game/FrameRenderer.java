@@ -0,0 +1,348 @@
+package com.gpergrossi.spaceinvaders.game;
+
+import com.gpergrossi.spaceinvaders.diagnostics.Tracer;
+import com.gpergrossi.spaceinvaders.render.BandedRasterizer;
+import com.gpergrossi.spaceinvaders.render.DisplayList;
+import com.gpergrossi.spaceinvaders.render.FrameScaler;
+import com.gpergrossi.spaceinvaders.render.FramebufferRenderBackend;
+import com.gpergrossi.spaceinvaders.render.Java2DRenderBackend;
+import com.gpergrossi.spaceinvaders.render.PostProcessor;
+import com.gpergrossi.spaceinvaders.render.RenderBackend;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Draws whole frames of the game onto a graphics context, the way the settings ask for:
+ * through Java2D or into a software framebuffer, and either straight from the game or
+ * recorded into a display list first and then replayed. The parallel renderer always
+ * records, then replays into the framebuffer in bands on a fork/join pool.
+ *
+ * The game is drawn into an internal frame of a fixed size, the screen size times the
+ * render scale, and then scaled to fit whatever size it is presented at. It keeps its
+ * shape, with black bars along the sides that it doesn't fill.
+ *
+ * Java2D draws the internal frame into a VolatileImage, which stays in video memory where
+ * the pipeline is accelerated, and presents it with a single scaled image draw, filtered
+ * the way the settings ask for. When the internal frame is exactly the size it is
+ * presented at, Java2D draws straight onto the graphics context instead. The framebuffer
+ * renderers' frames are in main memory either way, so they are scaled in software by a
+ * FrameScaler and then drawn without any more scaling.
+ *
+ * When screen effects are turned on, the finished frame is post-processed before it is
+ * presented. The framebuffer renderers already have the frame's pixels, Java2D draws into
+ * an offscreen BufferedImage instead of a VolatileImage so that its pixels can be reached.
+ *
+ * The game window uses this for every frame, and so does the golden frame harness, so
+ * that both draw exactly the same way.
+ */
+public class FrameRenderer {
+
+    /** The size of the game in its own coordinates */
+    private int width;
+    private int height;
+
+    /** The size of the internal frame in pixels */
+    private int frameWidth;
+    private int frameHeight;
+
+    private float renderScale;
+
+    /** True to scale the internal frame with bilinear filtering, false for nearest neighbor */
+    private boolean bilinear;
+
+    /** Runs the work that is split into bands, created when first needed */
+    private ForkJoinPool pool;
+
+    private Java2DRenderBackend java2d;
+
+    /** The software framebuffer the game is drawn into, or null to draw through Java2D */
+    private FramebufferRenderBackend framebuffer;
+
+    /** The frame is recorded into this before it is drawn, or null to draw straight from the game */
+    private DisplayList displayList;
+
+    /** Draws the display list into the framebuffer on several threads, or null to draw on this thread */
+    private BandedRasterizer rasterizer;
+
+    /** Applies screen effects to each finished frame, or null if they are all off */
+    private PostProcessor postProcessor;
+
+    /** Java2D draws into this when it can't draw straight onto the graphics context, created when first needed */
+    private VolatileImage volatileFrame;
+
+    /** Java2D draws into this instead when the frame is post-processed, created when first needed */
+    private BufferedImage offscreen;
+    private Graphics2D offscreenGraphics;
+
+    /** Scales the game's coordinates down to the internal frame's pixels */
+    private AffineTransform offscreenTransform;
+
+    /** Scales the framebuffer into the presented image when they aren't the same size, created when first needed */
+    private FrameScaler scaler;
+    private BufferedImage presented;
+
+    /** Where the last frame was presented */
+    private int viewX, viewY, viewWidth, viewHeight;
+
+    public FrameRenderer(Settings settings, int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.renderScale = settings.getRenderScale();
+        this.frameWidth = Math.max(1, Math.round(width * renderScale));
+        this.frameHeight = Math.max(1, Math.round(height * renderScale));
+        this.java2d = new Java2DRenderBackend();
+        this.offscreenTransform = AffineTransform.getScaleInstance(
+                (double) frameWidth / width, (double) frameHeight / height);
+
+        this.bilinear = Settings.FILTER_BILINEAR.equals(settings.getScaleFilter());
+
+        String renderer = settings.getRenderer();
+        if (Settings.RENDERER_FRAMEBUFFER.equals(renderer) || Settings.RENDERER_PARALLEL.equals(renderer)) {
+            framebuffer = new FramebufferRenderBackend(width, height, renderScale);
+        }
+        if (settings.getRecordDisplayList() || Settings.RENDERER_PARALLEL.equals(renderer)) {
+            displayList = new DisplayList(width, height);
+        }
+
+        if (Settings.RENDERER_PARALLEL.equals(renderer)) {
+            rasterizer = new BandedRasterizer(framebuffer, getPool());
+        }
+        if (settings.getBloom() || settings.getScanlines() || settings.getVignette()) {
+            postProcessor = new PostProcessor(frameWidth, frameHeight, getPool());
+            postProcessor.setBloom(settings.getBloom());
+            postProcessor.setScanlines(settings.getScanlines());
+            postProcessor.setVignette(settings.getVignette());
+        }
+    }
+
+    /**
+     * Clear the frame and draw the game onto it at the game's own size.
+     *
+     * @param game The game to draw
+     * @param g The graphics context of the frame, with its origin at the top left corner
+     */
+    public void render(Game game, Graphics2D g) {
+        render(game, g, width, height);
+    }
+
+    /**
+     * Clear the frame and draw the game onto it, scaled to fit the given size.
+     *
+     * @param game The game to draw
+     * @param g The graphics context of the frame, with its origin at the top left corner
+     * @param targetWidth The width to present the frame at
+     * @param targetHeight The height to present the frame at
+     */
+    public void render(Game game, Graphics2D g, int targetWidth, int targetHeight) {
+        if (rasterizer != null) {
+            Tracer.begin("DisplayList.record");
+            displayList.reset();
+            game.render(displayList);
+            Tracer.end();
+
+            Tracer.begin("BandedRasterizer.rasterize");
+            rasterizer.rasterize(displayList, Color.black.getRGB());
+            Tracer.end();
+
+            present(framebuffer.getImage(), g, targetWidth, targetHeight);
+            return;
+        }
+
+        if (framebuffer != null) {
+            framebuffer.begin();
+            drawFrame(game, framebuffer);
+            present(framebuffer.getImage(), g, targetWidth, targetHeight);
+            return;
+        }
+
+        if (postProcessor != null) {
+            // Post-processing needs the frame's pixels, so it can't stay in video memory
+            drawFrame(game, beginJava2D(getOffscreenGraphics()));
+            present(offscreen, g, targetWidth, targetHeight);
+            return;
+        }
+
+        if (renderScale == 1.0f && targetWidth == width && targetHeight == height) {
+            drawFrame(game, beginJava2D(g));
+            setView(0, 0, width, height);
+            return;
+        }
+
+        // Draw again if the image's contents were lost before the frame was presented
+        GraphicsConfiguration configuration = g.getDeviceConfiguration();
+        do {
+            if (volatileFrame == null || volatileFrame.validate(configuration) == VolatileImage.IMAGE_INCOMPATIBLE) {
+                volatileFrame = configuration.createCompatibleVolatileImage(frameWidth, frameHeight);
+            }
+
+            Graphics2D target = volatileFrame.createGraphics();
+            target.transform(offscreenTransform);
+            drawFrame(game, beginJava2D(target));
+            target.dispose();
+
+            present(volatileFrame, g, targetWidth, targetHeight);
+        } while (volatileFrame.contentsLost());
+    }
+
+    /** Start the Java2D backend drawing onto a graphics context */
+    private RenderBackend beginJava2D(Graphics2D target) {
+        // Tell the graphics system to draw with anti-aliasing (for smooth font rendering)
+        target.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        target.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        java2d.begin(target);
+        return java2d;
+    }
+
+    /** Clear the frame and draw the game through a backend, through the display list if there is one */
+    private void drawFrame(Game game, RenderBackend backend) {
+        // Clear the screen
+        backend.fillRect(0, 0, width, height, Color.black.getRGB());
+
+        if (displayList != null) {
+            Tracer.begin("DisplayList.record");
+            displayList.reset();
+            game.render(displayList);
+            Tracer.end();
+
+            Tracer.begin("DisplayList.replay");
+            displayList.replay(backend);
+            Tracer.end();
+        } else {
+            game.render(backend);
+        }
+    }
+
+    private ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return pool;
+    }
+
+    /** The offscreen image's graphics context, with the game's coordinates scaled down to its pixels */
+    private Graphics2D getOffscreenGraphics() {
+        if (offscreen == null) {
+            offscreen = new BufferedImage(frameWidth, frameHeight, BufferedImage.TYPE_INT_RGB);
+            offscreenGraphics = offscreen.createGraphics();
+        }
+
+        // Whatever the last frame left behind, each frame starts from the same transform
+        offscreenGraphics.setTransform(offscreenTransform);
+        return offscreenGraphics;
+    }
+
+    /** Apply the screen effects to a finished frame, then draw it as large as fits, in the middle */
+    private void present(BufferedImage frame, Graphics2D g, int targetWidth, int targetHeight) {
+        if (postProcessor != null) {
+            Tracer.begin("PostProcessor.apply");
+            postProcessor.apply(frame);
+            Tracer.end();
+        }
+
+        if (!fit(g, targetWidth, targetHeight)) return;
+
+        // Java2D's frame is scaled as it is drawn, the framebuffer's in software first
+        if (framebuffer == null) {
+            drawScaled(frame, g);
+            return;
+        }
+
+        if (viewWidth != frame.getWidth() || viewHeight != frame.getHeight()) {
+            if (scaler == null) {
+                scaler = new FrameScaler(getPool(), bilinear);
+            }
+            if (presented == null || presented.getWidth() != viewWidth || presented.getHeight() != viewHeight) {
+                presented = new BufferedImage(viewWidth, viewHeight, BufferedImage.TYPE_INT_RGB);
+            }
+
+            Tracer.begin("FrameScaler.scale");
+            scaler.scale(frame, presented);
+            Tracer.end();
+            frame = presented;
+        }
+        g.drawImage(frame, viewX, viewY, null);
+    }
+
+    /** Draw a Java2D frame that is still in video memory as large as fits, in the middle */
+    private void present(VolatileImage frame, Graphics2D g, int targetWidth, int targetHeight) {
+        if (!fit(g, targetWidth, targetHeight)) return;
+        drawScaled(frame, g);
+    }
+
+    /** Draw a frame over the view in one image draw, filtered the way the settings ask for */
+    private void drawScaled(Image frame, Graphics2D g) {
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, bilinear
+                ? RenderingHints.VALUE_INTERPOLATION_BILINEAR
+                : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+
+        Tracer.begin("FrameRenderer.drawScaled");
+        g.drawImage(frame, viewX, viewY, viewWidth, viewHeight, null);
+        Tracer.end();
+    }
+
+    /**
+     * Find the largest view of the game's shape that fits the target, in the middle, and
+     * fill the rest with black bars.
+     *
+     * @return False if the view is empty and there is nothing to draw
+     */
+    private boolean fit(Graphics2D g, int targetWidth, int targetHeight) {
+        double fit = Math.min((double) targetWidth / width, (double) targetHeight / height);
+        int presentedWidth = (int) Math.round(width * fit);
+        int presentedHeight = (int) Math.round(height * fit);
+        setView((targetWidth - presentedWidth) / 2, (targetHeight - presentedHeight) / 2, presentedWidth, presentedHeight);
+        if (viewWidth <= 0 || viewHeight <= 0) return false;
+
+        // Black bars fill whatever the frame doesn't
+        g.setColor(Color.black);
+        if (viewX > 0) {
+            g.fillRect(0, 0, viewX, targetHeight);
+            g.fillRect(viewX + viewWidth, 0, targetWidth - viewX - viewWidth, targetHeight);
+        }
+        if (viewY > 0) {
+            g.fillRect(0, 0, targetWidth, viewY);
+            g.fillRect(0, viewY + viewHeight, targetWidth, targetHeight - viewY - viewHeight);
+        }
+        return true;
+    }
+
+    private void setView(int x, int y, int width, int height) {
+        this.viewX = x;
+        this.viewY = y;
+        this.viewWidth = width;
+        this.viewHeight = height;
+    }
+
+    /**
+     * @return The display list the last frame was recorded into, or null if frames are not recorded
+     */
+    public DisplayList getDisplayList() {
+        return displayList;
+    }
+
+    /**
+     * @return The left edge of where the last frame was presented
+     */
+    public int getViewX() {
+        return viewX;
+    }
+
+    /**
+     * @return The top edge of where the last frame was presented
+     */
+    public int getViewY() {
+        return viewY;
+    }
+
+    /**
+     * @return How many presented pixels each of the game's coordinates covered in the last frame
+     */
+    public double getViewScale() {
+        return (double) viewWidth / width;
+    }
+
+}
@@ -1,16 +1,32 @@
 package com.gpergrossi.spaceinvaders.game;
 
 import com.gpergrossi.spaceinvaders.assets.*;
+import com.gpergrossi.spaceinvaders.diagnostics.GameMetrics;
+import com.gpergrossi.spaceinvaders.diagnostics.ScreenEvent;
+import com.gpergrossi.spaceinvaders.diagnostics.StateTransitionEvent;
+import com.gpergrossi.spaceinvaders.diagnostics.SubsystemUpdateEvent;
+import com.gpergrossi.spaceinvaders.diagnostics.Tracer;
+import com.gpergrossi.spaceinvaders.render.BunkerRenderer;
+import com.gpergrossi.spaceinvaders.render.Camera;
+import com.gpergrossi.spaceinvaders.render.Java2DRenderBackend;
 import com.gpergrossi.spaceinvaders.render.ParticleSystem;
+import com.gpergrossi.spaceinvaders.render.RenderBackend;
+import com.gpergrossi.spaceinvaders.render.RenderQueue;
 import com.gpergrossi.spaceinvaders.render.Starfield;
+import com.gpergrossi.spaceinvaders.telemetry.PendingTelemetry;
+import com.gpergrossi.spaceinvaders.telemetry.TelemetryFormat;
+import com.gpergrossi.spaceinvaders.telemetry.TelemetryWriter;
 import com.gpergrossi.spaceinvaders.ui.AnimatedText;
+import com.gpergrossi.spaceinvaders.ui.Hud;
 import com.gpergrossi.spaceinvaders.animation.AnimationSystem;
 import com.gpergrossi.spaceinvaders.entity.*;
 import com.gpergrossi.spaceinvaders.ui.screens.*;
 
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The main hook of our game. This class with both act as a manager
@@ -38,6 +54,9 @@ public class Game extends Canvas {
 	/** The statistics used by the scoring system */
 	private Statistics scoreStatistics;
 
+	/** The score readout drawn during gameplay */
+	private Hud hud;
+
 	/** The input object through which this game can receive input and register listeners */
 	private Input input;
 
@@ -56,21 +75,75 @@ public class Game extends Canvas {
 	/** The list of entities that need to be removed from the game this loop */
 	private ArrayList<Entity> removeList;
 
-	/** The entity representing the player */
+	/** A spatial index of all entities, rebuilt each loop, used for culling and region queries */
+	private LooseQuadTree<Entity> entityIndex;
+
+	/** Scratch list that receives the entities visible in the current frame */
+	private ArrayList<Entity> visibleEntities;
+
+	/** Scratch list that receives the entities overlapping a bunker during collision checks */
+	private ArrayList<Entity> bunkerEntities;
+
+	/** Scratch bounds for indexing and collision checks, reused so that updates do not allocate */
+	private Rectangle2D.Float boundsA, boundsB, bunkerBounds;
+
+	/** Batches entity draws to minimise graphics state changes */
+	private RenderQueue renderQueue;
+
+	/** Used when the game is drawn straight onto a Graphics2D */
+	private Java2DRenderBackend java2dBackend;
+
+	/** The camera that determines which part of the world is on screen */
+	private Camera camera;
+
+	/** The region of the world visible in the current frame */
+	private Rectangle2D.Float viewBounds;
+
+	/** The entity representing the player on this machine */
 	private ShipEntity ship;
 
+	/** The ships of all players, indexed by player */
+	private ShipEntity[] ships;
+
+	/** The tinted sprites used by each player's ship */
+	private TintedSprite[] shipSprites;
+
+	/** Takes over advancing the simulation during gameplay (e.g. for netplay), or null */
+	private TickController tickController;
+
+	/** Scratch array holding each player's packed input for the current tick */
+	private int[] playerInputs;
+
 	/** The speed at which the player's ship should move (pixels/sec) */
 	private float moveSpeed;
 
 	/** Keeps track of all alien entities */
 	private AlienSwarm alienSwarm;
 
+	/** The destructible shields protecting the player. These are not entities. */
+	private ArrayList<Bunker> bunkers;
+
 	/** The background star field */
 	private Starfield starfield;
 
 	/** The particle system */
 	private ParticleSystem particleSystem;
 
+	/** Varies the stars and particles, captured in snapshots so a restored game draws the same numbers */
+	private SnapshotRandom random;
+
+	/** Records gameplay events for offline analysis, or null */
+	private TelemetryWriter telemetry;
+
+	/** The number of rounds of gameplay that have begun, used to group telemetry events */
+	private int roundNumber;
+
+	/** Events from ticks that a tick controller may still roll back, held until they are confirmed */
+	private PendingTelemetry pendingTelemetry;
+
+	/** The tick controller's tick being simulated, whose events are held back, or -1 if events are final */
+	private int telemetryTick;
+
 
 	/**
 	 * Construct our game and set it running.
@@ -79,6 +152,7 @@ public class Game extends Canvas {
 		this.gameWindow = null; // Will be assigned by the GameWindow via setParent() when the game begins.
 		this.gameSettings = settings;
 		this.scoreStatistics = new Statistics();
+		this.hud = new Hud(scoreStatistics);
 		this.input = input;
 		this.animationSystem = new AnimationSystem();
 		this.screenStack = new ArrayList<>();
@@ -86,16 +160,97 @@ public class Game extends Canvas {
 
 		this.entities = new ArrayList<>();
 		this.removeList = new ArrayList<>();
+		this.entityIndex = new LooseQuadTree<>(0, 0, settings.getWorldWidth(), settings.getWorldHeight(), 5);
+		this.visibleEntities = new ArrayList<>();
+		this.bunkerEntities = new ArrayList<>();
+		this.boundsA = new Rectangle2D.Float();
+		this.boundsB = new Rectangle2D.Float();
+		this.bunkerBounds = new Rectangle2D.Float();
+		this.renderQueue = new RenderQueue();
+		this.java2dBackend = new Java2DRenderBackend();
+
+		this.camera = new Camera(settings.getScreenWidth(), settings.getScreenHeight(), settings.getWorldWidth(), settings.getWorldHeight());
+		this.viewBounds = new Rectangle2D.Float();
 
 		this.alienSwarm = new AlienSwarm();
-		this.starfield = new Starfield(settings.getScreenWidth(), settings.getScreenHeight(), 20, 1000);
-		this.particleSystem = new ParticleSystem(1000, 10);
+		this.bunkers = new ArrayList<>();
+
+		this.tickController = null;
+		this.ships = new ShipEntity[1];
+		this.playerInputs = new int[1];
+		this.pendingTelemetry = new PendingTelemetry();
+		this.telemetryTick = -1;
+		this.random = new SnapshotRandom(settings.getRandomSeed());
+		this.starfield = new Starfield(settings.getScreenWidth(), settings.getScreenHeight(), 20, 1000, random);
+		this.particleSystem = new ParticleSystem(1000, 10, random);
 	}
 
 	public void setParent(GameWindow window) {
 		gameWindow = window;
 	}
 
+	/**
+	 * Record gameplay events to a telemetry writer. The writer is not closed by the game.
+	 *
+	 * @param telemetry The writer to record to, or null to stop recording
+	 */
+	public void setTelemetry(TelemetryWriter telemetry) {
+		this.telemetry = telemetry;
+		if (telemetry != null) telemetry.setRound(roundNumber);
+	}
+
+	/**
+	 * Mark the events recorded from now on as belonging to a tick that may still be rolled back.
+	 * They are held until confirmTelemetry() writes them out or discardTelemetry() drops them.
+	 *
+	 * @param tick The tick being simulated, or -1 to record events straight away again
+	 */
+	public void setTelemetryTick(int tick) {
+		this.telemetryTick = tick;
+	}
+
+	/**
+	 * Write out the held events of every tick up to and including one whose inputs are all known.
+	 *
+	 * @param throughTick The latest tick that can no longer be rolled back
+	 */
+	public void confirmTelemetry(int throughTick) {
+		if (telemetry != null) pendingTelemetry.confirm(throughTick, telemetry);
+	}
+
+	/**
+	 * Drop the held events of every tick from a rolled back tick on. Simulating those ticks
+	 * again records the events that really happened.
+	 *
+	 * @param fromTick The earliest tick that will be simulated again
+	 */
+	public void discardTelemetry(int fromTick) {
+		pendingTelemetry.discard(fromTick);
+	}
+
+	/**
+	 * Hand control of the simulation during gameplay to a tick controller, e.g. a netplay
+	 * session. Must be called before the game begins, since it decides the number of players.
+	 */
+	public void setTickController(TickController controller) {
+		this.tickController = controller;
+
+		int playerCount = (controller != null) ? controller.getPlayerCount() : 1;
+		this.ships = new ShipEntity[playerCount];
+		this.playerInputs = new int[playerCount];
+	}
+
+	/**
+	 * @return The index of the player controlled by this machine's keyboard
+	 */
+	public int getLocalPlayer() {
+		return (tickController != null) ? tickController.getLocalPlayer() : 0;
+	}
+
+	public GameState getState() {
+		return state;
+	}
+
 	public Settings getSettings() {
 		return gameSettings;
 	}
@@ -104,10 +259,22 @@ public class Game extends Canvas {
 		return particleSystem;
 	}
 
+	/**
+	 * Publish the game's current counts to the live metrics. Called by the game loop once per frame.
+	 */
+	public void publishMetrics(GameMetrics metrics) {
+		metrics.recordGauges(state, entities.size(), alienSwarm.count(), particleSystem.getParticleCount(),
+				particleSystem.getMaxParticles(), animationSystem.getAnimationCount(), screenStack.size());
+	}
+
 	public Statistics getScoreStatistics() {
 		return scoreStatistics;
 	}
 
+	public Input getInput() {
+		return input;
+	}
+
 
 	public void init() {
 		// Load fonts
@@ -151,6 +318,10 @@ public class Game extends Canvas {
 	}
 
 	private void enterState(GameState state) {
+		StateTransitionEvent event = new StateTransitionEvent();
+		event.begin();
+
+		GameState prevState = this.state;
 		exitState(this.state);
 		this.state = state;
 
@@ -177,6 +348,16 @@ public class Game extends Canvas {
 				input.waitKey(() -> enterState(GameState.INTRO_ANIMATION));
 				break;
 
+			case GAMEPLAY:
+				if (prevState == GameState.INTRO_ANIMATION) {
+					if (tickController != null) tickController.onRoundStart(this);
+
+					roundNumber++;
+					if (telemetry != null) telemetry.setRound(roundNumber);
+					recordTelemetry(TelemetryFormat.ROUND_START, -1, alienSwarm.count(), ships.length, 0, 0);
+				}
+				break;
+
 			case INTRO_ANIMATION:
 				screenStack.clear();
 
@@ -191,39 +372,12 @@ public class Game extends Canvas {
 				break;
 
 			case PAUSED:
-				final PauseScreen pause = Screens.get().getPauseScreen();
-				openScreen(pause);
-
-				// The pause screen's exit button should close the game.
-				pause.setOnReady(() -> {
-					pause.getResumeButton().setOnClick(() -> {
-						resume();
-					});
-
-					pause.getOptionsButton().setOnClick(() -> {
-						final OptionsScreen options = Screens.get().getOptionsScreen();
-						openScreen(options);
-
-						// Hook up the options menu buttons
-						options.setOnReady(() -> {
-							options.getReturnButton().setOnClick(() -> {
-								closeScreen(options);
-							});
-						});
-					});
-
-					pause.getExitButton().setOnClick(() -> {
-						if (gameWindow != null) {
-							gameWindow.close();
-						} else {
-							System.exit(0);
-						}
-					});
-				});
-
+				openPauseScreen();
 				break;
 
 			case VICTORY:
+				recordTelemetry(TelemetryFormat.ROUND_SCORE, -1, scoreStatistics.getMaxHitCombo(), scoreStatistics.getHitCombo(), 0, 0);
+				recordTelemetry(TelemetryFormat.ROUND_END, -1, 1, alienSwarm.count(), 0, 0);
 				closeAllScreens();
 
 				final VictoryScreen victory = Screens.get().getVictoryScreen();
@@ -241,6 +395,8 @@ public class Game extends Canvas {
 				break;
 
 			case DEFEAT:
+				recordTelemetry(TelemetryFormat.ROUND_SCORE, -1, scoreStatistics.getMaxHitCombo(), scoreStatistics.getHitCombo(), 0, 0);
+				recordTelemetry(TelemetryFormat.ROUND_END, -1, 0, alienSwarm.count(), 0, 0);
 				closeAllScreens();
 
 				final DefeatScreen defeat = Screens.get().getDefeatScreen();
@@ -257,6 +413,13 @@ public class Game extends Canvas {
 				input.waitKey(() -> enterState(GameState.TITLE_SCREEN));
 				break;
 		}
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.fromState = prevState.name();
+			event.toState = state.name();
+			event.commit();
+		}
 	}
 
 	private void exitState(GameState state) {
@@ -283,6 +446,8 @@ public class Game extends Canvas {
 
 		this.screenStack.add(screen);
 		screen.reset();
+
+		recordScreenEvent(screen, ScreenEvent.OPEN);
 	}
 
 	private void closeScreen(Screen screen) {
@@ -294,6 +459,18 @@ public class Game extends Canvas {
 			Screen nextScreen = screenStack.get(screenStack.size()-1);
 			nextScreen.registerInputListeners(input);
 		}
+
+		recordScreenEvent(screen, ScreenEvent.CLOSE);
+	}
+
+	private void recordScreenEvent(Screen screen, String action) {
+		ScreenEvent event = new ScreenEvent();
+		if (event.shouldCommit()) {
+			event.screen = screen.getClass().getSimpleName();
+			event.action = action;
+			event.stackSize = screenStack.size();
+			event.commit();
+		}
 	}
 
 	private void closeAllScreens() {
@@ -302,7 +479,45 @@ public class Game extends Canvas {
 		}
 	}
 
+	/**
+	 * Open the pause screen and hook up its buttons.
+	 */
+	private void openPauseScreen() {
+		final PauseScreen pause = Screens.get().getPauseScreen();
+		openScreen(pause);
+
+		// The pause screen's exit button should close the game.
+		pause.setOnReady(() -> {
+			pause.getResumeButton().setOnClick(() -> {
+				resume();
+			});
+
+			pause.getOptionsButton().setOnClick(() -> {
+				final OptionsScreen options = Screens.get().getOptionsScreen();
+				openScreen(options);
+
+				// Hook up the options menu buttons
+				options.setOnReady(() -> {
+					options.getReturnButton().setOnClick(() -> {
+						closeScreen(options);
+					});
+				});
+			});
+
+			pause.getExitButton().setOnClick(() -> {
+				if (gameWindow != null) {
+					gameWindow.close();
+				} else {
+					System.exit(0);
+				}
+			});
+		});
+	}
+
 	public void pause() {
+		// Other players can't be paused, so there is no pausing in multiplayer games
+		if (tickController != null) return;
+
 		if (state == GameState.GAMEPLAY) {
 			enterState(GameState.PAUSED);
 		}
@@ -319,9 +534,24 @@ public class Game extends Canvas {
 	 * entity will be added to the overall list of entities in the game.
 	 */
 	private void initEntities() {
-		// create the player ship and place it roughly in the center of the screen
-		ship = new ShipEntity(this, Sprites.get().getShipSprite(), 370, 550);
-		entities.add(ship);
+		// The original layout was designed for an 800 pixel wide world, center it in the current one
+		int offsetX = (gameSettings.getWorldWidth() - 800) / 2;
+		int offsetY = gameSettings.getWorldHeight() - 600;
+
+		// create the players' ships and place them side by side roughly in the center of the world
+		if (shipSprites == null || shipSprites.length != ships.length) {
+			shipSprites = new TintedSprite[ships.length];
+			shipSprites[0] = Sprites.get().getShipSprite();
+			for (int p = 1; p < ships.length; p++) {
+				shipSprites[p] = Sprites.get().createShipSprite();
+			}
+		}
+		for (int p = 0; p < ships.length; p++) {
+			float shipX = offsetX + 370 + (p - (ships.length - 1) * 0.5f) * 100;
+			ships[p] = new ShipEntity(this, shipSprites[p], shipX, offsetY+550, p);
+			entities.add(ships[p]);
+		}
+		ship = ships[getLocalPlayer()];
 
 		// Clear the alien swarm (in case there were some alive when the round ended)
 		alienSwarm.clear();
@@ -332,12 +562,198 @@ public class Game extends Canvas {
 				double dist = Math.sqrt((5-row)*(5-row) + (x-5.5)*(x-5.5));
 				double delay = (dist / 7.433);
 
-				Entity alien = new AlienEntity(this, alienSwarm, Sprites.get().getAlienSprite(), 100+(x*50), (50)+row*30, delay);
+				Entity alien = new AlienEntity(this, alienSwarm, Sprites.get().getAlienSprite(), offsetX+100+(x*50), (50)+row*30, delay);
 				entities.add(alien);
 			}
 		}
+
+		// Create a row of bunkers, spaced evenly across the world just above the player
+		bunkers.clear();
+		int bunkerCount = gameSettings.getWorldWidth() / 300;
+		for (int i = 0; i < bunkerCount; i++) {
+			int bunkerWidth = 66;
+			int bunkerHeight = 48;
+			int bunkerX = (int) ((i + 0.5f) * gameSettings.getWorldWidth() / bunkerCount) - bunkerWidth / 2;
+			int bunkerY = (int) ship.getY() - 100;
+			bunkers.add(new Bunker(bunkerX, bunkerY, bunkerWidth, bunkerHeight, new Color(32, 220, 64)));
+		}
+
+		// Start with the camera looking at the player
+		camera.centerOn(ship.getX() + ship.getWidth() * 0.5f, ship.getY() + ship.getHeight() * 0.5f);
+		rebuildEntityIndex();
+	}
+
+	/**
+	 * Rebuild the spatial index of entities from their current positions.
+	 * Entities that are not PhysicsEntities have no bounds, and are not indexed.
+	 */
+	private void rebuildEntityIndex() {
+		entityIndex.clear();
+		for (int i = 0; i < entities.size(); i++) {
+			Entity entity = entities.get(i);
+			if (entity instanceof PhysicsEntity) {
+				((PhysicsEntity) entity).getBounds(boundsA);
+				entityIndex.insert(entity, boundsA);
+			}
+		}
+	}
+
+	/**
+	 * Find all entities whose bounds intersect a region of the world, as of the
+	 * last update. Results are appended to the list in the order the entities were added.
+	 *
+	 * @param region The region of the world to search
+	 * @param result The list that will receive the entities found
+	 */
+	public void getEntitiesInRegion(Rectangle2D.Float region, List<Entity> result) {
+		entityIndex.query(region, result);
 	}
 	
+	/**
+	 * Write the simulation state of the game to a buffer. Does not allocate.
+	 * See GameSnapshot for the layout.
+	 *
+	 * @throws IllegalStateException If the game is not in play (intro animation, gameplay or paused)
+	 */
+	void writeSnapshot(ByteBuffer out) {
+		if (state != GameState.INTRO_ANIMATION && state != GameState.GAMEPLAY && state != GameState.PAUSED) {
+			throw new IllegalStateException("Cannot capture a snapshot in state " + state);
+		}
+
+		out.putInt(GameSnapshot.MAGIC);
+		out.putShort(GameSnapshot.VERSION);
+		out.put((byte) state.ordinal());
+		out.putFloat(moveSpeed);
+
+		out.putInt(entities.size());
+		for (int i = 0; i < entities.size(); i++) {
+			Entity entity = entities.get(i);
+			if (entity instanceof ShipEntity) {
+				out.put(GameSnapshot.ENTITY_SHIP);
+				out.put((byte) ((ShipEntity) entity).getPlayer());
+			} else if (entity instanceof AlienEntity) {
+				out.put(GameSnapshot.ENTITY_ALIEN);
+			} else if (entity instanceof ShotEntity) {
+				out.put(GameSnapshot.ENTITY_SHOT);
+			} else {
+				throw new IllegalStateException("Cannot capture entity " + entity);
+			}
+			((PhysicsEntity) entity).writeState(out);
+		}
+
+		alienSwarm.writeState(out);
+
+		out.putInt(bunkers.size());
+		for (int i = 0; i < bunkers.size(); i++) {
+			Bunker bunker = bunkers.get(i);
+			out.putInt(bunker.getX());
+			out.putInt(bunker.getY());
+			out.putInt(bunker.getWidth());
+			out.putInt(bunker.getHeight());
+			out.putInt(bunker.getColorRGB());
+			bunker.writeState(out);
+		}
+
+		scoreStatistics.writeState(out);
+		particleSystem.writeState(out);
+		random.writeState(out);
+	}
+
+	/**
+	 * Replace the simulation state of the game with state read from a buffer
+	 * written by writeSnapshot(). Any open screens are closed, and a snapshot of a
+	 * paused game opens the pause screen again.
+	 *
+	 * @throws IllegalArgumentException If the buffer does not hold a snapshot of the current version
+	 */
+	void readSnapshot(ByteBuffer in) {
+		if (in.getInt() != GameSnapshot.MAGIC) {
+			throw new IllegalArgumentException("Not a game snapshot");
+		}
+		short version = in.getShort();
+		if (version != GameSnapshot.VERSION) {
+			throw new IllegalArgumentException("Unsupported snapshot version " + version);
+		}
+
+		GameState snapshotState = GameState.values()[in.get()];
+		moveSpeed = in.getFloat();
+
+		// Leave whatever state we were in without running its transitions
+		boolean stateChanged = (state != snapshotState);
+		if (stateChanged) {
+			closeAllScreens();
+			input.stopWaitKey();
+		}
+		this.state = snapshotState;
+
+		entities.clear();
+		removeList.clear();
+		alienSwarm.clear();
+		for (int p = 0; p < ships.length; p++) {
+			ships[p] = null;
+		}
+
+		int entityCount = in.getInt();
+		for (int i = 0; i < entityCount; i++) {
+			PhysicsEntity entity;
+			byte type = in.get();
+			switch (type) {
+				case GameSnapshot.ENTITY_SHIP:
+					int player = in.get();
+					ships[player] = new ShipEntity(this, shipSprites[player], 0, 0, player);
+					entity = ships[player];
+					break;
+				case GameSnapshot.ENTITY_ALIEN:
+					entity = new AlienEntity(this, alienSwarm, Sprites.get().getAlienSprite(), 0, 0, 0);
+					break;
+				case GameSnapshot.ENTITY_SHOT:
+					entity = new ShotEntity(this, Sprites.get().getShotSprite(), 0, 0);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown entity type " + type);
+			}
+			entity.readState(in);
+			entities.add(entity);
+		}
+		ship = ships[getLocalPlayer()];
+
+		alienSwarm.readState(in);
+
+		bunkers.clear();
+		int bunkerCount = in.getInt();
+		for (int i = 0; i < bunkerCount; i++) {
+			int x = in.getInt();
+			int y = in.getInt();
+			int width = in.getInt();
+			int height = in.getInt();
+			Color color = new Color(in.getInt(), true);
+
+			Bunker bunker = new Bunker(x, y, width, height, color);
+			bunker.readState(in);
+			bunkers.add(bunker);
+		}
+
+		scoreStatistics.readState(in, entities);
+		particleSystem.readState(in);
+		random.readState(in);
+
+		// Restart the animations that belong to the simulation
+		animationSystem.clear();
+		if (state == GameState.INTRO_ANIMATION) {
+			alienSwarm.resumeSpawning(animationSystem);
+			animationSystem.awaitFinish(() -> {
+				enterState(GameState.GAMEPLAY);
+			});
+		}
+
+		// A game paused in the snapshot needs its pause screen back
+		if (state == GameState.PAUSED && stateChanged) {
+			openPauseScreen();
+		}
+
+		rebuildEntityIndex();
+	}
+
 	/**
 	 * Remove an entity from the game. The entity removed will
 	 * no longer move or be drawn.
@@ -349,25 +765,64 @@ public class Game extends Canvas {
 	}
 
 	/**
-	 * Notification that the player has fired a shot.
+	 * Notification that a player has fired a shot.
 	 */
-	public void notifyPlayerShoot(ShotEntity shot) {
+	public void notifyPlayerShoot(ShipEntity ship, ShotEntity shot) {
 		scoreStatistics.trackShotFired(shot);
+		recordTelemetry(TelemetryFormat.SHOT_FIRED, ship.getPlayer(), shot.getShotIndex(), 0, shot.getX(), shot.getY());
 	}
 
 	/**
 	 * Notification that a shot fired by the player has missed and gone off the top of the screen.
 	 */
 	public void notifyShotMissed(ShotEntity shot) {
+		int combo = scoreStatistics.getHitCombo();
+		scoreStatistics.trackShotMissed(shot);
+		recordTelemetry(TelemetryFormat.SHOT_MISSED, -1, shot.getShotIndex(), 0, shot.getX(), shot.getY());
+		recordComboBreak(combo);
+	}
+
+	/**
+	 * Notification that a shot fired by the player was stopped by a bunker.
+	 * This counts as a miss, since no alien was hit.
+	 */
+	public void notifyShotBlocked(ShotEntity shot) {
+		int combo = scoreStatistics.getHitCombo();
 		scoreStatistics.trackShotMissed(shot);
+		particleSystem.spawnBulletHit(shot.getX() + 6, shot.getY());
+		recordTelemetry(TelemetryFormat.SHOT_BLOCKED, -1, shot.getShotIndex(), 0, shot.getX(), shot.getY());
+		recordComboBreak(combo);
 	}
 
 	/**
 	 * Notification that a shot fired by the player has hit a valid target.
 	 */
 	public void notifyShotHit(ShotEntity shot) {
+		int combo = scoreStatistics.getHitCombo();
 		scoreStatistics.trackShotHit(shot);
 		particleSystem.spawnBulletHit(shot.getX() + 6, shot.getY() - 6);
+		recordTelemetry(TelemetryFormat.SHOT_HIT, -1, shot.getShotIndex(), scoreStatistics.getHitCombo(), shot.getX(), shot.getY());
+		recordComboBreak(combo);
+	}
+
+	/**
+	 * Records a combo break if the combo was reset since it was last checked.
+	 * Shots are confirmed in order, so a hit can also reveal an earlier miss.
+	 */
+	private void recordComboBreak(int comboBefore) {
+		if (comboBefore > 0 && scoreStatistics.getHitCombo() < comboBefore) {
+			recordTelemetry(TelemetryFormat.COMBO_BREAK, -1, comboBefore, 0, 0, 0);
+		}
+	}
+
+	private void recordTelemetry(short type, int player, int a, int b, float x, float y) {
+		if (telemetry == null) return;
+
+		if (telemetryTick >= 0) {
+			pendingTelemetry.add(telemetryTick, System.nanoTime(), type, player, a, b, x, y);
+		} else {
+			telemetry.record(type, player, a, b, x, y);
+		}
 	}
 
 	/**
@@ -385,6 +840,7 @@ public class Game extends Canvas {
 		float x = alien.getX() + alien.getWidth() * 0.5f;
 		float y = alien.getY() + alien.getHeight() * 0.5f;
 		particleSystem.spawnDeadAlien(x, y, alien.getVelocityX());
+		recordTelemetry(TelemetryFormat.ALIEN_KILLED, -1, alienSwarm.count(), 0, x, y);
 
 		// If there are still some aliens left then they all need to get faster, so
 		// speed up all the existing aliens
@@ -411,11 +867,11 @@ public class Game extends Canvas {
 	}
 	
 	/**
-	 * Attempt to fire a shot from the player. Its called "try"
+	 * Attempt to fire a shot from a player's ship. Its called "try"
 	 * since we must first check that the player can fire at this 
 	 * point, i.e. has he/she waited long enough between shots
 	 */
-	public void tryToFire() {
+	public void tryToFire(ShipEntity ship) {
 		// Check that we been have waiting long enough to fire
 		if (ship.canShoot()) {
 			// If we waited long enough, create the shot entity, and record the time.
@@ -424,7 +880,7 @@ public class Game extends Canvas {
 
 			ship.resetShotTimer();
 
-			notifyPlayerShoot(shot);
+			notifyPlayerShoot(ship, shot);
 		}
 	}
 
@@ -439,6 +895,7 @@ public class Game extends Canvas {
 	 * <p>
 	 */
 	public void update(long deltaMs) {
+		Tracer.begin("Game.update");
 
 		// Allows the input system's wait key callback to run synchronously with the main thread.
 		input.checkCallbacks();
@@ -451,71 +908,134 @@ public class Game extends Canvas {
 			}
 		}
 
+		if (tickController != null) {
+			// The tick controller decides how many ticks to simulate, and with which inputs
+			SubsystemUpdateEvent tickEvent = SubsystemUpdateEvent.start();
+			tickController.advance(this, deltaMs);
+			tickEvent.finish(SubsystemUpdateEvent.TICK);
+		} else {
+			playerInputs[getLocalPlayer()] = PlayerInput.read(input);
+			simulate(deltaMs, playerInputs);
+		}
+
+		// Index the entities at their new positions
+		SubsystemUpdateEvent indexEvent = SubsystemUpdateEvent.start();
+		rebuildEntityIndex();
+		indexEvent.finish(SubsystemUpdateEvent.ENTITY_INDEX);
+
+		// Keep the player's ship in view
+		camera.follow(ship.getX() + ship.getWidth() * 0.5f, ship.getY() + ship.getHeight() * 0.5f, deltaMs);
+
+		// Update animation system
+		SubsystemUpdateEvent animationEvent = SubsystemUpdateEvent.start();
+		Tracer.begin("AnimationSystem.update");
+		animationSystem.update(deltaMs);
+		Tracer.end();
+		animationEvent.finish(SubsystemUpdateEvent.ANIMATIONS);
+
+		// Update star field twinkle
+		SubsystemUpdateEvent starfieldEvent = SubsystemUpdateEvent.start();
+		starfield.update(deltaMs);
+		starfieldEvent.finish(SubsystemUpdateEvent.STARFIELD);
+
+		// Let the telemetry writer hand off events that have been waiting a while
+		if (telemetry != null) telemetry.update();
+
+		// if escape is pressed, pause/unpause the game
+		if (input.wasEscapePressed()) {
+			if (state == GameState.GAMEPLAY) pause();
+			else if (state == GameState.PAUSED) resume();
+		}
+
+		// Giving up is only possible alone, since other players would not see it happen
+		if (input.wasEnterPressed() && state == GameState.GAMEPLAY && tickController == null) {
+			enterState(GameState.DEFEAT);
+		}
+
+		Tracer.end();
+	}
+
+	/**
+	 * Advance the simulation by one tick. This is the lean part of update() that does
+	 * not depend on the local keyboard, the screens, or the presentation, so that a
+	 * TickController can call it several times per frame to re-simulate past ticks.
+	 *
+	 * @param deltaMs The length of the tick in milliseconds
+	 * @param inputs The packed PlayerInput of each player for this tick
+	 */
+	public void simulate(long deltaMs, int[] inputs) {
 		// Update all entities
 		if (state == GameState.GAMEPLAY || state == GameState.VICTORY || state == GameState.DEFEAT) {
+			SubsystemUpdateEvent entityEvent = SubsystemUpdateEvent.start();
 			for (int i = 0; i < entities.size(); i++) {
 				Entity entity = (Entity) entities.get(i);
 				entity.updateLogic(deltaMs);
 				entity.updateAnimation(deltaMs);
 			}
+			entityEvent.finish(SubsystemUpdateEvent.ENTITIES);
 
 			// Update the alien swarm
+			SubsystemUpdateEvent swarmEvent = SubsystemUpdateEvent.start();
 			alienSwarm.update();
+			swarmEvent.finish(SubsystemUpdateEvent.SWARM);
 
 			// Update particles
+			SubsystemUpdateEvent particleEvent = SubsystemUpdateEvent.start();
+			Tracer.begin("ParticleSystem.update");
 			particleSystem.update(deltaMs);
+			Tracer.end();
+			particleEvent.finish(SubsystemUpdateEvent.PARTICLES);
 
 			// Do collision checks
+			SubsystemUpdateEvent collisionEvent = SubsystemUpdateEvent.start();
+			Tracer.begin("Game.doCollisions");
 			doCollisions();
+			Tracer.end();
+			collisionEvent.finish(SubsystemUpdateEvent.COLLISIONS);
 
 		} else if (state == GameState.PAUSED) {
 
+			SubsystemUpdateEvent entityEvent = SubsystemUpdateEvent.start();
 			for (int i = 0; i < entities.size(); i++) {
 				Entity entity = (Entity) entities.get(i);
 				entity.updateAnimation(deltaMs);
 			}
+			entityEvent.finish(SubsystemUpdateEvent.ENTITIES);
 
 			// Update particles
+			SubsystemUpdateEvent particleEvent = SubsystemUpdateEvent.start();
+			Tracer.begin("ParticleSystem.update");
 			particleSystem.update(deltaMs);
+			Tracer.end();
+			particleEvent.finish(SubsystemUpdateEvent.PARTICLES);
 
 		}
 
 		if (state == GameState.GAMEPLAY) {
-			// resolve the movement of the ship. First assume the ship
-			// isn't moving. If either cursor key is pressed then
-			// update the movement appropriately
-			ship.setVelocityX(0);
-			if (input.isLeftPressed() && !input.isRightPressed()) {
-				ship.setVelocityX(-moveSpeed);
-			} else if (input.isRightPressed() && !input.isLeftPressed()) {
-				ship.setVelocityX(moveSpeed);
-			}
+			for (int p = 0; p < ships.length; p++) {
+				ShipEntity ship = ships[p];
+				int buttons = inputs[p];
+
+				// resolve the movement of the ship. First assume the ship
+				// isn't moving. If either cursor key is pressed then
+				// update the movement appropriately
+				ship.setVelocityX(0);
+				if (PlayerInput.isLeft(buttons) && !PlayerInput.isRight(buttons)) {
+					ship.setVelocityX(-moveSpeed);
+				} else if (PlayerInput.isRight(buttons) && !PlayerInput.isLeft(buttons)) {
+					ship.setVelocityX(moveSpeed);
+				}
 
-			// if we're pressing fire, attempt to fire
-			if (input.isFirePressed()) {
-				tryToFire();
+				// if we're pressing fire, attempt to fire
+				if (PlayerInput.isFire(buttons)) {
+					tryToFire(ship);
+				}
 			}
 		}
 
 		// Remove any entity that has been marked for clean up
 		entities.removeAll(removeList);
 		removeList.clear();
-
-		// Update animation system
-		animationSystem.update(deltaMs);
-
-		// Update star field twinkle
-		starfield.update(deltaMs);
-
-		// if escape is pressed, pause/unpause the game
-		if (input.wasEscapePressed()) {
-			if (state == GameState.GAMEPLAY) pause();
-			else if (state == GameState.PAUSED) resume();
-		}
-
-		if (input.wasEnterPressed() && state == GameState.GAMEPLAY) {
-			enterState(GameState.DEFEAT);
-		}
 	}
 
 	private void doCollisions() {
@@ -523,9 +1043,6 @@ public class Game extends Canvas {
 		// every other entity. If any of them collide notify
 		// both entities that the collision has occurred
 
-		Rectangle2D.Float boundsA = new Rectangle2D.Float();
-		Rectangle2D.Float boundsB = new Rectangle2D.Float();
-
 		for (int i = 0; i < entities.size(); i++) {
 			for (int j = i+1; j < entities.size(); j++) {
 				Entity entityA = (Entity) entities.get(i);
@@ -545,6 +1062,41 @@ public class Game extends Canvas {
 				}
 			}
 		}
+
+		// Bunkers are tested pixel-by-pixel against their collision mask, but only
+		// for entities whose bounds overlap the bunker in the first place. The index
+		// still holds the positions from before this tick's movement, so refresh it.
+		rebuildEntityIndex();
+
+		for (int b = 0; b < bunkers.size(); b++) {
+			Bunker bunker = bunkers.get(b);
+			bunker.getBounds(bunkerBounds);
+
+			bunkerEntities.clear();
+			entityIndex.query(bunkerBounds, bunkerEntities);
+
+			for (int i = 0; i < bunkerEntities.size(); i++) {
+				Entity entity = bunkerEntities.get(i);
+
+				if (entity instanceof ShotEntity) {
+					ShotEntity shot = (ShotEntity) entity;
+					if (shot.isUsed()) continue;
+
+					shot.getBounds(boundsA);
+					if (boundsA.intersects(bunkerBounds) && bunker.collides(boundsA)) {
+						shot.onBunkerCollision(bunker);
+					}
+				} else if (entity instanceof AlienEntity) {
+					// Aliens that reach the bunkers chew straight through them
+					AlienEntity alien = (AlienEntity) entity;
+
+					alien.getBounds(boundsA);
+					if (boundsA.intersects(bunkerBounds)) {
+						bunker.erase(boundsA);
+					}
+				}
+			}
+		}
 	}
 
 	private AnimatedText[] textLines = new AnimatedText[2];
@@ -557,17 +1109,53 @@ public class Game extends Canvas {
 	 * <p>
 	 */
 	public void render(Graphics2D g) {
+		java2dBackend.begin(g);
+		render(java2dBackend);
+	}
+
+	/**
+	 * Draw a frame through a render backend.
+	 */
+	public void render(RenderBackend backend) {
+		Tracer.begin("Game.render");
+
 		// Render star field
-		starfield.render(g);
+		starfield.setViewOffset(camera.getOffsetX());
+		Tracer.begin("Starfield.render");
+		starfield.render(backend);
+		Tracer.end();
+
+		// Switch to world coordinates
+		camera.apply(backend);
+		camera.getViewBounds(viewBounds);
 
 		// Render particles behind entities
-		particleSystem.render(g);
+		Tracer.begin("ParticleSystem.render");
+		particleSystem.render(backend, viewBounds);
+		Tracer.end();
+
+		// Render the bunkers that are in view
+		for (int i = 0; i < bunkers.size(); i++) {
+			Bunker bunker = bunkers.get(i);
+			if (bunker.getX() < viewBounds.x + viewBounds.width && bunker.getX() + bunker.getWidth() > viewBounds.x) {
+				BunkerRenderer.get().render(backend, bunker);
+			}
+		}
 
-		// cycle round drawing all the entities we have in the game
-		for (int i = 0; i < entities.size(); i++) {
-			Entity entity = (Entity) entities.get(i);
-			entity.render(g);
+		// cycle round drawing all the visible entities we have in the game
+		Tracer.begin("Entities.render");
+		visibleEntities.clear();
+		entityIndex.query(viewBounds, visibleEntities);
+		for (int i = 0; i < visibleEntities.size(); i++) {
+			Entity entity = visibleEntities.get(i);
+			entity.enqueue(renderQueue);
 		}
+		visibleEntities.clear();
+		renderQueue.flush(backend);
+		Tracer.end();
+
+		// Back to screen coordinates for the user interface
+		backend.translate(camera.getOffsetX(), camera.getOffsetY());
 
 		// Render all visible screens
 		if (screenStack.size() > 0) {
@@ -581,37 +1169,31 @@ public class Game extends Canvas {
 			for (int i = firstVisibleScreenIndex; i < screenStack.size(); i++) {
 				Screen screen = screenStack.get(i);
 				if (!screen.isReady()) {
-					screen.onShow(g, input, animationSystem);
+					screen.onShow(input, animationSystem);
 				}
-				screen.render(g);
+				Tracer.begin(screen.getClass().getSimpleName());
+				screen.render(backend);
+				Tracer.end();
 			}
 		}
 
 		// Render statistics
 		if (state == GameState.GAMEPLAY || state == GameState.PAUSED) {
-			g.setFont(Fonts.get().getSmallFont());
-			g.setColor(Color.white);
-			g.drawString("Fired:", 650, 25);
-			g.drawString("Hit:", 650, 45);
-			g.drawString("Accuracy:", 650, 65);
-			g.drawString("Combo:", 650, 85);
-			g.drawString("" + scoreStatistics.getShotsFired(), 750, 26);
-			g.drawString("" + scoreStatistics.getShotsHit(), 750, 46);
-			g.drawString("" + Math.round(scoreStatistics.getAccuracy() * 100f) + "%", 750, 66);
-			g.drawString("" + scoreStatistics.getHitCombo(), 750, 86);
+			hud.render(backend);
 		}
 
 		if (gameSettings.getShowDebugInfo()) {
 			// Render FPS counter
+			Font font = Fonts.get().getSmallFont();
 			if (gameWindow != null) {
-				g.setFont(Fonts.get().getSmallFont());
-				g.setColor(Color.white);
 				int fps = (int) (gameWindow.getAverageFrameRate());
-				g.drawString("FPS: " + fps, 5, 20);
+				backend.drawText("FPS: " + fps, font, 5, 20, Color.WHITE.getRGB());
 			}
 
-			g.drawString("State: " + state, 5, 40);
+			backend.drawText("State: " + state, font, 5, 40, Color.WHITE.getRGB());
 		}
+
+		Tracer.end();
 	}
 
 }
@@ -0,0 +1,124 @@
+package com.gpergrossi.spaceinvaders.game;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A reusable snapshot of the simulation state of a Game, stored in a compact binary layout.
+ *
+ * A snapshot holds everything needed to resume play from the moment it was captured:
+ * the game state, every entity, the alien swarm, the bunkers, the scoring statistics
+ * (including shots still in flight), the particle system, and the seed and state of the
+ * random numbers the stars and particles are drawn from. A game can be captured during
+ * the intro animation, gameplay, or while paused. User interface screens and the star
+ * field itself are not part of the simulation and are not captured; restoring a paused
+ * game opens the pause screen again.
+ *
+ * The buffer is allocated once and reused by every capture, and capturing does not
+ * allocate, so a snapshot can be taken every loop. Restoring recreates entities and
+ * particles and is allowed to allocate.
+ *
+ * Layout (all values big-endian):
+ * <pre>
+ *   int    MAGIC
+ *   short  VERSION
+ *   byte   game state (GameState ordinal)
+ *   float  player move speed
+ *   int    entity count, then for each entity:
+ *            byte  entity type (SHIP, ALIEN or SHOT)
+ *            byte  player index (SHIP only)
+ *            ...   the entity's own state
+ *   ...    alien swarm state
+ *   int    bunker count, then for each bunker:
+ *            int x, int y, int width, int height, int color, then its collision mask
+ *   ...    statistics state
+ *   ...    particle system state
+ *   long   random seed
+ *   long   random state
+ * </pre>
+ */
+public class GameSnapshot {
+
+    /** Identifies a buffer as a game snapshot ("SINV") */
+    public static final int MAGIC = 0x53494E56;
+
+    /** Incremented whenever the layout changes. Snapshots from other versions are rejected. */
+    public static final short VERSION = 4;
+
+    /** Enough room for the full particle budget plus a generous number of entities */
+    public static final int DEFAULT_CAPACITY = 128 * 1024;
+
+    /** Entity type tags */
+    static final byte ENTITY_SHIP = 1;
+    static final byte ENTITY_ALIEN = 2;
+    static final byte ENTITY_SHOT = 3;
+
+    private ByteBuffer buffer;
+
+    public GameSnapshot() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public GameSnapshot(int capacity) {
+        this.buffer = ByteBuffer.allocate(capacity);
+        this.buffer.limit(0);
+    }
+
+    /**
+     * Capture the current state of a game, replacing any previous contents of this snapshot.
+     *
+     * @param game The game to capture
+     * @throws IllegalStateException If the game is not in a state that can be captured
+     * @throws java.nio.BufferOverflowException If the snapshot's capacity is too small
+     */
+    public void capture(Game game) {
+        buffer.clear();
+        game.writeSnapshot(buffer);
+        buffer.flip();
+    }
+
+    /**
+     * Return a game to the state held by this snapshot.
+     *
+     * @param game The game to restore
+     * @throws IllegalStateException If this snapshot is empty
+     * @throws IllegalArgumentException If this snapshot was written by a different version
+     */
+    public void restore(Game game) {
+        if (isEmpty()) throw new IllegalStateException("Snapshot is empty!");
+
+        buffer.rewind();
+        game.readSnapshot(buffer);
+        buffer.rewind();
+    }
+
+    /**
+     * Copy the contents of another snapshot into this one, e.g. to keep a save state.
+     */
+    public void copyFrom(GameSnapshot other) {
+        buffer.clear();
+        buffer.put(other.buffer.duplicate().rewind());
+        buffer.flip();
+    }
+
+    /**
+     * @return True if nothing has been captured yet
+     */
+    public boolean isEmpty() {
+        return buffer.limit() == 0;
+    }
+
+    /**
+     * @return The size of the captured state in bytes
+     */
+    public int size() {
+        return buffer.limit();
+    }
+
+    /**
+     * @return A read-only view of the captured bytes, e.g. for writing to a file
+     */
+    public ByteBuffer asReadOnlyBuffer() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+}
@@ -1,5 +1,9 @@
 package com.gpergrossi.spaceinvaders.game;
 
+import com.gpergrossi.spaceinvaders.diagnostics.FrameEvent;
+import com.gpergrossi.spaceinvaders.diagnostics.GameMetrics;
+import com.gpergrossi.spaceinvaders.diagnostics.Tracer;
+
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.WindowAdapter;
@@ -16,10 +20,10 @@ import java.awt.image.BufferStrategy;
  */
 public class GameWindow extends Canvas {
 
-    /** Width of the display area */
+    /** Width the game is drawn at, the window starts out this size but can be resized */
     private int width;
 
-    /** Height of the display area */
+    /** Height the game is drawn at, the window starts out this size but can be resized */
     private int height;
 
     /** True if the game is open and should still be running, false if not and the window should close. */
@@ -37,6 +41,9 @@ public class GameWindow extends Canvas {
     /** The strategy that allows us to use accelerate page flipping */
     private BufferStrategy strategy;
 
+    /** Draws each frame through the renderer chosen in the settings */
+    private FrameRenderer frameRenderer;
+
     private final double targetFPS = 60.0;
     private final int targetFrameTimeMs = (int) (1000 / targetFPS);
     private final long targetFrameTimeNs = (long) (1000000000L / targetFPS);
@@ -48,6 +55,12 @@ public class GameWindow extends Canvas {
     /** Tracks the FPS of the game */
     private double averageFrameRate = targetFPS; // Initial estimate so the rolling average starts somewhere other than 0.
 
+    /** Live metrics published over JMX, or null */
+    private GameMetrics metrics;
+
+    /** The number of frames that have begun, reported to Flight Recorder */
+    private long frameNumber;
+
     /**
      * Construct our game and set it running.
      */
@@ -64,11 +77,10 @@ public class GameWindow extends Canvas {
         // get hold the content of the frame and set up the resolution of the game
         JPanel panel = (JPanel) window.getContentPane();
         panel.setPreferredSize(new Dimension(width,height));
-        panel.setLayout(null);
+        panel.setLayout(new BorderLayout());
 
-        // setup our canvas size and put it into the content of the frame
-        setBounds(0,0,width,height);
-        panel.add(this);
+        // put our canvas into the content of the frame, it fills the frame as the window is resized
+        panel.add(this, BorderLayout.CENTER);
 
         // Tell AWT not to bother repainting our canvas since we're
         // going to do that our self in accelerated mode
@@ -76,7 +88,7 @@ public class GameWindow extends Canvas {
 
         // finally make the window visible
         window.pack();
-        window.setResizable(false);
+        window.setResizable(true);
         window.setVisible(true);
 
         // add a listener to respond to the user closing the window. If they
@@ -103,16 +115,20 @@ public class GameWindow extends Canvas {
         createBufferStrategy(2);
         strategy = getBufferStrategy();
 
+        frameRenderer = new FrameRenderer(game.getSettings(), width, height);
+
         this.game.setParent(this);
     }
 
     public void start() {
         lastLoopTimeMs = System.currentTimeMillis();
-        lastLoopTimeNs = System.nanoTime();
 
         // Main game loop
         game.init();
 
+        // Taken after init(), so that loading assets does not count toward the first frame
+        lastLoopTimeNs = System.nanoTime();
+
         this.running = true;
         while (running) {
 
@@ -122,6 +138,7 @@ public class GameWindow extends Canvas {
             long deltaMs = targetFrameTimeMs; //System.currentTimeMillis() - lastLoopTimeMs;
 
             // Record the starting time for this loop
+            long previousLoopTimeNs = lastLoopTimeNs;
             lastLoopTimeMs = System.currentTimeMillis();
             lastLoopTimeNs = System.nanoTime();
 
@@ -134,26 +151,48 @@ public class GameWindow extends Canvas {
                 averageFrameRate = averageFrameRate * 0.95 + frameRate * 0.05;
             }
 
+            // Flight Recorder only pays attention to this if the frame event is enabled
+            FrameEvent frameEvent = new FrameEvent();
+            frameEvent.begin();
+            frameNumber++;
+            Tracer.begin("Frame");
+
             // Update the game state
             game.update(deltaMs);
+            long updateEndNs = System.nanoTime();
 
             // Get hold of a graphics context for the accelerated surface
             Graphics2D g = (Graphics2D) strategy.getDrawGraphics();
 
-            // Tell the graphics system to draw with anti-aliasing (for smooth font rendering)
-            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
-
-            // Clear the screen
-            g.setColor(Color.black);
-            g.fillRect(0, 0, width, height);
-
-            // Render the game
-            game.render(g);
+            // Render the game, scaled to fit the canvas at whatever size the window is now
+            frameRenderer.render(game, g, getWidth(), getHeight());
+            input.setView(frameRenderer.getViewX(), frameRenderer.getViewY(), frameRenderer.getViewScale());
+            long renderEndNs = System.nanoTime();
 
             // Finally, we've completed drawing so clear up the graphics and flip the buffer over
             g.dispose();
+            Tracer.begin("Present");
             strategy.show();
+            Tracer.end();
+            long presentEndNs = System.nanoTime();
+            Tracer.end();
+
+            frameEvent.end();
+            if (frameEvent.shouldCommit()) {
+                frameEvent.frame = frameNumber;
+                frameEvent.state = game.getState().name();
+                frameEvent.updateTime = updateEndNs - lastLoopTimeNs;
+                frameEvent.renderTime = renderEndNs - updateEndNs;
+                frameEvent.presentTime = presentEndNs - renderEndNs;
+                frameEvent.commit();
+            }
+
+            // Frame time is measured between the starts of consecutive loops, so it includes the wait
+            if (metrics != null) {
+                metrics.recordFrame(updateEndNs - lastLoopTimeNs, renderEndNs - updateEndNs,
+                        presentEndNs - renderEndNs, lastLoopTimeNs - previousLoopTimeNs);
+                game.publishMetrics(metrics);
+            }
 
             // Pause now to give the CPU a rest and hold steady the target FPS.
             while (true) {
@@ -180,6 +219,13 @@ public class GameWindow extends Canvas {
         this.running = false;
     }
 
+    /**
+     * Publish live metrics from the game loop. Must be called before start().
+     */
+    public void setMetrics(GameMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     public double getAverageFrameRate() {
         return averageFrameRate;
     }
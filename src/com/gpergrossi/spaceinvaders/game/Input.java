@@ -59,6 +59,10 @@ public class Input {
     /** True if the enter key is currently locked, meaning it won't register again until it is released */
     private boolean enterLocked;
 
+    /** Where the game is shown in the window, mouse events are moved and scaled from there into game coordinates */
+    private volatile int viewX, viewY;
+    private volatile double viewScale = 1.0;
+
 
     public Input() {
         keyListeners = new ArrayList<>();
@@ -70,6 +74,38 @@ public class Input {
     }
 
 
+    /**
+     * Set where the game is shown in the window, so that mouse events can be given to the game in its own coordinates.
+     *
+     * @param x The left edge of the game in the window
+     * @param y The top edge of the game in the window
+     * @param scale How many window pixels each game pixel covers
+     */
+    public void setView(int x, int y, double scale) {
+        this.viewX = x;
+        this.viewY = y;
+        this.viewScale = scale;
+    }
+
+    /** Move a mouse event from window coordinates into game coordinates */
+    private MouseEvent toGame(MouseEvent e) {
+        int x = viewX, y = viewY;
+        double scale = viewScale;
+        if ((x == 0 && y == 0 && scale == 1.0) || scale <= 0) return e;
+
+        int gameX = (int) Math.floor((e.getX() - x) / scale);
+        int gameY = (int) Math.floor((e.getY() - y) / scale);
+        if (e instanceof MouseWheelEvent) {
+            MouseWheelEvent wheel = (MouseWheelEvent) e;
+            return new MouseWheelEvent(wheel.getComponent(), wheel.getID(), wheel.getWhen(), wheel.getModifiersEx(),
+                    gameX, gameY, wheel.getXOnScreen(), wheel.getYOnScreen(), wheel.getClickCount(),
+                    wheel.isPopupTrigger(), wheel.getScrollType(), wheel.getScrollAmount(), wheel.getWheelRotation(),
+                    wheel.getPreciseWheelRotation());
+        }
+        return new MouseEvent(e.getComponent(), e.getID(), e.getWhen(), e.getModifiersEx(), gameX, gameY,
+                e.getXOnScreen(), e.getYOnScreen(), e.getClickCount(), e.isPopupTrigger(), e.getButton());
+    }
+
     /** Resets the state of the input flags, does NOT affect registered listeners. */
     public void reset() {
         waitingForKeyPress = false;
@@ -246,7 +282,8 @@ public class Input {
     public MouseListener getMouseListener() {
         return new MouseAdapter() {
             @Override
-            public void mousePressed(MouseEvent e) {
+            public void mousePressed(MouseEvent event) {
+                MouseEvent e = toGame(event);
 
                 // This needs to be thread-safe in case an event comes through
                 // while the main thread is adding/removing listeners.
@@ -259,7 +296,8 @@ public class Input {
             }
 
             @Override
-            public void mouseReleased(MouseEvent e) {
+            public void mouseReleased(MouseEvent event) {
+                MouseEvent e = toGame(event);
 
                 // This needs to be thread-safe in case an event comes through
                 // while the main thread is adding/removing listeners.
@@ -272,7 +310,8 @@ public class Input {
             }
 
             @Override
-            public void mouseClicked(MouseEvent e) {
+            public void mouseClicked(MouseEvent event) {
+                MouseEvent e = toGame(event);
 
                 // This needs to be thread-safe in case an event comes through
                 // while the main thread is adding/removing listeners.
@@ -289,7 +328,8 @@ public class Input {
     public MouseMotionListener getMouseMotionListener() {
         return new MouseAdapter() {
             @Override
-            public void mouseMoved(MouseEvent e) {
+            public void mouseMoved(MouseEvent event) {
+                MouseEvent e = toGame(event);
 
                 // This needs to be thread-safe in case an event comes through
                 // while the main thread is adding/removing listeners.
@@ -302,7 +342,8 @@ public class Input {
             }
 
             @Override
-            public void mouseDragged(MouseEvent e) {
+            public void mouseDragged(MouseEvent event) {
+                MouseEvent e = toGame(event);
 
                 // This needs to be thread-safe in case an event comes through
                 // while the main thread is adding/removing listeners.
@@ -319,7 +360,8 @@ public class Input {
     public MouseWheelListener getMouseWheelListener() {
         return new MouseAdapter() {
             @Override
-            public void mouseWheelMoved(MouseWheelEvent e) {
+            public void mouseWheelMoved(MouseWheelEvent event) {
+                MouseWheelEvent e = (MouseWheelEvent) toGame(event);
 
                 // This needs to be thread-safe in case an event comes through
                 // while the main thread is adding/removing listeners.
@@ -0,0 +1,40 @@
+package com.gpergrossi.spaceinvaders.game;
+
+/**
+ * The controls of one player for one tick, packed into the bits of a single byte.
+ * Packed inputs are what the simulation consumes, so they can be recorded, predicted
+ * and sent over the network without referring to the keyboard.
+ */
+public final class PlayerInput {
+
+    public static final int NONE  = 0;
+    public static final int LEFT  = 1;
+    public static final int RIGHT = 2;
+    public static final int FIRE  = 4;
+
+    private PlayerInput() {}
+
+    /**
+     * Pack the current state of the local keyboard.
+     */
+    public static int read(Input input) {
+        int buttons = NONE;
+        if (input.isLeftPressed()) buttons |= LEFT;
+        if (input.isRightPressed()) buttons |= RIGHT;
+        if (input.isFirePressed()) buttons |= FIRE;
+        return buttons;
+    }
+
+    public static boolean isLeft(int buttons) {
+        return (buttons & LEFT) != 0;
+    }
+
+    public static boolean isRight(int buttons) {
+        return (buttons & RIGHT) != 0;
+    }
+
+    public static boolean isFire(int buttons) {
+        return (buttons & FIRE) != 0;
+    }
+
+}
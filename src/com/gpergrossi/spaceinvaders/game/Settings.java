@@ -2,17 +2,58 @@ package com.gpergrossi.spaceinvaders.game;
 
 public class Settings {
 
+    /** Draw through Java2D, which can use hardware acceleration */
+    public static final String RENDERER_JAVA2D = "java2d";
+
+    /** Draw in software into an int[] framebuffer, presented with one image draw per frame */
+    public static final String RENDERER_FRAMEBUFFER = "framebuffer";
+
+    /** Record each frame, then draw it into the framebuffer in bands on every core at once */
+    public static final String RENDERER_PARALLEL = "parallel";
+
+    /** Scale the internal frame up to the window with blocky, sharp pixels */
+    public static final String FILTER_NEAREST = "nearest";
+
+    /** Scale the internal frame up to the window with smooth, blended pixels */
+    public static final String FILTER_BILINEAR = "bilinear";
+
     private int screenWidth = 800;
     private int screenHeight = 600;
 
+    private int worldWidth = 1200;
+    private int worldHeight = 600;
+
     private int alienBehaviorEdgeWidth = 10;
     private int deathZoneHeight = 10;
     private int alienDropIncrement = 10;
+    private int playerEdgeWidth = 10;
 
     private int playerReloadTime = 500; // Half a second
 
     private boolean showDebugInfo = false;
 
+    private String renderer = RENDERER_JAVA2D;
+
+    /**
+     * The game is drawn into an internal frame this fraction of the screen size, then scaled to
+     * fit the window. Lower is faster, 0.5 draws a quarter of the pixels.
+     */
+    private float renderScale = 1.0f;
+
+    /** How the internal frame is scaled to fit the window */
+    private String scaleFilter = FILTER_BILINEAR;
+
+    /** Record each frame into a display list, then replay it onto the renderer */
+    private boolean recordDisplayList = false;
+
+    /** Seeds the stars and particles, so that a run with the same inputs draws the same frames */
+    private long randomSeed = System.nanoTime();
+
+    /** Screen effects applied to each finished frame */
+    private boolean bloom = false;
+    private boolean scanlines = false;
+    private boolean vignette = false;
+
 
     public int getScreenWidth() {
         return screenWidth;
@@ -22,6 +63,14 @@ public class Settings {
         return screenHeight;
     }
 
+    public int getWorldWidth() {
+        return worldWidth;
+    }
+
+    public int getWorldHeight() {
+        return worldHeight;
+    }
+
     public int getAlienBehaviorEdgeWidth() {
         return alienBehaviorEdgeWidth;
     }
@@ -34,7 +83,58 @@ public class Settings {
         return alienDropIncrement;
     }
 
+    public int getPlayerEdgeWidth() {
+        return playerEdgeWidth;
+    }
+
     public int getPlayerReloadTime() { return playerReloadTime; }
 
     public boolean getShowDebugInfo() { return showDebugInfo; }
+
+    public String getRenderer() { return renderer; }
+
+    public void setRenderer(String renderer) {
+        if (!renderer.equals(RENDERER_JAVA2D) && !renderer.equals(RENDERER_FRAMEBUFFER) && !renderer.equals(RENDERER_PARALLEL)) {
+            throw new IllegalArgumentException("Unknown renderer: " + renderer);
+        }
+        this.renderer = renderer;
+    }
+
+    public float getRenderScale() { return renderScale; }
+
+    public void setRenderScale(float renderScale) {
+        if (!(renderScale > 0.0f && renderScale <= 1.0f)) {
+            throw new IllegalArgumentException("Render scale must be more than 0 and at most 1: " + renderScale);
+        }
+        this.renderScale = renderScale;
+    }
+
+    public String getScaleFilter() { return scaleFilter; }
+
+    public void setScaleFilter(String scaleFilter) {
+        if (!scaleFilter.equals(FILTER_NEAREST) && !scaleFilter.equals(FILTER_BILINEAR)) {
+            throw new IllegalArgumentException("Unknown scale filter: " + scaleFilter);
+        }
+        this.scaleFilter = scaleFilter;
+    }
+
+    public boolean getRecordDisplayList() { return recordDisplayList; }
+
+    public void setRecordDisplayList(boolean recordDisplayList) { this.recordDisplayList = recordDisplayList; }
+
+    public long getRandomSeed() { return randomSeed; }
+
+    public void setRandomSeed(long randomSeed) { this.randomSeed = randomSeed; }
+
+    public boolean getBloom() { return bloom; }
+
+    public void setBloom(boolean bloom) { this.bloom = bloom; }
+
+    public boolean getScanlines() { return scanlines; }
+
+    public void setScanlines(boolean scanlines) { this.scanlines = scanlines; }
+
+    public boolean getVignette() { return vignette; }
+
+    public void setVignette(boolean vignette) { this.vignette = vignette; }
 }
@@ -0,0 +1,71 @@
+package com.gpergrossi.spaceinvaders.game;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * A Random whose state can be written to a snapshot and read back, so that a restored game
+ * goes on to draw the same numbers the original did.
+ *
+ * java.util.Random keeps its state private, so this runs the same linear congruential
+ * generator itself. Given the same seed it produces exactly the same numbers as Random.
+ */
+public class SnapshotRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    /** The seed the generator was last seeded with */
+    private long seed;
+
+    /** The generator's current 48 bit state */
+    private long state;
+
+    public SnapshotRandom(long seed) {
+        super(seed);
+    }
+
+    /** Called by Random's constructor too, before any fields of this class are initialized */
+    @Override
+    public synchronized void setSeed(long seed) {
+        this.seed = seed;
+        this.state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected synchronized int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    /**
+     * @return The seed the generator was last seeded with
+     */
+    public synchronized long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Write the seed and current state to a snapshot buffer.
+     *
+     * @param out The buffer to write to
+     */
+    public synchronized void writeState(ByteBuffer out) {
+        out.putLong(seed);
+        out.putLong(state);
+    }
+
+    /**
+     * Replace the seed and current state with those read from a snapshot buffer.
+     *
+     * @param in The buffer to read from
+     */
+    public synchronized void readState(ByteBuffer in) {
+        seed = in.getLong();
+        state = in.getLong() & MASK;
+    }
+
+}
@@ -1,12 +1,16 @@
 package com.gpergrossi.spaceinvaders.game;
 
+import com.gpergrossi.spaceinvaders.entity.Entity;
 import com.gpergrossi.spaceinvaders.entity.ShotEntity;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 public class Statistics {
 
+    /** The starting capacity of the shot ring. Must be a power of two. */
+    private static final int INITIAL_SHOT_CAPACITY = 16;
+
     private int shotsFired;
     private int shotsHit;
     private int shotsMissed;
@@ -15,10 +19,20 @@ public class Statistics {
     private int lastMissedShotIndex;
 
     private int nextShotIndex;
-    private HashMap<ShotEntity, ShotInfo> activeShots;
+
+    /** The index of the oldest shot that has not yet been confirmed by scanActiveShots() */
+    private int headShotIndex;
+
+    /**
+     * Records for shots that have been fired but not yet confirmed, from headShotIndex up
+     * to nextShotIndex. The record for shot index i is kept at i & (length - 1). Records
+     * are reused as the head moves past them, and the ring doubles in size if it fills up.
+     */
+    private ShotInfo[] activeShots;
 
     private static class ShotInfo {
-        private int index;
+        /** The shot this record belongs to, or null if its entity is gone (e.g. restored from a snapshot) */
+        private ShotEntity shot;
         private boolean alive;
         private boolean hit;
         private boolean missed;
@@ -32,8 +46,8 @@ public class Statistics {
          */
         private int comboLastMiss;
 
-        public ShotInfo(int index) {
-            this.index = index;
+        public void init(ShotEntity shot) {
+            this.shot = shot;
             this.alive = true;
             this.hit = false;
             this.missed = false;
@@ -42,10 +56,18 @@ public class Statistics {
     }
 
     public Statistics() {
-        this.activeShots = new HashMap<>();
+        this.activeShots = createShotRing(INITIAL_SHOT_CAPACITY);
         this.reset();
     }
 
+    private static ShotInfo[] createShotRing(int capacity) {
+        ShotInfo[] ring = new ShotInfo[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new ShotInfo();
+        }
+        return ring;
+    }
+
     public void reset() {
         this.shotsFired = 0;
         this.shotsHit = 0;
@@ -53,15 +75,21 @@ public class Statistics {
         this.hitCombo = 0;
         this.maxCombo = 0;
         this.nextShotIndex = 0;
+        this.headShotIndex = 0;
         this.lastMissedShotIndex = -1;
-        activeShots.clear();
+        for (ShotInfo info : activeShots) {
+            info.shot = null;
+        }
     }
 
     public void trackShotFired(ShotEntity shot) {
         shotsFired++;
-        if (!activeShots.containsKey(shot)) {
-            ShotInfo info = new ShotInfo(nextShotIndex);
-            activeShots.put(shot, info);
+        if (findShot(shot) == null) {
+            if (nextShotIndex - headShotIndex == activeShots.length) growShotRing();
+
+            int index = nextShotIndex;
+            activeShots[index & (activeShots.length - 1)].init(shot);
+            shot.setShotIndex(index);
             nextShotIndex++;
         }
     }
@@ -70,8 +98,8 @@ public class Statistics {
         shotsHit++;
         hitCombo++;
         if (hitCombo > maxCombo) { maxCombo = hitCombo; }
-        if (activeShots.containsKey(shot)) {
-            ShotInfo info = activeShots.get(shot);
+        ShotInfo info = findShot(shot);
+        if (info != null) {
             info.alive = false;
             info.hit = true;
             info.comboLastMiss = lastMissedShotIndex;
@@ -81,57 +109,132 @@ public class Statistics {
 
     public void trackShotMissed(ShotEntity shot) {
         shotsMissed++;
-        if (activeShots.containsKey(shot)) {
-            ShotInfo info = activeShots.get(shot);
+        ShotInfo info = findShot(shot);
+        if (info != null) {
             info.alive = false;
             info.missed = true;
             scanActiveShots();
         }
     }
 
-    /** Checks for consecutive hits and clean up expired shots. */
+    /** Returns the record of a shot that is still awaiting confirmation, or null */
+    private ShotInfo findShot(ShotEntity shot) {
+        int index = shot.getShotIndex();
+        if (index < headShotIndex || index >= nextShotIndex) return null;
+
+        // The index may be left over from before a reset, so make sure the record is really this shot's
+        ShotInfo info = activeShots[index & (activeShots.length - 1)];
+        return (info.shot == shot) ? info : null;
+    }
+
+    /** Doubles the capacity of the shot ring, keeping every record at its index */
+    private void growShotRing() {
+        ShotInfo[] oldRing = activeShots;
+        ShotInfo[] newRing = new ShotInfo[oldRing.length * 2];
+        for (int index = headShotIndex; index < nextShotIndex; index++) {
+            newRing[index & (newRing.length - 1)] = oldRing[index & (oldRing.length - 1)];
+        }
+        for (int i = 0; i < newRing.length; i++) {
+            if (newRing[i] == null) newRing[i] = new ShotInfo();
+        }
+        activeShots = newRing;
+    }
+
+    /**
+     * Checks for consecutive hits and clean up expired shots. Shots are confirmed in the
+     * order they were fired, so this only needs to advance the head past the dead shots.
+     * Each shot is passed over once, making this amortized O(1) per shot.
+     */
     private void scanActiveShots() {
+        while (headShotIndex < nextShotIndex) {
+            ShotInfo info = activeShots[headShotIndex & (activeShots.length - 1)];
 
-        while (true) {
-            int minIndex = -1;
-            Map.Entry<ShotEntity, ShotInfo> minShot = null;
+            if (info.alive) {
+                // Encountered a living shot, stop scanning. We'll update again when another shot hits/misses.
+                break;
+            }
 
-            // Find lowest shot index
-            for (Map.Entry<ShotEntity, ShotInfo> entry : activeShots.entrySet()) {
-                ShotInfo info = entry.getValue();
-                if (minIndex == -1 || info.index < minIndex) {
-                    minIndex = info.index;
-                    minShot = entry;
+            // This shot is now dead
+            if (info.missed) {
+                // Reset the combo due to a miss
+                hitCombo = 0;
+                lastMissedShotIndex = headShotIndex;
+            } else if (info.hit) {
+                // Re-apply shots-that-have-hit-since-the-last-miss to the combo
+                if (info.comboLastMiss != lastMissedShotIndex) {
+                    hitCombo++;
+                    info.comboLastMiss = lastMissedShotIndex;
                 }
             }
 
-            if (minShot == null) {
-                // No shots left
-                break;
-            } else {
-                // Confirm shot combo
-                ShotEntity entity = minShot.getKey();
-                ShotInfo info = minShot.getValue();
-
-                if (!info.alive) {
-                    // This shot is now dead
-                    activeShots.remove(entity);
-
-                    if (info.missed) {
-                        // Reset the combo due to a miss
-                        hitCombo = 0;
-                        lastMissedShotIndex = info.index;
-                    } else if (info.hit) {
-                        // Re-apply shots-that-have-hit-since-the-last-miss to the combo
-                        if (info.comboLastMiss != lastMissedShotIndex) {
-                            hitCombo++;
-                            info.comboLastMiss = lastMissedShotIndex;
-                        }
-                    }
-                } else {
-                    // Encountered a living shot, stop scanning. We'll update again when another shot hits/misses.
-                    break;
-                }
+            info.shot = null;
+            headShotIndex++;
+        }
+    }
+
+    /**
+     * Write all statistics, including the bookkeeping for shots still in flight, to a
+     * snapshot buffer. Shot entities record their own index, so the records are written
+     * in index order without any reference to the entities.
+     *
+     * @param out The buffer to write to
+     */
+    public void writeState(ByteBuffer out) {
+        out.putInt(shotsFired);
+        out.putInt(shotsHit);
+        out.putInt(shotsMissed);
+        out.putInt(hitCombo);
+        out.putInt(maxCombo);
+        out.putInt(lastMissedShotIndex);
+        out.putInt(headShotIndex);
+        out.putInt(nextShotIndex);
+
+        for (int index = headShotIndex; index < nextShotIndex; index++) {
+            ShotInfo info = activeShots[index & (activeShots.length - 1)];
+            out.put((byte) ((info.alive ? 1 : 0) | (info.hit ? 2 : 0) | (info.missed ? 4 : 0)));
+            out.putInt(info.comboLastMiss);
+        }
+    }
+
+    /**
+     * Read all statistics back from a snapshot buffer, and reconnect the records of
+     * shots still in flight to their entities.
+     *
+     * @param in The buffer to read from
+     * @param entities The entity list already restored from the same snapshot
+     */
+    public void readState(ByteBuffer in, List<Entity> entities) {
+        shotsFired = in.getInt();
+        shotsHit = in.getInt();
+        shotsMissed = in.getInt();
+        hitCombo = in.getInt();
+        maxCombo = in.getInt();
+        lastMissedShotIndex = in.getInt();
+        headShotIndex = in.getInt();
+        nextShotIndex = in.getInt();
+
+        while (nextShotIndex - headShotIndex > activeShots.length) growShotRing();
+        for (ShotInfo info : activeShots) {
+            info.shot = null;
+        }
+
+        for (int index = headShotIndex; index < nextShotIndex; index++) {
+            ShotInfo info = activeShots[index & (activeShots.length - 1)];
+            byte flags = in.get();
+            info.alive = (flags & 1) != 0;
+            info.hit = (flags & 2) != 0;
+            info.missed = (flags & 4) != 0;
+            info.comboLastMiss = in.getInt();
+        }
+
+        for (int i = 0; i < entities.size(); i++) {
+            Entity entity = entities.get(i);
+            if (!(entity instanceof ShotEntity)) continue;
+
+            ShotEntity shot = (ShotEntity) entity;
+            int index = shot.getShotIndex();
+            if (index >= headShotIndex && index < nextShotIndex) {
+                activeShots[index & (activeShots.length - 1)].shot = shot;
             }
         }
     }
@@ -150,6 +253,14 @@ public class Statistics {
      * down every time the player fires a shot.
      */
     public float getAccuracy() {
+        return getAccuracy(shotsFired, shotsMissed);
+    }
+
+    /**
+     * The accuracy formula, shared with the telemetry analytics so that
+     * recorded sessions are scored exactly the way the game scores them.
+     */
+    public static float getAccuracy(int shotsFired, int shotsMissed) {
         return (float) (shotsFired - shotsMissed) / shotsFired;
     }
 
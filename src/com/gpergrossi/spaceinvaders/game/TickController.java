@@ -0,0 +1,36 @@
+package com.gpergrossi.spaceinvaders.game;
+
+/**
+ * A tick controller takes over advancing the simulation, e.g. to gather inputs from
+ * remote players or to re-simulate ticks after a misprediction. Without one, the Game
+ * simulates exactly one tick per update using the local input.
+ *
+ * The controller is given the whole Game each update, in every game state, and should
+ * call {@link Game#simulate(long, int[])} zero or more times.
+ */
+public interface TickController {
+
+    /**
+     * @return The number of players in the game, each of whom gets a ship
+     */
+    int getPlayerCount();
+
+    /**
+     * @return The index of the player controlled by this machine's keyboard
+     */
+    int getLocalPlayer();
+
+    /**
+     * Called when a new round of gameplay begins, before the first tick is simulated.
+     */
+    void onRoundStart(Game game);
+
+    /**
+     * Advance the simulation by however many ticks are appropriate.
+     *
+     * @param game The game to advance
+     * @param deltaMs The time that has passed in milliseconds
+     */
+    void advance(Game game, long deltaMs);
+
+}
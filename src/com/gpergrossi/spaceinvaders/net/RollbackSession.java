@@ -0,0 +1,318 @@
+package com.gpergrossi.spaceinvaders.net;
+
+import com.gpergrossi.spaceinvaders.game.Game;
+import com.gpergrossi.spaceinvaders.game.GameSnapshot;
+import com.gpergrossi.spaceinvaders.game.GameState;
+import com.gpergrossi.spaceinvaders.game.PlayerInput;
+import com.gpergrossi.spaceinvaders.game.TickController;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Two-player netplay using input prediction and rollback.
+ *
+ * The local player's input is applied immediately. The remote player's input for a
+ * tick is predicted to be the same as their last confirmed input, and the tick is
+ * simulated right away. A snapshot of the game is captured before every tick. When
+ * the real remote input for a tick arrives and differs from the prediction, the game
+ * is restored to the snapshot of that tick and re-simulated up to the present.
+ *
+ * The local player may get at most MAX_ROLLBACK_TICKS ahead of the last confirmed
+ * remote input. Beyond that the session stalls (simulates nothing) until the remote
+ * player catches up, so a rollback never needs a snapshot older than that.
+ *
+ * Telemetry recorded during a tick is held by the game until the remote input for that
+ * tick is known. A rollback discards the held events of the ticks it simulates again, so
+ * only the events of the timeline that really happened are written.
+ *
+ * Each packet carries every local input that the peer has not yet acknowledged, so
+ * lost packets are covered by the next one that arrives. Packets are:
+ * <pre>
+ *   short  PACKET_MAGIC
+ *   byte   round (incremented each time gameplay begins)
+ *   int    last remote tick confirmed by the sender (acknowledgement)
+ *   int    first tick of the inputs that follow
+ *   byte   number of inputs (unsigned)
+ *   byte[] packed PlayerInput for each tick
+ * </pre>
+ */
+public class RollbackSession implements TickController {
+
+    /** The furthest back in time a rollback may go */
+    public static final int MAX_ROLLBACK_TICKS = 10;
+
+    /** The most inputs carried by one packet */
+    public static final int MAX_INPUTS_PER_PACKET = 32;
+
+    /** Large enough for the header plus a full set of inputs */
+    public static final int MAX_PACKET_SIZE = 16 + MAX_INPUTS_PER_PACKET;
+
+    private static final short PACKET_MAGIC = 0x5349;
+
+    /** Size of the input history rings. Must be a power of two, comfortably larger than any lag allowed. */
+    private static final int HISTORY = 64;
+    private static final int HISTORY_MASK = HISTORY - 1;
+
+    /** Snapshots are kept for one more tick than the furthest rollback */
+    private static final int SNAPSHOT_COUNT = MAX_ROLLBACK_TICKS + 1;
+
+    private Transport transport;
+    private int localPlayer;
+    private int remotePlayer;
+
+    /** The snapshot taken before simulating tick t is kept at index t % SNAPSHOT_COUNT */
+    private GameSnapshot[] snapshots;
+
+    private byte[] localInputs;
+    private byte[] remoteInputs;
+
+    /** The remote input that was actually used when each tick was last simulated */
+    private byte[] usedRemoteInputs;
+
+    /** The next tick to be simulated */
+    private int currentTick;
+
+    /** The latest tick for which the remote input is known, or -1 */
+    private int confirmedRemoteTick;
+
+    /** The latest local tick the remote player has acknowledged receiving, or -1 */
+    private int remoteAckTick;
+
+    /** The earliest tick that was simulated with a wrong prediction, or Integer.MAX_VALUE */
+    private int rollbackFrom;
+
+    /** Packets from a different round are ignored */
+    private byte round;
+
+    private int[] tickInputs;
+    private ByteBuffer sendBuffer;
+    private ByteBuffer receiveBuffer;
+
+    /** Counters to help judge the quality of the connection */
+    private int rollbackCount;
+    private int rollbackTicks;
+    private int stallCount;
+
+    /**
+     * @param transport The transport connected to the other player
+     * @param localPlayer The index of the player on this machine, 0 or 1. The peer must use the other.
+     */
+    public RollbackSession(Transport transport, int localPlayer) {
+        if (localPlayer != 0 && localPlayer != 1) throw new IllegalArgumentException("Player must be 0 or 1!");
+
+        this.transport = transport;
+        this.localPlayer = localPlayer;
+        this.remotePlayer = 1 - localPlayer;
+
+        this.snapshots = new GameSnapshot[SNAPSHOT_COUNT];
+        for (int i = 0; i < SNAPSHOT_COUNT; i++) {
+            snapshots[i] = new GameSnapshot();
+        }
+
+        this.localInputs = new byte[HISTORY];
+        this.remoteInputs = new byte[HISTORY];
+        this.usedRemoteInputs = new byte[HISTORY];
+
+        this.tickInputs = new int[2];
+        this.sendBuffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+        this.receiveBuffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+
+        this.round = 0;
+        resetTicks();
+    }
+
+    private void resetTicks() {
+        currentTick = 0;
+        confirmedRemoteTick = -1;
+        remoteAckTick = -1;
+        rollbackFrom = Integer.MAX_VALUE;
+        tickInputs[0] = PlayerInput.NONE;
+        tickInputs[1] = PlayerInput.NONE;
+    }
+
+    @Override
+    public int getPlayerCount() {
+        return 2;
+    }
+
+    @Override
+    public int getLocalPlayer() {
+        return localPlayer;
+    }
+
+    @Override
+    public void onRoundStart(Game game) {
+        // Ticks start again from 0, so whatever the last round held back is final
+        game.confirmTelemetry(Integer.MAX_VALUE);
+
+        round++;
+        resetTicks();
+    }
+
+    @Override
+    public void advance(Game game, long deltaMs) {
+        try {
+            receiveInputs();
+
+            // Correct any mispredictions. A round that ended on a wrong guess is resumed,
+            // but once the players have left the end of round screens it's too late.
+            GameState state = game.getState();
+            boolean inRound = (state == GameState.GAMEPLAY || state == GameState.VICTORY || state == GameState.DEFEAT);
+            if (inRound && rollbackFrom < currentTick) {
+                rollback(game, deltaMs);
+            }
+
+            if (game.getState() == GameState.GAMEPLAY) {
+                // Don't get too far ahead of the other player
+                if (currentTick - confirmedRemoteTick > MAX_ROLLBACK_TICKS) {
+                    stallCount++;
+                } else {
+                    localInputs[currentTick & HISTORY_MASK] = (byte) PlayerInput.read(game.getInput());
+                    simulateTick(game, currentTick, deltaMs);
+                    currentTick++;
+                }
+            } else {
+                // Outside of gameplay no one is in control, but the simulation still runs
+                tickInputs[0] = PlayerInput.NONE;
+                tickInputs[1] = PlayerInput.NONE;
+                game.simulate(deltaMs, tickInputs);
+            }
+
+            // Events are final once the remote input for their tick is known, or once the round can't be resumed
+            state = game.getState();
+            inRound = (state == GameState.GAMEPLAY || state == GameState.VICTORY || state == GameState.DEFEAT);
+            game.confirmTelemetry(inRound ? confirmedRemoteTick : Integer.MAX_VALUE);
+
+            // Always send, so that inputs lost on the way keep being re-sent
+            sendInputs();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Restore the snapshot from before the first mispredicted tick and simulate back up to the present */
+    private void rollback(Game game, long deltaMs) {
+        int targetTick = currentTick;
+
+        rollbackCount++;
+        rollbackTicks += targetTick - rollbackFrom;
+
+        snapshots[rollbackFrom % SNAPSHOT_COUNT].restore(game);
+
+        // The events recorded with the wrong guess never happened, simulating again records the real ones
+        game.discardTelemetry(rollbackFrom);
+
+        for (currentTick = rollbackFrom; currentTick < targetTick; currentTick++) {
+            // The round can end part way through, in which case there's nothing left to simulate
+            if (game.getState() != GameState.GAMEPLAY) break;
+            simulateTick(game, currentTick, deltaMs);
+        }
+
+        rollbackFrom = Integer.MAX_VALUE;
+    }
+
+    private void simulateTick(Game game, int tick, long deltaMs) {
+        snapshots[tick % SNAPSHOT_COUNT].capture(game);
+
+        byte remote;
+        if (tick <= confirmedRemoteTick) {
+            remote = remoteInputs[tick & HISTORY_MASK];
+        } else if (confirmedRemoteTick >= 0) {
+            // Predict that the remote player is still holding the same buttons
+            remote = remoteInputs[confirmedRemoteTick & HISTORY_MASK];
+        } else {
+            remote = PlayerInput.NONE;
+        }
+        usedRemoteInputs[tick & HISTORY_MASK] = remote;
+
+        tickInputs[localPlayer] = localInputs[tick & HISTORY_MASK];
+        tickInputs[remotePlayer] = remote;
+        game.setTelemetryTick(tick);
+        try {
+            game.simulate(deltaMs, tickInputs);
+        } finally {
+            game.setTelemetryTick(-1);
+        }
+    }
+
+    private void receiveInputs() throws IOException {
+        while (transport.receive(receiveBuffer)) {
+            if (receiveBuffer.remaining() < 12) continue;
+            if (receiveBuffer.getShort() != PACKET_MAGIC) continue;
+            if (receiveBuffer.get() != round) continue;
+
+            int ack = receiveBuffer.getInt();
+            if (ack > remoteAckTick) remoteAckTick = ack;
+
+            int firstTick = receiveBuffer.getInt();
+            int count = receiveBuffer.get() & 0xFF;
+            if (receiveBuffer.remaining() < count) continue;
+
+            for (int i = 0; i < count; i++) {
+                int tick = firstTick + i;
+                byte buttons = receiveBuffer.get();
+
+                // Inputs are accepted strictly in order, so everything up to confirmedRemoteTick is known
+                if (tick != confirmedRemoteTick + 1) continue;
+
+                remoteInputs[tick & HISTORY_MASK] = buttons;
+                confirmedRemoteTick = tick;
+
+                // If this tick was already simulated with a different guess, it must be simulated again
+                if (tick < currentTick && usedRemoteInputs[tick & HISTORY_MASK] != buttons) {
+                    rollbackFrom = Math.min(rollbackFrom, tick);
+                }
+            }
+        }
+    }
+
+    private void sendInputs() throws IOException {
+        int firstTick = Math.max(remoteAckTick + 1, currentTick - MAX_INPUTS_PER_PACKET);
+        firstTick = Math.min(firstTick, currentTick);
+        int count = currentTick - firstTick;
+
+        sendBuffer.clear();
+        sendBuffer.putShort(PACKET_MAGIC);
+        sendBuffer.put(round);
+        sendBuffer.putInt(confirmedRemoteTick);
+        sendBuffer.putInt(firstTick);
+        sendBuffer.put((byte) count);
+        for (int tick = firstTick; tick < currentTick; tick++) {
+            sendBuffer.put(localInputs[tick & HISTORY_MASK]);
+        }
+        sendBuffer.flip();
+
+        transport.send(sendBuffer);
+    }
+
+    /**
+     * @return The number of times mispredicted ticks have been re-simulated
+     */
+    public int getRollbackCount() {
+        return rollbackCount;
+    }
+
+    /**
+     * @return The total number of ticks that have been re-simulated
+     */
+    public int getRollbackTicks() {
+        return rollbackTicks;
+    }
+
+    /**
+     * @return The number of updates spent waiting for the other player to catch up
+     */
+    public int getStallCount() {
+        return stallCount;
+    }
+
+    /**
+     * @return The next tick to be simulated in the current round
+     */
+    public int getCurrentTick() {
+        return currentTick;
+    }
+
+}
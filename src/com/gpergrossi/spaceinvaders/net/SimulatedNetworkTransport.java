@@ -0,0 +1,95 @@
+package com.gpergrossi.spaceinvaders.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Wraps another Transport and makes it behave like a worse network: outgoing packets
+ * are held back for a simulated latency (with some random jitter, which can reorder
+ * them) and a fraction of them are dropped. Used to test netplay over localhost.
+ */
+public class SimulatedNetworkTransport implements Transport {
+
+    private Transport inner;
+
+    private long latencyNs;
+    private long jitterNs;
+    private double lossRate;
+
+    private Random random;
+
+    /** Packets waiting for their simulated delay to pass */
+    private ArrayList<DelayedPacket> pending;
+
+    /** Delayed packet objects are recycled */
+    private ArrayDeque<DelayedPacket> pool;
+
+    /**
+     * @param inner The transport that actually sends packets
+     * @param latencyMs The one-way delay added to every outgoing packet
+     * @param jitterMs The maximum random delay added on top of the latency
+     * @param lossRate The fraction of outgoing packets to drop, from 0 to 1
+     * @param seed The seed for the random number generator, so test runs can be repeated
+     */
+    public SimulatedNetworkTransport(Transport inner, int latencyMs, int jitterMs, double lossRate, long seed) {
+        this.inner = inner;
+        this.latencyNs = latencyMs * 1000000L;
+        this.jitterNs = jitterMs * 1000000L;
+        this.lossRate = lossRate;
+        this.random = new Random(seed);
+        this.pending = new ArrayList<>();
+        this.pool = new ArrayDeque<>();
+    }
+
+    @Override
+    public void send(ByteBuffer packet) throws IOException {
+        long now = System.nanoTime();
+        flush(now);
+
+        if (random.nextDouble() < lossRate) {
+            // Lost in the simulated network
+            packet.position(packet.limit());
+            return;
+        }
+
+        DelayedPacket delayed = pool.isEmpty() ? new DelayedPacket() : pool.pop();
+        delayed.sendTime = now + latencyNs + (jitterNs > 0 ? (long) (random.nextDouble() * jitterNs) : 0);
+        delayed.data.clear();
+        delayed.data.put(packet);
+        delayed.data.flip();
+        pending.add(delayed);
+    }
+
+    @Override
+    public boolean receive(ByteBuffer packet) throws IOException {
+        flush(System.nanoTime());
+        return inner.receive(packet);
+    }
+
+    /** Send every packet whose delay has passed */
+    private void flush(long now) throws IOException {
+        for (int i = 0; i < pending.size(); i++) {
+            DelayedPacket delayed = pending.get(i);
+            if (delayed.sendTime <= now) {
+                inner.send(delayed.data);
+                pending.remove(i);
+                pool.push(delayed);
+                i--;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        inner.close();
+    }
+
+    private static final class DelayedPacket {
+        private long sendTime;
+        private ByteBuffer data = ByteBuffer.allocate(RollbackSession.MAX_PACKET_SIZE);
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.gpergrossi.spaceinvaders.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A non-blocking, unreliable way to exchange small packets with one peer.
+ * Packets may be lost, duplicated or arrive out of order.
+ */
+public interface Transport extends Closeable {
+
+    /**
+     * Send the remaining bytes of a buffer as one packet. Never blocks; if the
+     * packet cannot be sent right away, it is dropped.
+     */
+    void send(ByteBuffer packet) throws IOException;
+
+    /**
+     * Receive one packet, if one has arrived. Never blocks.
+     *
+     * @param packet A buffer that is cleared, filled with the packet, and flipped for reading
+     * @return True if a packet was received, false if none are waiting
+     */
+    boolean receive(ByteBuffer packet) throws IOException;
+
+}
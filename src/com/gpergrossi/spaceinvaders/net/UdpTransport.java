@@ -0,0 +1,57 @@
+package com.gpergrossi.spaceinvaders.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * A Transport over a non-blocking NIO DatagramChannel connected to a single peer.
+ */
+public class UdpTransport implements Transport {
+
+    private DatagramChannel channel;
+
+    /**
+     * Open a channel on a local port and connect it to a peer.
+     *
+     * @param localPort The UDP port to receive on
+     * @param remote The address of the peer
+     */
+    public UdpTransport(int localPort, InetSocketAddress remote) throws IOException {
+        this.channel = DatagramChannel.open();
+        this.channel.configureBlocking(false);
+        this.channel.bind(new InetSocketAddress(localPort));
+        this.channel.connect(remote);
+    }
+
+    @Override
+    public void send(ByteBuffer packet) throws IOException {
+        try {
+            channel.write(packet);
+        } catch (PortUnreachableException e) {
+            // The peer isn't listening yet. Inputs are re-sent until acknowledged, so just drop it.
+        }
+    }
+
+    @Override
+    public boolean receive(ByteBuffer packet) throws IOException {
+        packet.clear();
+        int read;
+        try {
+            read = channel.read(packet);
+        } catch (PortUnreachableException e) {
+            // Reported for an earlier send while the peer wasn't listening, not for this read.
+            read = 0;
+        }
+        packet.flip();
+        return read > 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
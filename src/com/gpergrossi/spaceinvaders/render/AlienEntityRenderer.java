@@ -1,5 +1,6 @@
 package com.gpergrossi.spaceinvaders.render;
 
+import com.gpergrossi.spaceinvaders.assets.FadedSpriteCache;
 import com.gpergrossi.spaceinvaders.assets.Sprite;
 import com.gpergrossi.spaceinvaders.entity.AlienEntity;
 import com.gpergrossi.spaceinvaders.entity.SpriteEntity;
@@ -14,25 +15,32 @@ public class AlienEntityRenderer implements Renderer<AlienEntity> {
 
     @Override
     public void render(Graphics2D g, AlienEntity entity) {
-        double spawn = entity.getSpawnAnimation().getValue();
-
-        if (spawn < 1.0) {
-            // Fade in
-            g.setComposite(AlphaComposite.SrcOver.derive((float) spawn));
+        Sprite sprite = getFadedSprite(entity);
+        if (sprite != null) {
+            sprite.draw(g, (int) entity.getX(), getSpawnY(entity));
         }
+    }
 
-        Sprite sprite = entity.getSprite();
-        int x = (int) entity.getX();
-        int y = (int) entity.getY() - (int)((1.0f - spawn) * 50f);
-
+    @Override
+    public void enqueue(RenderQueue queue, AlienEntity entity) {
+        Sprite sprite = getFadedSprite(entity);
         if (sprite != null) {
-            sprite.draw(g, x, y);
+            queue.drawSprite(sprite, (int) entity.getX(), getSpawnY(entity));
         }
+    }
 
-        if (spawn < 1.0) {
-            // Reset alpha composite
-            g.setComposite(AlphaComposite.SrcOver);
-        }
+    /** Fade in while spawning, using a pre-faded copy of the sprite instead of an alpha composite */
+    private static Sprite getFadedSprite(AlienEntity entity) {
+        Sprite sprite = entity.getSprite();
+        double spawn = entity.getSpawnAnimation().getValue();
+        if (sprite == null || spawn >= 1.0) return sprite;
+        return FadedSpriteCache.get().getFaded(sprite, spawn);
+    }
+
+    /** Drop down into place while spawning */
+    private static int getSpawnY(AlienEntity entity) {
+        double spawn = entity.getSpawnAnimation().getValue();
+        return (int) entity.getY() - (int)((1.0f - spawn) * 50f);
     }
 
 }
@@ -0,0 +1,99 @@
+package com.gpergrossi.spaceinvaders.render;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Draws a recorded frame into a software framebuffer on several threads at once.
+ *
+ * The framebuffer is split into horizontal bands, and every band replays the whole display
+ * list clipped to its own rows. Bands never touch each other's pixels, so they can be drawn
+ * in any order on a fork/join pool, and the frame comes out exactly as if it were drawn on
+ * one thread. The bands already share the framebuffer's pixels, so there is nothing left
+ * to composite afterwards.
+ *
+ * There are a few more bands than threads, so that a band full of particles doesn't leave
+ * the other threads waiting.
+ */
+public class BandedRasterizer {
+
+    /** Each thread gets about this many bands */
+    private static final int BANDS_PER_THREAD = 2;
+
+    /** Bands are never thinner than this many rows, since each one replays every operation */
+    private static final int MIN_BAND_ROWS = 16;
+
+    private FramebufferRenderBackend frame;
+    private FramebufferRenderBackend[] bands;
+    private ForkJoinPool pool;
+
+    /**
+     * @param frame The framebuffer to draw into
+     * @param pool The threads to draw on
+     */
+    public BandedRasterizer(FramebufferRenderBackend frame, ForkJoinPool pool) {
+        this.frame = frame;
+        this.pool = pool;
+
+        int height = frame.getHeight();
+        int bandCount = Math.max(1, Math.min(pool.getParallelism() * BANDS_PER_THREAD, height / MIN_BAND_ROWS));
+        this.bands = new FramebufferRenderBackend[bandCount];
+        for (int i = 0; i < bandCount; i++) {
+            int top = i * height / bandCount;
+            int bottom = (i + 1) * height / bandCount;
+            bands[i] = frame.createBand(top, bottom);
+        }
+    }
+
+    /**
+     * Clear the framebuffer and draw a display list into it, returning once every band is done.
+     *
+     * @param list The frame to draw, which must not be changed until this returns
+     * @param clearArgb The color to clear the framebuffer to
+     */
+    public void rasterize(DisplayList list, int clearArgb) {
+        pool.invoke(new BandTask(list, clearArgb, 0, bands.length));
+    }
+
+    public FramebufferRenderBackend getFrame() {
+        return frame;
+    }
+
+    public int getBandCount() {
+        return bands.length;
+    }
+
+    /**
+     * Draws a range of bands, splitting it in half until there is one band per task.
+     */
+    private class BandTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final DisplayList list;
+        private final int clearArgb;
+        private final int first, end;
+
+        private BandTask(DisplayList list, int clearArgb, int first, int end) {
+            this.list = list;
+            this.clearArgb = clearArgb;
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - first > 1) {
+                int middle = (first + end) >>> 1;
+                invokeAll(new BandTask(list, clearArgb, first, middle), new BandTask(list, clearArgb, middle, end));
+                return;
+            }
+
+            FramebufferRenderBackend band = bands[first];
+            band.begin();
+            band.clear(clearArgb);
+            list.replay(band);
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.gpergrossi.spaceinvaders.render;
+
+import com.gpergrossi.spaceinvaders.entity.Bunker;
+
+import java.awt.*;
+
+public class BunkerRenderer implements Renderer<Bunker> {
+
+    private static BunkerRenderer single = new BunkerRenderer();
+
+    public static BunkerRenderer get() { return single; }
+
+    @Override
+    public void render(Graphics2D g, Bunker bunker) {
+        g.drawImage(bunker.getImage(), bunker.getX(), bunker.getY(), null);
+    }
+
+    @Override
+    public void render(RenderBackend backend, Bunker bunker) {
+        backend.drawImage(bunker.getImage(), bunker.getX(), bunker.getY());
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.gpergrossi.spaceinvaders.render;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * The camera determines which part of the world is visible on screen.
+ * Its position is the top left corner of the viewport in world coordinates,
+ * and it is always kept inside of the world bounds.
+ */
+public class Camera {
+
+    private float x;
+    private float y;
+
+    private int viewportWidth;
+    private int viewportHeight;
+
+    private int worldWidth;
+    private int worldHeight;
+
+    /** How quickly the camera catches up to its target (fraction of the distance per second) */
+    private float followRate;
+
+    public Camera(int viewportWidth, int viewportHeight, int worldWidth, int worldHeight) {
+        this.viewportWidth = viewportWidth;
+        this.viewportHeight = viewportHeight;
+        this.worldWidth = worldWidth;
+        this.worldHeight = worldHeight;
+        this.followRate = 5f;
+        this.x = 0;
+        this.y = 0;
+    }
+
+    /**
+     * Immediately center the camera on a point in the world.
+     */
+    public void centerOn(float worldX, float worldY) {
+        this.x = worldX - viewportWidth * 0.5f;
+        this.y = worldY - viewportHeight * 0.5f;
+        clamp();
+    }
+
+    /**
+     * Smoothly move the camera toward being centered on a point in the world.
+     *
+     * @param worldX The x location to follow
+     * @param worldY The y location to follow
+     * @param deltaMs The amount of time that has passed in milliseconds
+     */
+    public void follow(float worldX, float worldY, long deltaMs) {
+        float targetX = worldX - viewportWidth * 0.5f;
+        float targetY = worldY - viewportHeight * 0.5f;
+
+        float t = Math.min(1f, followRate * deltaMs / 1000.0f);
+        this.x += (targetX - this.x) * t;
+        this.y += (targetY - this.y) * t;
+        clamp();
+    }
+
+    private void clamp() {
+        float maxX = Math.max(0, worldWidth - viewportWidth);
+        float maxY = Math.max(0, worldHeight - viewportHeight);
+        if (x < 0) x = 0;
+        if (x > maxX) x = maxX;
+        if (y < 0) y = 0;
+        if (y > maxY) y = maxY;
+    }
+
+    /**
+     * Get the visible region of the world and store it in the provided Rectangle2D.Float object.
+     */
+    public void getViewBounds(Rectangle2D.Float result) {
+        if (result != null) {
+            result.setRect(getOffsetX(), getOffsetY(), viewportWidth, viewportHeight);
+        }
+    }
+
+    /**
+     * Translate a graphics context so that subsequent drawing uses world coordinates.
+     * The caller is responsible for restoring the previous transform.
+     */
+    public void apply(Graphics2D g) {
+        g.translate(-getOffsetX(), -getOffsetY());
+    }
+
+    /**
+     * Translate a render backend so that subsequent drawing uses world coordinates.
+     * The caller is responsible for translating back afterward.
+     */
+    public void apply(RenderBackend backend) {
+        backend.translate(-getOffsetX(), -getOffsetY());
+    }
+
+    /**
+     * @return The left edge of the viewport in world coordinates, snapped to whole pixels
+     */
+    public int getOffsetX() {
+        return Math.round(x);
+    }
+
+    /**
+     * @return The top edge of the viewport in world coordinates, snapped to whole pixels
+     */
+    public int getOffsetY() {
+        return Math.round(y);
+    }
+
+    public int getViewportWidth() {
+        return viewportWidth;
+    }
+
+    public int getViewportHeight() {
+        return viewportHeight;
+    }
+
+}
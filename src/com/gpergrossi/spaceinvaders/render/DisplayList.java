@@ -0,0 +1,413 @@
+package com.gpergrossi.spaceinvaders.render;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A recorded frame: a render backend that keeps a list of primitive draw operations
+ * instead of drawing them, so that the scene can be built once and drawn later with
+ * replay(), onto any backend.
+ *
+ * Operations are stored in parallel arrays: one opcode per operation, with its integer
+ * and float arguments packed into shared pools and its image, font or text in reference
+ * arrays. Storage is reused from frame to frame, so a steady scene does not allocate.
+ *
+ * Drawing through getGraphics() can't be recorded as primitives, so it goes into a
+ * transparent frame-sized layer image instead, which is recorded as an image draw at
+ * that point in the list. A new layer is started whenever something else was recorded
+ * since the last one, so the order of drawing is kept.
+ *
+ * Images are recorded by reference, not copied, along with their ImageVersions version.
+ * A list must be replayed before any image it refers to is changed, e.g. before the next
+ * frame updates its particle layer or a damaged bunker, but the versions let two lists
+ * be compared after that: the same image at a different version is a different draw.
+ * Recording and replaying may happen on different threads, as long as they don't happen
+ * at the same time.
+ */
+public class DisplayList implements RenderBackend {
+
+    private static final byte OP_IMAGE = 0;
+    private static final byte OP_IMAGE_SCALED = 1;
+    private static final byte OP_CIRCLE = 2;
+    private static final byte OP_RECT = 3;
+    private static final byte OP_TEXT = 4;
+    private static final byte OP_TRANSLATE = 5;
+    private static final byte OP_ALPHA = 6;
+    private static final byte OP_IMAGE_TRANSFORMED = 7;
+
+    private static final String[] OP_NAMES = { "image", "imageScaled", "circle", "rect", "text", "translate", "alpha", "imageTransformed" };
+
+    private static final AffineTransform IDENTITY = new AffineTransform();
+
+    private int width, height;
+
+    private int size;
+    private byte[] opcodes;
+
+    /** Where each operation's arguments start in the pools */
+    private int[] intStarts, floatStarts;
+
+    /** The image, font or text of each operation, if it has one */
+    private Object[] references;
+    private String[] texts;
+
+    /** The transform of each transformed image, kept from frame to frame and copied into */
+    private AffineTransform[] transforms;
+
+    private int intCount, floatCount;
+    private int[] ints;
+    private float[] floats;
+
+    /** The state as recorded so far, so that getters answer like a real backend would */
+    private int translateX, translateY;
+    private float alpha;
+
+    /** Layers for drawing through getGraphics(), reused from frame to frame */
+    private ArrayList<BufferedImage> layers;
+    private ArrayList<Graphics2D> layerGraphics;
+    private int layerCount;
+
+    /** The operation count when the current layer was recorded, or -1 if there is no current layer */
+    private int layerOp;
+
+    /** Scratch rows for comparing layers */
+    private int[] rowA, rowB;
+
+    public DisplayList(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Display list size must be positive: " + width + "x" + height);
+        }
+
+        this.width = width;
+        this.height = height;
+
+        this.opcodes = new byte[256];
+        this.intStarts = new int[256];
+        this.floatStarts = new int[256];
+        this.references = new Object[256];
+        this.texts = new String[256];
+        this.transforms = new AffineTransform[256];
+        this.ints = new int[1024];
+        this.floats = new float[256];
+
+        this.layers = new ArrayList<>();
+        this.layerGraphics = new ArrayList<>();
+        reset();
+    }
+
+    /**
+     * Forget every recorded operation and start recording a new frame.
+     */
+    public void reset() {
+        // Don't keep anything alive through the references
+        Arrays.fill(references, 0, size, null);
+        Arrays.fill(texts, 0, size, null);
+
+        size = 0;
+        intCount = 0;
+        floatCount = 0;
+        translateX = 0;
+        translateY = 0;
+        alpha = 1.0f;
+
+        // Clear the layers that were drawn on last frame
+        for (int i = 0; i < layerCount; i++) {
+            Graphics2D g = layerGraphics.get(i);
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, width, height);
+        }
+        layerCount = 0;
+        layerOp = -1;
+    }
+
+    /**
+     * Draw every recorded operation onto a backend, in order. The backend's translation
+     * and opacity are left as they were.
+     */
+    public void replay(RenderBackend target) {
+        float baseAlpha = target.getAlpha();
+        int totalX = 0, totalY = 0;
+
+        for (int i = 0; i < size; i++) {
+            int n = intStarts[i];
+            int f = floatStarts[i];
+            switch (opcodes[i]) {
+                case OP_IMAGE:
+                    target.drawImage((BufferedImage) references[i], ints[n], ints[n + 1], ints[n + 2], ints[n + 3], ints[n + 4], ints[n + 5]);
+                    break;
+                case OP_IMAGE_SCALED:
+                    target.drawImageScaled((BufferedImage) references[i], ints[n], ints[n + 1], ints[n + 2], ints[n + 3]);
+                    break;
+                case OP_IMAGE_TRANSFORMED:
+                    target.drawImage((BufferedImage) references[i], transforms[i]);
+                    break;
+                case OP_CIRCLE:
+                    target.fillCircle(floats[f], floats[f + 1], floats[f + 2], ints[n]);
+                    break;
+                case OP_RECT:
+                    target.fillRect(ints[n], ints[n + 1], ints[n + 2], ints[n + 3], ints[n + 4]);
+                    break;
+                case OP_TEXT:
+                    target.drawText(texts[i], (Font) references[i], ints[n], ints[n + 1], ints[n + 2]);
+                    break;
+                case OP_TRANSLATE:
+                    target.translate(ints[n], ints[n + 1]);
+                    totalX += ints[n];
+                    totalY += ints[n + 1];
+                    break;
+                case OP_ALPHA:
+                    target.setAlpha(baseAlpha * floats[f]);
+                    break;
+            }
+        }
+
+        target.translate(-totalX, -totalY);
+        target.setAlpha(baseAlpha);
+    }
+
+    /**
+     * Compare two recorded frames. Images are compared by reference and version, except
+     * for the layers drawn through getGraphics(), which belong to each list and are
+     * compared by their pixels. Fonts are compared by reference.
+     *
+     * @return The index of the first operation that differs, or -1 if the lists are the same
+     */
+    public int firstDifference(DisplayList other) {
+        int common = Math.min(size, other.size);
+        for (int i = 0; i < common; i++) {
+            if (opcodes[i] != other.opcodes[i]) return i;
+            if (references[i] != other.references[i] && !sameLayer(references[i], other, other.references[i])) return i;
+            if (texts[i] != null && !texts[i].equals(other.texts[i])) return i;
+            if (opcodes[i] == OP_IMAGE_TRANSFORMED && !transforms[i].equals(other.transforms[i])) return i;
+
+            int intEnd = (i + 1 < size) ? intStarts[i + 1] : intCount;
+            int otherIntEnd = (i + 1 < other.size) ? other.intStarts[i + 1] : other.intCount;
+            if (!Arrays.equals(ints, intStarts[i], intEnd, other.ints, other.intStarts[i], otherIntEnd)) return i;
+
+            int floatEnd = (i + 1 < size) ? floatStarts[i + 1] : floatCount;
+            int otherFloatEnd = (i + 1 < other.size) ? other.floatStarts[i + 1] : other.floatCount;
+            if (!Arrays.equals(floats, floatStarts[i], floatEnd, other.floats, other.floatStarts[i], otherFloatEnd)) return i;
+        }
+        return (size == other.size) ? -1 : common;
+    }
+
+    /** @return True if both are layers of their lists, with the same pixels */
+    private boolean sameLayer(Object layer, DisplayList other, Object otherLayer) {
+        if (!layers.contains(layer) || !other.layers.contains(otherLayer)) return false;
+
+        BufferedImage a = (BufferedImage) layer;
+        BufferedImage b = (BufferedImage) otherLayer;
+        if (a.getWidth() != b.getWidth() || a.getHeight() != b.getHeight()) return false;
+
+        int width = a.getWidth();
+        if (rowA == null || rowA.length < width) {
+            rowA = new int[width];
+            rowB = new int[width];
+        }
+        for (int y = 0; y < a.getHeight(); y++) {
+            a.getRaster().getDataElements(0, y, width, 1, rowA);
+            b.getRaster().getDataElements(0, y, width, 1, rowB);
+            if (!Arrays.equals(rowA, 0, width, rowB, 0, width)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Write every operation as a line of text, for debugging.
+     */
+    public void write(Appendable out) throws IOException {
+        for (int i = 0; i < size; i++) {
+            out.append(String.format(Locale.ROOT, "%5d %-11s", i, OP_NAMES[opcodes[i]]));
+
+            int intEnd = (i + 1 < size) ? intStarts[i + 1] : intCount;
+            for (int n = intStarts[i]; n < intEnd; n++) {
+                out.append(' ').append(Integer.toString(ints[n]));
+            }
+            int floatEnd = (i + 1 < size) ? floatStarts[i + 1] : floatCount;
+            for (int f = floatStarts[i]; f < floatEnd; f++) {
+                out.append(' ').append(Float.toString(floats[f]));
+            }
+
+            if (opcodes[i] == OP_IMAGE_TRANSFORMED) {
+                AffineTransform transform = transforms[i];
+                out.append(String.format(Locale.ROOT, " [%s %s %s; %s %s %s]",
+                        transform.getScaleX(), transform.getShearX(), transform.getTranslateX(),
+                        transform.getShearY(), transform.getScaleY(), transform.getTranslateY()));
+            }
+
+            Object reference = references[i];
+            if (reference instanceof BufferedImage) {
+                BufferedImage image = (BufferedImage) reference;
+                out.append(String.format(Locale.ROOT, " image@%08x %dx%d",
+                        System.identityHashCode(image), image.getWidth(), image.getHeight()));
+            } else if (reference instanceof Font) {
+                Font font = (Font) reference;
+                out.append(" font ").append(font.getFontName()).append(' ').append(Float.toString(font.getSize2D()));
+            }
+            if (texts[i] != null) {
+                out.append(" \"").append(texts[i]).append('"');
+            }
+            out.append('\n');
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void drawImage(BufferedImage image, int x, int y) {
+        drawImage(image, x, y, 0, 0, image.getWidth(), image.getHeight());
+    }
+
+    @Override
+    public void drawImage(BufferedImage image, int x, int y, int sourceX, int sourceY, int width, int height) {
+        if (width <= 0 || height <= 0) return;
+        add(OP_IMAGE, 7, 0);
+        references[size - 1] = image;
+        addInts(x, y, sourceX, sourceY, width, height);
+        ints[intCount++] = ImageVersions.get(image);
+    }
+
+    @Override
+    public void drawImageScaled(BufferedImage image, int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) return;
+        add(OP_IMAGE_SCALED, 5, 0);
+        references[size - 1] = image;
+        addInts(x, y, width, height);
+        ints[intCount++] = ImageVersions.get(image);
+    }
+
+    @Override
+    public void drawImage(BufferedImage image, AffineTransform transform) {
+        add(OP_IMAGE_TRANSFORMED, 1, 0);
+        references[size - 1] = image;
+        ints[intCount++] = ImageVersions.get(image);
+        if (transforms[size - 1] == null) {
+            transforms[size - 1] = new AffineTransform(transform);
+        } else {
+            transforms[size - 1].setTransform(transform);
+        }
+    }
+
+    @Override
+    public void fillCircle(float centerX, float centerY, float diameter, int argb) {
+        add(OP_CIRCLE, 1, 3);
+        ints[intCount++] = argb;
+        floats[floatCount++] = centerX;
+        floats[floatCount++] = centerY;
+        floats[floatCount++] = diameter;
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height, int argb) {
+        add(OP_RECT, 5, 0);
+        addInts(x, y, width, height);
+        ints[intCount++] = argb;
+    }
+
+    @Override
+    public void drawText(String text, Font font, int x, int y, int argb) {
+        add(OP_TEXT, 3, 0);
+        references[size - 1] = font;
+        texts[size - 1] = text;
+        ints[intCount++] = x;
+        ints[intCount++] = y;
+        ints[intCount++] = argb;
+    }
+
+    @Override
+    public void translate(int dx, int dy) {
+        if (dx == 0 && dy == 0) return;
+        add(OP_TRANSLATE, 2, 0);
+        ints[intCount++] = dx;
+        ints[intCount++] = dy;
+        translateX += dx;
+        translateY += dy;
+    }
+
+    @Override
+    public void setAlpha(float alpha) {
+        if (alpha == this.alpha) return;
+        add(OP_ALPHA, 0, 1);
+        floats[floatCount++] = alpha;
+        this.alpha = alpha;
+    }
+
+    @Override
+    public float getAlpha() {
+        return alpha;
+    }
+
+    /**
+     * @return A Java2D context for a layer that is drawn at this point in the list
+     */
+    @Override
+    public Graphics2D getGraphics() {
+        // Keep drawing into the current layer if nothing has been recorded over it
+        if (layerOp != size) {
+            if (layerCount == layers.size()) {
+                BufferedImage layer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+                Graphics2D g = layer.createGraphics();
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+                layers.add(layer);
+                layerGraphics.add(g);
+            }
+
+            // The layer is in screen coordinates, so undo the translation when it is drawn.
+            // The opacity is applied when the layer is drawn, not while drawing into it.
+            drawImage(layers.get(layerCount), -translateX, -translateY);
+            layerCount++;
+            layerOp = size;
+        }
+
+        Graphics2D g = layerGraphics.get(layerCount - 1);
+        g.setComposite(AlphaComposite.SrcOver);
+        g.setTransform(IDENTITY);
+        g.translate(translateX, translateY);
+        return g;
+    }
+
+    private void add(byte opcode, int intArgs, int floatArgs) {
+        if (size == opcodes.length) {
+            int capacity = size * 2;
+            opcodes = Arrays.copyOf(opcodes, capacity);
+            intStarts = Arrays.copyOf(intStarts, capacity);
+            floatStarts = Arrays.copyOf(floatStarts, capacity);
+            references = Arrays.copyOf(references, capacity);
+            texts = Arrays.copyOf(texts, capacity);
+            transforms = Arrays.copyOf(transforms, capacity);
+        }
+        if (intCount + intArgs > ints.length) {
+            ints = Arrays.copyOf(ints, Math.max(ints.length * 2, intCount + intArgs));
+        }
+        if (floatCount + floatArgs > floats.length) {
+            floats = Arrays.copyOf(floats, Math.max(floats.length * 2, floatCount + floatArgs));
+        }
+
+        opcodes[size] = opcode;
+        intStarts[size] = intCount;
+        floatStarts[size] = floatCount;
+        size++;
+    }
+
+    private void addInts(int a, int b, int c, int d) {
+        ints[intCount++] = a;
+        ints[intCount++] = b;
+        ints[intCount++] = c;
+        ints[intCount++] = d;
+    }
+
+    private void addInts(int a, int b, int c, int d, int e, int f) {
+        addInts(a, b, c, d);
+        ints[intCount++] = e;
+        ints[intCount++] = f;
+    }
+
+}
@@ -0,0 +1,216 @@
+package com.gpergrossi.spaceinvaders.render;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Scales a finished frame to the size it is presented at, working directly on the int[]
+ * pixels of both images, with either nearest neighbor or bilinear filtering.
+ *
+ * Java2D's own bilinear scaling runs in software unless the pipeline is accelerated, and
+ * then takes longer than drawing the frame did, which defeats drawing a smaller frame to
+ * save time. This does the same job with integer math, and red and blue together in one
+ * int, in bands of rows on a fork/join pool.
+ *
+ * Bilinear filtering first scales source rows to the target width, lerping between two
+ * columns for each pixel, then lerps between two of those rows for each target row. Each
+ * band keeps the last two source rows it scaled, so when scaling up a source row is only
+ * scaled once for all the target rows that use it. The columns and fractions for each
+ * target column only change with the sizes, so they are worked out once.
+ */
+public class FrameScaler {
+
+    /** Each thread gets about this many bands */
+    private static final int BANDS_PER_THREAD = 2;
+
+    private ForkJoinPool pool;
+    private int bandCount;
+
+    private boolean bilinear;
+
+    /** The sizes the tables below were worked out for */
+    private int sourceWidth, sourceHeight, targetWidth, targetHeight;
+
+    /** The source columns on either side of each target column, and how far to lerp between them, out of 256 */
+    private int[] sourceColumn, nextSourceColumn, sourceColumnFraction;
+
+    /** Each band's two source rows scaled to the target width */
+    private int[][] bandUpperRows, bandLowerRows;
+
+    /** The pixels of the images being scaled */
+    private int[] source, target;
+
+    /**
+     * @param pool The threads to scale on
+     * @param bilinear True to blend between pixels, false to take the nearest pixel
+     */
+    public FrameScaler(ForkJoinPool pool, boolean bilinear) {
+        this.pool = pool;
+        this.bilinear = bilinear;
+        this.bandCount = pool.getParallelism() * BANDS_PER_THREAD;
+    }
+
+    /**
+     * Scale the whole of one image to fill another, returning once every band is done.
+     *
+     * @param sourceImage An INT_RGB image to scale
+     * @param targetImage An INT_RGB image to scale it into
+     */
+    public void scale(BufferedImage sourceImage, BufferedImage targetImage) {
+        if (sourceImage.getType() != BufferedImage.TYPE_INT_RGB || targetImage.getType() != BufferedImage.TYPE_INT_RGB) {
+            throw new IllegalArgumentException("Can only scale INT_RGB images");
+        }
+
+        if (sourceImage.getWidth() != sourceWidth || sourceImage.getHeight() != sourceHeight
+                || targetImage.getWidth() != targetWidth || targetImage.getHeight() != targetHeight) {
+            resize(sourceImage.getWidth(), sourceImage.getHeight(), targetImage.getWidth(), targetImage.getHeight());
+        }
+
+        this.source = ((DataBufferInt) sourceImage.getRaster().getDataBuffer()).getData();
+        this.target = ((DataBufferInt) targetImage.getRaster().getDataBuffer()).getData();
+        pool.invoke(new BandTask(0, bandCount));
+        this.source = null;
+        this.target = null;
+    }
+
+    public boolean isBilinear() {
+        return bilinear;
+    }
+
+    private void resize(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight) {
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+        this.targetWidth = targetWidth;
+        this.targetHeight = targetHeight;
+
+        this.sourceColumn = new int[targetWidth];
+        this.nextSourceColumn = new int[targetWidth];
+        this.sourceColumnFraction = new int[targetWidth];
+        for (int x = 0; x < targetWidth; x++) {
+            if (bilinear) {
+                int position = samplePosition(x, sourceWidth, targetWidth);
+                sourceColumn[x] = position >> 8;
+                nextSourceColumn[x] = Math.min((position >> 8) + 1, sourceWidth - 1);
+                sourceColumnFraction[x] = position & 0xFF;
+            } else {
+                sourceColumn[x] = nearest(x, sourceWidth, targetWidth);
+            }
+        }
+
+        this.bandUpperRows = new int[bandCount][targetWidth];
+        this.bandLowerRows = new int[bandCount][targetWidth];
+    }
+
+    /** The source pixel whose area holds the middle of a target pixel */
+    private static int nearest(int i, int sourceSize, int targetSize) {
+        return (int) (((2L * i + 1) * sourceSize) / (2L * targetSize));
+    }
+
+    /**
+     * Where the middle of a target pixel falls between the middles of the source pixels,
+     * in 256ths of a source pixel, kept within the image.
+     */
+    private static int samplePosition(int i, int sourceSize, int targetSize) {
+        long position = (((2L * i + 1) * sourceSize * 256) / (2L * targetSize)) - 128;
+        return (int) Math.max(0, Math.min(position, (sourceSize - 1) * 256L));
+    }
+
+    private void scaleRows(int band, int top, int bottom) {
+        int[] source = this.source;
+        int[] target = this.target;
+        int[] sourceColumn = this.sourceColumn;
+
+        if (!bilinear) {
+            for (int y = top; y < bottom; y++) {
+                int sourceRow = nearest(y, sourceHeight, targetHeight) * sourceWidth;
+                int targetRow = y * targetWidth;
+                for (int x = 0; x < targetWidth; x++) {
+                    target[targetRow + x] = source[sourceRow + sourceColumn[x]];
+                }
+            }
+            return;
+        }
+
+        int[] upper = bandUpperRows[band];
+        int[] lower = bandLowerRows[band];
+        int upperRow = -1, lowerRow = -1;
+
+        for (int y = top; y < bottom; y++) {
+            int position = samplePosition(y, sourceHeight, targetHeight);
+            int above = position >> 8;
+            int below = Math.min(above + 1, sourceHeight - 1);
+            int fraction = position & 0xFF;
+
+            // Moving down a row, the old lower row is usually the new upper row
+            if (upperRow != above) {
+                if (lowerRow == above) {
+                    int[] swap = upper;
+                    upper = lower;
+                    lower = swap;
+                    lowerRow = upperRow;
+                } else {
+                    scaleRow(above, upper);
+                }
+                upperRow = above;
+            }
+            if (lowerRow != below) {
+                scaleRow(below, lower);
+                lowerRow = below;
+            }
+
+            int targetRow = y * targetWidth;
+            for (int x = 0; x < targetWidth; x++) {
+                target[targetRow + x] = lerp(upper[x], lower[x], fraction);
+            }
+        }
+    }
+
+    /** Scale one source row to the target width */
+    private void scaleRow(int sourceY, int[] row) {
+        int[] source = this.source;
+        int[] sourceColumn = this.sourceColumn;
+        int[] nextSourceColumn = this.nextSourceColumn;
+        int[] sourceColumnFraction = this.sourceColumnFraction;
+        int start = sourceY * sourceWidth;
+
+        for (int x = 0; x < targetWidth; x++) {
+            row[x] = lerp(source[start + sourceColumn[x]], source[start + nextSourceColumn[x]], sourceColumnFraction[x]);
+        }
+    }
+
+    /** Lerp between two colors, red and blue together and green on its own */
+    private static int lerp(int a, int b, int fraction) {
+        int inverse = 256 - fraction;
+        return ((((a & 0xFF00FF) * inverse + (b & 0xFF00FF) * fraction) >>> 8) & 0xFF00FF)
+                | ((((a & 0xFF00) * inverse + (b & 0xFF00) * fraction) >>> 8) & 0xFF00);
+    }
+
+    /**
+     * Scales a range of bands, splitting it in half until there is one band per task.
+     */
+    private class BandTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int first, end;
+
+        private BandTask(int first, int end) {
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - first > 1) {
+                int middle = (first + end) >>> 1;
+                invokeAll(new BandTask(first, middle), new BandTask(middle, end));
+                return;
+            }
+
+            scaleRows(first, first * targetHeight / bandCount, (first + 1) * targetHeight / bandCount);
+        }
+    }
+
+}
@@ -0,0 +1,673 @@
+package com.gpergrossi.spaceinvaders.render;
+
+import com.gpergrossi.spaceinvaders.assets.Fonts;
+import com.gpergrossi.spaceinvaders.assets.GlyphAtlas;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.WeakHashMap;
+
+/**
+ * Draws a frame in pure Java, straight into the int[] pixels of an opaque image.
+ *
+ * Images are blended pixel by pixel from their own int[] pixels, so nothing goes through
+ * Java2D's pipeline until the whole frame is presented with one drawImage. Images stored
+ * as INT_ARGB_PRE, INT_ARGB or INT_RGB are read directly. Any other image is converted
+ * once to INT_ARGB_PRE the first time it is drawn, so those must not change afterwards.
+ *
+ * Scaled and transformed images are sampled with nearest neighbor, like Java2D's default. Circles get an
+ * analytic antialiased edge and text is drawn from each font's GlyphAtlas, so both can
+ * differ from Java2D by a little along their edges.
+ *
+ * The frame can have fewer pixels than the game has coordinates, with a render scale
+ * below 1. Everything is drawn scaled down to match, images and text included, so the
+ * game draws the same way whatever the scale.
+ *
+ * A band of rows of a framebuffer can be drawn through its own backend, created with
+ * createBand(). Bands share the framebuffer's pixels but only touch their own rows, so
+ * several bands can be drawn on different threads at once. Every pixel comes out the
+ * same whichever band draws it.
+ *
+ * Call begin() before drawing each frame, then present getImage().
+ */
+public class FramebufferRenderBackend implements RenderBackend {
+
+    private static final int OPAQUE = 255;
+
+    /** Composites for each opacity level, created as they are needed */
+    private static final AlphaComposite[] composites = new AlphaComposite[OPAQUE + 1];
+
+    private static final AffineTransform IDENTITY = new AffineTransform();
+
+    /** The size of the frame in pixels */
+    private int width, height;
+
+    /** Game coordinates are multiplied by this to get pixels */
+    private float scale;
+
+    /** Only rows from clipTop up to but not including clipBottom are drawn */
+    private int clipTop, clipBottom;
+
+    private BufferedImage image;
+    private int[] pixels;
+
+    private int translateX, translateY;
+
+    private float alpha;
+
+    /** The opacity as a level from 0 to 255 */
+    private int alphaLevel;
+
+    /** Created the first time something draws through Java2D */
+    private Graphics2D graphics;
+
+    /** Pre-multiplied copies of images whose pixels can't be read directly */
+    private WeakHashMap<BufferedImage, int[]> converted;
+
+    /** Scratch space for scaled images: the source column of each destination column, and one gathered row */
+    private int[] scaledColumns, scaledRow;
+
+    /** Fonts scaled by the render scale, so that text is drawn from glyphs of the right size */
+    private HashMap<Font, Font> scaledFonts;
+
+    public FramebufferRenderBackend(int width, int height) {
+        this(width, height, 1.0f);
+    }
+
+    /**
+     * @param width The width of the game in its own coordinates
+     * @param height The height of the game in its own coordinates
+     * @param scale The size of the frame's pixels compared to the game's coordinates, 0.5 for a frame half as wide
+     */
+    public FramebufferRenderBackend(int width, int height, float scale) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Framebuffer size must be positive: " + width + "x" + height);
+        }
+        if (!(scale > 0.0f)) {
+            throw new IllegalArgumentException("Framebuffer scale must be positive: " + scale);
+        }
+
+        this.width = Math.max(1, Math.round(width * scale));
+        this.height = Math.max(1, Math.round(height * scale));
+        this.scale = scale;
+
+        // Writing through the data buffer means Java2D won't accelerate this image,
+        // which is fine since it is only ever presented once per frame
+        this.image = new BufferedImage(this.width, this.height, BufferedImage.TYPE_INT_RGB);
+        this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+        this.clipTop = 0;
+        this.clipBottom = this.height;
+
+        this.converted = new WeakHashMap<>();
+        this.scaledFonts = new HashMap<>();
+        this.alpha = 1.0f;
+        this.alphaLevel = OPAQUE;
+    }
+
+    private FramebufferRenderBackend(FramebufferRenderBackend frame, int clipTop, int clipBottom) {
+        this.width = frame.width;
+        this.height = frame.height;
+        this.scale = frame.scale;
+        this.image = frame.image;
+        this.pixels = frame.pixels;
+        this.clipTop = clipTop;
+        this.clipBottom = clipBottom;
+
+        // Shared, so that an image is only converted once whichever band draws it first
+        this.converted = frame.converted;
+        this.scaledFonts = new HashMap<>();
+        this.alpha = 1.0f;
+        this.alphaLevel = OPAQUE;
+    }
+
+    /**
+     * Create a backend that draws into the same pixels, but only into a band of rows.
+     *
+     * @param top The first row of the band
+     * @param bottom The row after the last row of the band
+     */
+    public FramebufferRenderBackend createBand(int top, int bottom) {
+        if (top < 0 || bottom > height || top >= bottom) {
+            throw new IllegalArgumentException("Band rows " + top + " to " + bottom + " are not within the frame's " + height + " rows");
+        }
+        return new FramebufferRenderBackend(this, top, bottom);
+    }
+
+    /**
+     * Start drawing a frame, resetting the translation and opacity. The previous frame's pixels are left as they were.
+     */
+    public void begin() {
+        this.translateX = 0;
+        this.translateY = 0;
+        this.alpha = 1.0f;
+        this.alphaLevel = OPAQUE;
+    }
+
+    /**
+     * Fill every row this backend draws with a color, ignoring the translation and opacity.
+     *
+     * @param rgb The color, its alpha is ignored
+     */
+    public void clear(int rgb) {
+        Arrays.fill(pixels, clipTop * width, clipBottom * width, rgb & 0xFFFFFF);
+    }
+
+    /**
+     * @return The frame, to be presented once it has been drawn
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    @Override
+    public void drawImage(BufferedImage image, int x, int y) {
+        drawImage(image, x, y, 0, 0, image.getWidth(), image.getHeight());
+    }
+
+    @Override
+    public void drawImage(BufferedImage source, int x, int y, int sourceX, int sourceY, int width, int height) {
+        if (alphaLevel == 0) return;
+
+        // Clip to the source image
+        if (sourceX < 0) { x -= sourceX; width += sourceX; sourceX = 0; }
+        if (sourceY < 0) { y -= sourceY; height += sourceY; sourceY = 0; }
+        width = Math.min(width, source.getWidth() - sourceX);
+        height = Math.min(height, source.getHeight() - sourceY);
+
+        x += translateX;
+        y += translateY;
+        if (scale != 1.0f) {
+            int left = Math.round(x * scale);
+            int top = Math.round(y * scale);
+            blitScaled(source, sourceX, sourceY, width, height,
+                    left, top, Math.round((x + width) * scale) - left, Math.round((y + height) * scale) - top);
+            return;
+        }
+
+        // Clip to the frame
+        if (x < 0) { sourceX -= x; width += x; x = 0; }
+        if (y < clipTop) { sourceY += clipTop - y; height -= clipTop - y; y = clipTop; }
+        width = Math.min(width, this.width - x);
+        height = Math.min(height, clipBottom - y);
+        if (width <= 0 || height <= 0) return;
+
+        int[] src = getPixels(source);
+        int stride = getStride(source);
+        int format = getFormat(source);
+
+        for (int row = 0; row < height; row++) {
+            int srcIndex = (sourceY + row) * stride + sourceX;
+            int dstIndex = (y + row) * this.width + x;
+
+            if (alphaLevel == OPAQUE) {
+                if (format == BufferedImage.TYPE_INT_RGB) {
+                    System.arraycopy(src, srcIndex, pixels, dstIndex, width);
+                    continue;
+                }
+                if (format == BufferedImage.TYPE_INT_ARGB_PRE) {
+                    blendRow(src, srcIndex, dstIndex, width);
+                    continue;
+                }
+            }
+
+            for (int i = 0; i < width; i++) {
+                blendPixel(dstIndex + i, src[srcIndex + i], format);
+            }
+        }
+    }
+
+    @Override
+    public void drawImageScaled(BufferedImage source, int x, int y, int width, int height) {
+        x += translateX;
+        y += translateY;
+        if (scale != 1.0f) {
+            int left = Math.round(x * scale);
+            int top = Math.round(y * scale);
+            width = Math.round((x + width) * scale) - left;
+            height = Math.round((y + height) * scale) - top;
+            x = left;
+            y = top;
+        }
+        blitScaled(source, 0, 0, source.getWidth(), source.getHeight(), x, y, width, height);
+    }
+
+    /** Draw part of an image stretched over a rectangle of pixels, sampling the nearest source pixel */
+    private void blitScaled(BufferedImage source, int sourceX, int sourceY, int sourceWidth, int sourceHeight,
+                            int x, int y, int width, int height) {
+        if (alphaLevel == 0 || sourceWidth <= 0 || sourceHeight <= 0 || width <= 0 || height <= 0) return;
+
+        int[] src = getPixels(source);
+        int stride = getStride(source);
+        int format = getFormat(source);
+
+        int startX = Math.max(0, -x);
+        int startY = Math.max(0, clipTop - y);
+        int endX = Math.min(width, this.width - x);
+        int endY = Math.min(height, clipBottom - y);
+
+        int count = endX - startX;
+        if (count <= 0 || startY >= endY) return;
+
+        // Sample at the center of each destination pixel, the columns are the same for every row
+        if (scaledColumns == null || scaledColumns.length < count) {
+            scaledColumns = new int[count];
+            scaledRow = new int[count];
+        }
+        int[] columns = scaledColumns;
+        int[] gathered = scaledRow;
+        for (int i = 0; i < count; i++) {
+            columns[i] = sourceX + (int) (((2L * (startX + i) + 1) * sourceWidth) / (2L * width));
+        }
+
+        for (int row = startY; row < endY; row++) {
+            int sy = sourceY + (int) (((2L * row + 1) * sourceHeight) / (2L * height));
+            int srcRow = sy * stride;
+            int dstIndex = (y + row) * this.width + x + startX;
+
+            // Gathering the row first lets it be drawn the same fast way as an unscaled row
+            for (int i = 0; i < count; i++) {
+                gathered[i] = src[srcRow + columns[i]];
+            }
+
+            if (alphaLevel == OPAQUE && format == BufferedImage.TYPE_INT_RGB) {
+                System.arraycopy(gathered, 0, pixels, dstIndex, count);
+            } else if (alphaLevel == OPAQUE && format == BufferedImage.TYPE_INT_ARGB_PRE) {
+                blendRow(gathered, 0, dstIndex, count);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    blendPixel(dstIndex + i, gathered[i], format);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void drawImage(BufferedImage source, AffineTransform transform) {
+        if (alphaLevel == 0) return;
+
+        // From the image's pixels to the frame's, through the translation and the render scale
+        double m00 = scale * transform.getScaleX();
+        double m01 = scale * transform.getShearX();
+        double m02 = scale * (transform.getTranslateX() + translateX);
+        double m10 = scale * transform.getShearY();
+        double m11 = scale * transform.getScaleY();
+        double m12 = scale * (transform.getTranslateY() + translateY);
+
+        double determinant = m00 * m11 - m01 * m10;
+        if (determinant == 0) return;
+
+        // And back again, to find the image pixel under each frame pixel
+        double i00 = m11 / determinant;
+        double i01 = -m01 / determinant;
+        double i02 = (m01 * m12 - m11 * m02) / determinant;
+        double i10 = -m10 / determinant;
+        double i11 = m00 / determinant;
+        double i12 = (m10 * m02 - m00 * m12) / determinant;
+
+        // The frame pixels the image's corners enclose
+        int sourceWidth = source.getWidth();
+        int sourceHeight = source.getHeight();
+        double minX = m02, maxX = m02, minY = m12, maxY = m12;
+        for (int corner = 1; corner < 4; corner++) {
+            double u = (corner & 1) * sourceWidth;
+            double v = (corner >> 1) * sourceHeight;
+            double x = m00 * u + m01 * v + m02;
+            double y = m10 * u + m11 * v + m12;
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+        int left = Math.max(0, (int) Math.floor(minX));
+        int top = Math.max(clipTop, (int) Math.floor(minY));
+        int right = Math.min(width, (int) Math.ceil(maxX));
+        int bottom = Math.min(clipBottom, (int) Math.ceil(maxY));
+        if (left >= right || top >= bottom) return;
+
+        int[] src = getPixels(source);
+        int stride = getStride(source);
+        int format = getFormat(source);
+
+        // Sample at the center of each frame pixel
+        for (int py = top; py < bottom; py++) {
+            double u = i00 * (left + 0.5) + i01 * (py + 0.5) + i02;
+            double v = i10 * (left + 0.5) + i11 * (py + 0.5) + i12;
+            int row = py * width;
+            for (int px = left; px < right; px++, u += i00, v += i10) {
+                if (u < 0 || v < 0 || u >= sourceWidth || v >= sourceHeight) continue;
+                blendPixel(row + px, src[(int) v * stride + (int) u], format);
+            }
+        }
+    }
+
+    @Override
+    public void fillCircle(float centerX, float centerY, float diameter, int argb) {
+        int colorAlpha = ((argb >>> 24) * alphaLevel + 127) / OPAQUE;
+        if (colorAlpha == 0 || diameter <= 0) return;
+
+        float radius = diameter * 0.5f * scale;
+        centerX = (centerX + translateX) * scale;
+        centerY = (centerY + translateY) * scale;
+
+        // Circles smaller than a pixel are spread over one, with their coverage scaled down to match
+        float drawRadius = Math.max(radius, 0.5f);
+        float areaScale = (radius * radius) / (drawRadius * drawRadius);
+
+        // The soft edge reaches half a pixel past the radius
+        float extent = drawRadius + 0.5f;
+        int minX = Math.max(0, (int) Math.floor(centerX - extent));
+        int minY = Math.max(clipTop, (int) Math.floor(centerY - extent));
+        int maxX = Math.min(width, (int) Math.ceil(centerX + extent));
+        int maxY = Math.min(clipBottom, (int) Math.ceil(centerY + extent));
+
+        int red = (argb >> 16) & 0xFF;
+        int green = (argb >> 8) & 0xFF;
+        int blue = argb & 0xFF;
+
+        for (int py = minY; py < maxY; py++) {
+            float dy = py + 0.5f - centerY;
+            int row = py * width;
+            for (int px = minX; px < maxX; px++) {
+                float dx = px + 0.5f - centerX;
+                float distance = (float) Math.sqrt(dx * dx + dy * dy);
+
+                // How much of the pixel is inside the edge, treating the edge as straight across the pixel
+                float coverage = extent - distance;
+                if (coverage <= 0f) continue;
+                if (coverage > 1f) coverage = 1f;
+
+                int a = Math.round(colorAlpha * coverage * areaScale);
+                blendColor(row + px, a, red, green, blue);
+            }
+        }
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height, int argb) {
+        int colorAlpha = ((argb >>> 24) * alphaLevel + 127) / OPAQUE;
+        if (colorAlpha == 0) return;
+
+        x += translateX;
+        y += translateY;
+        int right = x + width;
+        int bottom = y + height;
+        if (scale != 1.0f) {
+            x = Math.round(x * scale);
+            y = Math.round(y * scale);
+            right = Math.round(right * scale);
+            bottom = Math.round(bottom * scale);
+        }
+        int minX = Math.max(0, x);
+        int minY = Math.max(clipTop, y);
+        int maxX = Math.min(this.width, right);
+        int maxY = Math.min(clipBottom, bottom);
+        if (minX >= maxX || minY >= maxY) return;
+
+        int red = (argb >> 16) & 0xFF;
+        int green = (argb >> 8) & 0xFF;
+        int blue = argb & 0xFF;
+
+        for (int py = minY; py < maxY; py++) {
+            int row = py * this.width;
+            if (colorAlpha == OPAQUE) {
+                Arrays.fill(pixels, row + minX, row + maxX, argb & 0xFFFFFF);
+            } else {
+                for (int px = minX; px < maxX; px++) {
+                    blendColor(row + px, colorAlpha, red, green, blue);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void drawText(String text, Font font, int x, int y, int argb) {
+        int colorAlpha = ((argb >>> 24) * alphaLevel + 127) / OPAQUE;
+        if (colorAlpha == 0) return;
+
+        int red = (argb >> 16) & 0xFF;
+        int green = (argb >> 8) & 0xFF;
+        int blue = argb & 0xFF;
+
+        GlyphAtlas atlas = Fonts.get().getGlyphAtlas(scale != 1.0f ? getScaledFont(font) : font);
+        int penX = Math.round((x + translateX) * scale);
+        int penY = Math.round((y + translateY) * scale);
+
+        for (int i = 0; i < text.length(); i++) {
+            GlyphAtlas.Glyph glyph = atlas.getGlyph(text.charAt(i));
+            byte[] coverage = glyph.getCoverage();
+            if (coverage != null) {
+                int left = penX + glyph.getLeft();
+                int top = penY + glyph.getTop();
+                int glyphWidth = glyph.getWidth();
+
+                int startX = Math.max(0, -left);
+                int startY = Math.max(0, clipTop - top);
+                int endX = Math.min(glyphWidth, width - left);
+                int endY = Math.min(glyph.getHeight(), clipBottom - top);
+
+                for (int gy = startY; gy < endY; gy++) {
+                    int row = (top + gy) * width + left;
+                    int coverageRow = gy * glyphWidth;
+                    for (int gx = startX; gx < endX; gx++) {
+                        int c = coverage[coverageRow + gx] & 0xFF;
+                        if (c == 0) continue;
+                        blendColor(row + gx, (colorAlpha * c + 127) / OPAQUE, red, green, blue);
+                    }
+                }
+            }
+            penX += glyph.getAdvance();
+        }
+    }
+
+    @Override
+    public void translate(int dx, int dy) {
+        translateX += dx;
+        translateY += dy;
+    }
+
+    @Override
+    public void setAlpha(float alpha) {
+        this.alpha = alpha;
+        this.alphaLevel = Math.round(Math.max(0.0f, Math.min(alpha, 1.0f)) * OPAQUE);
+    }
+
+    @Override
+    public float getAlpha() {
+        return alpha;
+    }
+
+    /**
+     * @throws IllegalStateException If this backend only draws a band of the frame
+     */
+    @Override
+    public Graphics2D getGraphics() {
+        if (clipTop != 0 || clipBottom != height) {
+            throw new IllegalStateException("A band of a framebuffer can't be drawn through Java2D");
+        }
+
+        if (graphics == null) {
+            graphics = image.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        }
+
+        // Bring the context in line with the backend's state, whatever was last done with it
+        graphics.setTransform(IDENTITY);
+        if (scale != 1.0f) {
+            graphics.scale(scale, scale);
+        }
+        graphics.translate(translateX, translateY);
+        graphics.setComposite(getComposite(alphaLevel));
+        return graphics;
+    }
+
+    private Font getScaledFont(Font font) {
+        Font scaled = scaledFonts.get(font);
+        if (scaled == null) {
+            scaled = font.deriveFont(font.getSize2D() * scale);
+            scaledFonts.put(font, scaled);
+        }
+        return scaled;
+    }
+
+    /** Blend a row of pre-multiplied pixels over the frame, the common case for sprites and cached layers */
+    private void blendRow(int[] src, int srcIndex, int dstIndex, int count) {
+        int[] pixels = this.pixels;
+        for (int i = 0; i < count; i++) {
+            int s = src[srcIndex + i];
+            int a = s >>> 24;
+            if (a == 0) continue;
+            if (a == OPAQUE) {
+                pixels[dstIndex + i] = s & 0xFFFFFF;
+                continue;
+            }
+
+            int dst = pixels[dstIndex + i];
+            int inverse = OPAQUE - a;
+            int r = ((s >> 16) & 0xFF) + (((dst >> 16) & 0xFF) * inverse + 127) / OPAQUE;
+            int g = ((s >> 8) & 0xFF) + (((dst >> 8) & 0xFF) * inverse + 127) / OPAQUE;
+            int b = (s & 0xFF) + ((dst & 0xFF) * inverse + 127) / OPAQUE;
+            pixels[dstIndex + i] = (Math.min(r, OPAQUE) << 16) | (Math.min(g, OPAQUE) << 8) | Math.min(b, OPAQUE);
+        }
+    }
+
+    /** Blend one source pixel, in the source image's format, over a frame pixel with the current opacity */
+    private void blendPixel(int index, int src, int format) {
+        int a, r, g, b;
+        if (format == BufferedImage.TYPE_INT_RGB) {
+            a = OPAQUE;
+            r = (src >> 16) & 0xFF;
+            g = (src >> 8) & 0xFF;
+            b = src & 0xFF;
+        } else {
+            a = src >>> 24;
+            if (a == 0) return;
+            r = (src >> 16) & 0xFF;
+            g = (src >> 8) & 0xFF;
+            b = src & 0xFF;
+            if (format == BufferedImage.TYPE_INT_ARGB) {
+                r = (r * a + 127) / OPAQUE;
+                g = (g * a + 127) / OPAQUE;
+                b = (b * a + 127) / OPAQUE;
+            }
+        }
+
+        if (alphaLevel != OPAQUE) {
+            a = (a * alphaLevel + 127) / OPAQUE;
+            r = (r * alphaLevel + 127) / OPAQUE;
+            g = (g * alphaLevel + 127) / OPAQUE;
+            b = (b * alphaLevel + 127) / OPAQUE;
+        }
+
+        if (a == OPAQUE) {
+            pixels[index] = (r << 16) | (g << 8) | b;
+            return;
+        }
+
+        int dst = pixels[index];
+        int inverse = OPAQUE - a;
+        r += (((dst >> 16) & 0xFF) * inverse + 127) / OPAQUE;
+        g += (((dst >> 8) & 0xFF) * inverse + 127) / OPAQUE;
+        b += ((dst & 0xFF) * inverse + 127) / OPAQUE;
+        pixels[index] = (Math.min(r, OPAQUE) << 16) | (Math.min(g, OPAQUE) << 8) | Math.min(b, OPAQUE);
+    }
+
+    /** Blend a color that is not pre-multiplied over a frame pixel */
+    private void blendColor(int index, int a, int red, int green, int blue) {
+        if (a <= 0) return;
+        if (a >= OPAQUE) {
+            pixels[index] = (red << 16) | (green << 8) | blue;
+            return;
+        }
+
+        int dst = pixels[index];
+        int inverse = OPAQUE - a;
+        int r = (red * a + ((dst >> 16) & 0xFF) * inverse + 127) / OPAQUE;
+        int g = (green * a + ((dst >> 8) & 0xFF) * inverse + 127) / OPAQUE;
+        int b = (blue * a + (dst & 0xFF) * inverse + 127) / OPAQUE;
+        pixels[index] = (r << 16) | (g << 8) | b;
+    }
+
+    private static AlphaComposite getComposite(int level) {
+        AlphaComposite composite = composites[level];
+        if (composite == null) {
+            composite = AlphaComposite.SrcOver.derive(level / (float) OPAQUE);
+            composites[level] = composite;
+        }
+        return composite;
+    }
+
+    /** @return True if an image's pixels are one int each, laid out row by row from the start of its buffer */
+    private static boolean isDirect(BufferedImage image) {
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_RGB:
+                WritableRaster raster = image.getRaster();
+                return raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+                        && raster.getSampleModel() instanceof SinglePixelPackedSampleModel;
+            default:
+                return false;
+        }
+    }
+
+    private int[] getPixels(BufferedImage image) {
+        if (isDirect(image)) {
+            return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+
+        // Bands may be drawn on several threads at once
+        synchronized (converted) {
+            return getConverted(image);
+        }
+    }
+
+    private int[] getConverted(BufferedImage image) {
+        int[] result = converted.get(image);
+        if (result == null) {
+            int w = image.getWidth();
+            int h = image.getHeight();
+            BufferedImage copy = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = copy.createGraphics();
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+
+            result = ((DataBufferInt) copy.getRaster().getDataBuffer()).getData();
+            converted.put(image, result);
+        }
+        return result;
+    }
+
+    private static int getStride(BufferedImage image) {
+        if (isDirect(image)) {
+            return ((SinglePixelPackedSampleModel) image.getSampleModel()).getScanlineStride();
+        }
+        return image.getWidth();
+    }
+
+    /** @return The format getPixels() returns the image's pixels in */
+    private static int getFormat(BufferedImage image) {
+        return isDirect(image) ? image.getType() : BufferedImage.TYPE_INT_ARGB_PRE;
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.gpergrossi.spaceinvaders.render;
+
+import java.awt.image.BufferedImage;
+import java.util.WeakHashMap;
+
+/**
+ * Version numbers for images whose pixels change after they are first drawn, like a
+ * damaged bunker, the particle layer or the HUD readout.
+ *
+ * Whatever changes such an image calls changed() afterward. A display list records each
+ * image's version along with the image itself, so two recorded frames that draw the same
+ * image with different pixels are not mistaken for the same frame. Images that never
+ * change once they are created, like sprites and cached variants of them, are always at
+ * version 0 and never need to be mentioned here.
+ */
+public final class ImageVersions {
+
+    /** The version of every image that has changed, forgotten once the image is */
+    private static final WeakHashMap<BufferedImage, int[]> versions = new WeakHashMap<>();
+
+    private ImageVersions() {}
+
+    /**
+     * Note that an image's pixels have changed.
+     */
+    public static synchronized void changed(BufferedImage image) {
+        int[] version = versions.get(image);
+        if (version == null) {
+            versions.put(image, new int[] { 1 });
+        } else {
+            version[0]++;
+        }
+    }
+
+    /**
+     * @return The number of times an image has changed, 0 if it never has
+     */
+    public static synchronized int get(BufferedImage image) {
+        int[] version = versions.get(image);
+        return (version == null) ? 0 : version[0];
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.gpergrossi.spaceinvaders.render;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Draws through a Graphics2D, which lets Java2D accelerate whatever it can.
+ */
+public class Java2DRenderBackend implements RenderBackend {
+
+    private static final int OPAQUE = 255;
+
+    /** Composites for each opacity level, created as they are needed */
+    private static final AlphaComposite[] composites = new AlphaComposite[OPAQUE + 1];
+
+    private Graphics2D g;
+    private float alpha;
+    private Composite opaqueComposite;
+
+    private Ellipse2D.Float circle;
+
+    /** The last color used, kept so that drawing in one color does not allocate */
+    private Color color;
+
+    public Java2DRenderBackend() {
+        this.circle = new Ellipse2D.Float();
+    }
+
+    /**
+     * Start drawing a frame onto a graphics context.
+     */
+    public void begin(Graphics2D g) {
+        this.g = g;
+        this.alpha = 1.0f;
+        this.opaqueComposite = g.getComposite();
+    }
+
+    @Override
+    public void drawImage(BufferedImage image, int x, int y) {
+        g.drawImage(image, x, y, null);
+    }
+
+    @Override
+    public void drawImage(BufferedImage image, int x, int y, int sourceX, int sourceY, int width, int height) {
+        g.drawImage(image, x, y, x + width, y + height, sourceX, sourceY, sourceX + width, sourceY + height, null);
+    }
+
+    @Override
+    public void drawImageScaled(BufferedImage image, int x, int y, int width, int height) {
+        g.drawImage(image, x, y, width, height, null);
+    }
+
+    @Override
+    public void drawImage(BufferedImage image, AffineTransform transform) {
+        g.drawImage(image, transform, null);
+    }
+
+    @Override
+    public void fillCircle(float centerX, float centerY, float diameter, int argb) {
+        float radius = diameter * 0.5f;
+        circle.setFrame(centerX - radius, centerY - radius, diameter, diameter);
+        g.setColor(getColor(argb));
+        g.fill(circle);
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height, int argb) {
+        g.setColor(getColor(argb));
+        g.fillRect(x, y, width, height);
+    }
+
+    @Override
+    public void drawText(String text, Font font, int x, int y, int argb) {
+        g.setFont(font);
+        g.setColor(getColor(argb));
+        g.drawString(text, x, y);
+    }
+
+    @Override
+    public void translate(int dx, int dy) {
+        g.translate(dx, dy);
+    }
+
+    @Override
+    public void setAlpha(float alpha) {
+        if (alpha == this.alpha) return;
+        this.alpha = alpha;
+
+        int level = Math.round(Math.max(0.0f, Math.min(alpha, 1.0f)) * OPAQUE);
+        g.setComposite(level == OPAQUE ? opaqueComposite : getComposite(level));
+    }
+
+    @Override
+    public float getAlpha() {
+        return alpha;
+    }
+
+    @Override
+    public Graphics2D getGraphics() {
+        return g;
+    }
+
+    private Color getColor(int argb) {
+        if (color == null || color.getRGB() != argb) {
+            color = new Color(argb, true);
+        }
+        return color;
+    }
+
+    private static AlphaComposite getComposite(int level) {
+        AlphaComposite composite = composites[level];
+        if (composite == null) {
+            composite = AlphaComposite.SrcOver.derive(level / (float) OPAQUE);
+            composites[level] = composite;
+        }
+        return composite;
+    }
+
+}
@@ -0,0 +1,209 @@
+package com.gpergrossi.spaceinvaders.render;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * A software render target for small glowing particles.
+ *
+ * Particles are stamped straight into the pixel array of an offscreen image, using soft
+ * round dots that are pre-computed at a range of sizes. Stamps are added together with
+ * saturating additive blending, so overlapping particles glow brighter instead of
+ * covering each other. The finished layer is drawn over the scene with a single image draw.
+ *
+ * The layer covers one region of the world per frame: call begin() with the region,
+ * stamp the particles, then call end() to draw the layer.
+ */
+public class ParticleLayer {
+
+    /** Stamps are made for every quarter pixel of diameter */
+    private static final int STAMP_STEPS_PER_PIXEL = 4;
+
+    /** Particles larger than this are drawn at this size */
+    private static final int MAX_STAMP_DIAMETER = 16;
+
+    /** Each stamp pixel's coverage is found by testing this many sub-pixel samples across and down */
+    private static final int SUPERSAMPLES = 4;
+
+    /** Every stamp, indexed by quantized diameter */
+    private static final Stamp[] stamps = createStamps();
+
+    private BufferedImage image;
+    private int[] pixels;
+    private int width, height;
+
+    /** The world location of the layer's top left pixel */
+    private int originX, originY;
+
+    /** The region touched since the layer was last cleared, in layer pixels */
+    private int dirtyMinX, dirtyMinY, dirtyMaxX, dirtyMaxY;
+
+    public ParticleLayer() {
+        resetDirty();
+    }
+
+    /**
+     * Clear the layer and place it over a region of the world.
+     */
+    public void begin(int worldX, int worldY, int width, int height) {
+        if (image == null || this.width != width || this.height != height) {
+            // Writing through the data buffer means Java2D won't accelerate this image,
+            // which is fine since it changes every frame anyway
+            this.image = new BufferedImage(Math.max(width, 1), Math.max(height, 1), BufferedImage.TYPE_INT_ARGB_PRE);
+            this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            this.width = width;
+            this.height = height;
+            resetDirty();
+        } else {
+            clearDirty();
+        }
+
+        this.originX = worldX;
+        this.originY = worldY;
+
+        // Whatever is stamped next is a new picture
+        ImageVersions.changed(image);
+    }
+
+    /**
+     * Add a soft dot to the layer.
+     *
+     * @param x The world x location of the dot's center
+     * @param y The world y location of the dot's center
+     * @param diameter The diameter of the dot in pixels
+     * @param argb The color of the dot, not pre-multiplied
+     */
+    public void stamp(float x, float y, float diameter, int argb) {
+        int alpha = argb >>> 24;
+        if (alpha == 0) return;
+
+        int step = Math.round(diameter * STAMP_STEPS_PER_PIXEL);
+        if (step <= 0) return;
+        if (step >= stamps.length) step = stamps.length - 1;
+        Stamp stamp = stamps[step];
+
+        int side = stamp.side;
+        int left = Math.round(x - side * 0.5f) - originX;
+        int top = Math.round(y - side * 0.5f) - originY;
+
+        // Clip the stamp to the layer
+        int startX = Math.max(0, -left);
+        int startY = Math.max(0, -top);
+        int endX = Math.min(side, width - left);
+        int endY = Math.min(side, height - top);
+        if (startX >= endX || startY >= endY) return;
+
+        dirtyMinX = Math.min(dirtyMinX, left + startX);
+        dirtyMinY = Math.min(dirtyMinY, top + startY);
+        dirtyMaxX = Math.max(dirtyMaxX, left + endX);
+        dirtyMaxY = Math.max(dirtyMaxY, top + endY);
+
+        int red = (argb >> 16) & 0xFF;
+        int green = (argb >> 8) & 0xFF;
+        int blue = argb & 0xFF;
+
+        int[] coverage = stamp.coverage;
+        for (int sy = startY; sy < endY; sy++) {
+            int row = (top + sy) * width + left;
+            int stampRow = sy * side;
+            for (int sx = startX; sx < endX; sx++) {
+                int c = coverage[stampRow + sx];
+                if (c == 0) continue;
+
+                // Pre-multiplied contribution of this pixel
+                int a = (alpha * c) >> 8;
+                if (a == 0) continue;
+                int r = (red * a) >> 8;
+                int g = (green * a) >> 8;
+                int b = (blue * a) >> 8;
+
+                // Saturating add to what is already there
+                int index = row + sx;
+                int dst = pixels[index];
+                a = Math.min(255, a + (dst >>> 24));
+                r = Math.min(255, r + ((dst >> 16) & 0xFF));
+                g = Math.min(255, g + ((dst >> 8) & 0xFF));
+                b = Math.min(255, b + (dst & 0xFF));
+
+                pixels[index] = (a << 24) | (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+
+    /**
+     * Draw the layer over the region it was placed on.
+     *
+     * @param backend A render backend, already translated into world coordinates.
+     */
+    public void end(RenderBackend backend) {
+        if (dirtyMaxX <= dirtyMinX || dirtyMaxY <= dirtyMinY) return;
+
+        // Only the touched part of the layer needs to be drawn
+        int x0 = originX + dirtyMinX;
+        int y0 = originY + dirtyMinY;
+        backend.drawImage(image, x0, y0, dirtyMinX, dirtyMinY, dirtyMaxX - dirtyMinX, dirtyMaxY - dirtyMinY);
+    }
+
+    /** Clear only the pixels that were stamped last frame */
+    private void clearDirty() {
+        if (dirtyMaxX > dirtyMinX && dirtyMaxY > dirtyMinY) {
+            for (int y = dirtyMinY; y < dirtyMaxY; y++) {
+                int row = y * width;
+                Arrays.fill(pixels, row + dirtyMinX, row + dirtyMaxX, 0);
+            }
+        }
+        resetDirty();
+    }
+
+    private void resetDirty() {
+        dirtyMinX = Integer.MAX_VALUE;
+        dirtyMinY = Integer.MAX_VALUE;
+        dirtyMaxX = Integer.MIN_VALUE;
+        dirtyMaxY = Integer.MIN_VALUE;
+    }
+
+    private static Stamp[] createStamps() {
+        Stamp[] result = new Stamp[MAX_STAMP_DIAMETER * STAMP_STEPS_PER_PIXEL + 1];
+        for (int step = 1; step < result.length; step++) {
+            result[step] = new Stamp(step / (float) STAMP_STEPS_PER_PIXEL);
+        }
+        return result;
+    }
+
+    /**
+     * A round dot with an antialiased edge. Each pixel holds how much of it the dot covers, from 0 to 256.
+     */
+    private static class Stamp {
+        private final int side;
+        private final int[] coverage;
+
+        private Stamp(float diameter) {
+            // One pixel of padding so the soft edge is never cut off
+            this.side = (int) Math.ceil(diameter) + 1;
+            this.coverage = new int[side * side];
+
+            float center = side * 0.5f;
+            float radius = diameter * 0.5f;
+
+            // Dots smaller than a pixel are spread over one, with their coverage scaled down to match
+            float drawRadius = Math.max(radius, 0.5f);
+            float areaScale = (radius * radius) / (drawRadius * drawRadius);
+
+            for (int py = 0; py < side; py++) {
+                for (int px = 0; px < side; px++) {
+                    int inside = 0;
+                    for (int sy = 0; sy < SUPERSAMPLES; sy++) {
+                        for (int sx = 0; sx < SUPERSAMPLES; sx++) {
+                            float dx = px + (sx + 0.5f) / SUPERSAMPLES - center;
+                            float dy = py + (sy + 0.5f) / SUPERSAMPLES - center;
+                            if (dx * dx + dy * dy <= drawRadius * drawRadius) inside++;
+                        }
+                    }
+                    coverage[py * side + px] = Math.round(inside * 256f * areaScale / (SUPERSAMPLES * SUPERSAMPLES));
+                }
+            }
+        }
+    }
+
+}
@@ -1,72 +1,149 @@
 package com.gpergrossi.spaceinvaders.render;
 
-import com.gpergrossi.spaceinvaders.animation.LerpFunction;
+import com.gpergrossi.spaceinvaders.assets.FadedSpriteCache;
+import com.gpergrossi.spaceinvaders.assets.RotatedSpriteCache;
 import com.gpergrossi.spaceinvaders.assets.Sprite;
 import com.gpergrossi.spaceinvaders.assets.Sprites;
+import com.gpergrossi.spaceinvaders.diagnostics.ParticleBurstEvent;
 
 import java.awt.*;
-import java.awt.geom.AffineTransform;
-import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
 
 public class ParticleSystem {
 
     private int maxParticles;
     private ArrayList<Particle> particles;
 
-    public ParticleSystem(int maxParticles, int maxSpriteParticles) {
+    /** Pre-rendered rotations of each sprite used by a sprite particle */
+    private HashMap<Sprite, RotatedSpriteCache> rotationCaches;
+
+    /** Color particles are drawn in software into this layer, then drawn all at once */
+    private ParticleLayer layer;
+
+    /** Varies each particle, so that a seeded particle system comes out the same every time */
+    private Random random;
+
+    public ParticleSystem(int maxParticles, int maxSpriteParticles, Random random) {
         this.maxParticles = maxParticles;
         this.particles = new ArrayList<>();
+        this.rotationCaches = new HashMap<>();
+        this.layer = new ParticleLayer();
+        this.random = random;
+    }
+
+    private RotatedSpriteCache getRotations(Sprite sprite) {
+        RotatedSpriteCache rotations = rotationCaches.get(sprite);
+        if (rotations == null) {
+            rotations = new RotatedSpriteCache(sprite);
+            rotationCaches.put(sprite, rotations);
+        }
+        return rotations;
     }
 
     public void update(long deltaMs) {
         float timeStep = deltaMs / 1000.0f;
 
+        // Move the surviving particles down over the dead ones in a single pass, keeping their order
+        int alive = 0;
         for (int i = 0; i < particles.size(); i++) {
             Particle p = particles.get(i);
             p.update(timeStep);
 
-            if (p.life <= 0f) {
-                particles.remove(i);
-
-                // Next loop we should re-use our current index because we just removed a particle.
-                i--;
+            if (p.life > 0f) {
+                particles.set(alive++, p);
             }
         }
+        if (alive < particles.size()) {
+            particles.subList(alive, particles.size()).clear();
+        }
     }
 
-    public void render(Graphics2D g) {
-        for (Particle p : particles) {
-            p.render(g);
+    /** Particles are culled by their position, so allow for the size of the largest particle (an alien sprite). */
+    private static final float CULL_MARGIN = 64f;
+
+    /**
+     * Render only the particles that can be seen within a region of the world.
+     *
+     * @param backend A render backend, already translated into world coordinates.
+     * @param view The visible region of the world.
+     */
+    public void render(RenderBackend backend, Rectangle2D.Float view) {
+        float minX = view.x - CULL_MARGIN;
+        float minY = view.y - CULL_MARGIN;
+        float maxX = view.x + view.width + CULL_MARGIN;
+        float maxY = view.y + view.height + CULL_MARGIN;
+
+        // Stamp the color particles into the layer, which only needs to cover the view
+        int layerX = (int) Math.floor(view.x);
+        int layerY = (int) Math.floor(view.y);
+        int layerWidth = (int) Math.ceil(view.x + view.width) - layerX;
+        int layerHeight = (int) Math.ceil(view.y + view.height) - layerY;
+        layer.begin(layerX, layerY, layerWidth, layerHeight);
+
+        for (int i = 0; i < particles.size(); i++) {
+            Particle p = particles.get(i);
+            if (p.x < minX || p.x > maxX || p.y < minY || p.y > maxY) continue;
+            p.render(layer);
+        }
+
+        layer.end(backend);
+
+        // Sprite particles are drawn over the glow
+        for (int i = 0; i < particles.size(); i++) {
+            Particle p = particles.get(i);
+            if (p.x < minX || p.x > maxX || p.y < minY || p.y > maxY) continue;
+            p.render(backend);
         }
     }
 
-    private void addParticle(Particle p) {
+    /**
+     * Add a particle, or when the system is full, replace a random one half of the time.
+     *
+     * @return True if the particle was added, false if it was dropped
+     */
+    private boolean addParticle(Particle p) {
         if (particles.size() < maxParticles) {
             particles.add(p);
-        } else if (Math.random() < 0.5) {
-            int i = (int) (Math.random() * maxParticles);
+            return true;
+        } else if (random.nextBoolean()) {
+            int i = random.nextInt(maxParticles);
             particles.set(i, p);
+            return true;
         }
+        return false;
     }
 
     public void spawnBulletTrail(float x, float y) {
+        ParticleBurstEvent event = new ParticleBurstEvent();
+        event.begin();
+        int spawned = 0;
+
         for (int i = 0; i < 3; i++) {
-            ColorParticle p = new ColorParticle(x, y, 0.15f);  // Somewhere between orange and yellow
+            ColorParticle p = new ColorParticle(random, x, y, 0.15f);  // Somewhere between orange and yellow
 
-            p.velX = 20f * ((float) Math.random() * 2f - 1f);
-            p.velY = 20f * ((float) Math.random());
+            p.velX = 20f * (random.nextFloat() * 2f - 1f);
+            p.velY = 20f * random.nextFloat();
 
             p.maxLife *= 0.5f;
             p.initialSize = 0.5f;
             p.finalSize = 5f;
-            addParticle(p);
+            if (addParticle(p)) spawned++;
         }
+
+        commitBurst(event, ParticleBurstEvent.BULLET_TRAIL, spawned, x, y);
     }
 
     public void spawnBulletHit(float x, float y) {
+        ParticleBurstEvent event = new ParticleBurstEvent();
+        event.begin();
+        int spawned = 0;
+
         for (int i = 0; i < 50; i++) {
-            ColorParticle p = new ColorParticle(x, y, 0.05f);  // Somewhere between red and orange
+            ColorParticle p = new ColorParticle(random, x, y, 0.05f);  // Somewhere between red and orange
 
             burstVelocity(p, 20f, 40f);
             p.velY -= 120;
@@ -75,11 +152,11 @@ public class ParticleSystem {
             p.drag = -0.05f;
             p.initialSize = 2f;
             p.finalSize = 0.5f;
-            addParticle(p);
+            if (addParticle(p)) spawned++;
         }
 
         for (int i = 0; i < 10; i++) {
-            ColorParticle p = new ColorParticle(x, y, 0.05f);  // Somewhere between red and orange
+            ColorParticle p = new ColorParticle(random, x, y, 0.05f);  // Somewhere between red and orange
 
             burstVelocity(p, 50f, 100f);
             p.velY -= 120;
@@ -88,29 +165,35 @@ public class ParticleSystem {
             p.drag = -0.05f;
             p.initialSize = 5f;
             p.finalSize = 0.5f;
-            addParticle(p);
+            if (addParticle(p)) spawned++;
         }
+
+        commitBurst(event, ParticleBurstEvent.BULLET_HIT, spawned, x, y);
     }
 
     public void spawnDeadAlien(float x, float y, float velocityX) {
+        ParticleBurstEvent event = new ParticleBurstEvent();
+        event.begin();
+        int spawned = 0;
+
         // Spawn an alien body
         {
             Sprite alien = Sprites.get().getAlienSprite();
             if (alien == null) return;
 
-            SpriteParticle p = new SpriteParticle(alien, x, y);
+            SpriteParticle p = new SpriteParticle(random, getRotations(alien), x, y);
 
             burstVelocity(p, 20f, 60f);
             p.velY -= 200;
             p.velY += velocityX;
             p.maxLife *= 2;
 
-            addParticle(p);
+            if (addParticle(p)) spawned++;
         }
 
         // And some blood
         for (int i = 0; i < 50; i++) {
-            ColorParticle p = new ColorParticle(x, y, 0.36f);  // Greenish
+            ColorParticle p = new ColorParticle(random, x, y, 0.36f);  // Greenish
 
             burstVelocity(p, 20f, 60f);
             p.velY -= 80;
@@ -120,13 +203,27 @@ public class ParticleSystem {
             p.gravity = 100f;
             p.drag = 0.05f;
 
-            addParticle(p);
+            if (addParticle(p)) spawned++;
         }
+
+        commitBurst(event, ParticleBurstEvent.DEAD_ALIEN, spawned, x, y);
     }
 
-    private static void burstVelocity(Particle particle, float minVelocity, float maxVelocity) {
-        double angle = Math.random() * Math.PI * 2.0;
-        double speed = Math.random() * (maxVelocity - minVelocity) + minVelocity;
+    private void commitBurst(ParticleBurstEvent event, String kind, int spawned, float x, float y) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.kind = kind;
+            event.spawned = spawned;
+            event.alive = particles.size();
+            event.x = x;
+            event.y = y;
+            event.commit();
+        }
+    }
+
+    private void burstVelocity(Particle particle, float minVelocity, float maxVelocity) {
+        double angle = random.nextDouble() * Math.PI * 2.0;
+        double speed = random.nextDouble() * (maxVelocity - minVelocity) + minVelocity;
         particle.velX = (float) (Math.cos(angle) * speed);
         particle.velY = (float) (Math.sin(angle) * speed);
     }
@@ -135,6 +232,54 @@ public class ParticleSystem {
         this.particles.clear();
     }
 
+    public int getParticleCount() {
+        return particles.size();
+    }
+
+    public int getMaxParticles() {
+        return maxParticles;
+    }
+
+    /** Snapshot tags identifying each type of particle */
+    private static final byte COLOR_PARTICLE = 0;
+    private static final byte SPRITE_PARTICLE = 1;
+
+    /**
+     * Write every live particle to a snapshot buffer.
+     *
+     * @param out The buffer to write to
+     */
+    public void writeState(ByteBuffer out) {
+        out.putInt(particles.size());
+        for (int i = 0; i < particles.size(); i++) {
+            Particle p = particles.get(i);
+            out.put((p instanceof SpriteParticle) ? SPRITE_PARTICLE : COLOR_PARTICLE);
+            p.writeState(out);
+        }
+    }
+
+    /**
+     * Replace all particles with those read from a snapshot buffer.
+     *
+     * @param in The buffer to read from
+     */
+    public void readState(ByteBuffer in) {
+        particles.clear();
+
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            Particle p;
+            if (in.get() == SPRITE_PARTICLE) {
+                // The alien body is the only sprite particle
+                p = new SpriteParticle(random, getRotations(Sprites.get().getAlienSprite()), 0, 0);
+            } else {
+                p = new ColorParticle(random, 0, 0, 0);
+            }
+            p.readState(in);
+            particles.add(p);
+        }
+    }
+
 
     private static abstract class Particle {
 
@@ -147,14 +292,14 @@ public class ParticleSystem {
 
         boolean initialized;
 
-        private Particle(float x, float y) {
+        private Particle(Random random, float x, float y) {
             this.x = x;
             this.y = y;
             this.velX = 0;
             this.velY = 0;
             this.drag = 0.1f;
             this.gravity = 100.0f;
-            this.maxLife = (float) (Math.random() * 0.3 + 0.7);
+            this.maxLife = random.nextFloat() * 0.3f + 0.7f;
 
             this.initialized = false;
         }
@@ -186,7 +331,35 @@ public class ParticleSystem {
             if (life < 0f) life = 0f;
         }
 
-        public abstract void render(Graphics2D g);
+        /** Draw the particle through the render backend. Particles drawn into the layer do nothing here. */
+        public void render(RenderBackend backend) {}
+
+        /** Draw the particle into the software layer. Particles drawn through the backend do nothing here. */
+        public void render(ParticleLayer layer) {}
+
+        public void writeState(ByteBuffer out) {
+            out.putFloat(x);
+            out.putFloat(y);
+            out.putFloat(velX);
+            out.putFloat(velY);
+            out.putFloat(drag);
+            out.putFloat(gravity);
+            out.putFloat(maxLife);
+            out.putFloat(life);
+            out.put((byte) (initialized ? 1 : 0));
+        }
+
+        public void readState(ByteBuffer in) {
+            x = in.getFloat();
+            y = in.getFloat();
+            velX = in.getFloat();
+            velY = in.getFloat();
+            drag = in.getFloat();
+            gravity = in.getFloat();
+            maxLife = in.getFloat();
+            life = in.getFloat();
+            initialized = (in.get() != 0);
+        }
 
     }
 
@@ -195,31 +368,28 @@ public class ParticleSystem {
         public Color initialColor, finalColor;
         public float initialSize, finalSize;
 
-        private Color color;
+        /** The current color, not pre-multiplied */
+        private int argb;
         private float size;
 
-        private Ellipse2D.Float shape;
-
-        private ColorParticle(float x, float y, float hue) {
-            super(x, y);
+        private ColorParticle(Random random, float x, float y, float hue) {
+            super(random, x, y);
 
-            float h = (float) Math.random() * 0.1f + hue - 0.05f;
-            float s = (float) (float) Math.random() * 0.5f + 0.5f;
+            float h = random.nextFloat() * 0.1f + hue - 0.05f;
+            float s = random.nextFloat() * 0.5f + 0.5f;
             float b = 1.0f;
             this.initialColor = new Color(Color.HSBtoRGB(h, s, b));
             this.finalColor = new Color(initialColor.getRed(), initialColor.getGreen(), initialColor.getBlue(), 0);
 
             this.initialSize = 0.5f;
             this.finalSize = 1.0f;
-
-            this.shape = new Ellipse2D.Float(0, 0, 1, 1);
         }
 
         @Override
         public void init() {
             super.init();
             size = initialSize;
-            color = initialColor;
+            argb = initialColor.getRGB();
         }
 
         @Override
@@ -227,17 +397,44 @@ public class ParticleSystem {
             super.update(timeStep);
             float t = 1.0f - (this.life / this.maxLife);
             this.size = initialSize * (1f - t) + finalSize * t;
-            this.color = LerpFunction.LERP_RGB.lerp(initialColor, finalColor, t);
+            this.argb = lerpARGB(initialColor.getRGB(), finalColor.getRGB(), t);
+        }
+
+        /** The same blend as LerpFunction.LERP_RGB, without creating a Color */
+        private static int lerpARGB(int a, int b, float t) {
+            int result = 0;
+            for (int shift = 0; shift < 32; shift += 8) {
+                int channel = (int) (((a >>> shift) & 0xFF) * (1.0f - t) + ((b >>> shift) & 0xFF) * t);
+                result |= channel << shift;
+            }
+            return result;
         }
 
         @Override
-        public void render(Graphics2D g) {
-            float x = this.x - this.size * 0.5f;
-            float y = this.y - this.size * 0.5f;
-            this.shape.setFrame(x, y, this.size, this.size);
+        public void render(ParticleLayer layer) {
+            layer.stamp(x, y, size, argb);
+        }
+
+        @Override
+        public void writeState(ByteBuffer out) {
+            super.writeState(out);
+            out.putInt(initialColor.getRGB());
+            out.putInt(finalColor.getRGB());
+            out.putFloat(initialSize);
+            out.putFloat(finalSize);
+            out.putInt(initialized ? argb : initialColor.getRGB());
+            out.putFloat(size);
+        }
 
-            g.setColor(color);
-            g.fill(shape);
+        @Override
+        public void readState(ByteBuffer in) {
+            super.readState(in);
+            initialColor = new Color(in.getInt(), true);
+            finalColor = new Color(in.getInt(), true);
+            initialSize = in.getFloat();
+            finalSize = in.getFloat();
+            argb = in.getInt();
+            size = in.getFloat();
         }
 
     }
@@ -246,14 +443,18 @@ public class ParticleSystem {
 
         public Sprite sprite;
 
+        /** The sprite pre-rendered at every angle step */
+        private RotatedSpriteCache rotations;
+
         public float rotation;
 
         private float angle;
 
-        private SpriteParticle(Sprite sprite, float x, float y) {
-            super(x, y);
-            this.sprite = sprite;
-            this.rotation = (float) ((Math.PI * (Math.random() * 0.5 + 0.5)) * Math.signum(Math.random() - 0.5f));
+        private SpriteParticle(Random random, RotatedSpriteCache rotations, float x, float y) {
+            super(random, x, y);
+            this.sprite = rotations.getSource();
+            this.rotations = rotations;
+            this.rotation = (float) ((Math.PI * (random.nextDouble() * 0.5 + 0.5)) * (random.nextBoolean() ? 1 : -1));
         }
 
         @Override
@@ -268,31 +469,32 @@ public class ParticleSystem {
             this.angle += this.rotation * timeStep;
         }
 
-        private static final AffineTransform identity = new AffineTransform();
-
-        public void render(Graphics2D g) {
-            // Compute transform
-            AffineTransform localOffset = AffineTransform.getTranslateInstance(-sprite.getWidth() * 0.5, -sprite.getHeight() * 0.5);
-            AffineTransform localRotate = AffineTransform.getRotateInstance(this.angle);
-            AffineTransform worldOffset = AffineTransform.getTranslateInstance(x + sprite.getWidth() * 0.5, y + sprite.getHeight() * 0.5);
-
-            AffineTransform transform = new AffineTransform();
-            transform.concatenate(worldOffset);
-            transform.concatenate(localRotate);
-            transform.concatenate(localOffset);
-            g.setTransform(transform);
-
-            // Fade out over time
-            float alpha = (life / maxLife);
-            g.setComposite(AlphaComposite.SrcOver.derive(alpha));
-
-            sprite.draw(g, 0, 0);
+        @Override
+        public void writeState(ByteBuffer out) {
+            super.writeState(out);
+            out.putFloat(rotation);
+            out.putFloat(angle);
+        }
 
-            // Reset transform
-            g.setTransform(identity);
+        @Override
+        public void readState(ByteBuffer in) {
+            super.readState(in);
+            rotation = in.getFloat();
+            angle = in.getFloat();
+        }
 
-            // Reset alpha composite
-            g.setComposite(AlphaComposite.SrcOver);
+        public void render(RenderBackend backend) {
+            // Draw the nearest pre-rendered rotation, centered where the sprite's center would be
+            Sprite rotated = rotations.get(this.angle);
+            float half = rotations.getSize() * 0.5f;
+            int drawX = Math.round(x + sprite.getWidth() * 0.5f - half);
+            int drawY = Math.round(y + sprite.getHeight() * 0.5f - half);
+
+            // Fade out over time, using a pre-faded copy instead of an alpha composite
+            Sprite faded = FadedSpriteCache.get().getFaded(rotated, life / maxLife);
+            if (faded != null) {
+                backend.drawSprite(faded, drawX, drawY);
+            }
         }
     }
 
@@ -0,0 +1,477 @@
+package com.gpergrossi.spaceinvaders.render;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Applies screen effects to a finished frame, working directly on its int[] pixels:
+ * a bloom that makes bright things glow, CRT scanlines, and a vignette that darkens the
+ * corners. Each effect can be turned on or off by itself.
+ *
+ * Bloom keeps only the bright parts of the frame at a quarter of its size, blurs them
+ * with a separable Gaussian (one horizontal pass, then one vertical pass) and adds them
+ * back. Blurring the small copy is what keeps this cheap, a blur as wide at full size
+ * would cost sixteen times as much. Most of a frame is too dark to glow, so each pass
+ * skips what can't: blocks with no bright pixel, rows with nothing to blur, and spans of
+ * the frame with no bloom to add. Adding the bloom back, the scanlines and the vignette
+ * are all done together in one final pass over the frame, with the vignette split into a
+ * factor for each column and a factor for each row.
+ *
+ * Every pass is split into bands of rows that are processed on a fork/join pool. Within
+ * a pass, bands only write their own rows, so the result doesn't depend on the threads.
+ */
+public class PostProcessor {
+
+    /** The bloom is blurred at this fraction of the frame's size */
+    private static final int BLOOM_DOWNSAMPLE = 4;
+
+    /** Channels darker than this don't glow */
+    private static final int BLOOM_THRESHOLD = 128;
+
+    /** A channel brighter than the threshold has one of these bits set, so a block with none of them can't glow */
+    private static final int BRIGHT_BITS = (-Integer.highestOneBit(BLOOM_THRESHOLD + 1) & 0xFF) * 0x010101;
+
+    /** How strongly the bloom is added back, out of 256, it never adds more than 255 to a channel */
+    private static final int BLOOM_STRENGTH = 384;
+
+    /** The blur reaches this many pixels of the bloom to each side, four times as far in the frame */
+    private static final int BLUR_RADIUS = 6;
+
+    /** Every other row is darkened to this brightness, out of 256 */
+    private static final int SCANLINE_LEVEL = 200;
+
+    /** How much the corners are darkened, the middle of each edge gets about half as much */
+    private static final float VIGNETTE_STRENGTH = 0.35f;
+
+    /** Each thread gets about this many bands */
+    private static final int BANDS_PER_THREAD = 2;
+
+    private int width, height;
+    private int bloomWidth, bloomHeight;
+
+    private ForkJoinPool pool;
+    private int bandCount;
+
+    private boolean bloom, scanlines, vignette;
+
+    /** The bright parts of the frame at the bloom size, blurred in place through bloomTemp */
+    private int[] bloomPixels, bloomTemp;
+
+    /** Which rows of the bloom have anything in them, before and after blurring */
+    private boolean[] brightRows, bloomRows;
+
+    /**
+     * The blur's weights, out of 256, from the middle outwards. Red and blue are blurred together, each in its own
+     * 16 bits, which is why the weights are kept this small.
+     */
+    private int[] blurWeights;
+
+    /** The bloom column to the left of each frame column, and how far to lerp towards the next, out of 256 */
+    private int[] bloomColumn, bloomColumnFraction;
+
+    /** The first frame column to the right of each bloom column, and one past the last */
+    private int[] bloomColumnStart;
+
+    /** The vignette's brightness for each column and each row, out of 256 */
+    private int[] vignetteColumns, vignetteRows;
+
+    /** Each band's scratch rows: a bloom row padded for the horizontal blur, the vertical blur's sums, and a bloom row after the vertical lerp */
+    private int[][] bandPaddedRows, bandRedBlueSums, bandGreenSums, bandBloomRows;
+
+    /** The pixels of the frame being processed */
+    private int[] frame;
+
+    private final RowPass brightPass = this::brightPass;
+    private final RowPass horizontalBlur = this::horizontalBlur;
+    private final RowPass verticalBlur = this::verticalBlur;
+    private final RowPass composite = this::composite;
+
+    /**
+     * @param width The width of the frames that will be processed
+     * @param height The height of the frames that will be processed
+     * @param pool The threads to process on
+     */
+    public PostProcessor(int width, int height, ForkJoinPool pool) {
+        if (width < BLOOM_DOWNSAMPLE || height < BLOOM_DOWNSAMPLE) {
+            throw new IllegalArgumentException("Frame is too small to post-process: " + width + "x" + height);
+        }
+
+        this.width = width;
+        this.height = height;
+        this.pool = pool;
+
+        this.bloomWidth = width / BLOOM_DOWNSAMPLE;
+        this.bloomHeight = height / BLOOM_DOWNSAMPLE;
+        this.bandCount = Math.max(1, Math.min(pool.getParallelism() * BANDS_PER_THREAD, bloomHeight));
+
+        this.bloomPixels = new int[bloomWidth * bloomHeight];
+        this.bloomTemp = new int[bloomWidth * bloomHeight];
+        this.brightRows = new boolean[bloomHeight];
+        this.bloomRows = new boolean[bloomHeight];
+        this.bandPaddedRows = new int[bandCount][bloomWidth + 2 * BLUR_RADIUS];
+        this.bandRedBlueSums = new int[bandCount][bloomWidth];
+        this.bandGreenSums = new int[bandCount][bloomWidth];
+        this.bandBloomRows = new int[bandCount][bloomWidth + 1];
+
+        this.blurWeights = createBlurWeights();
+
+        // Bloom pixels sit at the middle of their blocks, so frame column x samples at (x + 0.5) / 4 - 0.5
+        this.bloomColumn = new int[width];
+        this.bloomColumnFraction = new int[width];
+        for (int x = 0; x < width; x++) {
+            int position = ((2 * x + 1) * 256) / (2 * BLOOM_DOWNSAMPLE) - 128;
+            position = Math.max(0, Math.min(position, (bloomWidth - 1) * 256));
+            bloomColumn[x] = position >> 8;
+            bloomColumnFraction[x] = position & 0xFF;
+        }
+
+        this.bloomColumnStart = new int[bloomWidth + 1];
+        for (int column = 0, x = 0; column <= bloomWidth; column++) {
+            while (x < width && bloomColumn[x] < column) x++;
+            bloomColumnStart[column] = x;
+        }
+
+        this.vignetteColumns = createVignette(width);
+        this.vignetteRows = createVignette(height);
+    }
+
+    /** Gaussian weights with the radius at about two and a half standard deviations, summing to 256 */
+    private static int[] createBlurWeights() {
+        double sigma = BLUR_RADIUS / 2.5;
+        double[] gaussian = new double[BLUR_RADIUS + 1];
+        double sum = 0;
+        for (int i = 0; i <= BLUR_RADIUS; i++) {
+            gaussian[i] = Math.exp(-(i * i) / (2 * sigma * sigma));
+            sum += (i == 0) ? gaussian[i] : 2 * gaussian[i];
+        }
+
+        int[] weights = new int[BLUR_RADIUS + 1];
+        int total = 0;
+        for (int i = 1; i <= BLUR_RADIUS; i++) {
+            weights[i] = (int) Math.round(gaussian[i] / sum * 256);
+            total += 2 * weights[i];
+        }
+        // The middle takes up the rounding, so a flat area stays exactly as bright
+        weights[0] = 256 - total;
+        return weights;
+    }
+
+    /** Brightness falls off with the square of the distance from the middle */
+    private static int[] createVignette(int size) {
+        int[] levels = new int[size];
+        float middle = size / 2.0f;
+        for (int i = 0; i < size; i++) {
+            float distance = (i + 0.5f - middle) / middle;
+            float brightness = 1.0f - VIGNETTE_STRENGTH / 2 * distance * distance;
+            levels[i] = Math.round(brightness * 256);
+        }
+        return levels;
+    }
+
+    public void setBloom(boolean bloom) { this.bloom = bloom; }
+
+    public boolean getBloom() { return bloom; }
+
+    public void setScanlines(boolean scanlines) { this.scanlines = scanlines; }
+
+    public boolean getScanlines() { return scanlines; }
+
+    public void setVignette(boolean vignette) { this.vignette = vignette; }
+
+    public boolean getVignette() { return vignette; }
+
+    /**
+     * @return True if any effect is turned on
+     */
+    public boolean isEnabled() {
+        return bloom || scanlines || vignette;
+    }
+
+    /**
+     * Apply the effects that are turned on to a frame, returning once every band is done.
+     *
+     * @param image The frame, an INT_RGB image of the size this was created for
+     */
+    public void apply(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_INT_RGB || image.getWidth() != width || image.getHeight() != height) {
+            throw new IllegalArgumentException("Can only post-process a " + width + "x" + height + " INT_RGB image");
+        }
+        if (!isEnabled()) return;
+
+        this.frame = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+        if (bloom) {
+            pool.invoke(new RowTask(brightPass, bloomHeight, 0, bandCount));
+            pool.invoke(new RowTask(horizontalBlur, bloomHeight, 0, bandCount));
+            pool.invoke(new RowTask(verticalBlur, bloomHeight, 0, bandCount));
+        }
+        pool.invoke(new RowTask(composite, height, 0, bandCount));
+
+        this.frame = null;
+    }
+
+    /**
+     * Average each block of the frame down to one pixel, keeping only how far each channel is above the threshold,
+     * already scaled by the bloom's strength. Every pixel is read, so that thin bright things like shots glow
+     * steadily as they move, but a block is only averaged if one of its pixels is bright enough.
+     */
+    private void brightPass(int band, int top, int bottom) {
+        int[] frame = this.frame;
+        int blockArea = BLOOM_DOWNSAMPLE * BLOOM_DOWNSAMPLE;
+
+        for (int y = top; y < bottom; y++) {
+            int out = y * bloomWidth;
+            boolean bright = false;
+
+            for (int x = 0; x < bloomWidth; x++) {
+                int start = y * BLOOM_DOWNSAMPLE * width + x * BLOOM_DOWNSAMPLE;
+
+                // The average can't be above the threshold unless one of the pixels is
+                int any = 0;
+                for (int row = 0, index = start; row < BLOOM_DOWNSAMPLE; row++, index += width) {
+                    for (int column = 0; column < BLOOM_DOWNSAMPLE; column++) {
+                        any |= frame[index + column];
+                    }
+                }
+                if ((any & BRIGHT_BITS) == 0) {
+                    bloomPixels[out + x] = 0;
+                    continue;
+                }
+
+                // Red and blue are summed together, each in its own 16 bits
+                int redBlue = 0, green = 0;
+                for (int row = 0, index = start; row < BLOOM_DOWNSAMPLE; row++, index += width) {
+                    for (int column = 0; column < BLOOM_DOWNSAMPLE; column++) {
+                        int pixel = frame[index + column];
+                        redBlue += pixel & 0xFF00FF;
+                        green += pixel & 0xFF00;
+                    }
+                }
+
+                int red = glow((redBlue >>> 16) / blockArea);
+                int greenGlow = glow((green >>> 8) / blockArea);
+                int blue = glow((redBlue & 0xFFFF) / blockArea);
+                int pixel = (red << 16) | (greenGlow << 8) | blue;
+                bloomPixels[out + x] = pixel;
+                bright |= (pixel != 0);
+            }
+
+            brightRows[y] = bright;
+        }
+    }
+
+    private static int glow(int channel) {
+        if (channel <= BLOOM_THRESHOLD) return 0;
+        return Math.min(255, ((channel - BLOOM_THRESHOLD) * BLOOM_STRENGTH) >> 8);
+    }
+
+    /** Blur bloomPixels along each row into bloomTemp, clamping at the edges */
+    private void horizontalBlur(int band, int top, int bottom) {
+        int[] padded = bandPaddedRows[band];
+        int[] weights = blurWeights;
+        int last = bloomWidth - 1;
+
+        for (int y = top; y < bottom; y++) {
+            int row = y * bloomWidth;
+
+            if (!brightRows[y]) {
+                Arrays.fill(bloomTemp, row, row + bloomWidth, 0);
+                continue;
+            }
+
+            // Copying the row between copies of its end pixels saves clamping every tap
+            System.arraycopy(bloomPixels, row, padded, BLUR_RADIUS, bloomWidth);
+            Arrays.fill(padded, 0, BLUR_RADIUS, bloomPixels[row]);
+            Arrays.fill(padded, BLUR_RADIUS + bloomWidth, padded.length, bloomPixels[row + last]);
+
+            for (int x = 0; x < bloomWidth; x++) {
+                int middle = x + BLUR_RADIUS;
+                int pixel = padded[middle];
+                int redBlue = (pixel & 0xFF00FF) * weights[0];
+                int green = (pixel & 0xFF00) * weights[0];
+
+                for (int i = 1; i <= BLUR_RADIUS; i++) {
+                    int left = padded[middle - i];
+                    int right = padded[middle + i];
+                    redBlue += ((left & 0xFF00FF) + (right & 0xFF00FF)) * weights[i];
+                    green += ((left & 0xFF00) + (right & 0xFF00)) * weights[i];
+                }
+
+                bloomTemp[row + x] = ((redBlue >>> 8) & 0xFF00FF) | ((green >>> 8) & 0xFF00);
+            }
+        }
+    }
+
+    /**
+     * Blur bloomTemp along each column back into bloomPixels, clamping at the edges. Whole rows are added up at a
+     * time, so that every tap reads along a row.
+     */
+    private void verticalBlur(int band, int top, int bottom) {
+        int[] redBlueSums = bandRedBlueSums[band];
+        int[] greenSums = bandGreenSums[band];
+        int[] weights = blurWeights;
+        int[] source = bloomTemp;
+        int width = bloomWidth;
+
+        for (int y = top; y < bottom; y++) {
+            int out = y * width;
+
+            // Rows with nothing bright within the blur's reach stay dark
+            boolean reached = false;
+            for (int i = Math.max(0, y - BLUR_RADIUS); i <= Math.min(y + BLUR_RADIUS, bloomHeight - 1); i++) {
+                reached |= brightRows[i];
+            }
+            bloomRows[y] = reached;
+            if (!reached) {
+                Arrays.fill(bloomPixels, out, out + width, 0);
+                continue;
+            }
+
+            Arrays.fill(redBlueSums, 0);
+            Arrays.fill(greenSums, 0);
+
+            for (int i = -BLUR_RADIUS; i <= BLUR_RADIUS; i++) {
+                int row = Math.max(0, Math.min(y + i, bloomHeight - 1)) * width;
+                int weight = weights[Math.abs(i)];
+                for (int x = 0; x < width; x++) {
+                    int pixel = source[row + x];
+                    redBlueSums[x] += (pixel & 0xFF00FF) * weight;
+                    greenSums[x] += (pixel & 0xFF00) * weight;
+                }
+            }
+
+            for (int x = 0; x < width; x++) {
+                bloomPixels[out + x] = ((redBlueSums[x] >>> 8) & 0xFF00FF) | ((greenSums[x] >>> 8) & 0xFF00);
+            }
+        }
+    }
+
+    /**
+     * Add the bloom back with a bilinear upscale, then darken for the scanlines and the vignette. Each is its own
+     * simple loop over the row, which the JIT compiles much better than one loop that checks which effects are on.
+     * The bloom is added a bloom column at a time, skipping the frame columns between two that are both dark.
+     */
+    private void composite(int band, int top, int bottom) {
+        int[] frame = this.frame;
+        int[] bloomRow = bandBloomRows[band];
+        int[] bloomColumn = this.bloomColumn;
+        int[] bloomColumnFraction = this.bloomColumnFraction;
+        int[] bloomColumnStart = this.bloomColumnStart;
+        int[] vignetteColumns = this.vignetteColumns;
+        int width = this.width;
+
+        for (int y = top; y < bottom; y++) {
+            int index = y * width;
+            int end = index + width;
+
+            if (bloom && lerpBloomRow(y, bloomRow)) {
+                for (int column = 0; column < bloomWidth; column++) {
+                    int a = bloomRow[column];
+                    int b = bloomRow[column + 1];
+
+                    // Most of the frame doesn't glow at all
+                    if ((a | b) == 0) continue;
+
+                    for (int x = bloomColumnStart[column], stop = bloomColumnStart[column + 1]; x < stop; x++) {
+                        int fraction = bloomColumnFraction[x];
+                        int pixel = frame[index + x];
+                        int redBlue = (pixel & 0xFF00FF) + ((((a & 0xFF00FF) * (256 - fraction) + (b & 0xFF00FF) * fraction) >>> 8) & 0xFF00FF);
+                        int green = (pixel & 0xFF00) + ((((a & 0xFF00) * (256 - fraction) + (b & 0xFF00) * fraction) >>> 8) & 0xFF00);
+
+                        // A channel that carried past 255 is filled back up to 255
+                        int carries = redBlue & 0x1000100;
+                        redBlue = (redBlue | (carries - (carries >>> 8))) & 0xFF00FF;
+                        carries = green & 0x10000;
+                        green = (green | (carries - (carries >>> 8))) & 0xFF00;
+
+                        frame[index + x] = redBlue | green;
+                    }
+                }
+            }
+
+            int rowLevel = 256;
+            if (scanlines && (y & 1) == 1) rowLevel = SCANLINE_LEVEL;
+
+            if (vignette) {
+                rowLevel = (rowLevel * vignetteRows[y]) >> 8;
+                for (int i = index, x = 0; i < end; i++, x++) {
+                    int level = (rowLevel * vignetteColumns[x]) >> 8;
+                    int pixel = frame[i];
+                    frame[i] = ((((pixel & 0xFF00FF) * level) >>> 8) & 0xFF00FF) | ((((pixel & 0xFF00) * level) >>> 8) & 0xFF00);
+                }
+            } else if (rowLevel != 256) {
+                for (int i = index; i < end; i++) {
+                    int pixel = frame[i];
+                    frame[i] = ((((pixel & 0xFF00FF) * rowLevel) >>> 8) & 0xFF00FF) | ((((pixel & 0xFF00) * rowLevel) >>> 8) & 0xFF00);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lerp between the two bloom rows around a frame row, with a spare column on the end.
+     *
+     * @return False if both rows are dark, leaving the row as it was
+     */
+    private boolean lerpBloomRow(int y, int[] bloomRow) {
+        int position = ((2 * y + 1) * 256) / (2 * BLOOM_DOWNSAMPLE) - 128;
+        position = Math.max(0, Math.min(position, (bloomHeight - 1) * 256));
+        int row0 = position >> 8;
+        int row1 = Math.min(row0 + 1, bloomHeight - 1);
+        int fraction = position & 0xFF;
+
+        if (!bloomRows[row0] && !bloomRows[row1]) return false;
+
+        int above = row0 * bloomWidth;
+        int below = row1 * bloomWidth;
+        for (int x = 0; x < bloomWidth; x++) {
+            int a = bloomPixels[above + x];
+            int b = bloomPixels[below + x];
+            bloomRow[x] = ((((a & 0xFF00FF) * (256 - fraction) + (b & 0xFF00FF) * fraction) >>> 8) & 0xFF00FF)
+                    | ((((a & 0xFF00) * (256 - fraction) + (b & 0xFF00) * fraction) >>> 8) & 0xFF00);
+        }
+
+        // The last frame columns lerp towards the last bloom column again
+        bloomRow[bloomWidth] = bloomRow[bloomWidth - 1];
+        return true;
+    }
+
+    /** One pass over a band of rows */
+    private interface RowPass {
+        void run(int band, int top, int bottom);
+    }
+
+    /**
+     * Runs a pass over a range of bands, splitting it in half until there is one band per task.
+     */
+    private class RowTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RowPass pass;
+        private final int rows;
+        private final int first, end;
+
+        private RowTask(RowPass pass, int rows, int first, int end) {
+            this.pass = pass;
+            this.rows = rows;
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - first > 1) {
+                int middle = (first + end) >>> 1;
+                invokeAll(new RowTask(pass, rows, first, middle), new RowTask(pass, rows, middle, end));
+                return;
+            }
+
+            pass.run(first, first * rows / bandCount, (first + 1) * rows / bandCount);
+        }
+    }
+
+}
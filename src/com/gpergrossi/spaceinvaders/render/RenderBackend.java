@@ -0,0 +1,93 @@
+package com.gpergrossi.spaceinvaders.render;
+
+import com.gpergrossi.spaceinvaders.assets.Sprite;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * The drawing operations the game's renderers need, so that a frame can be drawn
+ * either through Java2D or by a software rasterizer.
+ *
+ * A backend keeps an integer translation and an opacity that apply to every drawing
+ * operation. Colors are packed ARGB ints that are not pre-multiplied. Anything that needs
+ * more than a translation, like text that rotates and scales, draws images through its
+ * own transform, which is applied inside the backend's translation.
+ *
+ * Anything that has not been ported to the backend can still draw through getGraphics(),
+ * which draws onto the same frame with the same translation and opacity.
+ */
+public interface RenderBackend {
+
+    /**
+     * Draw a whole image with its top left corner at (x, y).
+     */
+    void drawImage(BufferedImage image, int x, int y);
+
+    /**
+     * Draw part of an image at its natural size.
+     *
+     * @param image The image to draw from
+     * @param x The x location to draw the part at
+     * @param y The y location to draw the part at
+     * @param sourceX The left edge of the part within the image
+     * @param sourceY The top edge of the part within the image
+     * @param width The width of the part
+     * @param height The height of the part
+     */
+    void drawImage(BufferedImage image, int x, int y, int sourceX, int sourceY, int width, int height);
+
+    /**
+     * Draw an image stretched to fill a rectangle.
+     */
+    void drawImageScaled(BufferedImage image, int x, int y, int width, int height);
+
+    /**
+     * Draw a whole image through a transform, sampling the nearest pixel like Java2D's default.
+     *
+     * @param image The image to draw
+     * @param transform Maps the image's pixels to the backend's coordinates, inside its translation
+     */
+    void drawImage(BufferedImage image, AffineTransform transform);
+
+    default void drawSprite(Sprite sprite, int x, int y) {
+        drawImage(sprite.getImage(), x, y);
+    }
+
+    default void drawSprite(Sprite sprite, int x, int y, int width, int height) {
+        drawImageScaled(sprite.getImage(), x, y, width, height);
+    }
+
+    /**
+     * Fill an antialiased circle.
+     */
+    void fillCircle(float centerX, float centerY, float diameter, int argb);
+
+    void fillRect(int x, int y, int width, int height, int argb);
+
+    /**
+     * Draw a line of text with its baseline starting at (x, y).
+     */
+    void drawText(String text, Font font, int x, int y, int argb);
+
+    /**
+     * Move the origin of every following drawing operation.
+     */
+    void translate(int dx, int dy);
+
+    /**
+     * Set the opacity of every following drawing operation.
+     *
+     * @param alpha The opacity, from 0 (invisible) to 1 (opaque)
+     */
+    void setAlpha(float alpha);
+
+    float getAlpha();
+
+    /**
+     * @return A Java2D context for drawing onto the same frame, with the backend's current translation and opacity
+     */
+    Graphics2D getGraphics();
+
+}
@@ -0,0 +1,181 @@
+package com.gpergrossi.spaceinvaders.render;
+
+import com.gpergrossi.spaceinvaders.assets.Sprite;
+
+import java.util.Arrays;
+
+/**
+ * Collects draw commands for a frame, then issues them to a render backend sorted so
+ * that state changes are as few as possible.
+ *
+ * Commands are sorted by kind (plain sprites, then scaled sprites, then custom renderers),
+ * then by opacity, then by sprite. Opaque sprites come before translucent ones, so each
+ * opacity level only sets the opacity once, and sprites of the same image are drawn
+ * back to back. Scaled sprites are drawn into a destination rectangle instead of through
+ * a transform, so they never touch the transform at all.
+ *
+ * Commands of the same kind, opacity and sprite keep the order they were added in.
+ * Storage is reused from frame to frame, so a steady scene does not allocate.
+ */
+public class RenderQueue {
+
+    private static final int KIND_PLAIN = 0;
+    private static final int KIND_SCALED = 1;
+    private static final int KIND_CUSTOM = 2;
+
+    private static final int OPAQUE = 255;
+
+    // Sort key layout, from most to least significant
+    private static final int KIND_SHIFT = 61;
+    private static final int ALPHA_SHIFT = 53;
+    private static final int SPRITE_SHIFT = 32;
+    private static final long SPRITE_MASK = (1L << (ALPHA_SHIFT - SPRITE_SHIFT)) - 1;
+
+    private int size;
+
+    /** One sort key per command. The low 32 bits are the command's index. */
+    private long[] keys;
+
+    private Sprite[] sprites;
+    private int[] xs, ys, widths, heights;
+    private Renderer<?>[] renderers;
+    private Object[] objects;
+
+    public RenderQueue() {
+        allocate(64);
+    }
+
+    private void allocate(int capacity) {
+        keys = (keys == null) ? new long[capacity] : Arrays.copyOf(keys, capacity);
+        sprites = (sprites == null) ? new Sprite[capacity] : Arrays.copyOf(sprites, capacity);
+        xs = (xs == null) ? new int[capacity] : Arrays.copyOf(xs, capacity);
+        ys = (ys == null) ? new int[capacity] : Arrays.copyOf(ys, capacity);
+        widths = (widths == null) ? new int[capacity] : Arrays.copyOf(widths, capacity);
+        heights = (heights == null) ? new int[capacity] : Arrays.copyOf(heights, capacity);
+        renderers = (renderers == null) ? new Renderer<?>[capacity] : Arrays.copyOf(renderers, capacity);
+        objects = (objects == null) ? new Object[capacity] : Arrays.copyOf(objects, capacity);
+    }
+
+    private int add(int kind, int alpha, Sprite sprite) {
+        if (size == keys.length) allocate(size * 2);
+
+        int index = size++;
+        int spriteId = (sprite != null) ? sprite.getId() : 0;
+        keys[index] = ((long) kind << KIND_SHIFT)
+                | ((long) (OPAQUE - alpha) << ALPHA_SHIFT)
+                | ((spriteId & SPRITE_MASK) << SPRITE_SHIFT)
+                | index;
+        sprites[index] = sprite;
+        return index;
+    }
+
+    /**
+     * Draw a sprite at its natural size.
+     */
+    public void drawSprite(Sprite sprite, int x, int y) {
+        drawSprite(sprite, x, y, 1.0f);
+    }
+
+    /**
+     * Draw a sprite at its natural size with an opacity.
+     *
+     * @param alpha The opacity, from 0 (invisible) to 1 (opaque)
+     */
+    public void drawSprite(Sprite sprite, int x, int y, float alpha) {
+        int level = toLevel(alpha);
+        if (level == 0) return;
+
+        int index = add(KIND_PLAIN, level, sprite);
+        xs[index] = x;
+        ys[index] = y;
+    }
+
+    /**
+     * Draw a sprite stretched to fill a rectangle.
+     */
+    public void drawSpriteScaled(Sprite sprite, int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) return;
+
+        int index = add(KIND_SCALED, OPAQUE, sprite);
+        xs[index] = x;
+        ys[index] = y;
+        widths[index] = width;
+        heights[index] = height;
+    }
+
+    /**
+     * Let a renderer draw an object directly. Custom commands are drawn after all sprites,
+     * with the opacity and translation the queue was flushed with, and must leave them as they were.
+     */
+    public <T> void drawCustom(Renderer<T> renderer, T object) {
+        int index = add(KIND_CUSTOM, OPAQUE, null);
+        renderers[index] = renderer;
+        objects[index] = object;
+    }
+
+    /**
+     * Draw every queued command through a render backend and empty the queue.
+     */
+    @SuppressWarnings("unchecked")
+    public void flush(RenderBackend backend) {
+        if (size == 0) return;
+
+        Arrays.sort(keys, 0, size);
+
+        float savedAlpha = backend.getAlpha();
+        int currentAlpha = OPAQUE;
+
+        for (int i = 0; i < size; i++) {
+            long key = keys[i];
+            int index = (int) key;
+            int kind = (int) (key >>> KIND_SHIFT);
+            int alpha = OPAQUE - (int) ((key >>> ALPHA_SHIFT) & 0xFF);
+
+            if (alpha != currentAlpha) {
+                backend.setAlpha(savedAlpha * alpha / OPAQUE);
+                currentAlpha = alpha;
+            }
+
+            switch (kind) {
+                case KIND_PLAIN:
+                    backend.drawSprite(sprites[index], xs[index], ys[index]);
+                    break;
+                case KIND_SCALED:
+                    backend.drawSprite(sprites[index], xs[index], ys[index], widths[index], heights[index]);
+                    break;
+                case KIND_CUSTOM:
+                    // drawCustom() only pairs a renderer with an object of its own type
+                    ((Renderer<Object>) renderers[index]).render(backend, objects[index]);
+                    break;
+            }
+        }
+
+        if (currentAlpha != OPAQUE) {
+            backend.setAlpha(savedAlpha);
+        }
+
+        clear();
+    }
+
+    /**
+     * Discard every queued command without drawing.
+     */
+    public void clear() {
+        // Don't keep anything alive through the references
+        Arrays.fill(sprites, 0, size, null);
+        Arrays.fill(renderers, 0, size, null);
+        Arrays.fill(objects, 0, size, null);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static int toLevel(float alpha) {
+        if (alpha >= 1.0f) return OPAQUE;
+        if (alpha <= 0.0f) return 0;
+        return Math.round(alpha * OPAQUE);
+    }
+
+}
@@ -8,4 +8,21 @@ public interface Renderer<T> {
 
     void render(Graphics2D g, T obj);
 
+    /**
+     * Draw an object through a render backend. Renderers that only draw images should
+     * override this; by default the object is drawn through the backend's Graphics2D.
+     */
+    default void render(RenderBackend backend, T obj) {
+        render(backend.getGraphics(), obj);
+    }
+
+    /**
+     * Add the draw commands for an object to a render queue. Renderers that draw
+     * plain sprites should override this so their draws can be batched; by default
+     * the object is drawn by render() after all of the sprites.
+     */
+    default void enqueue(RenderQueue queue, T obj) {
+        queue.drawCustom(this, obj);
+    }
+
 }
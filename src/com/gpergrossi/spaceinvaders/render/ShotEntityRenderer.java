@@ -13,8 +13,6 @@ public class ShotEntityRenderer implements Renderer<ShotEntity> {
 
     public static ShotEntityRenderer get() { return single; }
 
-    private static AffineTransform identity = new AffineTransform();
-
     @Override
     public void render(Graphics2D g, ShotEntity entity) {
         Sprite sprite = entity.getSprite();
@@ -24,14 +22,33 @@ public class ShotEntityRenderer implements Renderer<ShotEntity> {
         float size = entity.getSize();
 
         if (sprite != null) {
-            AffineTransform transform = AffineTransform.getTranslateInstance(x + 6, y + 5);
-            transform.concatenate(AffineTransform.getScaleInstance(size, size));
-            transform.concatenate(AffineTransform.getTranslateInstance(-6, -5));
+            // Keep the existing transform (e.g. the camera offset) so it can be restored afterward
+            AffineTransform saved = g.getTransform();
+
+            AffineTransform transform = new AffineTransform(saved);
+            transform.translate(x + 6, y + 5);
+            transform.scale(size, size);
+            transform.translate(-6, -5);
 
             g.setTransform(transform);
             sprite.draw(g, 0, 0);
-            g.setTransform(identity);
+            g.setTransform(saved);
         }
     }
 
+    @Override
+    public void enqueue(RenderQueue queue, ShotEntity entity) {
+        Sprite sprite = entity.getSprite();
+        if (sprite == null) return;
+
+        // The same scaling about (6, 5) as render(), expressed as a destination rectangle
+        float size = entity.getSize();
+        float left = entity.getX() + 6 - 6 * size;
+        float top = entity.getY() + 5 - 5 * size;
+        int width = Math.round(sprite.getWidth() * size);
+        int height = Math.round(sprite.getHeight() * size);
+
+        queue.drawSpriteScaled(sprite, Math.round(left), Math.round(top), width, height);
+    }
+
 }
@@ -22,4 +22,12 @@ public class SpriteEntityRenderer implements Renderer<SpriteEntity> {
         }
     }
 
+    @Override
+    public void enqueue(RenderQueue queue, SpriteEntity entity) {
+        Sprite sprite = entity.getSprite();
+        if (sprite != null) {
+            queue.drawSprite(sprite, (int) entity.getX(), (int) entity.getY());
+        }
+    }
+
 }
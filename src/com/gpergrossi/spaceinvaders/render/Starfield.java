@@ -1,14 +1,39 @@
 package com.gpergrossi.spaceinvaders.render;
 
-import com.gpergrossi.spaceinvaders.game.Settings;
-
 import java.awt.*;
 import java.awt.geom.Ellipse2D;
-import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
-
+import java.util.Random;
+
+/**
+ * A scrolling star background with parallax.
+ *
+ * Stars are grouped into a few depth bands. Every star in a band moves at the same speed.
+ * The farthest band is drawn once, along with the black sky, into an opaque screen-sized
+ * image that tiles in both directions, and is scrolled into place with a few plain copies
+ * per frame. The nearer bands are sparse, so instead of blending whole screens of mostly
+ * empty pixels, each of their stars is drawn once into its own small sprite, which is
+ * blitted wherever its band has scrolled it to. Only the stars that are currently
+ * twinkling are drawn as circles, over their band.
+ */
 public class Starfield {
 
+    /** The number of depth bands. The farthest is a cached image, the rest are drawn star by star. */
+    private static final int BAND_COUNT = 4;
+
+    /** Space around each star's sprite, so its antialiased edge is never cut off */
+    private static final int SPRITE_PADDING = 1;
+
+    /** The number of entries in the twinkle curve table */
+    private static final int TWINKLE_STEPS = 1024;
+
+    /** How much each star grows over its twinkle cycle, indexed by the position in the cycle */
+    private static final float[] twinkleCurve = createTwinkleCurve();
+
+    /** Stars whose twinkle would grow them by less than this are left to the band image */
+    private static final float TWINKLE_THRESHOLD = 1.05f;
+
     private int width;
     private int height;
     private int depth;
@@ -21,9 +46,22 @@ public class Starfield {
     private float scroll;
     private float speed;
 
+    /** Seconds of twinkle time that have passed, shared by all stars */
+    private float time;
+
+    /** Horizontal position of the game camera, used to scroll stars sideways with parallax */
+    private float viewOffsetX;
+
     private ArrayList<Star> stars = new ArrayList<Star>();
 
-    public Starfield(int width, int height, int depth, int starCount) {
+    private Band[] bands;
+
+    private Ellipse2D.Float shape;
+
+    /** Places the stars, so that a seeded starfield comes out the same every time */
+    private Random random;
+
+    public Starfield(int width, int height, int depth, int starCount, Random random) {
         this.width = width;
         this.height = height;
         this.depth = depth;
@@ -34,106 +72,276 @@ public class Starfield {
         this.parallax = 0.2f;
         this.scroll = 0f;
         this.speed = 30f;
+        this.time = 0f;
+        this.viewOffsetX = 0f;
+        this.shape = new Ellipse2D.Float();
+        this.random = random;
+        initBands();
         initStars();
     }
 
+    private void initBands() {
+        this.bands = new Band[BAND_COUNT];
+
+        // Split the depth range evenly, each band's stars sit at the middle of its range
+        float nearZ = 1.0f / parallax;
+        float bandDepth = (float) depth / BAND_COUNT;
+        for (int i = 0; i < BAND_COUNT; i++) {
+            bands[i] = new Band(nearZ + (i + 0.5f) * bandDepth, parallax);
+        }
+    }
+
     private void initStars() {
         this.stars.clear();
 
+        float nearZ = 1.0f / parallax;
         for (int i = 0; i < starCount; i++) {
-            float z = (1.0f / parallax) + (float) (Math.random() * depth);
-            float x = (0.5f * ((float)(Math.random()) * 2.0f - 1.0f) * (parallax * z) + 0.5f) * width;
-            float y = (0.5f * ((float)(Math.random()) * 2.0f - 1.0f) * (parallax * z) + 0.5f) * height;
-            float size = (float) (Math.random() * 3f + 1.0f);
+            float z = nearZ + random.nextFloat() * depth;
+            float x = (0.5f * (random.nextFloat() * 2.0f - 1.0f) * (parallax * z) + 0.5f) * width;
+            float y = (0.5f * (random.nextFloat() * 2.0f - 1.0f) * (parallax * z) + 0.5f) * height;
+            float size = random.nextFloat() * 3f + 1.0f;
 
-            float colorShift = (float) Math.random() * 2.0f - 1.0f;
+            float colorShift = random.nextFloat() * 2.0f - 1.0f;
 
             Color color = (colorShift >= 0f) ?
                 new Color(255, 255 - (int) (colorShift*128), 255 - (int) (colorShift*128)) :
                 new Color(255 + (int) (colorShift*128), 255 + (int) (colorShift*128), 255);
 
-            Star star = new Star(x, y, z, size, color);
+            int bandIndex = Math.min(BAND_COUNT - 1, (int) ((z - nearZ) / depth * BAND_COUNT));
+            Band band = bands[bandIndex];
+
+            Star star = new Star(random, x, y, band, size, color);
+            star.project(cameraX, cameraY, width, height);
             this.stars.add(star);
+            band.stars.add(star);
+        }
+
+        // Pre-render the farthest band's stars into its image. It is opaque and includes the
+        // black sky, so that it can be copied in without blending.
+        Band far = bands[BAND_COUNT - 1];
+        far.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+        Graphics2D g = far.image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        for (Star s : stars) {
+            if (s.band == far) s.renderWrapped(g, shape, s.size, width, height);
+        }
+        g.dispose();
+
+        // Every other star gets a sprite of its own
+        for (Star s : stars) {
+            if (s.band != far) s.createSprite(shape);
         }
     }
 
     public void update(long deltaMs) {
         float delta = deltaMs / 1000.0f;
         this.scroll += this.speed * delta;
-        for (Star s : stars) {
-            s.update(deltaMs);
+        this.time += delta;
+    }
+
+    /**
+     * Set the horizontal position of the game camera. Stars scroll sideways
+     * with parallax as the camera moves across a world wider than the screen.
+     */
+    public void setViewOffset(float viewOffsetX) {
+        this.viewOffsetX = viewOffsetX;
+    }
+
+    public void render(RenderBackend backend) {
+        // Find how far each band has scrolled
+        for (int i = 0; i < bands.length; i++) {
+            Band band = bands[i];
+            band.offsetX = wrap(Math.round(-viewOffsetX * band.scale), width);
+            band.offsetY = wrap(Math.round(scroll * band.scale), height);
+        }
+
+        // Scroll the farthest band's image into place, then draw the nearer bands' stars over it, farthest first
+        Band far = bands[BAND_COUNT - 1];
+        drawTiled(backend, far.image, far.offsetX, far.offsetY);
+        for (int i = BAND_COUNT - 2; i >= 0; i--) {
+            Band band = bands[i];
+            for (int j = 0; j < band.stars.size(); j++) {
+                drawSprite(backend, band.stars.get(j));
+            }
+        }
+
+        // Draw only the stars that are twinkling right now, grown over their cached image
+        for (int i = 0; i < stars.size(); i++) {
+            Star s = stars.get(i);
+
+            float twinkleTime = time * s.twinkleFrequency + s.twinklePhase;
+            twinkleTime -= (float) Math.floor(twinkleTime);
+            float twinkle = twinkleCurve[(int) (twinkleTime * TWINKLE_STEPS)];
+            if (twinkle < TWINKLE_THRESHOLD) continue;
+
+            float x = s.projX + s.band.offsetX;
+            float y = s.projY + s.band.offsetY;
+            if (x >= width) x -= width;
+            if (y >= height) y -= height;
+
+            backend.fillCircle(x, y, s.size * twinkle, s.argb);
         }
     }
 
-    public void render(Graphics2D g) {
-        for (Star s : stars) {
-            float projX = s.x - cameraX;
-            float projY = s.y - cameraY + scroll;
+    /** Draw an image that tiles in both directions, shifted right and down by an offset */
+    private void drawTiled(RenderBackend backend, BufferedImage image, int offsetX, int offsetY) {
+        // The image is split into at most four pieces where it wraps around
+        int splitX = width - offsetX;
+        int splitY = height - offsetY;
 
-            float div = 1.0f / (parallax * s.z);
-            projX *= div;
-            projY *= div;
+        backend.drawImage(image, offsetX, offsetY, 0, 0, splitX, splitY);
+        if (offsetX > 0) {
+            backend.drawImage(image, 0, offsetY, splitX, 0, offsetX, splitY);
+        }
+        if (offsetY > 0) {
+            backend.drawImage(image, offsetX, 0, 0, splitY, splitX, offsetY);
+        }
+        if (offsetX > 0 && offsetY > 0) {
+            backend.drawImage(image, 0, 0, splitX, splitY, offsetX, offsetY);
+        }
+    }
 
-            projX += cameraX;
-            projY += cameraY;
+    /** Draw a star's sprite where its band has scrolled it, with another copy wherever it crosses an edge */
+    private void drawSprite(RenderBackend backend, Star s) {
+        BufferedImage sprite = s.sprite;
+        int x = s.spriteX + s.band.offsetX;
+        int y = s.spriteY + s.band.offsetY;
+        if (x >= width) x -= width;
+        if (y >= height) y -= height;
 
-            float size = s.size * div;
+        int wrapX = (x < 0) ? width : (x + sprite.getWidth() > width ? -width : 0);
+        int wrapY = (y < 0) ? height : (y + sprite.getHeight() > height ? -height : 0);
 
-            // Make sure stars stay on screen
-            projY -= Math.floor(projY / height) * height;
+        backend.drawImage(sprite, x, y);
+        if (wrapX != 0) {
+            backend.drawImage(sprite, x + wrapX, y);
+        }
+        if (wrapY != 0) {
+            backend.drawImage(sprite, x, y + wrapY);
+        }
+        if (wrapX != 0 && wrapY != 0) {
+            backend.drawImage(sprite, x + wrapX, y + wrapY);
+        }
+    }
+
+    private static int wrap(int value, int range) {
+        value %= range;
+        return (value < 0) ? value + range : value;
+    }
+
+    private static float[] createTwinkleCurve() {
+        float[] curve = new float[TWINKLE_STEPS];
+        for (int i = 0; i < TWINKLE_STEPS; i++) {
+            float twinkleTime = (float) i / TWINKLE_STEPS;
+            float twinkleK = 40f * (twinkleTime - 0.8f);
+            curve[i] = 1f + (float) Math.exp(-twinkleK*twinkleK);
+        }
+        return curve;
+    }
 
-            s.render(g, projX, projY, size);
+    /**
+     * A group of stars at the same depth, which all scroll together.
+     */
+    private static class Band {
+
+        public float z;
+
+        /** How far the band moves for each pixel the view scrolls */
+        public float scale;
+
+        /** The band's stars pre-rendered over the sky, only for the farthest band */
+        public BufferedImage image;
+
+        /** The band's stars, which are drawn one by one unless the band has an image */
+        public ArrayList<Star> stars = new ArrayList<>();
+
+        /** Where the band was drawn this frame */
+        public int offsetX, offsetY;
+
+        private Band(float z, float parallax) {
+            this.z = z;
+            this.scale = 1.0f / (parallax * z);
         }
     }
 
     private static class Star {
 
-        public float x, y, z;
+        public float x, y;
         public float size;
         public Color color;
+        public int argb;
+        public Band band;
 
-        public float twinkle;
         public float twinkleFrequency;
         public float twinklePhase;
 
-        public float time;
+        /** The star's location in its band's image and its size on screen */
+        public float projX, projY;
 
-        private Ellipse2D.Float shape;
+        /** The star drawn on its own, and where the sprite's top left corner sits in the band, or null if the band has an image */
+        public BufferedImage sprite;
+        public int spriteX, spriteY;
 
-        private Star(float x, float y, float z, float size, Color color) {
+        private Star(Random random, float x, float y, Band band, float size, Color color) {
             this.x = x;
             this.y = y;
-            this.z = z;
+            this.band = band;
             this.size = size;
             this.color = color;
+            this.argb = color.getRGB();
 
-            this.twinkleFrequency = (float) (1.0 / (Math.random() * 10.0 + 10.0));
-            this.twinklePhase = (float) Math.random();
-            this.time = 0;
-
-            float halfSize = size * 0.5f;
-            this.shape = new Ellipse2D.Float(x - halfSize, y - halfSize, size, size);
+            this.twinkleFrequency = (float) (1.0 / (random.nextDouble() * 10.0 + 10.0));
+            this.twinklePhase = random.nextFloat();
         }
 
-        public void update(long deltaMs) {
-            time += deltaMs / 1000.0f;
+        /** Find where the star sits in its band's image, before any scrolling */
+        public void project(float cameraX, float cameraY, int width, int height) {
+            float div = band.scale;
 
-            float twinkleTime = time * twinkleFrequency + twinklePhase;
-            twinkleTime -= Math.floor(twinkleTime);
+            projX = (x - cameraX) * div + cameraX;
+            projY = (y - cameraY) * div + cameraY;
 
-            float twinkleK = 40f * (twinkleTime - 0.8f);
-            float twinkleFactor = 1f + (float) Math.exp(-twinkleK*twinkleK);
+            // Make sure stars stay on screen
+            projX -= (float) Math.floor(projX / width) * width;
+            projY -= (float) Math.floor(projY / height) * height;
+
+            size *= div;
+        }
 
-            this.twinkle = twinkleFactor;
+        /** Draw the star into a sprite, keeping the part of a pixel it sits at within its band */
+        public void createSprite(Ellipse2D.Float shape) {
+            float halfSize = size * 0.5f;
+            spriteX = (int) Math.floor(projX - halfSize) - SPRITE_PADDING;
+            spriteY = (int) Math.floor(projY - halfSize) - SPRITE_PADDING;
+            int spriteWidth = (int) Math.ceil(projX + halfSize) + SPRITE_PADDING - spriteX;
+            int spriteHeight = (int) Math.ceil(projY + halfSize) + SPRITE_PADDING - spriteY;
+
+            sprite = new BufferedImage(spriteWidth, spriteHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = sprite.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            render(g, shape, projX - spriteX, projY - spriteY, size);
+            g.dispose();
         }
 
-        public void render(Graphics2D g, float x, float y, float size) {
-            size *= this.twinkle;
+        public void render(Graphics2D g, Ellipse2D.Float shape, float x, float y, float size) {
             float halfSize = size * 0.5f;
             shape.setFrame(x - halfSize, y - halfSize, size, size);
             g.setColor(color);
             g.fill(shape);
         }
+
+        /** Render the star into a tiling image, with extra copies where it crosses an edge */
+        public void renderWrapped(Graphics2D g, Ellipse2D.Float shape, float size, int width, int height) {
+            float halfSize = size * 0.5f + 1f;
+            for (int dx = -width; dx <= width; dx += width) {
+                if (projX + dx + halfSize < 0 || projX + dx - halfSize > width) continue;
+                for (int dy = -height; dy <= height; dy += height) {
+                    if (projY + dy + halfSize < 0 || projY + dy - halfSize > height) continue;
+                    render(g, shape, projX + dx, projY + dy, size);
+                }
+            }
+        }
     }
 
 }
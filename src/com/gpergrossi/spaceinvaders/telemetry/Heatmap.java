@@ -0,0 +1,92 @@
+package com.gpergrossi.spaceinvaders.telemetry;
+
+import java.io.PrintStream;
+
+/**
+ * Counts locations on a grid of square cells covering the world. Locations outside
+ * the world are counted in the nearest edge cell. Heatmaps of the same size merge.
+ */
+public class Heatmap {
+
+    private static final String SHADES = " .:-=+*#%@";
+
+    private int columns, rows;
+    private float cellSize;
+    private long[] cells;
+    private long count;
+
+    /**
+     * @param worldWidth The width of the area covered
+     * @param worldHeight The height of the area covered
+     * @param cellSize The width and height of each cell
+     */
+    public Heatmap(float worldWidth, float worldHeight, float cellSize) {
+        if (!(cellSize > 0)) throw new IllegalArgumentException("Cell size must be positive!");
+
+        this.columns = Math.max(1, (int) Math.ceil(worldWidth / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(worldHeight / cellSize));
+        this.cellSize = cellSize;
+        this.cells = new long[columns * rows];
+    }
+
+    public void add(float x, float y) {
+        int column = Math.max(0, Math.min(columns - 1, (int) Math.floor(x / cellSize)));
+        int row = Math.max(0, Math.min(rows - 1, (int) Math.floor(y / cellSize)));
+        cells[row * columns + column]++;
+        count++;
+    }
+
+    /**
+     * Add all of the locations counted by another heatmap to this one.
+     *
+     * @throws IllegalArgumentException If the heatmaps have different cells
+     */
+    public void merge(Heatmap other) {
+        if (other.columns != columns || other.rows != rows || other.cellSize != cellSize) {
+            throw new IllegalArgumentException("Cannot merge heatmaps with different cells!");
+        }
+
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] += other.cells[i];
+        }
+        count += other.count;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public long getCell(int column, int row) {
+        return cells[row * columns + column];
+    }
+
+    /**
+     * Print the heatmap as rows of characters, darker where more locations were counted.
+     */
+    public void print(PrintStream out) {
+        long largest = 1;
+        for (long value : cells) {
+            largest = Math.max(largest, value);
+        }
+
+        StringBuilder line = new StringBuilder(columns);
+        for (int row = 0; row < rows; row++) {
+            line.setLength(0);
+            for (int column = 0; column < columns; column++) {
+                long value = cells[row * columns + column];
+                int shade = (value == 0) ? 0 : 1 + (int) ((SHADES.length() - 2) * value / largest);
+                line.append(SHADES.charAt(shade));
+            }
+            out.println(line);
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.gpergrossi.spaceinvaders.telemetry;
+
+import java.io.PrintStream;
+
+/**
+ * A histogram with equal width bins over a fixed range. Values outside of the range
+ * are counted in the first or last bin. Two histograms with the same range and number
+ * of bins can be merged, so partial results from separate threads can be combined.
+ */
+public class Histogram {
+
+    private double min, max;
+    private double binWidth;
+    private long[] bins;
+
+    private long count;
+    private double sum;
+
+    /**
+     * @param min The low edge of the first bin
+     * @param max The high edge of the last bin
+     * @param binCount The number of bins
+     */
+    public Histogram(double min, double max, int binCount) {
+        if (!(max > min)) throw new IllegalArgumentException("Max must be greater than min!");
+        if (binCount < 1) throw new IllegalArgumentException("Need at least one bin!");
+
+        this.min = min;
+        this.max = max;
+        this.binWidth = (max - min) / binCount;
+        this.bins = new long[binCount];
+    }
+
+    public void add(double value) {
+        int bin = (int) Math.floor((value - min) / binWidth);
+        if (bin < 0) bin = 0;
+        if (bin >= bins.length) bin = bins.length - 1;
+
+        bins[bin]++;
+        count++;
+        sum += value;
+    }
+
+    /**
+     * Add all of the values counted by another histogram to this one.
+     *
+     * @throws IllegalArgumentException If the histograms have different bins
+     */
+    public void merge(Histogram other) {
+        if (other.min != min || other.max != max || other.bins.length != bins.length) {
+            throw new IllegalArgumentException("Cannot merge histograms with different bins!");
+        }
+
+        for (int i = 0; i < bins.length; i++) {
+            bins[i] += other.bins[i];
+        }
+        count += other.count;
+        sum += other.sum;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return (count == 0) ? Double.NaN : sum / count;
+    }
+
+    public int getBinCount() {
+        return bins.length;
+    }
+
+    public double getBinLow(int bin) {
+        return min + bin * binWidth;
+    }
+
+    public long getBinValue(int bin) {
+        return bins[bin];
+    }
+
+    /**
+     * Print one line per bin with a bar proportional to its count.
+     *
+     * @param out The stream to print to
+     * @param format The format of the bin's low edge, e.g. "%5.2f"
+     */
+    public void print(PrintStream out, String format) {
+        long largest = 1;
+        for (long value : bins) {
+            largest = Math.max(largest, value);
+        }
+
+        for (int i = 0; i < bins.length; i++) {
+            int barLength = (int) (40 * bins[i] / largest);
+            out.println(String.format(format, getBinLow(i)) + " | " + "#".repeat(barLength) + " " + bins[i]);
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.gpergrossi.spaceinvaders.telemetry;
+
+import java.util.Arrays;
+
+/**
+ * Holds the events recorded during ticks that may still be rolled back, until they are
+ * either confirmed and written out, or discarded because the tick is being simulated again.
+ *
+ * Ticks are simulated in order, and a rollback discards every tick from some point on, so
+ * the held events are always in tick order: confirming takes them from the front and
+ * discarding takes them from the back. Storage grows as needed and is then reused.
+ */
+public class PendingTelemetry {
+
+    private int size;
+
+    private int[] ticks;
+    private long[] times;
+    private short[] types;
+    private int[] players;
+    private int[] as, bs;
+    private float[] xs, ys;
+
+    public PendingTelemetry() {
+        allocate(64);
+    }
+
+    private void allocate(int capacity) {
+        ticks = (ticks == null) ? new int[capacity] : Arrays.copyOf(ticks, capacity);
+        times = (times == null) ? new long[capacity] : Arrays.copyOf(times, capacity);
+        types = (types == null) ? new short[capacity] : Arrays.copyOf(types, capacity);
+        players = (players == null) ? new int[capacity] : Arrays.copyOf(players, capacity);
+        as = (as == null) ? new int[capacity] : Arrays.copyOf(as, capacity);
+        bs = (bs == null) ? new int[capacity] : Arrays.copyOf(bs, capacity);
+        xs = (xs == null) ? new float[capacity] : Arrays.copyOf(xs, capacity);
+        ys = (ys == null) ? new float[capacity] : Arrays.copyOf(ys, capacity);
+    }
+
+    /**
+     * Hold an event until its tick is confirmed. See TelemetryWriter.record() for the arguments.
+     *
+     * @param tick The tick the event happened in, no earlier than any held event's tick
+     * @param timeNanos When the event happened, from System.nanoTime()
+     */
+    public void add(int tick, long timeNanos, short type, int player, int a, int b, float x, float y) {
+        if (size == ticks.length) allocate(size * 2);
+
+        ticks[size] = tick;
+        times[size] = timeNanos;
+        types[size] = type;
+        players[size] = player;
+        as[size] = a;
+        bs[size] = b;
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    /**
+     * Write out the events of every tick up to and including a confirmed tick.
+     *
+     * @param throughTick The latest tick whose events are final
+     * @param writer The writer to record the events to
+     */
+    public void confirm(int throughTick, TelemetryWriter writer) {
+        int count = 0;
+        while (count < size && ticks[count] <= throughTick) {
+            writer.record(times[count], types[count], players[count], as[count], bs[count], xs[count], ys[count]);
+            count++;
+        }
+        if (count == 0) return;
+
+        // Move the events that are still pending to the front
+        int remaining = size - count;
+        System.arraycopy(ticks, count, ticks, 0, remaining);
+        System.arraycopy(times, count, times, 0, remaining);
+        System.arraycopy(types, count, types, 0, remaining);
+        System.arraycopy(players, count, players, 0, remaining);
+        System.arraycopy(as, count, as, 0, remaining);
+        System.arraycopy(bs, count, bs, 0, remaining);
+        System.arraycopy(xs, count, xs, 0, remaining);
+        System.arraycopy(ys, count, ys, 0, remaining);
+        size = remaining;
+    }
+
+    /**
+     * Drop the events of every tick from a rolled back tick on.
+     *
+     * @param fromTick The earliest tick that will be simulated again
+     */
+    public void discard(int fromTick) {
+        while (size > 0 && ticks[size - 1] >= fromTick) {
+            size--;
+        }
+    }
+
+    /**
+     * Drop every held event.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.gpergrossi.spaceinvaders.telemetry;
+
+/**
+ * A mergeable sketch of a distribution of positive values that answers quantile queries
+ * within a fixed relative error.
+ *
+ * Values are counted in logarithmic buckets: bucket i holds values in (gamma^(i-1), gamma^i],
+ * where gamma = (1 + a) / (1 - a) for a relative accuracy a. Any quantile is then reported
+ * within a fraction a of the true value, using memory that grows only with the logarithm of
+ * the range of values. Sketches with the same accuracy are merged by adding bucket counts,
+ * which gives exactly the same result as sketching all of the values at once.
+ */
+public class QuantileSketch {
+
+    /** Values at or below this are counted as zero */
+    private static final double MIN_VALUE = 1e-9;
+
+    private double relativeAccuracy;
+    private double gamma;
+    private double logGamma;
+
+    /** Counts of bucket (offset + i) are kept in buckets[i] */
+    private long[] buckets;
+    private int offset;
+
+    private long zeroCount;
+    private long count;
+    private double minValue, maxValue;
+
+    /**
+     * @param relativeAccuracy The largest relative error of a reported quantile, e.g. 0.01 for 1%
+     */
+    public QuantileSketch(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) throw new IllegalArgumentException("Accuracy must be between 0 and 1!");
+
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+
+        this.buckets = new long[0];
+        this.offset = 0;
+        this.minValue = Double.POSITIVE_INFINITY;
+        this.maxValue = Double.NEGATIVE_INFINITY;
+    }
+
+    public void add(double value) {
+        if (value < 0) throw new IllegalArgumentException("Values must not be negative!");
+
+        count++;
+        minValue = Math.min(minValue, value);
+        maxValue = Math.max(maxValue, value);
+
+        if (value <= MIN_VALUE) {
+            zeroCount++;
+            return;
+        }
+
+        int index = (int) Math.ceil(Math.log(value) / logGamma);
+        ensureBucket(index);
+        buckets[index - offset]++;
+    }
+
+    /**
+     * Add all of the values counted by another sketch to this one.
+     *
+     * @throws IllegalArgumentException If the sketches have different accuracies
+     */
+    public void merge(QuantileSketch other) {
+        if (other.gamma != gamma) throw new IllegalArgumentException("Cannot merge sketches with different accuracies!");
+        if (other.count == 0) return;
+
+        if (other.buckets.length > 0) {
+            ensureBucket(other.offset);
+            ensureBucket(other.offset + other.buckets.length - 1);
+            for (int i = 0; i < other.buckets.length; i++) {
+                buckets[other.offset + i - offset] += other.buckets[i];
+            }
+        }
+
+        zeroCount += other.zeroCount;
+        count += other.count;
+        minValue = Math.min(minValue, other.minValue);
+        maxValue = Math.max(maxValue, other.maxValue);
+    }
+
+    /** Grows the bucket array so that it covers the given bucket index */
+    private void ensureBucket(int index) {
+        if (buckets.length == 0) {
+            buckets = new long[16];
+            offset = index - 8;
+            return;
+        }
+
+        int low = Math.min(offset, index);
+        int high = Math.max(offset + buckets.length - 1, index);
+        if (low == offset && high == offset + buckets.length - 1) return;
+
+        // Leave some slack on the side that grew, so repeated growth is amortized
+        int length = Math.max(high - low + 1, buckets.length * 2);
+        int newOffset = (low < offset) ? high - length + 1 : low;
+
+        long[] grown = new long[length];
+        System.arraycopy(buckets, 0, grown, offset - newOffset, buckets.length);
+        buckets = grown;
+        offset = newOffset;
+    }
+
+    /**
+     * @param q The quantile to estimate, from 0 (the minimum) to 1 (the maximum)
+     * @return An estimate of the value at that quantile, or NaN if the sketch is empty
+     */
+    public double getQuantile(double q) {
+        if (q < 0 || q > 1) throw new IllegalArgumentException("Quantile must be between 0 and 1!");
+        if (count == 0) return Double.NaN;
+        if (q == 0) return minValue;
+        if (q == 1) return maxValue;
+
+        long rank = (long) (q * (count - 1));
+        if (rank < zeroCount) return 0;
+
+        long seen = zeroCount;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen > rank) {
+                // The value that is within the relative accuracy of every value in the bucket
+                double estimate = 2 * Math.pow(gamma, offset + i) / (gamma + 1);
+                return Math.max(minValue, Math.min(maxValue, estimate));
+            }
+        }
+        return maxValue;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return (count == 0) ? Double.NaN : minValue;
+    }
+
+    public double getMax() {
+        return (count == 0) ? Double.NaN : maxValue;
+    }
+
+}
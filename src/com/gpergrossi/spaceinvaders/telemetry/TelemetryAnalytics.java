@@ -0,0 +1,207 @@
+package com.gpergrossi.spaceinvaders.telemetry;
+
+import com.gpergrossi.spaceinvaders.game.Statistics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+
+/**
+ * Aggregates recorded telemetry into a TelemetrySummary.
+ *
+ * Files are grouped by session, since a round can continue from one file of a session
+ * into the next. Sessions are split recursively across a fork/join pool, each one is
+ * decoded straight from its memory-mapped files, and the partial summaries are merged
+ * on the way back up.
+ *
+ * Run with one or more telemetry files or directories containing them:
+ *   java com.gpergrossi.spaceinvaders.telemetry.TelemetryAnalytics &lt;path&gt;...
+ */
+public class TelemetryAnalytics {
+
+    /** Tasks with at most this many sessions are not split any further */
+    private static final int SESSIONS_PER_TASK = 8;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: TelemetryAnalytics <telemetry file or directory>...");
+            System.exit(1);
+        }
+
+        List<Path> paths = new ArrayList<>();
+        for (String arg : args) {
+            paths.add(Paths.get(arg));
+        }
+
+        long startTime = System.nanoTime();
+        TelemetrySummary summary = analyze(paths, ForkJoinPool.commonPool());
+        long elapsedMs = (System.nanoTime() - startTime) / 1000000;
+
+        summary.print(System.out);
+        System.out.println();
+        System.out.println("Analysed in " + elapsedMs + " ms");
+    }
+
+    /**
+     * Analyse all of the telemetry files found at the given paths.
+     *
+     * @param paths Telemetry files, or directories that are searched for telemetry files
+     * @param pool The pool to analyse the sessions on
+     */
+    public static TelemetrySummary analyze(List<Path> paths, ForkJoinPool pool) throws IOException {
+        List<List<Path>> sessions = findSessions(paths);
+        if (sessions.isEmpty()) return new TelemetrySummary();
+        return pool.invoke(new SessionTask(sessions, 0, sessions.size()));
+    }
+
+    /** Finds all telemetry files, grouped by session and sorted in the order they were written */
+    private static List<List<Path>> findSessions(List<Path> paths) throws IOException {
+        Map<Long, List<Path>> sessions = new TreeMap<>();
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> children = Files.list(path)) {
+                    for (Path child : (Iterable<Path>) children::iterator) {
+                        addFile(sessions, child);
+                    }
+                }
+            } else {
+                addFile(sessions, path);
+            }
+        }
+
+        List<List<Path>> result = new ArrayList<>(sessions.values());
+        for (List<Path> files : result) {
+            // File names embed a zero padded sequence number
+            Collections.sort(files);
+        }
+        return result;
+    }
+
+    private static void addFile(Map<Long, List<Path>> sessions, Path file) {
+        String name = file.getFileName().toString();
+        if (!TelemetryFormat.isTelemetryFile(name)) return;
+
+        long sessionId = TelemetryFormat.getSessionId(name);
+        sessions.computeIfAbsent(sessionId, id -> new ArrayList<>()).add(file);
+    }
+
+    private static class SessionTask extends RecursiveTask<TelemetrySummary> {
+
+        private static final long serialVersionUID = 1L;
+
+        private List<List<Path>> sessions;
+        private int from, to;
+
+        public SessionTask(List<List<Path>> sessions, int from, int to) {
+            this.sessions = sessions;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TelemetrySummary compute() {
+            if (to - from <= SESSIONS_PER_TASK) {
+                TelemetrySummary summary = new TelemetrySummary();
+                for (int i = from; i < to; i++) {
+                    analyzeSession(sessions.get(i), summary);
+                }
+                return summary;
+            }
+
+            int middle = (from + to) >>> 1;
+            SessionTask left = new SessionTask(sessions, from, middle);
+            SessionTask right = new SessionTask(sessions, middle, to);
+            left.fork();
+
+            TelemetrySummary summary = right.compute();
+            summary.merge(left.join());
+            return summary;
+        }
+    }
+
+    /**
+     * Replays the events of one session, scoring each round the way Statistics does.
+     */
+    private static void analyzeSession(List<Path> files, TelemetrySummary summary) {
+        summary.addSession();
+        RoundTracker round = new RoundTracker();
+
+        for (Path path : files) {
+            TelemetryFile file;
+            try {
+                file = new TelemetryFile(path);
+            } catch (IOException e) {
+                summary.addUnreadableFile();
+                continue;
+            }
+            summary.addFile(file.getRecordCount());
+
+            for (int i = 0; i < file.getRecordCount(); i++) {
+                short type = file.getType(i);
+
+                if (type == TelemetryFormat.ROUND_START) {
+                    round.begin(file.getRound(i), file.getTime(i));
+                    summary.addRoundStarted();
+                    continue;
+                }
+
+                if (type == TelemetryFormat.ALIEN_KILLED) {
+                    summary.addKill(file.getX(i), file.getY(i));
+                }
+
+                // Events that don't belong to the round being tracked can't be scored
+                if (!round.active || file.getRound(i) != round.number) continue;
+
+                switch (type) {
+                    case TelemetryFormat.SHOT_FIRED:
+                        round.shotsFired++;
+                        break;
+                    case TelemetryFormat.SHOT_MISSED:
+                    case TelemetryFormat.SHOT_BLOCKED:
+                        round.shotsMissed++;
+                        break;
+                    case TelemetryFormat.ROUND_SCORE:
+                        round.maxCombo = file.getA(i);
+                        break;
+                    case TelemetryFormat.ROUND_END:
+                        double duration = (file.getTime(i) - round.startTime) / 1e6;
+                        float accuracy = (round.shotsFired > 0) ? Statistics.getAccuracy(round.shotsFired, round.shotsMissed) : Float.NaN;
+                        summary.addRoundFinished(file.getA(i) == 1, duration, accuracy, round.maxCombo);
+                        round.active = false;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+    }
+
+    /** The running totals of the round currently being replayed */
+    private static class RoundTracker {
+        private boolean active;
+        private int number;
+        private long startTime;
+        private int shotsFired;
+        private int shotsMissed;
+        private int maxCombo;
+
+        public void begin(int number, long startTime) {
+            this.active = true;
+            this.number = number;
+            this.startTime = startTime;
+            this.shotsFired = 0;
+            this.shotsMissed = 0;
+            this.maxCombo = 0;
+        }
+    }
+
+}
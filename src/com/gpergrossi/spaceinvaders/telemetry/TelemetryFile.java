@@ -0,0 +1,106 @@
+package com.gpergrossi.spaceinvaders.telemetry;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only view of one telemetry file, memory-mapped so that records are decoded
+ * straight out of the page cache without copying. Records are read by index, with
+ * absolute reads at the offsets given by TelemetryFormat.
+ */
+public class TelemetryFile {
+
+    private Path path;
+    private MappedByteBuffer buffer;
+
+    private long sessionId;
+    private int sequence;
+    private int recordCount;
+
+    /**
+     * Map a telemetry file and check its header. A partly written record at the end
+     * of the file (e.g. from a crash) is ignored.
+     *
+     * @throws IOException If the file can't be read or is not a telemetry file of a supported version
+     */
+    public TelemetryFile(Path path) throws IOException {
+        this.path = path;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping remains valid after the channel is closed
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.capacity() < TelemetryFormat.HEADER_SIZE) throw new IOException("Too short to be a telemetry file: " + path);
+        if (buffer.getInt(0) != TelemetryFormat.MAGIC) throw new IOException("Not a telemetry file: " + path);
+
+        short version = buffer.getShort(4);
+        if (version != TelemetryFormat.VERSION) throw new IOException("Unsupported telemetry version " + version + ": " + path);
+
+        short recordSize = buffer.getShort(6);
+        if (recordSize != TelemetryFormat.RECORD_SIZE) throw new IOException("Unexpected record size " + recordSize + ": " + path);
+
+        this.sessionId = buffer.getLong(8);
+        this.sequence = buffer.getInt(16);
+        this.recordCount = (buffer.capacity() - TelemetryFormat.HEADER_SIZE) / TelemetryFormat.RECORD_SIZE;
+    }
+
+    private int offset(int record, int field) {
+        return TelemetryFormat.HEADER_SIZE + record * TelemetryFormat.RECORD_SIZE + field;
+    }
+
+    /**
+     * @return The time of a record in microseconds since the session started
+     */
+    public long getTime(int record) {
+        return buffer.getLong(offset(record, TelemetryFormat.OFFSET_TIME));
+    }
+
+    public short getType(int record) {
+        return buffer.getShort(offset(record, TelemetryFormat.OFFSET_TYPE));
+    }
+
+    public short getPlayer(int record) {
+        return buffer.getShort(offset(record, TelemetryFormat.OFFSET_PLAYER));
+    }
+
+    public int getRound(int record) {
+        return buffer.getInt(offset(record, TelemetryFormat.OFFSET_ROUND));
+    }
+
+    public int getA(int record) {
+        return buffer.getInt(offset(record, TelemetryFormat.OFFSET_A));
+    }
+
+    public int getB(int record) {
+        return buffer.getInt(offset(record, TelemetryFormat.OFFSET_B));
+    }
+
+    public float getX(int record) {
+        return buffer.getFloat(offset(record, TelemetryFormat.OFFSET_X));
+    }
+
+    public float getY(int record) {
+        return buffer.getFloat(offset(record, TelemetryFormat.OFFSET_Y));
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.gpergrossi.spaceinvaders.telemetry;
+
+/**
+ * The layout of the binary telemetry files written by TelemetryWriter.
+ *
+ * Each file starts with a header, followed by any number of fixed-size event records.
+ * All values are big-endian.
+ * <pre>
+ *   Header:
+ *     int    MAGIC
+ *     short  VERSION
+ *     short  RECORD_SIZE
+ *     long   session id (wall clock time the session started, in milliseconds)
+ *     int    file sequence number within the session
+ *     int    reserved
+ *
+ *   Record:
+ *     long   time since the session started, in microseconds
+ *     short  event type
+ *     short  player index, or -1
+ *     int    round number within the session
+ *     int    a, int b (meaning depends on the event type)
+ *     float  x, float y (world location, where it applies)
+ * </pre>
+ */
+public final class TelemetryFormat {
+
+    /** Identifies a telemetry file ("SITL") */
+    public static final int MAGIC = 0x5349544C;
+
+    /** Incremented whenever the layout changes */
+    public static final short VERSION = 1;
+
+    public static final int HEADER_SIZE = 24;
+    public static final int RECORD_SIZE = 32;
+
+    /** Byte offsets of the fields within a record */
+    public static final int OFFSET_TIME = 0;
+    public static final int OFFSET_TYPE = 8;
+    public static final int OFFSET_PLAYER = 10;
+    public static final int OFFSET_ROUND = 12;
+    public static final int OFFSET_A = 16;
+    public static final int OFFSET_B = 20;
+    public static final int OFFSET_X = 24;
+    public static final int OFFSET_Y = 28;
+
+    /** A round of gameplay began. a = aliens in the swarm, b = number of players */
+    public static final short ROUND_START = 1;
+
+    /** A round of gameplay ended. a = 1 for victory or 0 for defeat, b = aliens remaining */
+    public static final short ROUND_END = 2;
+
+    /** A shot was fired. a = shot index, x/y = where the shot started */
+    public static final short SHOT_FIRED = 3;
+
+    /** A shot hit an alien. a = shot index, b = hit combo afterwards, x/y = location of the shot */
+    public static final short SHOT_HIT = 4;
+
+    /** A shot went off the top of the world. a = shot index, x/y = location of the shot */
+    public static final short SHOT_MISSED = 5;
+
+    /** A shot was stopped by a bunker. a = shot index, x/y = location of the shot */
+    public static final short SHOT_BLOCKED = 6;
+
+    /** An alien was killed. a = aliens remaining, x/y = center of the alien */
+    public static final short ALIEN_KILLED = 7;
+
+    /** A miss ended a hit combo. a = length of the combo that was lost */
+    public static final short COMBO_BREAK = 8;
+
+    /** The final score of a round, recorded just before ROUND_END. a = max hit combo, b = hit combo at the end */
+    public static final short ROUND_SCORE = 9;
+
+    private static final String FILE_PREFIX = "telemetry-";
+    private static final String FILE_SUFFIX = ".bin";
+
+    private TelemetryFormat() {}
+
+    /**
+     * @return A file name for one file of a session, which sorts in the order the files were written
+     */
+    public static String getFileName(long sessionId, int sequence) {
+        return String.format(FILE_PREFIX + "%d-%04d" + FILE_SUFFIX, sessionId, sequence);
+    }
+
+    /**
+     * @return True if the file name is one produced by getFileName()
+     */
+    public static boolean isTelemetryFile(String fileName) {
+        return fileName.startsWith(FILE_PREFIX) && fileName.endsWith(FILE_SUFFIX) && fileName.indexOf('-', FILE_PREFIX.length()) > 0;
+    }
+
+    /**
+     * @return The session id from a file name produced by getFileName()
+     */
+    public static long getSessionId(String fileName) {
+        int end = fileName.indexOf('-', FILE_PREFIX.length());
+        return Long.parseLong(fileName.substring(FILE_PREFIX.length(), end));
+    }
+
+}
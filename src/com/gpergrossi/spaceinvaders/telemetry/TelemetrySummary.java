@@ -0,0 +1,183 @@
+package com.gpergrossi.spaceinvaders.telemetry;
+
+import com.gpergrossi.spaceinvaders.game.Settings;
+
+import java.io.PrintStream;
+
+/**
+ * Aggregate results of analysing telemetry. Every part of a summary is mergeable,
+ * so sessions can be summarised independently and the results combined in any order.
+ */
+public class TelemetrySummary {
+
+    /** Relative accuracy of the time quantiles */
+    private static final double TIME_ACCURACY = 0.01;
+
+    /** Size of the cells of the kill heatmap */
+    private static final float HEATMAP_CELL_SIZE = 25;
+
+    private long sessions;
+    private long files;
+    private long unreadableFiles;
+    private long records;
+
+    private long roundsStarted;
+    private long roundsWon;
+    private long roundsLost;
+
+    /** Accuracy of each finished round in which shots were fired, as scored by Statistics */
+    private Histogram accuracy;
+
+    /** Max hit combo of each finished round, as scored by Statistics */
+    private Histogram maxCombo;
+
+    /** Seconds from the start of gameplay until the last alien was killed, for rounds that were won */
+    private QuantileSketch timeToClear;
+
+    /** Seconds from the start to the end of every finished round */
+    private QuantileSketch roundDuration;
+
+    /** Where aliens were killed */
+    private Heatmap kills;
+
+    public TelemetrySummary() {
+        Settings settings = new Settings();
+
+        this.accuracy = new Histogram(0, 1, 20);
+        this.maxCombo = new Histogram(0, 60, 30);
+        this.timeToClear = new QuantileSketch(TIME_ACCURACY);
+        this.roundDuration = new QuantileSketch(TIME_ACCURACY);
+        this.kills = new Heatmap(settings.getWorldWidth(), settings.getWorldHeight(), HEATMAP_CELL_SIZE);
+    }
+
+    void addSession() {
+        sessions++;
+    }
+
+    void addFile(int recordCount) {
+        files++;
+        records += recordCount;
+    }
+
+    void addUnreadableFile() {
+        unreadableFiles++;
+    }
+
+    void addRoundStarted() {
+        roundsStarted++;
+    }
+
+    /**
+     * Count a finished round.
+     *
+     * @param won True if all aliens were killed
+     * @param durationSeconds The length of the round
+     * @param accuracy The accuracy score, or NaN if no shots were fired
+     * @param maxCombo The max hit combo score
+     */
+    void addRoundFinished(boolean won, double durationSeconds, float accuracy, int maxCombo) {
+        if (won) {
+            roundsWon++;
+            timeToClear.add(durationSeconds);
+        } else {
+            roundsLost++;
+        }
+        roundDuration.add(durationSeconds);
+
+        if (!Float.isNaN(accuracy)) this.accuracy.add(accuracy);
+        this.maxCombo.add(maxCombo);
+    }
+
+    void addKill(float x, float y) {
+        kills.add(x, y);
+    }
+
+    /**
+     * Add everything counted by another summary to this one.
+     */
+    public void merge(TelemetrySummary other) {
+        sessions += other.sessions;
+        files += other.files;
+        unreadableFiles += other.unreadableFiles;
+        records += other.records;
+
+        roundsStarted += other.roundsStarted;
+        roundsWon += other.roundsWon;
+        roundsLost += other.roundsLost;
+
+        accuracy.merge(other.accuracy);
+        maxCombo.merge(other.maxCombo);
+        timeToClear.merge(other.timeToClear);
+        roundDuration.merge(other.roundDuration);
+        kills.merge(other.kills);
+    }
+
+    public void print(PrintStream out) {
+        out.println("Sessions: " + sessions + ", files: " + files + " (" + unreadableFiles + " unreadable), records: " + records);
+        out.println("Rounds: " + roundsStarted + " started, " + roundsWon + " won, " + roundsLost + " lost, "
+                + (roundsStarted - roundsWon - roundsLost) + " abandoned");
+        out.println();
+
+        out.println(String.format("Accuracy (mean %.1f%%):", 100 * accuracy.getMean()));
+        accuracy.print(out, "%5.2f");
+        out.println();
+
+        out.println(String.format("Max hit combo (mean %.1f):", maxCombo.getMean()));
+        maxCombo.print(out, "%5.0f");
+        out.println();
+
+        printQuantiles(out, "Time to clear (s)", timeToClear);
+        printQuantiles(out, "Round duration (s)", roundDuration);
+        out.println();
+
+        out.println("Kills (" + kills.getCount() + "):");
+        kills.print(out);
+    }
+
+    private static void printQuantiles(PrintStream out, String name, QuantileSketch sketch) {
+        out.println(String.format("%s: p10 %.1f, p50 %.1f, p90 %.1f, p99 %.1f, max %.1f (%d rounds)", name,
+                sketch.getQuantile(0.1), sketch.getQuantile(0.5), sketch.getQuantile(0.9),
+                sketch.getQuantile(0.99), sketch.getMax(), sketch.getCount()));
+    }
+
+    public long getSessions() {
+        return sessions;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getRoundsStarted() {
+        return roundsStarted;
+    }
+
+    public long getRoundsWon() {
+        return roundsWon;
+    }
+
+    public long getRoundsLost() {
+        return roundsLost;
+    }
+
+    public Histogram getAccuracy() {
+        return accuracy;
+    }
+
+    public Histogram getMaxCombo() {
+        return maxCombo;
+    }
+
+    public QuantileSketch getTimeToClear() {
+        return timeToClear;
+    }
+
+    public QuantileSketch getRoundDuration() {
+        return roundDuration;
+    }
+
+    public Heatmap getKills() {
+        return kills;
+    }
+
+}
@@ -0,0 +1,288 @@
+package com.gpergrossi.spaceinvaders.telemetry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records gameplay events to append-only binary files for offline analysis.
+ *
+ * Events are encoded as fixed-size records (see TelemetryFormat) into a direct buffer.
+ * When a buffer fills up, or has been holding events for longer than the flush interval,
+ * it is handed to a background thread which appends it to the current file and gives it
+ * back. Files are rotated once they reach a size limit.
+ *
+ * Recording an event never waits on the disk. If the background thread falls so far
+ * behind that no empty buffer is available, events are dropped and counted instead.
+ *
+ * Events are meant to be recorded from the game loop. The methods are synchronized only
+ * so that close() can safely be called from a shutdown hook.
+ */
+public class TelemetryWriter implements Closeable {
+
+    /** The number of records held by each buffer */
+    public static final int DEFAULT_BATCH_RECORDS = 512;
+
+    /** The number of buffers shared between the game loop and the background thread */
+    public static final int DEFAULT_BUFFER_COUNT = 4;
+
+    /** Files are rotated before they grow past this size */
+    public static final long DEFAULT_MAX_FILE_SIZE = 8 * 1024 * 1024;
+
+    /** A partly filled buffer is handed off after holding events for this long */
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** Handed to the background thread to tell it to finish up */
+    private static final ByteBuffer END_OF_SESSION = ByteBuffer.allocate(0);
+
+    private Path directory;
+    private long maxFileSize;
+
+    private long sessionId;
+    private long sessionStartNanos;
+
+    /** The buffer currently being filled by the game loop, or null if none was available */
+    private ByteBuffer current;
+    private long currentFirstEventNanos;
+
+    private ArrayBlockingQueue<ByteBuffer> emptyBuffers;
+    private ArrayBlockingQueue<ByteBuffer> fullBuffers;
+
+    private Thread thread;
+    private boolean closed;
+    private int round;
+    private long droppedRecords;
+
+    /** Only used by the background thread */
+    private FileChannel channel;
+    private int fileSequence;
+    private ByteBuffer header;
+
+    /**
+     * Start a new telemetry session, writing files with the default sizes.
+     *
+     * @param directory The directory to write to. It is created if it doesn't exist.
+     */
+    public TelemetryWriter(Path directory) throws IOException {
+        this(directory, DEFAULT_BATCH_RECORDS, DEFAULT_BUFFER_COUNT, DEFAULT_MAX_FILE_SIZE);
+    }
+
+    /**
+     * Start a new telemetry session.
+     *
+     * @param directory The directory to write to. It is created if it doesn't exist.
+     * @param batchRecords The number of records in each buffer
+     * @param bufferCount The number of buffers to allocate, at least 2
+     * @param maxFileSize Files are rotated before growing past this many bytes
+     */
+    public TelemetryWriter(Path directory, int batchRecords, int bufferCount, long maxFileSize) throws IOException {
+        if (batchRecords < 1) throw new IllegalArgumentException("Batch must hold at least one record!");
+        if (bufferCount < 2) throw new IllegalArgumentException("Need at least two buffers!");
+        if (maxFileSize < TelemetryFormat.HEADER_SIZE + (long) batchRecords * TelemetryFormat.RECORD_SIZE) {
+            throw new IllegalArgumentException("Max file size must fit at least one batch!");
+        }
+
+        this.directory = Files.createDirectories(directory);
+        this.maxFileSize = maxFileSize;
+
+        this.sessionId = System.currentTimeMillis();
+        this.sessionStartNanos = System.nanoTime();
+
+        // The full queue has room for every buffer plus the end of session marker, so offers to it never fail
+        this.emptyBuffers = new ArrayBlockingQueue<>(bufferCount);
+        this.fullBuffers = new ArrayBlockingQueue<>(bufferCount + 1);
+        for (int i = 0; i < bufferCount; i++) {
+            emptyBuffers.add(ByteBuffer.allocateDirect(batchRecords * TelemetryFormat.RECORD_SIZE));
+        }
+
+        this.header = ByteBuffer.allocate(TelemetryFormat.HEADER_SIZE);
+        this.fileSequence = 0;
+
+        this.thread = new Thread(this::run, "Telemetry Writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Set the round number stamped on the events that follow.
+     */
+    public synchronized void setRound(int round) {
+        this.round = round;
+    }
+
+    /**
+     * Record an event. Never blocks.
+     *
+     * @param type One of the event types in TelemetryFormat
+     * @param player The player involved, or -1
+     * @param a The first event argument
+     * @param b The second event argument
+     * @param x The world x location of the event
+     * @param y The world y location of the event
+     */
+    public void record(short type, int player, int a, int b, float x, float y) {
+        record(System.nanoTime(), type, player, a, b, x, y);
+    }
+
+    /**
+     * Record an event that happened earlier, e.g. one held back until it was confirmed. Never blocks.
+     *
+     * @param timeNanos When the event happened, from System.nanoTime()
+     */
+    public synchronized void record(long timeNanos, short type, int player, int a, int b, float x, float y) {
+        if (closed) return;
+
+        long now = System.nanoTime();
+
+        if (current == null) {
+            current = emptyBuffers.poll();
+            if (current == null) {
+                // The disk can't keep up. Drop the event rather than wait.
+                droppedRecords++;
+                return;
+            }
+            currentFirstEventNanos = now;
+        }
+
+        current.putLong((timeNanos - sessionStartNanos) / 1000);
+        current.putShort(type);
+        current.putShort((short) player);
+        current.putInt(round);
+        current.putInt(a);
+        current.putInt(b);
+        current.putFloat(x);
+        current.putFloat(y);
+
+        if (!current.hasRemaining()) {
+            handOff();
+        }
+    }
+
+    /**
+     * Hand off a partly filled buffer if it has been holding events for a while, so that
+     * the files stay reasonably up to date during quiet periods. Call this once per loop.
+     */
+    public synchronized void update() {
+        if (current == null || current.position() == 0) return;
+        if (System.nanoTime() - currentFirstEventNanos >= FLUSH_INTERVAL_NANOS) {
+            handOff();
+        }
+    }
+
+    private void handOff() {
+        current.flip();
+        fullBuffers.offer(current);
+        current = null;
+    }
+
+    /**
+     * Write out everything recorded so far and stop the background thread.
+     * Waits a short while for the writes to finish.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+
+            if (current != null && current.position() > 0) handOff();
+            fullBuffers.offer(END_OF_SESSION);
+        }
+
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return The number of events dropped because no buffer was free
+     */
+    public synchronized long getDroppedRecords() {
+        return droppedRecords;
+    }
+
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /** The background thread's loop: append each full buffer to the file, then give it back. */
+    private void run() {
+        boolean failed = false;
+        try {
+            while (true) {
+                ByteBuffer batch = fullBuffers.take();
+                if (batch == END_OF_SESSION) break;
+
+                if (!failed) {
+                    try {
+                        append(batch);
+                    } catch (IOException e) {
+                        // Keep recycling buffers so the game loop is unaffected, but stop writing
+                        System.err.println("Telemetry disabled, failed to write: " + e.getMessage());
+                        failed = true;
+                    }
+                }
+
+                batch.clear();
+                emptyBuffers.offer(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeFile();
+        }
+    }
+
+    private void append(ByteBuffer batch) throws IOException {
+        if (channel == null || channel.position() + batch.remaining() > maxFileSize) {
+            closeFile();
+            openFile();
+        }
+
+        while (batch.hasRemaining()) {
+            channel.write(batch);
+        }
+    }
+
+    private void openFile() throws IOException {
+        Path path = directory.resolve(TelemetryFormat.getFileName(sessionId, fileSequence));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+
+        header.clear();
+        header.putInt(TelemetryFormat.MAGIC);
+        header.putShort(TelemetryFormat.VERSION);
+        header.putShort((short) TelemetryFormat.RECORD_SIZE);
+        header.putLong(sessionId);
+        header.putInt(fileSequence);
+        header.putInt(0);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+
+        fileSequence++;
+    }
+
+    private void closeFile() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close telemetry file: " + e.getMessage());
+        }
+        channel = null;
+    }
+
+}
@@ -2,21 +2,27 @@ package com.gpergrossi.spaceinvaders.ui;
 
 import com.gpergrossi.spaceinvaders.animation.AnimationSystem;
 import com.gpergrossi.spaceinvaders.animation.TweenSequence;
+import com.gpergrossi.spaceinvaders.assets.Fonts;
+import com.gpergrossi.spaceinvaders.assets.GlyphAtlas;
 import com.gpergrossi.spaceinvaders.game.Input;
+import com.gpergrossi.spaceinvaders.render.RenderBackend;
 import com.gpergrossi.spaceinvaders.ui.texteffects.AnimatedTextEffect;
 
 import java.awt.*;
+import java.awt.font.FontRenderContext;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 
 public class AnimatedText extends Text {
 
-    private static ArrayList<AnimatedTextCharacter> createCharacters(Graphics2D g, Font font, String text, double centerX, double centerY, AnimatedTextEffect effect) {
+    private static ArrayList<AnimatedTextCharacter> createCharacters(Font font, String text, double centerX, double centerY, AnimatedTextEffect effect) {
         // Get bounds of text string
-        FontMetrics fm = g.getFontMetrics(font);
-        Rectangle2D bounds = fm.getStringBounds(text, 0, text.length(), g);
+        FontMetrics fm = Fonts.get().getMetrics(font);
+        FontRenderContext frc = fm.getFontRenderContext();
+        Rectangle2D bounds = font.getStringBounds(text, 0, text.length(), frc);
         double width = bounds.getWidth();
         double height = bounds.getHeight();
         double left = -width/2.0;
@@ -25,7 +31,7 @@ public class AnimatedText extends Text {
         double previousWidth = 0;
         ArrayList<AnimatedTextCharacter> chars = new ArrayList<>();
         for (int i = 0; i < text.length(); i++) {
-            Rectangle2D cBounds = fm.getStringBounds(text, 0, i+1, g);
+            Rectangle2D cBounds = font.getStringBounds(text, 0, i+1, frc);
 
             double cx = left + previousWidth;
             double cy = bottom;
@@ -42,13 +48,17 @@ public class AnimatedText extends Text {
 
 
     private ArrayList<AnimatedTextCharacter> chars;
-    private Font font;
+    private GlyphAtlas glyphs;
 
-    public AnimatedText(int x, int y, int width, int height, String text, Font font, Graphics2D graphics, AnimatedTextEffect effect) {
+    /** Reused for every character's transform */
+    private AffineTransform transform;
+
+    public AnimatedText(int x, int y, int width, int height, String text, Font font, AnimatedTextEffect effect) {
         super(x, y, width, height, text, font);
 
-        this.chars = createCharacters(graphics, font, text, x + width/2, y + height/2, effect);
-        this.font = font;
+        this.chars = createCharacters(font, text, x + width/2, y + height/2, effect);
+        this.glyphs = Fonts.get().getGlyphAtlas(font);
+        this.transform = new AffineTransform();
     }
 
     @Override
@@ -86,16 +96,17 @@ public class AnimatedText extends Text {
     }
 
     @Override
-    public void render(Graphics2D g) {
-        g.setFont(font);
+    public void render(RenderBackend backend) {
+        float saved = backend.getAlpha();
 
         for (int i = chars.size()-1; i >= 0; i--) {
             AnimatedTextCharacter c = chars.get(i);
-            c.render(g);
+            transform.setToIdentity();
+            c.render(backend, glyphs, transform, saved);
         }
 
-        // Reset transform after last character
-        g.setTransform(new AffineTransform());
+        // Reset opacity after last character
+        backend.setAlpha(saved);
     }
 
     public String getText() {
@@ -115,6 +126,10 @@ public class AnimatedText extends Text {
         public Point2D stringCenter;
         public AnimatedTextEffect.TextAnimationsBundle animations;
 
+        /** The last color converted, so that it is only converted again when it changes */
+        private float lastHue = Float.NaN, lastSat, lastBri;
+        private int lastRgb;
+
         private AnimatedTextCharacter(String fullText, int index, double x, double y, double width, double height, double stringCenterX, double stringCenterY, AnimatedTextEffect effect) {
             this.fullText = fullText;
             this.index = index;
@@ -124,54 +139,61 @@ public class AnimatedText extends Text {
             this.animations = effect.getAnimations(fullText, index);
         }
 
-        private void render(Graphics2D gr) {
+        /** Defaults for animations a text effect leaves out, shared so that nothing is boxed per frame */
+        private static final Double ZERO = 0.0;
+        private static final Double ONE = 1.0;
+        private static final Point2D.Double VECTOR_ZERO = new Point2D.Double(0, 0);
+        private static final Point2D.Double VECTOR_ONE = new Point2D.Double(1, 1);
+
+        /**
+         * Draw the character from the glyph atlas.
+         *
+         * @param transform Holds the transform to draw relative to, and is modified
+         * @param baseAlpha The opacity the character's own opacity is applied on top of
+         */
+        private void render(RenderBackend backend, GlyphAtlas glyphs, AffineTransform transform, float baseAlpha) {
 
             // Lookup animation values
-            Point2D.Double vectorZero = new Point2D.Double(0, 0);
-            Point2D.Double vectorOne = new Point2D.Double(1, 1);
-
-            double characterRotation = getWithDefault(animations.characterRotation, 0.0);
-            Point2D.Double characterPosition = getWithDefault(animations.characterPosition, vectorZero);
-
-            double textRotation = getWithDefault(animations.textRotation, 0.0);
-            Point2D.Double textShear = getWithDefault(animations.textShear, vectorZero);
-            Point2D.Double textScale = getWithDefault(animations.textScale, vectorOne);
-            Point2D.Double textPosition = getWithDefault(animations.textPosition, vectorZero);
-
-            float hue   = (float) (double) getWithDefault(animations.hue, 0.0);
-            float sat   = (float) (double) getWithDefault(animations.saturation, 0.0);
-            float bri   = (float) (double) getWithDefault(animations.brightness, 1.0);
-            float alpha = (float) (double) getWithDefault(animations.alpha, 1.0);
-
-            // Create transform
-            AffineTransform localRotate = AffineTransform.getRotateInstance(characterRotation);
-            AffineTransform localTranslate = AffineTransform.getTranslateInstance(bounds.getX() + characterPosition.getX(), bounds.getY() + characterPosition.getY());
-
-            AffineTransform rotate = AffineTransform.getRotateInstance(textRotation);
-            AffineTransform shear = AffineTransform.getShearInstance(textShear.getX(), textShear.getY());
-            AffineTransform scale = AffineTransform.getScaleInstance(textScale.getX(), textScale.getY());
-            AffineTransform translate = AffineTransform.getTranslateInstance(stringCenter.getX() + textPosition.getX(), stringCenter.getY() + textPosition.getY());
-
-            AffineTransform transform = new AffineTransform();
-            transform.concatenate(translate);
-            transform.concatenate(rotate);
-            transform.concatenate(localTranslate);
-            transform.concatenate(scale);
-            transform.concatenate(shear);
-            transform.concatenate(localRotate);
-            gr.setTransform(transform);
-
-            // Create color
-            int rgb = Color.HSBtoRGB(hue, sat, bri);
-            int r = (rgb >> 16) & 0xFF;
-            int g = (rgb >> 8) & 0xFF;
-            int b = (rgb >> 0) & 0xFF;
+            double characterRotation = getWithDefault(animations.characterRotation, ZERO);
+            Point2D.Double characterPosition = getWithDefault(animations.characterPosition, VECTOR_ZERO);
+
+            double textRotation = getWithDefault(animations.textRotation, ZERO);
+            Point2D.Double textShear = getWithDefault(animations.textShear, VECTOR_ZERO);
+            Point2D.Double textScale = getWithDefault(animations.textScale, VECTOR_ONE);
+            Point2D.Double textPosition = getWithDefault(animations.textPosition, VECTOR_ZERO);
+
+            float hue   = (float) (double) getWithDefault(animations.hue, ZERO);
+            float sat   = (float) (double) getWithDefault(animations.saturation, ZERO);
+            float bri   = (float) (double) getWithDefault(animations.brightness, ONE);
+            float alpha = (float) (double) getWithDefault(animations.alpha, ONE);
+
+            // Build the transform in place, in the same order as translate * rotate * localTranslate * scale * shear * localRotate
+            transform.translate(stringCenter.getX() + textPosition.getX(), stringCenter.getY() + textPosition.getY());
+            transform.rotate(textRotation);
+            transform.translate(bounds.getX() + characterPosition.getX(), bounds.getY() + characterPosition.getY());
+            transform.scale(textScale.getX(), textScale.getY());
+            transform.shear(textShear.getX(), textShear.getY());
+            transform.rotate(characterRotation);
+
+            // Pack the color
+            if (hue != lastHue || sat != lastSat || bri != lastBri) {
+                lastRgb = Color.HSBtoRGB(hue, sat, bri) & 0xFFFFFF;
+                lastHue = hue;
+                lastSat = sat;
+                lastBri = bri;
+            }
+            int rgb = lastRgb;
             int a = (int) (255.0 * Math.min(Math.max(alpha, 0f), 1f)) & 0xFF;
-            Color color = new Color(r, g, b, a);
-            gr.setColor(color);
+            if (a == 0) return;
+
+            // Draw the character's glyph image, placed relative to its baseline origin
+            GlyphAtlas.Glyph glyph = glyphs.getGlyph(c);
+            BufferedImage image = glyphs.getImage(glyph, rgb);
+            if (image == null) return;
 
-            // Draw the character
-            gr.drawString(""+c, 0f, 0f);
+            transform.translate(glyph.getLeft(), glyph.getTop());
+            backend.setAlpha(baseAlpha * a / 255f);
+            backend.drawImage(image, transform);
         }
 
         private static <T> T getWithDefault(TweenSequence<T> seq, T defaultValue) {
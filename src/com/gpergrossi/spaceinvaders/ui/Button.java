@@ -1,16 +1,28 @@
 package com.gpergrossi.spaceinvaders.ui;
 
 import com.gpergrossi.spaceinvaders.animation.AnimationSystem;
+import com.gpergrossi.spaceinvaders.assets.Fonts;
 import com.gpergrossi.spaceinvaders.game.Input;
+import com.gpergrossi.spaceinvaders.render.RenderBackend;
 
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.image.BufferedImage;
 
 public class Button extends Component {
 
+    private static final int NORMAL = 0;
+    private static final int HOVER = 1;
+    private static final int PRESSED = 2;
+
+    /** The background and outline reach this far outside the button's bounds */
+    private static final int PADDING = 1;
+
+    private static final Color NORMAL_FOREGROUND = new Color(255, 255, 255, 200);
+
     private int x;
     private int y;
     private int width;
@@ -24,6 +36,9 @@ public class Button extends Component {
 
     private Runnable onClickCallback;
 
+    /** The background and outline for each state, drawn the first time they are needed */
+    private BufferedImage[] frames;
+
     private MouseListener mouseListener;
     private MouseMotionListener mouseMotionListener;
 
@@ -40,6 +55,7 @@ public class Button extends Component {
         this.doOnClick = false;
 
         this.onClickCallback = null;
+        this.frames = new BufferedImage[3];
 
         this.mouseListener = createMouseListener();
         this.mouseMotionListener = createMouseMotionListener();
@@ -73,37 +89,59 @@ public class Button extends Component {
     }
 
     @Override
-    public void render(Graphics2D g) {
+    public void render(RenderBackend backend) {
+        int state = pressed ? PRESSED : (hover ? HOVER : NORMAL);
+
+        // Draw background and outline
+        if (frames[state] == null) {
+            frames[state] = createFrame(state);
+        }
+        backend.drawImage(frames[state], x - PADDING, y - PADDING);
+
+        // Draw text
+        FontMetrics metrics = Fonts.get().getMetrics(font);
+        int strWidth = metrics.stringWidth(text);
+        int strHeight = metrics.getHeight();
+        int ascent = metrics.getAscent();
+        float textX = x + (width - strWidth) * 0.5f;
+        float textY = y + (height - strHeight) * 0.5f + ascent - 1;
+        backend.drawText(text, font, Math.round(textX), Math.round(textY), getForeground(state).getRGB());
+    }
+
+    /** Draw the background and outline of a state into an image, since they never change */
+    private BufferedImage createFrame(int state) {
+        BufferedImage image = new BufferedImage(width + 1 + PADDING * 2, height + 1 + PADDING * 2, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = Fonts.get().createGraphics(image);
+        g.translate(PADDING, PADDING);
+
         // Background color
-        if (pressed) {
+        if (state == PRESSED) {
             g.setColor(new Color(0, 0, 0, 200));
-        } else if (hover) {
+        } else if (state == HOVER) {
             g.setColor(new Color(32, 32, 32, 200));
         } else {
             g.setColor(new Color(32, 32, 32, 127));
         }
 
         // Draw background
-        g.fillRoundRect(x, y, width, height, 3, 3);
+        g.fillRoundRect(0, 0, width, height, 3, 3);
 
-        // Foreground color
-        if (pressed) {
-            g.setColor(Color.LIGHT_GRAY);
-        } else if (hover) {
-            g.setColor(Color.WHITE);
-        } else {
-            g.setColor(new Color(255, 255, 255, 200));
-        }
+        // Draw outline
+        g.setColor(getForeground(state));
+        g.drawRoundRect(0, 0, width, height, 3, 3);
+        g.dispose();
 
-        // Draw text
-        g.setFont(font);
-        int strWidth = g.getFontMetrics().stringWidth(text);
-        int strHeight = g.getFontMetrics().getHeight();
-        int ascent = g.getFontMetrics().getAscent();
-        g.drawString(text, x + (width - strWidth) * 0.5f, y + (height - strHeight) * 0.5f + ascent - 1);
+        return image;
+    }
 
-        // Draw outline
-        g.drawRoundRect(x, y, width, height, 3, 3);
+    private static Color getForeground(int state) {
+        if (state == PRESSED) {
+            return Color.LIGHT_GRAY;
+        } else if (state == HOVER) {
+            return Color.WHITE;
+        } else {
+            return NORMAL_FOREGROUND;
+        }
     }
 
     public void setOnClick(Runnable callback) {
@@ -2,8 +2,7 @@ package com.gpergrossi.spaceinvaders.ui;
 
 import com.gpergrossi.spaceinvaders.animation.AnimationSystem;
 import com.gpergrossi.spaceinvaders.game.Input;
-
-import java.awt.*;
+import com.gpergrossi.spaceinvaders.render.RenderBackend;
 
 public abstract class Component {
 
@@ -15,7 +14,7 @@ public abstract class Component {
 
     public abstract void unregisterAnimations(AnimationSystem animationSystem);
 
-    public abstract void render(Graphics2D g);
+    public abstract void render(RenderBackend backend);
 
     public void doCallbacks() {}
 
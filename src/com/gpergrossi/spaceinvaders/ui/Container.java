@@ -2,8 +2,8 @@ package com.gpergrossi.spaceinvaders.ui;
 
 import com.gpergrossi.spaceinvaders.animation.AnimationSystem;
 import com.gpergrossi.spaceinvaders.game.Input;
+import com.gpergrossi.spaceinvaders.render.RenderBackend;
 
-import java.awt.*;
 import java.util.ArrayList;
 
 public class Container extends Component {
@@ -51,9 +51,9 @@ public class Container extends Component {
     }
 
     @Override
-    public void render(Graphics2D g) {
+    public void render(RenderBackend backend) {
         for (Component c : components) {
-            c.render(g);
+            c.render(backend);
         }
     }
 
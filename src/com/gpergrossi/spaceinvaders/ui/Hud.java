@@ -0,0 +1,271 @@
+package com.gpergrossi.spaceinvaders.ui;
+
+import com.gpergrossi.spaceinvaders.animation.AnimationSystem;
+import com.gpergrossi.spaceinvaders.assets.Fonts;
+import com.gpergrossi.spaceinvaders.game.Input;
+import com.gpergrossi.spaceinvaders.game.Statistics;
+import com.gpergrossi.spaceinvaders.render.ImageVersions;
+import com.gpergrossi.spaceinvaders.render.RenderBackend;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * The score readout shown in the corner during gameplay.
+ *
+ * The labels are drawn once into an image. Each value is drawn into its own small image,
+ * built from a pre-rendered strip of digits, and only redrawn when the value changes.
+ * The labels and values are then combined into one image for the whole readout, so a
+ * frame where nothing changed is a single blit, with no strings or text layout.
+ */
+public class Hud extends Component {
+
+    private static final String[] LABELS = { "Fired:", "Hit:", "Accuracy:", "Combo:" };
+
+    private static final int LINE_FIRED = 0;
+    private static final int LINE_HIT = 1;
+    private static final int LINE_ACCURACY = 2;
+    private static final int LINE_COMBO = 3;
+
+    private static final int LABEL_X = 650;
+    private static final int VALUE_X = 750;
+    private static final int FIRST_BASELINE = 25;
+    private static final int LINE_SPACING = 20;
+
+    /** Values sit one pixel lower than their labels */
+    private static final int VALUE_OFFSET_Y = 1;
+
+    /** The most characters a value can have, including a sign and a percent sign */
+    private static final int MAX_VALUE_CHARS = 12;
+
+    private Statistics statistics;
+
+    private Font font;
+    private DigitStrip digits;
+
+    private BufferedImage labelImage;
+
+    /** The whole readout, with its top left corner at (LABEL_X, hudImageY) */
+    private BufferedImage hudImage;
+    private int hudImageY;
+    private boolean hudImageValid;
+
+    /** The width of the readout image that is in use */
+    private int hudWidth;
+
+    private BufferedImage[] valueImages;
+
+    /** The width of each value image that is in use */
+    private int[] valueWidths;
+    private int[] values;
+    private boolean[] valid;
+
+    /** Reused when formatting a value, holds indices into the digit strip */
+    private int[] formatBuffer;
+
+    public Hud(Statistics statistics) {
+        this.statistics = statistics;
+        this.valueImages = new BufferedImage[LABELS.length];
+        this.valueWidths = new int[LABELS.length];
+        this.values = new int[LABELS.length];
+        this.valid = new boolean[LABELS.length];
+        this.formatBuffer = new int[MAX_VALUE_CHARS];
+    }
+
+    @Override
+    public void registerInputListeners(Input input) {
+        // No input listeners for Hud
+    }
+
+    @Override
+    public void unregisterInputListeners(Input input) {
+        // No input listeners for Hud
+    }
+
+    @Override
+    public void registerAnimations(AnimationSystem animationSystem) {
+        // No animations for Hud
+    }
+
+    @Override
+    public void unregisterAnimations(AnimationSystem animationSystem) {
+        // No animations for Hud
+    }
+
+    @Override
+    public void render(RenderBackend backend) {
+        Font smallFont = Fonts.get().getSmallFont();
+        if (font != smallFont) {
+            init(smallFont);
+        }
+
+        update(LINE_FIRED, statistics.getShotsFired(), false);
+        update(LINE_HIT, statistics.getShotsHit(), false);
+        update(LINE_ACCURACY, Math.round(statistics.getAccuracy() * 100f), true);
+        update(LINE_COMBO, statistics.getHitCombo(), false);
+
+        if (!hudImageValid) {
+            combine();
+        }
+
+        backend.drawImage(hudImage, LABEL_X, hudImageY, 0, 0, hudWidth, hudImage.getHeight());
+    }
+
+    /** Redraw the whole readout from the label and value images */
+    private void combine() {
+        Graphics2D hudGraphics = Fonts.get().createGraphics(hudImage);
+        hudGraphics.setComposite(AlphaComposite.Clear);
+        hudGraphics.fillRect(0, 0, hudImage.getWidth(), hudImage.getHeight());
+        hudGraphics.setComposite(AlphaComposite.SrcOver);
+
+        // Draw in screen coordinates
+        hudGraphics.translate(-LABEL_X, -hudImageY);
+        hudGraphics.drawImage(labelImage, LABEL_X, hudImageY, null);
+        hudWidth = labelImage.getWidth();
+        for (int i = 0; i < LABELS.length; i++) {
+            int x = VALUE_X - digits.padding;
+            int y = FIRST_BASELINE + i * LINE_SPACING + VALUE_OFFSET_Y - digits.ascent;
+            int width = valueWidths[i];
+            hudGraphics.drawImage(valueImages[i], x, y, x + width, y + digits.height, 0, 0, width, digits.height, null);
+            hudWidth = Math.max(hudWidth, x + width - LABEL_X);
+        }
+        hudGraphics.dispose();
+        ImageVersions.changed(hudImage);
+
+        hudImageValid = true;
+    }
+
+    /** Draw the labels and the digit strip, and forget every value image */
+    private void init(Font font) {
+        this.font = font;
+        this.digits = new DigitStrip(font);
+
+        // The labels never change, so they share one image
+        FontMetrics metrics = Fonts.get().getMetrics(font);
+        int ascent = metrics.getMaxAscent();
+        int labelWidth = 0;
+        for (String label : LABELS) {
+            labelWidth = Math.max(labelWidth, metrics.stringWidth(label));
+        }
+
+        hudImageY = FIRST_BASELINE - ascent;
+        labelImage = createImage(labelWidth + digits.padding, ascent + (LABELS.length - 1) * LINE_SPACING + metrics.getMaxDescent());
+
+        Graphics2D labelGraphics = Fonts.get().createGraphics(labelImage);
+        labelGraphics.setFont(font);
+        labelGraphics.setColor(Color.WHITE);
+        for (int i = 0; i < LABELS.length; i++) {
+            labelGraphics.drawString(LABELS[i], 0, ascent + i * LINE_SPACING);
+        }
+        labelGraphics.dispose();
+
+        for (int i = 0; i < LABELS.length; i++) {
+            valueImages[i] = createImage(MAX_VALUE_CHARS * digits.maxAdvance + digits.padding * 2, digits.height);
+            valueWidths[i] = 0;
+            valid[i] = false;
+        }
+
+        // Big enough for the labels and the longest possible values
+        int lastValueBottom = FIRST_BASELINE + (LABELS.length - 1) * LINE_SPACING + VALUE_OFFSET_Y - digits.ascent + digits.height;
+        hudImage = createImage(
+                Math.max(labelImage.getWidth(), VALUE_X - LABEL_X + valueImages[0].getWidth()),
+                Math.max(labelImage.getHeight(), lastValueBottom - hudImageY));
+        hudImageValid = false;
+    }
+
+    /** Redraw a value's image if the value has changed since it was drawn */
+    private void update(int line, int value, boolean percent) {
+        if (valid[line] && values[line] == value) return;
+        values[line] = value;
+        valid[line] = true;
+
+        // Collect the digit strip indices of the characters, last character first
+        int count = 0;
+        if (percent) formatBuffer[count++] = DigitStrip.PERCENT;
+
+        long remaining = Math.abs((long) value);
+        do {
+            formatBuffer[count++] = (int) (remaining % 10);
+            remaining /= 10;
+        } while (remaining > 0);
+
+        if (value < 0) formatBuffer[count++] = DigitStrip.MINUS;
+
+        BufferedImage image = valueImages[line];
+        Graphics2D imageGraphics = Fonts.get().createGraphics(image);
+        imageGraphics.setComposite(AlphaComposite.Clear);
+        imageGraphics.fillRect(0, 0, valueWidths[line], image.getHeight());
+        imageGraphics.setComposite(AlphaComposite.SrcOver);
+
+        int x = digits.padding;
+        for (int i = count - 1; i >= 0; i--) {
+            x += digits.draw(imageGraphics, formatBuffer[i], x);
+        }
+        imageGraphics.dispose();
+
+        valueWidths[line] = x + digits.padding;
+        hudImageValid = false;
+    }
+
+    private static BufferedImage createImage(int width, int height) {
+        return new BufferedImage(Math.max(width, 1), Math.max(height, 1), BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+
+    /**
+     * The characters needed to draw numbers, each pre-rendered into its own cell of one image.
+     */
+    private static class DigitStrip {
+        private static final String CHARACTERS = "0123456789%-";
+        private static final int PERCENT = 10;
+        private static final int MINUS = 11;
+
+        private BufferedImage image;
+
+        /** The baseline is this far from the top of the strip */
+        private int ascent;
+        private int height;
+
+        /** Each cell has this much space on either side of its character, for parts that overhang */
+        private int padding;
+
+        private int cellWidth;
+        private int maxAdvance;
+        private int[] advances;
+
+        private DigitStrip(Font font) {
+            FontMetrics metrics = Fonts.get().getMetrics(font);
+            this.ascent = metrics.getMaxAscent();
+            this.height = ascent + metrics.getMaxDescent();
+            this.padding = Math.max(2, font.getSize() / 4);
+
+            this.advances = new int[CHARACTERS.length()];
+            for (int i = 0; i < advances.length; i++) {
+                advances[i] = metrics.charWidth(CHARACTERS.charAt(i));
+                maxAdvance = Math.max(maxAdvance, advances[i]);
+            }
+            this.cellWidth = maxAdvance + padding * 2;
+
+            this.image = createImage(cellWidth * advances.length, height);
+            Graphics2D g = Fonts.get().createGraphics(image);
+            g.setFont(font);
+            g.setColor(Color.WHITE);
+            for (int i = 0; i < advances.length; i++) {
+                g.drawString(CHARACTERS.substring(i, i + 1), i * cellWidth + padding, ascent);
+            }
+            g.dispose();
+        }
+
+        /**
+         * Blit one character's cell so that its origin lands at x.
+         *
+         * @return The advance of the character
+         */
+        private int draw(Graphics2D g, int index, int x) {
+            int sourceX = index * cellWidth;
+            int destX = x - padding;
+            g.drawImage(image, destX, 0, destX + cellWidth, height, sourceX, 0, sourceX + cellWidth, height, null);
+            return advances[index];
+        }
+    }
+
+}
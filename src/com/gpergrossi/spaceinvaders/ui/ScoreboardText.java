@@ -1,7 +1,9 @@
 package com.gpergrossi.spaceinvaders.ui;
 
 import com.gpergrossi.spaceinvaders.animation.*;
+import com.gpergrossi.spaceinvaders.assets.Fonts;
 import com.gpergrossi.spaceinvaders.game.Input;
+import com.gpergrossi.spaceinvaders.render.RenderBackend;
 
 import java.awt.*;
 import java.util.function.DoubleSupplier;
@@ -77,14 +79,12 @@ public class ScoreboardText extends Component {
     }
 
     @Override
-    public void render(Graphics2D g) {
-        g.setFont(font);
-
+    public void render(RenderBackend backend) {
         float alpha = (float) (double) fadeInAnimation.getValue();
-        g.setColor(new Color(255, 255, 255, (int) (255 * alpha)));
+        int argb = ((int) (255 * alpha) << 24) | 0xFFFFFF;
 
         // Left-aligned label
-        g.drawString(label, x, y);
+        backend.drawText(label, font, x, y, argb);
 
         // Value display
         double value = valueAnimation.getValue() * valueSupplier.getAsDouble();
@@ -92,8 +92,8 @@ public class ScoreboardText extends Component {
         if (Double.isNaN(value)) valueStr = "N/A";
 
             // Right-aligned value
-        int valueStrWidth = g.getFontMetrics().stringWidth(valueStr);
-        float valueX = x + width - valueStrWidth;
-        g.drawString(valueStr, valueX, y);
+        int valueStrWidth = Fonts.get().getMetrics(font).stringWidth(valueStr);
+        int valueX = x + width - valueStrWidth;
+        backend.drawText(valueStr, font, valueX, y, argb);
     }
 }
@@ -1,16 +1,44 @@
 package com.gpergrossi.spaceinvaders.ui;
 
+import com.gpergrossi.spaceinvaders.assets.Fonts;
+import com.gpergrossi.spaceinvaders.render.RenderBackend;
+
 import java.awt.*;
 import java.awt.geom.AffineTransform;
-
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Text with a color, and optionally an outline and a skew.
+ *
+ * The styled text is drawn once into a cached image, which is then blitted every frame.
+ * The image is redrawn only when the text, font, position or style changes.
+ */
 public class StyledText extends Text {
 
+    /** Extra pixels around the cached image, so antialiased edges are never cut off */
+    private static final int PADDING = 2;
+
     protected Color color;
     protected boolean outline;
     protected Color outlineColor;
     protected float outlineThickness;
     protected float skew;
 
+    private BufferedImage cachedImage;
+    private int cachedImageX, cachedImageY;
+
+    // Everything the cached image was drawn with
+    private String cachedText;
+    private Font cachedFont;
+    private int cachedX, cachedY, cachedWidth;
+    private boolean cachedCentered;
+    private Color cachedColor;
+    private boolean cachedOutline;
+    private Color cachedOutlineColor;
+    private float cachedOutlineThickness;
+    private float cachedSkew;
+
     public StyledText(int x, int y, int width, int height, String text, Font font) {
         super(x, y, width, height, text, font);
         this.color = Color.WHITE;
@@ -43,25 +71,76 @@ public class StyledText extends Text {
     }
 
     @Override
-    public void render(Graphics2D g) {
-        g.setFont(font);
+    public void render(RenderBackend backend) {
+        if (!isCacheValid()) {
+            updateCache();
+        }
+
+        backend.drawImage(cachedImage, cachedImageX, cachedImageY);
+    }
+
+    private boolean isCacheValid() {
+        return cachedImage != null
+                && text.equals(cachedText)
+                && font.equals(cachedFont)
+                && x == cachedX && y == cachedY && width == cachedWidth
+                && centered == cachedCentered
+                && color.equals(cachedColor)
+                && outline == cachedOutline
+                && outlineColor.equals(cachedOutlineColor)
+                && outlineThickness == cachedOutlineThickness
+                && skew == cachedSkew;
+    }
+
+    private void updateCache() {
+        FontMetrics metrics = Fonts.get().getMetrics(font);
+        int strWidth = metrics.stringWidth(text);
 
         float posX = x;
         float posY = y;
 
         if (centered) {
-            int strWidth = g.getFontMetrics().stringWidth(text);
-            int ascent = g.getFontMetrics().getAscent();
+            int ascent = metrics.getAscent();
             posX = x + (width - strWidth) * 0.5f;
             posY = y + ascent;
         }
 
+        // Find the area the styled text covers, relative to its baseline origin
+        float margin = outline ? outlineThickness : 0;
+        Rectangle2D.Float layoutBounds = new Rectangle2D.Float(
+                -margin, -metrics.getAscent() - margin,
+                strWidth + margin * 2, metrics.getAscent() + metrics.getDescent() + margin * 2);
         AffineTransform skewTransform = AffineTransform.getShearInstance(-skew, 0);
-        AffineTransform translation = AffineTransform.getTranslateInstance(posX, posY);
-        AffineTransform transform = new AffineTransform();
-        transform.concatenate(translation);
-        transform.concatenate(skewTransform);
-        g.setTransform(transform);
+        Rectangle2D bounds = skewTransform.createTransformedShape(layoutBounds).getBounds2D();
+
+        cachedImageX = (int) Math.floor(posX + bounds.getMinX()) - PADDING;
+        cachedImageY = (int) Math.floor(posY + bounds.getMinY()) - PADDING;
+        int imageWidth = (int) Math.ceil(posX + bounds.getMaxX()) + PADDING - cachedImageX;
+        int imageHeight = (int) Math.ceil(posY + bounds.getMaxY()) + PADDING - cachedImageY;
+
+        cachedImage = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D imageGraphics = Fonts.get().createGraphics(cachedImage);
+        imageGraphics.translate(posX - cachedImageX, posY - cachedImageY);
+        imageGraphics.transform(skewTransform);
+        drawStyled(imageGraphics);
+        imageGraphics.dispose();
+
+        cachedText = text;
+        cachedFont = font;
+        cachedX = x;
+        cachedY = y;
+        cachedWidth = width;
+        cachedCentered = centered;
+        cachedColor = color;
+        cachedOutline = outline;
+        cachedOutlineColor = outlineColor;
+        cachedOutlineThickness = outlineThickness;
+        cachedSkew = skew;
+    }
+
+    /** Draw the text with its style, with the baseline origin at (0, 0) */
+    private void drawStyled(Graphics2D g) {
+        g.setFont(font);
 
         if (outline) {
             g.setColor(outlineColor);
@@ -78,9 +157,6 @@ public class StyledText extends Text {
         // Foreground color
         g.setColor(color);
         g.drawString(text, 0, 0);
-
-        // Reset transform
-        g.setTransform(new AffineTransform());
     }
 
 }
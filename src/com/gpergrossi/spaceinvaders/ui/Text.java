@@ -1,7 +1,9 @@
 package com.gpergrossi.spaceinvaders.ui;
 
 import com.gpergrossi.spaceinvaders.animation.AnimationSystem;
+import com.gpergrossi.spaceinvaders.assets.Fonts;
 import com.gpergrossi.spaceinvaders.game.Input;
+import com.gpergrossi.spaceinvaders.render.RenderBackend;
 
 import java.awt.*;
 
@@ -51,22 +53,20 @@ public class Text extends Component {
     }
 
     @Override
-    public void render(Graphics2D g) {
-        g.setFont(font);
-
+    public void render(RenderBackend backend) {
         float posX = x;
         float posY = y;
 
         if (centered) {
-            int strWidth = g.getFontMetrics().stringWidth(text);
-            int ascent = g.getFontMetrics().getAscent();
+            FontMetrics metrics = Fonts.get().getMetrics(font);
+            int strWidth = metrics.stringWidth(text);
+            int ascent = metrics.getAscent();
             posX = x + (width - strWidth) * 0.5f;
             posY = y + ascent;
         }
 
         // Foreground color
-        g.setColor(Color.WHITE);
-        g.drawString(text, posX, posY);
+        backend.drawText(text, font, Math.round(posX), Math.round(posY), Color.WHITE.getRGB());
     }
 
 }
@@ -10,8 +10,6 @@ import com.gpergrossi.spaceinvaders.ui.Text;
 import com.gpergrossi.spaceinvaders.ui.texteffects.AnimatedTextEffect;
 import com.gpergrossi.spaceinvaders.ui.texteffects.VictoryTextEffect;
 
-import java.awt.*;
-
 public class GameOverScreen extends Screen {
 
     private Game game;
@@ -27,11 +25,12 @@ public class GameOverScreen extends Screen {
 
     private Button playAgainButton;
 
-    public void init(Graphics2D g) {
+    @Override
+    public void init() {
         // Victory message
         AnimatedText victoryMessage = new AnimatedText(
                 0, 60, 800, 100, titleMessage,
-                Fonts.get().getLargeFont(), g, titleEffect
+                Fonts.get().getLargeFont(), titleEffect
         );
         this.add(victoryMessage);
 
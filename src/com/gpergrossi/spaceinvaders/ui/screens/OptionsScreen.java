@@ -15,7 +15,7 @@ public class OptionsScreen extends Screen {
     protected Button returnButton;
 
     @Override
-    public void init(Graphics2D g) {
+    public void init() {
         this.add(
                 new StyledText(0, 100, 800, 100, "OPTIONS", Fonts.get().getHugeFont())
                         .centered().outlined(Color.DARK_GRAY, 4.2f).skewed(0.2f)
@@ -17,7 +17,7 @@ public class PauseScreen extends Screen {
     protected Button exitButton;
 
     @Override
-    public void init(Graphics2D g) {
+    public void init() {
         this.add(
                 new StyledText(0, 150, 800, 100, "- PAUSED -", Fonts.get().getHugeFont())
                         .centered().outlined(Color.DARK_GRAY, 4.2f).skewed(0.2f)
@@ -4,7 +4,6 @@ import com.gpergrossi.spaceinvaders.animation.AnimationSystem;
 import com.gpergrossi.spaceinvaders.game.Input;
 import com.gpergrossi.spaceinvaders.ui.Container;
 
-import java.awt.*;
 import java.util.function.Consumer;
 
 public abstract class Screen extends Container {
@@ -21,16 +20,16 @@ public abstract class Screen extends Container {
         this.ready = false;
     }
 
-    /** Used to create components like AnimatedText that require a Graphics context. */
-    public abstract void init(Graphics2D g);
+    /** Create the screen's components, each time it is shown. */
+    public abstract void init();
 
     public void reset() {
         this.components.clear();
         this.ready = false;
     }
 
-    public void onShow(Graphics2D g, Input input, AnimationSystem animationSystem) {
-        this.init(g);
+    public void onShow(Input input, AnimationSystem animationSystem) {
+        this.init();
         this.registerInputListeners(input);
         this.registerAnimations(animationSystem);
         ready = true;
@@ -16,7 +16,7 @@ public class TitleScreen extends Screen {
     }
 
     @Override
-    public void init(Graphics2D g) {
+    public void init() {
         this.add(
                 new StyledText(0, 100, 800, 100, "Space", Fonts.get().getHugeFont())
                         .centered().outlined(Color.DARK_GRAY, 4.2f).skewed(0.2f)